@@ -0,0 +1,103 @@
+package de.mortensenit.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Generates a self signed EC keystore and a matching truststore for the
+ * benchmarks, so they do not depend on the checked in stores or on network
+ * access. The stores are created with the keytool of the running JDK in a
+ * temporary directory, which is deleted when the JVM exits.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class BenchmarkKeyStores {
+
+	/**
+	 * password of the generated keystore and truststore
+	 */
+	public static final String PASSWORD = "benchmark";
+
+	private static final String ALIAS = "localhost";
+
+	private final Path directory;
+
+	private BenchmarkKeyStores(Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * generate a new keystore with an EC P-256 key for localhost and a truststore
+	 * containing its certificate
+	 *
+	 * @return the generated stores
+	 * @throws IOException if keytool failed
+	 */
+	public static BenchmarkKeyStores generate() throws IOException {
+		Path directory = Files.createTempDirectory("benchmark-stores");
+		// deleteOnExit runs in reverse order, the directory must be empty by then
+		directory.toFile().deleteOnExit();
+		BenchmarkKeyStores stores = new BenchmarkKeyStores(directory);
+		String certificateFile = directory.resolve(ALIAS + ".cer").toString();
+
+		keytool("-genkeypair", "-alias", ALIAS, "-keyalg", "EC", "-groupname", "secp256r1", "-sigalg",
+				"SHA256withECDSA", "-dname", "CN=localhost", "-ext", "SAN=dns:localhost", "-validity", "30",
+				"-keystore", stores.getKeyStoreFile(), "-storepass", PASSWORD);
+		keytool("-exportcert", "-alias", ALIAS, "-keystore", stores.getKeyStoreFile(), "-storepass", PASSWORD,
+				"-file", certificateFile);
+		// truststores are loaded without password, which only works for JKS
+		keytool("-importcert", "-noprompt", "-alias", ALIAS, "-file", certificateFile, "-keystore",
+				stores.getTrustStoreFile(), "-storetype", "JKS", "-storepass", PASSWORD);
+
+		for (String file : new String[] { stores.getTrustStoreFile(), certificateFile, stores.getKeyStoreFile() }) {
+			new File(file).deleteOnExit();
+		}
+		return stores;
+	}
+
+	/**
+	 *
+	 * @return the keystore containing the private key
+	 */
+	public String getKeyStoreFile() {
+		return directory.resolve("keystore.jks").toString();
+	}
+
+	/**
+	 *
+	 * @return the truststore containing the certificate of the key
+	 */
+	public String getTrustStoreFile() {
+		return directory.resolve("truststore.jks").toString();
+	}
+
+	/**
+	 * run the keytool of the current JDK
+	 *
+	 * @param args the keytool arguments
+	 * @throws IOException if keytool failed
+	 */
+	private static void keytool(String... args) throws IOException {
+		List<String> command = new ArrayList<>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "keytool").toString());
+		command.addAll(Arrays.asList(args));
+
+		Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+		String output = new String(process.getInputStream().readAllBytes());
+		try {
+			if (process.waitFor() != 0)
+				throw new IOException("keytool " + args[0] + " failed: " + output);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("keytool " + args[0] + " was interrupted.", e);
+		}
+	}
+
+}
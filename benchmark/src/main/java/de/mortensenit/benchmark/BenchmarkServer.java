@@ -0,0 +1,171 @@
+package de.mortensenit.benchmark;
+
+import static de.mortensenit.server.ServerConfigKeys.SERVER_EXECUTOR;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_KEYSTORE_FILE;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_MODE;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_TRUSTSTORE_FILE;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.apache.logging.log4j.LogManager;
+
+import de.mortensenit.model.Constants;
+import de.mortensenit.model.util.ConfigurationContext;
+import de.mortensenit.server.ServerStarter;
+
+/**
+ * Server side of the executor benchmark. Runs in a forked JVM, so the memory
+ * footprint of one executor strategy is not distorted by the benchmark client
+ * or another strategy.<br />
+ * <br />
+ * The server is started with the executor strategy given as first argument.
+ * Every line "report" on stdin is answered with a footprint line on stdout.<br />
+ * <br />
+ * Benchmarks that measure both sides together start the server in-process with
+ * {@link #startInProcess(String, String)}.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class BenchmarkServer {
+
+	/**
+	 * prefix of the footprint line written to stdout
+	 */
+	static final String FOOTPRINT = "FOOTPRINT";
+
+	/**
+	 * the port the server listens on
+	 */
+	static final int PORT = 7000;
+
+	/**
+	 *
+	 * @param args the executor strategy
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		ConfigurationContext.set(SERVER_EXECUTOR, args[0]);
+		startServerThread();
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (line.equals("report")) {
+				System.out.println(footprint());
+				System.out.flush();
+			}
+		}
+		System.exit(0);
+	}
+
+	/**
+	 * start the server in this JVM and wait until it accepts connections
+	 *
+	 * @param serverMode     the server mode, e.g. TLS_NIO
+	 * @param storeDirectory the directory of the server keystore and truststore
+	 * @throws InterruptedException
+	 */
+	static void startInProcess(String serverMode, String storeDirectory) throws InterruptedException {
+		ConfigurationContext.set(SERVER_MODE, serverMode);
+		ConfigurationContext.set(SERVER_EXECUTOR, Constants.EXECUTOR_VIRTUAL);
+		ConfigurationContext.set(SERVER_KEYSTORE_FILE, storeDirectory + "/keystore.jks");
+		ConfigurationContext.set(SERVER_TRUSTSTORE_FILE, storeDirectory + "/truststore.jks");
+		startServerThread();
+		waitForServer();
+	}
+
+	/**
+	 * start the ServerStarter with the current configuration on a daemon thread
+	 */
+	static void startServerThread() {
+		Thread serverThread = new Thread(() -> {
+			try {
+				ServerStarter.main(new String[0]);
+			} catch (Exception e) {
+				LogManager.getLogger().error("Benchmark server failed!", e);
+			}
+		}, "benchmark-server");
+		serverThread.setDaemon(true);
+		serverThread.start();
+	}
+
+	/**
+	 * wait until the server accepts connections
+	 *
+	 * @throws InterruptedException
+	 */
+	static void waitForServer() throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 30000;
+		while (System.currentTimeMillis() < deadline) {
+			try (Socket probe = new Socket("localhost", PORT)) {
+				return;
+			} catch (IOException e) {
+				Thread.sleep(100);
+			}
+		}
+		throw new IllegalStateException("Benchmark server did not start.");
+	}
+
+	/**
+	 *
+	 * @return the cpu time of all threads of this JVM or -1 if not supported
+	 */
+	static long processCpuNanos() {
+		java.lang.management.OperatingSystemMXBean operatingSystem = ManagementFactory.getOperatingSystemMXBean();
+		if (operatingSystem instanceof com.sun.management.OperatingSystemMXBean)
+			return ((com.sun.management.OperatingSystemMXBean) operatingSystem).getProcessCpuTime();
+		return -1;
+	}
+
+	/**
+	 * collect garbage first, so only the memory retained by the connections is
+	 * reported
+	 *
+	 * @return the footprint line: live platform threads, used heap bytes and
+	 *         resident set size bytes (-1 if unknown)
+	 * @throws InterruptedException
+	 */
+	private static String footprint() throws InterruptedException {
+		System.gc();
+		Thread.sleep(500);
+		System.gc();
+
+		int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+		long heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+		return FOOTPRINT + " " + threads + " " + heapUsed + " " + residentSetSize();
+	}
+
+	/**
+	 * the resident set size contains the committed thread stacks, which are not
+	 * part of the heap. It is only available on linux.
+	 *
+	 * @return the resident set size in bytes or -1
+	 */
+	private static long residentSetSize() {
+		Path status = Paths.get("/proc/self/status");
+		if (!Files.isReadable(status))
+			return -1;
+
+		try {
+			for (String line : Files.readAllLines(status)) {
+				if (line.startsWith("VmRSS:")) {
+					String kiloBytes = line.substring("VmRSS:".length()).replace("kB", "").trim();
+					return Long.valueOf(kiloBytes) * 1024;
+				}
+			}
+		} catch (IOException e) {
+			LogManager.getLogger().error("Could not read resident set size.", e);
+		}
+		return -1;
+	}
+
+}
@@ -0,0 +1,147 @@
+package de.mortensenit.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.mortensenit.model.buffer.ByteBufferPool;
+import de.mortensenit.model.codec.FrameCodec;
+
+/**
+ * Connection churn with a large number of open connections. Every operation
+ * closes the oldest connection and opens a new one, which needs the two network
+ * buffers sized like the TLS packet buffers and the receive buffer of the frame
+ * codec.<br />
+ * <br />
+ * NONE allocates the buffers for every connection, SHARED pools them in the
+ * shared queues only and CACHED also uses the cache of the thread, as the
+ * selector loops do. Run it with -prof gc to see the allocation rate per
+ * connection and the garbage collections. Unpooled direct buffers are only
+ * freed by the garbage collector, so they are by far the slowest.<br />
+ * <br />
+ * Usage: java -jar benchmark/target/benchmarks.jar BufferPoolBenchmark -prof gc
+ *
+ * @author frederik.mortensen
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Dlog4j2.configurationFile=log4j2-benchmark.xml", "-Xmx2g",
+		"-XX:MaxDirectMemorySize=2g" })
+public class BufferPoolBenchmark {
+
+	/**
+	 * the packet buffer size of a TLS session, a full record with its overhead
+	 */
+	private static final int PACKET_BUFFER_SIZE = 16709;
+
+	@Param({ "10000" })
+	private int connections;
+
+	@Param({ "NONE", "SHARED", "CACHED" })
+	private String pooling;
+
+	@Param({ "true", "false" })
+	private boolean direct;
+
+	/**
+	 * the pool of the network buffers, heap or direct
+	 */
+	private ByteBufferPool networkPool;
+
+	/**
+	 * the pool of the receive buffers, always heap
+	 */
+	private ByteBufferPool codecPool;
+
+	/**
+	 * the network and receive buffers of the open connections
+	 */
+	private ByteBuffer[][] openConnections;
+
+	private int oldest;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		if (!pooling.equals("NONE")) {
+			int threadCacheSize = pooling.equals("CACHED") ? ByteBufferPool.DEFAULT_THREAD_CACHE_SIZE : 0;
+			networkPool = new ByteBufferPool(1024, direct, threadCacheSize);
+			codecPool = new ByteBufferPool(1024, false, threadCacheSize);
+		}
+
+		openConnections = new ByteBuffer[connections][];
+		for (int i = 0; i < connections; i++) {
+			openConnections[i] = open();
+		}
+	}
+
+	/**
+	 * the caches belong to the thread running the benchmark, which enables them
+	 * like a selector loop does
+	 */
+	@Setup(Level.Iteration)
+	public void enableThreadCaches() {
+		if (networkPool != null) {
+			networkPool.enableThreadCache();
+			codecPool.enableThreadCache();
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (networkPool != null)
+			System.out.println("\n" + connections + " connections, " + networkPool.getAllocatedBuffers() + " of "
+					+ networkPool.getAcquiredBuffers() + " network buffers allocated, "
+					+ networkPool.getAllocatedBytes() / 1024 / 1024 + " MiB");
+	}
+
+	@Benchmark
+	public ByteBuffer[] reconnect() {
+		close(openConnections[oldest]);
+		ByteBuffer[] connection = open();
+		openConnections[oldest] = connection;
+		oldest = (oldest + 1) % connections;
+		return connection;
+	}
+
+	/**
+	 *
+	 * @return network in, network out and the receive buffer of a new connection
+	 */
+	private ByteBuffer[] open() {
+		if (networkPool == null) {
+			ByteBuffer netIn = direct ? ByteBuffer.allocateDirect(PACKET_BUFFER_SIZE)
+					: ByteBuffer.allocate(PACKET_BUFFER_SIZE);
+			ByteBuffer netOut = direct ? ByteBuffer.allocateDirect(PACKET_BUFFER_SIZE)
+					: ByteBuffer.allocate(PACKET_BUFFER_SIZE);
+			return new ByteBuffer[] { netIn, netOut, ByteBuffer.allocate(FrameCodec.INITIAL_BUFFER_SIZE) };
+		}
+		return new ByteBuffer[] { networkPool.acquire(PACKET_BUFFER_SIZE), networkPool.acquire(PACKET_BUFFER_SIZE),
+				codecPool.acquire(FrameCodec.INITIAL_BUFFER_SIZE) };
+	}
+
+	private void close(ByteBuffer[] connection) {
+		if (networkPool == null)
+			return;
+		networkPool.release(connection[0]);
+		networkPool.release(connection[1]);
+		codecPool.release(connection[2]);
+	}
+
+}
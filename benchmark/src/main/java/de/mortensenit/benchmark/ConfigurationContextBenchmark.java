@@ -0,0 +1,75 @@
+package de.mortensenit.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.mortensenit.model.util.ConfigurationContext;
+
+/**
+ * Cost of the configuration lookups, which are done on the accept and
+ * connection paths.<br />
+ * <br />
+ * Usage: java -jar benchmark/target/benchmarks.jar ConfigurationContextBenchmark
+ *
+ * @author frederik.mortensen
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-benchmark.xml")
+public class ConfigurationContextBenchmark {
+
+	private static final String STRING_KEY = "benchmark.string";
+
+	private static final String BOOLEAN_KEY = "benchmark.boolean";
+
+	private static final String VALUES_KEY = "benchmark.values";
+
+	private static final String MISSING_KEY = "benchmark.missing";
+
+	@Setup
+	public void setup() {
+		ConfigurationContext.set(STRING_KEY, "TLS_NIO");
+		ConfigurationContext.set(BOOLEAN_KEY, "true");
+		ConfigurationContext.set(VALUES_KEY, "TLSv1.3, TLSv1.2, TLS_AES_128_GCM_SHA256");
+	}
+
+	@Benchmark
+	public String get() {
+		return ConfigurationContext.get(STRING_KEY);
+	}
+
+	@Benchmark
+	public String getWithDefault() {
+		return ConfigurationContext.get(MISSING_KEY, "default");
+	}
+
+	@Benchmark
+	public Boolean getBoolean() {
+		return ConfigurationContext.getBoolean(BOOLEAN_KEY);
+	}
+
+	@Benchmark
+	public String[] getValues() {
+		return ConfigurationContext.getValues(VALUES_KEY);
+	}
+
+	@Benchmark
+	public int getIntegerParsed() {
+		return ConfigurationContext.getInt(MISSING_KEY, 200);
+	}
+
+}
@@ -0,0 +1,138 @@
+package de.mortensenit.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+import de.mortensenit.model.Constants;
+
+/**
+ * Compares the executor strategies of the blocking server at a large number of
+ * concurrent PLAIN connections. For every strategy a server JVM is forked, the
+ * connections are opened and the accept to greeting latency is measured. With
+ * all connections still open the server reports its live platform threads, used
+ * heap and resident set size.<br />
+ * <br />
+ * Usage: ExecutorStrategyBenchmark [connections] [strategies]<br />
+ * e.g. ExecutorStrategyBenchmark 10000 PLATFORM,POOL,VIRTUAL<br />
+ * <br />
+ * Make sure the open file limit (ulimit -n) is above the number of
+ * connections. The POOL strategy will only greet as many clients as the pool
+ * has threads, the remaining connections wait for a free thread.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class ExecutorStrategyBenchmark {
+
+	private static final long GREETING_TIMEOUT_MILLIS = 10000;
+
+	/**
+	 *
+	 * @param args number of connections and comma separated strategies
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		int connections = args.length > 0 ? Integer.valueOf(args[0]) : 10000;
+		String[] strategies = args.length > 1 ? args[1].split(",")
+				: new String[] { Constants.EXECUTOR_PLATFORM, Constants.EXECUTOR_POOL, Constants.EXECUTOR_VIRTUAL };
+
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("%-10s %12s %10s %10s %10s %10s %10s %14s %10s%n", "strategy", "connections",
+				"greeted", "p50 [ms]", "p99 [ms]", "max [ms]", "threads", "heap [MB]", "rss [MB]"));
+
+		for (String strategy : strategies) {
+			report.append(run(strategy.trim(), connections));
+		}
+
+		System.out.println();
+		System.out.print(report);
+	}
+
+	/**
+	 * fork a server with the given strategy and measure it
+	 *
+	 * @param strategy    the executor strategy
+	 * @param connections the number of concurrent connections
+	 * @return a formatted result line
+	 * @throws Exception
+	 */
+	private static String run(String strategy, int connections) throws Exception {
+		System.out.println("Running " + strategy + " with " + connections + " connections...");
+
+		String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+		ProcessBuilder processBuilder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+				"-Dlog4j2.configurationFile=log4j2-benchmark.xml", BenchmarkServer.class.getName(), strategy);
+		processBuilder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		Process server = processBuilder.start();
+
+		try (GreetingLatencyClient client = new GreetingLatencyClient(new InetSocketAddress("localhost", BenchmarkServer.PORT))) {
+			BenchmarkServer.waitForServer();
+			client.connect(connections, GREETING_TIMEOUT_MILLIS);
+
+			String[] footprint = requestFootprint(server);
+			long[] latencies = client.getSortedLatencies();
+
+			return String.format("%-10s %12d %10d %10.2f %10.2f %10.2f %10s %14.1f %10.1f%n", strategy, connections,
+					client.getGreeted(), millis(percentile(latencies, 0.5)), millis(percentile(latencies, 0.99)),
+					millis(percentile(latencies, 1.0)), footprint[1], megaBytes(footprint[2]),
+					megaBytes(footprint[3]));
+		} finally {
+			server.destroy();
+			server.waitFor();
+		}
+	}
+
+	/**
+	 * wait until the forked server accepts connections
+	 *
+	 * @throws InterruptedException
+	 */
+	/**
+	 *
+	 * @param server the forked server
+	 * @return the footprint line split into its values
+	 * @throws IOException
+	 */
+	private static String[] requestFootprint(Process server) throws IOException {
+		OutputStream stdin = server.getOutputStream();
+		stdin.write("report\n".getBytes(StandardCharsets.UTF_8));
+		stdin.flush();
+
+		BufferedReader stdout = new BufferedReader(
+				new InputStreamReader(server.getInputStream(), StandardCharsets.UTF_8));
+		String line;
+		while ((line = stdout.readLine()) != null) {
+			if (line.startsWith(BenchmarkServer.FOOTPRINT))
+				return line.split(" ");
+		}
+		throw new IOException("Benchmark server did not report its footprint.");
+	}
+
+	/**
+	 *
+	 * @param sorted   sorted values
+	 * @param quantile between 0 and 1
+	 * @return the value at the given quantile or 0 if there are no values
+	 */
+	static long percentile(long[] sorted, double quantile) {
+		if (sorted.length == 0)
+			return 0;
+		int index = (int) Math.ceil(quantile * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1_000_000d;
+	}
+
+	private static double megaBytes(String bytes) {
+		long value = Long.valueOf(bytes);
+		return value < 0 ? Double.NaN : value / (1024d * 1024d);
+	}
+
+}
@@ -0,0 +1,94 @@
+package de.mortensenit.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.CompilerControl;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.mortensenit.model.codec.FrameCodec;
+
+/**
+ * The receive path of a connection without the socket: a read delivers a batch
+ * of frames into the receive buffer, which are decoded and handed to a
+ * handler. The handler is not inlined, like the message handler of the server,
+ * so the frames handed to it cannot be optimized away. Run it with -prof gc to
+ * see the bytes allocated per frame.<br />
+ * <br />
+ * Usage: java -jar benchmark/target/benchmarks.jar FrameDecoderBenchmark -prof gc
+ *
+ * @author frederik.mortensen
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-benchmark.xml")
+@OperationsPerInvocation(FrameDecoderBenchmark.FRAMES_PER_READ)
+public class FrameDecoderBenchmark {
+
+	static final int FRAMES_PER_READ = 64;
+
+	@Param({ "LINE", "EPP" })
+	private String framing;
+
+	@Param({ "64" })
+	private int messageSize;
+
+	private FrameCodec frameCodec;
+
+	/**
+	 * the bytes of one read
+	 */
+	private byte[] received;
+
+	private long receivedBytes;
+
+	@Setup
+	public void setup() {
+		frameCodec = FrameCodec.create(framing, FrameCodec.DEFAULT_MAX_FRAME_SIZE);
+
+		byte[] message = new byte[messageSize];
+		Arrays.fill(message, (byte) 'x');
+		ByteArrayOutputStream frames = new ByteArrayOutputStream();
+		for (int i = 0; i < FRAMES_PER_READ; i++) {
+			frames.writeBytes(frameCodec.encode(message));
+		}
+		received = frames.toByteArray();
+	}
+
+	@TearDown
+	public void tearDown() {
+		frameCodec.release();
+	}
+
+	@Benchmark
+	public long decode() throws IOException {
+		frameCodec.readBuffer(received.length).put(received);
+		frameCodec.decode(this::onFrame);
+		return receivedBytes;
+	}
+
+	@CompilerControl(CompilerControl.Mode.DONT_INLINE)
+	private void onFrame(ByteBuffer frame) {
+		receivedBytes += frame.remaining() + frame.get(frame.position());
+	}
+
+}
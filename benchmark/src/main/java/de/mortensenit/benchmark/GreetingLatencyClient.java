@@ -0,0 +1,149 @@
+package de.mortensenit.benchmark;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Opens a large number of plain connections from a single thread and measures
+ * the time from the established connection until the complete greeting was
+ * received. The connections are kept open until the client is closed, so the
+ * server footprint can be measured with all of them alive.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class GreetingLatencyClient implements Closeable {
+
+	private static final byte[] GREETING_END = "</greeting>".getBytes(StandardCharsets.UTF_8);
+
+	private final InetSocketAddress address;
+
+	private final Selector selector;
+
+	private final List<SocketChannel> channels = new ArrayList<>();
+
+	private final ByteBuffer readBuffer = ByteBuffer.allocate(4096);
+
+	private long[] latencies;
+
+	private int greeted = 0;
+
+	/**
+	 * state of a single connection
+	 */
+	private static class Connection {
+		final long connectedAt = System.nanoTime();
+		int matched = 0;
+	}
+
+	/**
+	 *
+	 * @param address the server address
+	 * @throws IOException
+	 */
+	public GreetingLatencyClient(InetSocketAddress address) throws IOException {
+		this.address = address;
+		this.selector = Selector.open();
+	}
+
+	/**
+	 * open the connections one after another and wait for all greetings
+	 *
+	 * @param count         number of connections to open
+	 * @param timeoutMillis how long to wait for outstanding greetings after the
+	 *                      last connection was opened
+	 * @throws IOException
+	 */
+	public void connect(int count, long timeoutMillis) throws IOException {
+		latencies = new long[count];
+
+		for (int i = 0; i < count; i++) {
+			SocketChannel channel = SocketChannel.open(address);
+			channel.configureBlocking(false);
+			channel.register(selector, SelectionKey.OP_READ, new Connection());
+			channels.add(channel);
+
+			// collect greetings while connecting, so the latency is not distorted
+			if (selector.selectNow() > 0)
+				processSelectedKeys();
+		}
+
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		while (greeted < count && System.currentTimeMillis() < deadline) {
+			if (selector.select(Math.max(1, deadline - System.currentTimeMillis())) > 0)
+				processSelectedKeys();
+		}
+	}
+
+	/**
+	 * read available greeting bytes and record the latency of complete greetings
+	 *
+	 * @throws IOException
+	 */
+	private void processSelectedKeys() throws IOException {
+		Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+		while (keys.hasNext()) {
+			SelectionKey key = keys.next();
+			keys.remove();
+
+			Connection connection = (Connection) key.attachment();
+			readBuffer.clear();
+			int read = ((SocketChannel) key.channel()).read(readBuffer);
+			if (read < 0) {
+				key.cancel();
+				continue;
+			}
+
+			for (int i = 0; i < read; i++) {
+				byte b = readBuffer.get(i);
+				connection.matched = b == GREETING_END[connection.matched] ? connection.matched + 1
+						: b == GREETING_END[0] ? 1 : 0;
+				if (connection.matched == GREETING_END.length) {
+					latencies[greeted++] = System.nanoTime() - connection.connectedAt;
+					key.interestOps(0);
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return number of connections that received the complete greeting
+	 */
+	public int getGreeted() {
+		return greeted;
+	}
+
+	/**
+	 *
+	 * @return the sorted greeting latencies in nanoseconds
+	 */
+	public long[] getSortedLatencies() {
+		long[] sorted = Arrays.copyOf(latencies, greeted);
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+	/**
+	 * close all connections
+	 */
+	@Override
+	public void close() throws IOException {
+		for (SocketChannel channel : channels) {
+			channel.close();
+		}
+		selector.close();
+	}
+
+}
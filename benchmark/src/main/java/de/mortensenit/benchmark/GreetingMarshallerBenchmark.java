@@ -0,0 +1,110 @@
+package de.mortensenit.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.mortensenit.model.server.Greeting;
+import de.mortensenit.model.server.GreetingMarshaller;
+
+/**
+ * Compares the pooled GreetingMarshaller with the previous implementation,
+ * which created a new JAXBContext for every call.<br />
+ * <br />
+ * Usage: java -jar benchmark/target/benchmarks.jar GreetingMarshallerBenchmark
+ *
+ * @author frederik.mortensen
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GreetingMarshallerBenchmark {
+
+	private Greeting greeting;
+
+	private String greetingMessage;
+
+	private ByteArrayOutputStream outputStream;
+
+	private ByteBuffer buffer;
+
+	@Setup
+	public void setup() {
+		greeting = new Greeting();
+		greeting.setId(1);
+		greeting.setName("Welcome to my EPP server!");
+		greetingMessage = GreetingMarshaller.marshall(greeting);
+		outputStream = new ByteArrayOutputStream(256);
+		buffer = ByteBuffer.allocate(256);
+	}
+
+	@Benchmark
+	public String marshallNewContext() throws JAXBException {
+		StringWriter resultWriter = new StringWriter();
+		JAXBContext jaxbContext = JAXBContext.newInstance(Greeting.class);
+		Marshaller jaxbMarshaller = jaxbContext.createMarshaller();
+		jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, false);
+		jaxbMarshaller.marshal(greeting, resultWriter);
+		return resultWriter.toString();
+	}
+
+	@Benchmark
+	public String marshallPooled() {
+		return GreetingMarshaller.marshall(greeting);
+	}
+
+	@Benchmark
+	public byte[] marshallPooledToBytes() {
+		outputStream.reset();
+		GreetingMarshaller.marshall(greeting, outputStream);
+		return outputStream.toByteArray();
+	}
+
+	@Benchmark
+	public ByteBuffer marshallPooledToByteBuffer() {
+		buffer.clear();
+		GreetingMarshaller.marshall(greeting, buffer);
+		return buffer;
+	}
+
+	@Benchmark
+	public byte[] marshallPooledThroughString() {
+		return GreetingMarshaller.marshall(greeting).getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	public Greeting unmarshallNewContext() throws JAXBException {
+		JAXBContext jaxbContext = JAXBContext.newInstance(Greeting.class);
+		Unmarshaller jaxbUnmarshaller = jaxbContext.createUnmarshaller();
+		return (Greeting) jaxbUnmarshaller.unmarshal(new StringReader(greetingMessage));
+	}
+
+	@Benchmark
+	public Greeting unmarshallPooled() {
+		return GreetingMarshaller.unmarshall(greetingMessage);
+	}
+
+}
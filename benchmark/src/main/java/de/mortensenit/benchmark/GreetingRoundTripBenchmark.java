@@ -0,0 +1,85 @@
+package de.mortensenit.benchmark;
+
+import static de.mortensenit.server.ServerConfigKeys.SERVER_EXECUTOR;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_KEYSTORE_FILE;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_KEYSTORE_PASSWORD;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_MODE;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_TRUSTSTORE_FILE;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.SocketFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.mortensenit.controller.TLSController;
+import de.mortensenit.model.Constants;
+import de.mortensenit.model.util.ConfigurationContext;
+
+/**
+ * Latency from connect to the complete greeting against the ServerStarter,
+ * running in-process with generated stores. Every server mode runs in its own
+ * fork, because the server can only be started once per JVM.<br />
+ * <br />
+ * The TLS client reuses its context like a reconnecting client does, so the
+ * sessions are resumed after the first connection.<br />
+ * <br />
+ * Usage: java -jar benchmark/target/benchmarks.jar GreetingRoundTripBenchmark
+ *
+ * @author frederik.mortensen
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-benchmark.xml")
+public class GreetingRoundTripBenchmark {
+
+	@Param({ "PLAIN", "PLAIN_NIO", "TLS", "TLS_NIO" })
+	public String serverMode;
+
+	private SocketFactory socketFactory;
+
+	@Setup
+	public void setup() throws Exception {
+		BenchmarkKeyStores stores = BenchmarkKeyStores.generate();
+
+		ConfigurationContext.set(SERVER_MODE, serverMode);
+		ConfigurationContext.set(SERVER_EXECUTOR, Constants.EXECUTOR_VIRTUAL);
+		ConfigurationContext.set(SERVER_KEYSTORE_FILE, stores.getKeyStoreFile());
+		ConfigurationContext.set(SERVER_KEYSTORE_PASSWORD, BenchmarkKeyStores.PASSWORD);
+		ConfigurationContext.set(SERVER_TRUSTSTORE_FILE, stores.getTrustStoreFile());
+		BenchmarkServer.startServerThread();
+		BenchmarkServer.waitForServer();
+
+		if (serverMode.startsWith(Constants.ENCRYPTION_MODE_TLS))
+			socketFactory = TLSController.getTlsSocketFactory(null, null, stores.getTrustStoreFile());
+		else
+			socketFactory = SocketFactory.getDefault();
+	}
+
+	@Benchmark
+	public void greeting() throws IOException {
+		try (Socket socket = socketFactory.createSocket("localhost", BenchmarkServer.PORT)) {
+			socket.setTcpNoDelay(true);
+			// avoid running out of ephemeral ports because of TIME_WAIT
+			socket.setSoLinger(true, 0);
+			HandshakeLatencyBenchmark.readGreeting(socket.getInputStream());
+		}
+	}
+
+}
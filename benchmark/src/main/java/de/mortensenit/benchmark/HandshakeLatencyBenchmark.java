@@ -0,0 +1,155 @@
+package de.mortensenit.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import de.mortensenit.controller.TLSController;
+import de.mortensenit.model.Constants;
+
+/**
+ * Compares the full handshake latency of TLS 1.2 and TLS 1.3 on loopback. The
+ * server is started in-process with both protocols enabled and the client
+ * enables one protocol per run. Every session is invalidated after use, so each
+ * connection needs a full handshake.<br />
+ * <br />
+ * For every connection the handshake and the time from connect to the complete
+ * greeting are measured. TLS 1.3 finishes the handshake after one round trip
+ * instead of two, which loopback hides almost completely. The remaining
+ * difference is the cost of the key exchange.<br />
+ * <br />
+ * Usage: HandshakeLatencyBenchmark [connections] [server mode] [keystore
+ * directory] [protocols]<br />
+ * e.g. HandshakeLatencyBenchmark 1000 TLS_NIO server TLSv1.2,TLSv1.3
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class HandshakeLatencyBenchmark {
+
+	private static final byte[] GREETING_END = "</greeting>".getBytes(StandardCharsets.UTF_8);
+
+	/**
+	 *
+	 * @param args number of connections, server mode, the directory of the
+	 *             server keystore and the comma separated protocols
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		int connections = args.length > 0 ? Integer.valueOf(args[0]) : 1000;
+		String serverMode = args.length > 1 ? args[1] : Constants.ENCRYPTION_MODE_TLS_NIO;
+		String storeDirectory = args.length > 2 ? args[2] : "server";
+		String[] protocols = args.length > 3 ? args[3].split(",")
+				: new String[] { Constants.PROTOCOL_TLS_1_2, Constants.PROTOCOL_TLS_1_3 };
+
+		BenchmarkServer.startInProcess(serverMode, storeDirectory);
+
+		// trust the test certificate of the server
+		SSLContext clientContext = TLSController.getTlsClientContext(null, null, null);
+
+		System.out.println("Warming up...");
+		for (String protocol : protocols) {
+			run(clientContext, protocol.trim(), connections / 4);
+		}
+
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("%-9s %-40s %12s %16s %16s %16s %16s %14s%n", "protocol", "cipher suite",
+				"connections", "handshake p50", "handshake p99", "greeting p50", "greeting p99", "cpu [us/conn]"));
+		for (String protocol : protocols) {
+			report.append(run(clientContext, protocol.trim(), connections));
+		}
+
+		System.out.println();
+		System.out.println("latencies in microseconds");
+		System.out.print(report);
+		System.exit(0);
+	}
+
+	/**
+	 * connect, handshake, read the greeting and disconnect the given number of
+	 * times
+	 *
+	 * @param clientContext the shared client context
+	 * @param protocol      the only protocol the client enables
+	 * @param connections   the number of connections
+	 * @return a formatted result line
+	 * @throws IOException
+	 */
+	private static String run(SSLContext clientContext, String protocol, int connections) throws IOException {
+		long[] handshakeNanos = new long[connections];
+		long[] greetingNanos = new long[connections];
+		String cipherSuite = null;
+
+		SSLSocketFactory socketFactory = clientContext.getSocketFactory();
+		long cpuStart = BenchmarkServer.processCpuNanos();
+
+		for (int i = 0; i < connections; i++) {
+			long connectStart = System.nanoTime();
+			try (SSLSocket socket = (SSLSocket) socketFactory.createSocket("localhost", BenchmarkServer.PORT)) {
+				socket.setEnabledProtocols(new String[] { protocol });
+				socket.setTcpNoDelay(true);
+
+				long handshakeStart = System.nanoTime();
+				socket.startHandshake();
+				handshakeNanos[i] = System.nanoTime() - handshakeStart;
+
+				readGreeting(socket.getInputStream());
+				greetingNanos[i] = System.nanoTime() - connectStart;
+
+				cipherSuite = socket.getSession().getCipherSuite();
+				socket.getSession().invalidate();
+			}
+		}
+
+		long cpuMicros = (BenchmarkServer.processCpuNanos() - cpuStart) / 1000 / connections;
+		Arrays.sort(handshakeNanos);
+		Arrays.sort(greetingNanos);
+		return String.format("%-9s %-40s %12d %16d %16d %16d %16d %14d%n", protocol, cipherSuite, connections,
+				micros(ExecutorStrategyBenchmark.percentile(handshakeNanos, 0.5)),
+				micros(ExecutorStrategyBenchmark.percentile(handshakeNanos, 0.99)),
+				micros(ExecutorStrategyBenchmark.percentile(greetingNanos, 0.5)),
+				micros(ExecutorStrategyBenchmark.percentile(greetingNanos, 0.99)), cpuMicros);
+	}
+
+	/**
+	 * read until the end of the greeting was received. With TLS 1.3 this also
+	 * processes the session ticket the server sends after the handshake.
+	 *
+	 * @param inputStream the stream of the connected socket
+	 * @throws IOException if the stream ended before
+	 */
+	static void readGreeting(InputStream inputStream) throws IOException {
+		byte[] buffer = new byte[4096];
+		int length = 0;
+		while (length < buffer.length) {
+			int read = inputStream.read(buffer, length, buffer.length - length);
+			if (read < 0)
+				break;
+			length += read;
+			if (endsWithGreeting(buffer, length))
+				return;
+		}
+		throw new IOException("Greeting was not received.");
+	}
+
+	/**
+	 * the greeting may be followed by a line break, depending on the framing
+	 */
+	private static boolean endsWithGreeting(byte[] buffer, int length) {
+		for (int end = length; end >= Math.max(GREETING_END.length, length - 2); end--) {
+			if (Arrays.equals(buffer, end - GREETING_END.length, end, GREETING_END, 0, GREETING_END.length))
+				return true;
+		}
+		return false;
+	}
+
+	private static long micros(long nanos) {
+		return nanos / 1000;
+	}
+
+}
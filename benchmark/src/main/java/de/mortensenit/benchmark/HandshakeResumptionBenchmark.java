@@ -0,0 +1,105 @@
+package de.mortensenit.benchmark;
+
+import java.io.IOException;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import de.mortensenit.controller.HandshakeStatistics;
+import de.mortensenit.controller.TLSController;
+import de.mortensenit.model.Constants;
+
+/**
+ * Shows the CPU saved by session resumption under a reconnect-heavy load. The
+ * TLS server is started in-process, then the client connects, finishes the
+ * handshake, reads the greeting and disconnects again, once with a fresh session on every connect
+ * and once resuming the cached session. Client and server run in the same JVM,
+ * so the process CPU time covers both sides of the handshake. The handshakes
+ * are counted by the client and by the server.<br />
+ * <br />
+ * Usage: HandshakeResumptionBenchmark [connections] [server mode] [keystore
+ * directory]<br />
+ * e.g. HandshakeResumptionBenchmark 2000 TLS_NIO server
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class HandshakeResumptionBenchmark {
+
+	/**
+	 *
+	 * @param args number of connections, server mode and the directory of the
+	 *             server keystore
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		int connections = args.length > 0 ? Integer.valueOf(args[0]) : 2000;
+		String serverMode = args.length > 1 ? args[1] : Constants.ENCRYPTION_MODE_TLS_NIO;
+		String storeDirectory = args.length > 2 ? args[2] : "server";
+
+		BenchmarkServer.startInProcess(serverMode, storeDirectory);
+
+		// trust the test certificate of the server
+		SSLContext clientContext = TLSController.getTlsClientContext(null, null, null);
+
+		System.out.println("Warming up...");
+		run(clientContext, connections / 4, false);
+		run(clientContext, connections / 4, true);
+
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("%-10s %12s %8s %12s %12s %19s %14s %14s%n", "sessions", "connections", "full",
+				"abbreviated", "server full", "server abbreviated", "cpu [us/conn]", "wall [us/conn]"));
+		report.append(run(clientContext, connections, false));
+		report.append(run(clientContext, connections, true));
+
+		System.out.println();
+		System.out.print(report);
+		System.exit(0);
+	}
+
+	/**
+	 * connect, handshake and disconnect the given number of times
+	 *
+	 * @param clientContext the shared client context
+	 * @param connections   the number of connections
+	 * @param resume        false to invalidate every session after use, so every
+	 *                      connection needs a full handshake
+	 * @return a formatted result line
+	 * @throws IOException
+	 */
+	private static String run(SSLContext clientContext, int connections, boolean resume) throws IOException {
+		HandshakeStatistics statistics = new HandshakeStatistics();
+		HandshakeStatistics serverStatistics = TLSController.getHandshakeStatistics();
+		serverStatistics.reset();
+		long cpuStart = BenchmarkServer.processCpuNanos();
+		long wallStart = System.nanoTime();
+
+		SSLSocketFactory socketFactory = clientContext.getSocketFactory();
+		for (int i = 0; i < connections; i++) {
+			try (SSLSocket socket = (SSLSocket) socketFactory.createSocket("localhost", BenchmarkServer.PORT)) {
+				socket.setTcpNoDelay(true);
+				long handshakeStart = System.currentTimeMillis();
+				long startNanos = System.nanoTime();
+				socket.startHandshake();
+
+				SSLSession session = socket.getSession();
+				statistics.record(session, handshakeStart, System.nanoTime() - startNanos);
+
+				// TLS 1.3 session tickets arrive after the handshake
+				HandshakeLatencyBenchmark.readGreeting(socket.getInputStream());
+				if (!resume)
+					session.invalidate();
+			}
+		}
+
+		long cpuMicros = (BenchmarkServer.processCpuNanos() - cpuStart) / 1000 / connections;
+		long wallMicros = (System.nanoTime() - wallStart) / 1000 / connections;
+		return String.format("%-10s %12d %8d %12d %12d %19d %14d %14d%n", resume ? "resumed" : "new", connections,
+				statistics.getFullHandshakes(), statistics.getAbbreviatedHandshakes(),
+				serverStatistics.getFullHandshakes(), serverStatistics.getAbbreviatedHandshakes(), cpuMicros,
+				wallMicros);
+	}
+
+}
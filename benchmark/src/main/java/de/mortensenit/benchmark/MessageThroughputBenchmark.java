@@ -0,0 +1,199 @@
+package de.mortensenit.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.SocketFactory;
+import javax.net.ssl.SSLContext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.mortensenit.controller.TLSController;
+import de.mortensenit.model.Constants;
+import de.mortensenit.model.codec.FrameCodec;
+import de.mortensenit.server.ClientConnectionThread;
+import de.mortensenit.server.MessageHandler;
+import de.mortensenit.server.nio.NioServer;
+
+/**
+ * Messages per second on a single connection. The server answers every message
+ * with a short acknowledgement. requestResponse waits for the answer before
+ * the next message is sent, pipelined sends a batch of messages in one write
+ * and then waits for all answers.<br />
+ * <br />
+ * The blocking read loop used to sleep a second after every read, which limited
+ * requestResponse to one message per second and connection.<br />
+ * <br />
+ * Usage: java -jar benchmark/target/benchmarks.jar MessageThroughputBenchmark
+ *
+ * @author frederik.mortensen
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-benchmark.xml")
+public class MessageThroughputBenchmark {
+
+	private static final int BATCH = 100;
+
+	private static final byte[] ACK = "<ack/>".getBytes(StandardCharsets.UTF_8);
+
+	private static final MessageHandler ACK_HANDLER = (connectionId, message) -> ACK;
+
+	@Param({ "PLAIN", "PLAIN_NIO", "TLS", "TLS_NIO" })
+	public String serverMode;
+
+	private Socket socket;
+
+	private OutputStream outputStream;
+
+	private InputStream inputStream;
+
+	private FrameCodec frameCodec;
+
+	private byte[] message;
+
+	private byte[] batch;
+
+	private int received;
+
+	@Setup
+	public void setup() throws Exception {
+		BenchmarkKeyStores stores = BenchmarkKeyStores.generate();
+
+		SSLContext serverContext = null;
+		SocketFactory socketFactory = SocketFactory.getDefault();
+		if (serverMode.startsWith(Constants.ENCRYPTION_MODE_TLS)) {
+			serverContext = TLSController.getTlsServerContext(stores.getKeyStoreFile(), BenchmarkKeyStores.PASSWORD,
+					stores.getTrustStoreFile());
+			socketFactory = TLSController.getTlsSocketFactory(null, null, stores.getTrustStoreFile());
+		}
+
+		if (serverMode.endsWith("NIO"))
+			startNioServer(serverContext);
+		else
+			startBlockingServer(serverContext);
+
+		frameCodec = FrameCodec.create(Constants.FRAMING_EPP, FrameCodec.DEFAULT_MAX_FRAME_SIZE);
+		message = frameCodec.encode("<epp><hello/></epp>".getBytes(StandardCharsets.UTF_8));
+		batch = new byte[message.length * BATCH];
+		for (int i = 0; i < BATCH; i++) {
+			System.arraycopy(message, 0, batch, i * message.length, message.length);
+		}
+
+		socket = socketFactory.createSocket("localhost", BenchmarkServer.PORT);
+		socket.setTcpNoDelay(true);
+		outputStream = socket.getOutputStream();
+		inputStream = socket.getInputStream();
+		// the greeting
+		awaitFrames(1);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		socket.close();
+	}
+
+	@Benchmark
+	public int requestResponse() throws IOException {
+		outputStream.write(message);
+		outputStream.flush();
+		return awaitFrames(1);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public int pipelined() throws IOException {
+		outputStream.write(batch);
+		outputStream.flush();
+		return awaitFrames(BATCH);
+	}
+
+	/**
+	 * read until the given number of frames was received
+	 */
+	private int awaitFrames(int count) throws IOException {
+		received = 0;
+		while (received < count) {
+			if (frameCodec.read(inputStream) < 0)
+				throw new IOException("Server closed the connection.");
+			frameCodec.decode(this::onFrame);
+		}
+		return received;
+	}
+
+	private void onFrame(ByteBuffer frame) {
+		received++;
+	}
+
+	/**
+	 * serve every accepted connection with a ClientConnectionThread on a virtual
+	 * thread
+	 */
+	private static void startBlockingServer(SSLContext sslContext) throws IOException {
+		ServerSocket serverSocket = sslContext != null
+				? sslContext.getServerSocketFactory().createServerSocket(BenchmarkServer.PORT)
+				: new ServerSocket(BenchmarkServer.PORT);
+
+		Thread acceptor = new Thread(() -> {
+			while (true) {
+				try {
+					Socket clientSocket = serverSocket.accept();
+					clientSocket.setTcpNoDelay(true);
+					ClientConnectionThread clientConnectionThread = new ClientConnectionThread();
+					clientConnectionThread.setClientSocket(clientSocket);
+					clientConnectionThread.setMessageHandler(ACK_HANDLER);
+					clientConnectionThread.setFrameCodec(
+							FrameCodec.create(Constants.FRAMING_EPP, FrameCodec.DEFAULT_MAX_FRAME_SIZE));
+					Thread.ofVirtual().start(clientConnectionThread);
+				} catch (IOException e) {
+					return;
+				}
+			}
+		}, "benchmark-acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	/**
+	 * start a NioServer with a single selector loop
+	 */
+	private static void startNioServer(SSLContext sslContext) throws InterruptedException {
+		NioServer nioServer = new NioServer(BenchmarkServer.PORT, 1, sslContext);
+		nioServer.setFraming(Constants.FRAMING_EPP, FrameCodec.DEFAULT_MAX_FRAME_SIZE);
+		nioServer.setMessageHandler(ACK_HANDLER);
+
+		Thread serverThread = new Thread(() -> {
+			try {
+				nioServer.start();
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}, "benchmark-server");
+		serverThread.setDaemon(true);
+		serverThread.start();
+		BenchmarkServer.waitForServer();
+	}
+
+}
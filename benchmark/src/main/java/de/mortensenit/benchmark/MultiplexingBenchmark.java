@@ -0,0 +1,112 @@
+package de.mortensenit.benchmark;
+
+import static de.mortensenit.server.ServerConfigKeys.SERVER_EXECUTOR;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_FRAMING;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_KEYSTORE_FILE;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_KEYSTORE_PASSWORD;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_MODE;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_TRUSTSTORE_FILE;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.SocketFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.mortensenit.client.MultiplexedConnection;
+import de.mortensenit.controller.TLSController;
+import de.mortensenit.model.Constants;
+import de.mortensenit.model.server.Greeting;
+import de.mortensenit.model.util.ConfigurationContext;
+
+/**
+ * Requests per second of 16 concurrent callers against the ServerStarter,
+ * running in-process with generated stores. multiplexed shares a single
+ * connection between all callers, connectionPerRequest opens a new connection
+ * for every request like a client without multiplexing has to.<br />
+ * <br />
+ * Usage: java -jar benchmark/target/benchmarks.jar MultiplexingBenchmark
+ *
+ * @author frederik.mortensen
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-benchmark.xml")
+public class MultiplexingBenchmark {
+
+	@Param({ "PLAIN_NIO", "TLS_NIO" })
+	public String serverMode;
+
+	private SocketFactory socketFactory;
+
+	private MultiplexedConnection connection;
+
+	@Setup
+	public void setup() throws Exception {
+		BenchmarkKeyStores stores = BenchmarkKeyStores.generate();
+
+		ConfigurationContext.set(SERVER_MODE, serverMode);
+		ConfigurationContext.set(SERVER_EXECUTOR, Constants.EXECUTOR_VIRTUAL);
+		ConfigurationContext.set(SERVER_FRAMING, Constants.FRAMING_EPP);
+		ConfigurationContext.set(SERVER_KEYSTORE_FILE, stores.getKeyStoreFile());
+		ConfigurationContext.set(SERVER_KEYSTORE_PASSWORD, BenchmarkKeyStores.PASSWORD);
+		ConfigurationContext.set(SERVER_TRUSTSTORE_FILE, stores.getTrustStoreFile());
+		BenchmarkServer.startServerThread();
+		BenchmarkServer.waitForServer();
+
+		if (serverMode.startsWith(Constants.ENCRYPTION_MODE_TLS))
+			socketFactory = TLSController.getTlsSocketFactory(null, null, stores.getTrustStoreFile());
+		else
+			socketFactory = SocketFactory.getDefault();
+
+		connection = connect();
+		connection.getServerGreeting().join();
+	}
+
+	@TearDown
+	public void tearDown() {
+		connection.close();
+	}
+
+	@Benchmark
+	@Threads(16)
+	public Greeting multiplexed() {
+		return connection.send(new Greeting()).join();
+	}
+
+	@Benchmark
+	@Threads(16)
+	public Greeting connectionPerRequest() throws IOException {
+		try (MultiplexedConnection single = connect()) {
+			single.getServerGreeting().join();
+			return single.send(new Greeting()).join();
+		}
+	}
+
+	private MultiplexedConnection connect() throws IOException {
+		Socket socket = socketFactory.createSocket("localhost", BenchmarkServer.PORT);
+		socket.setTcpNoDelay(true);
+		// avoid running out of ephemeral ports because of TIME_WAIT
+		socket.setSoLinger(true, 0);
+		return new MultiplexedConnection(socket, Constants.FRAMING_EPP);
+	}
+
+}
@@ -0,0 +1,279 @@
+package de.mortensenit.benchmark;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+
+import de.mortensenit.client.ClientConnectionFactory;
+import de.mortensenit.client.MultiplexedConnection;
+import de.mortensenit.client.ReconnectPolicy;
+import de.mortensenit.controller.HandshakeStatistics;
+import de.mortensenit.controller.TLSController;
+import de.mortensenit.model.Constants;
+import de.mortensenit.model.codec.FrameCodec;
+import de.mortensenit.model.util.LatencyHistogram;
+import de.mortensenit.server.GreetingMessageHandler;
+import de.mortensenit.server.nio.NioServer;
+
+/**
+ * Restarts an in-process TLS_NIO server under a large number of connected
+ * clients and shows how the reconnects spread over time. Every client
+ * reconnects with a {@link ReconnectPolicy}, one run per jitter value. Without
+ * jitter all clients retry at the same moments and the server gets all full
+ * handshakes at once, with full jitter they are spread over the backoff
+ * range.<br />
+ * <br />
+ * The restarted server either keeps its context, like a restarted listener,
+ * so the clients resume their sessions, or gets a new one, like a restarted
+ * process, which cannot decrypt the session tickets of the old one. Every
+ * client has its own context like a client process, because the session cache
+ * of a context keeps only one session per server.<br />
+ * <br />
+ * Usage: ReconnectStormBenchmark [clients] [downtime ms] [jitters] [same|new]
+ * <br />
+ * e.g. ReconnectStormBenchmark 1000 1000 0,0.5,1 same
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class ReconnectStormBenchmark {
+
+	private static final int BUCKET_MILLIS = 100;
+
+	private static final int BUCKETS = 600;
+
+	private static final long INITIAL_DELAY_MILLIS = 100;
+
+	private static final long MAX_DELAY_MILLIS = 5000;
+
+	private final TrustManager[] trustManagers;
+
+	private final ReconnectPolicy reconnectPolicy;
+
+	/**
+	 * start of the restart, the reconnects are measured from here
+	 */
+	private volatile long restartNanos;
+
+	private final LongAdder connected = new LongAdder();
+
+	private final AtomicIntegerArray attempts = new AtomicIntegerArray(BUCKETS);
+
+	private final AtomicIntegerArray fullHandshakes = new AtomicIntegerArray(BUCKETS);
+
+	private final AtomicIntegerArray resumedHandshakes = new AtomicIntegerArray(BUCKETS);
+
+	private final LatencyHistogram reconnectTime = new LatencyHistogram();
+
+	private final AtomicLong failedAttempts = new AtomicLong();
+
+	private ReconnectStormBenchmark(TrustManager[] trustManagers, double jitter) {
+		this.trustManagers = trustManagers;
+		this.reconnectPolicy = new ReconnectPolicy(INITIAL_DELAY_MILLIS, MAX_DELAY_MILLIS, jitter, 0);
+	}
+
+	/**
+	 *
+	 * @param args number of clients, downtime of the server, the comma separated
+	 *             jitter values and whether the restarted server keeps its
+	 *             context
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		System.setProperty("log4j2.configurationFile", "log4j2-benchmark.xml");
+		int clients = args.length > 0 ? Integer.valueOf(args[0]) : 1000;
+		long downtimeMillis = args.length > 1 ? Long.valueOf(args[1]) : 1000;
+		String[] jitters = args.length > 2 ? args[2].split(",") : new String[] { "0", "1" };
+		boolean sameContext = args.length <= 3 || args[3].equalsIgnoreCase("same");
+
+		BenchmarkKeyStores stores = BenchmarkKeyStores.generate();
+		TrustManagerFactory trustManagerFactory = TrustManagerFactory
+				.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+		KeyStore trustStore = KeyStore.getInstance("JKS");
+		try (InputStream is = new FileInputStream(stores.getTrustStoreFile())) {
+			trustStore.load(is, null);
+		}
+		trustManagerFactory.init(trustStore);
+
+		StringBuilder report = new StringBuilder();
+		for (String jitter : jitters) {
+			ReconnectStormBenchmark benchmark = new ReconnectStormBenchmark(trustManagerFactory.getTrustManagers(),
+					Double.valueOf(jitter.trim()));
+			report.append(benchmark.run(stores, clients, downtimeMillis, sameContext));
+		}
+
+		System.out.println();
+		System.out.print(report);
+		System.exit(0);
+	}
+
+	/**
+	 * connect all clients, restart the server and wait until all clients are
+	 * connected again
+	 *
+	 * @return the report of this run
+	 */
+	private String run(BenchmarkKeyStores stores, int clients, long downtimeMillis, boolean sameContext)
+			throws Exception {
+		NioServer server = startServer(stores);
+		System.out.println("Connecting " + clients + " clients...");
+		List<Thread> clientThreads = new ArrayList<>();
+		for (int i = 0; i < clients; i++) {
+			clientThreads.add(Thread.ofVirtual().start(this::runClient));
+		}
+		awaitConnected(clients);
+
+		connected.reset();
+		restartNanos = System.nanoTime();
+		long cpuStart = BenchmarkServer.processCpuNanos();
+		server.stop();
+		Thread.sleep(downtimeMillis);
+		if (!sameContext)
+			TLSController.invalidateContexts();
+		server = startServer(stores);
+		awaitConnected(clients);
+		long cpuMillis = (BenchmarkServer.processCpuNanos() - cpuStart) / 1000000;
+
+		for (Thread clientThread : clientThreads) {
+			clientThread.interrupt();
+			clientThread.join();
+		}
+		server.stop();
+		return report(clients, downtimeMillis, cpuMillis);
+	}
+
+	/**
+	 * stay connected and reconnect with the policy until interrupted
+	 */
+	private void runClient() {
+		try {
+			SSLContext clientContext = SSLContext.getInstance("TLS");
+			clientContext.init(null, trustManagers, null);
+			ClientConnectionFactory factory = new ClientConnectionFactory("localhost", BenchmarkServer.PORT,
+					clientContext, Constants.DEFAULT_ENABLED_PROTOCOLS.split(","), null, Constants.FRAMING_EPP);
+
+			while (true) {
+				try (MultiplexedConnection connection = reconnectPolicy.connect(() -> connect(factory))) {
+					connected.increment();
+					connection.getCloseFuture().get();
+				}
+				Thread.sleep(reconnectPolicy.getDelayMillis(0));
+			}
+		} catch (IOException | InterruptedException | ExecutionException e) {
+			// gave up or the benchmark ended
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * connect once and count the attempt and the handshake in the bucket of its
+	 * time since the restart
+	 */
+	private MultiplexedConnection connect(ClientConnectionFactory factory) throws IOException {
+		if (restartNanos == 0)
+			return factory.connect();
+
+		long handshakeStart = System.currentTimeMillis();
+		attempts.incrementAndGet(bucket());
+		try {
+			MultiplexedConnection connection = factory.connect();
+			SSLSocket socket = (SSLSocket) connection.getSocket();
+			if (HandshakeStatistics.isResumed(socket.getSession(), handshakeStart))
+				resumedHandshakes.incrementAndGet(bucket());
+			else
+				fullHandshakes.incrementAndGet(bucket());
+			reconnectTime.record(System.nanoTime() - restartNanos);
+			return connection;
+		} catch (IOException e) {
+			failedAttempts.incrementAndGet();
+			throw e;
+		}
+	}
+
+	private int bucket() {
+		long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - restartNanos);
+		return (int) Math.min(BUCKETS - 1, millis / BUCKET_MILLIS);
+	}
+
+	private void awaitConnected(int clients) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(BUCKETS * BUCKET_MILLIS / 1000);
+		while (connected.sum() < clients) {
+			if (System.nanoTime() > deadline)
+				throw new IllegalStateException("Only " + connected.sum() + " of " + clients + " clients connected.");
+			Thread.sleep(10);
+		}
+	}
+
+	private NioServer startServer(BenchmarkKeyStores stores) throws InterruptedException {
+		SSLContext serverContext = TLSController.getTlsServerContext(stores.getKeyStoreFile(),
+				BenchmarkKeyStores.PASSWORD, stores.getTrustStoreFile());
+		NioServer server = new NioServer(BenchmarkServer.PORT, Runtime.getRuntime().availableProcessors(),
+				serverContext);
+		server.setFraming(Constants.FRAMING_EPP, FrameCodec.DEFAULT_MAX_FRAME_SIZE);
+		server.setMessageHandler(new GreetingMessageHandler());
+
+		Thread serverThread = new Thread(() -> {
+			try {
+				server.start();
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}, "benchmark-server");
+		serverThread.setDaemon(true);
+		serverThread.start();
+		BenchmarkServer.waitForServer();
+		return server;
+	}
+
+	/**
+	 *
+	 * @return the totals and the attempts and handshakes per bucket, until all
+	 *         clients are connected again
+	 */
+	private String report(int clients, long downtimeMillis, long cpuMillis) {
+		int lastBucket = (int) Math.min(BUCKETS - 1, reconnectTime.getMax() / 1000000 / BUCKET_MILLIS);
+		int peak = 0;
+		long full = 0;
+		long resumed = 0;
+		StringBuilder timeline = new StringBuilder();
+		for (int i = 0; i <= lastBucket; i++) {
+			int handshakes = fullHandshakes.get(i) + resumedHandshakes.get(i);
+			peak = Math.max(peak, handshakes);
+			full += fullHandshakes.get(i);
+			resumed += resumedHandshakes.get(i);
+			if (attempts.get(i) > 0 || handshakes > 0)
+				timeline.append(String.format("%8.1f s %10d %10d %10d  %s%n", i * BUCKET_MILLIS / 1000.0,
+						attempts.get(i), fullHandshakes.get(i), resumedHandshakes.get(i),
+						"#".repeat((handshakes + 9) / 10)));
+		}
+
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("jitter %.2f, %d clients, server down for %d ms%n", reconnectPolicy.getJitter(),
+				clients, downtimeMillis));
+		report.append(String.format(
+				"all reconnected after %d ms (p50 %d ms, p99 %d ms), %d full and %d resumed handshakes, "
+						+ "peak %d handshakes per %d ms, %d failed attempts, cpu %d ms%n",
+				reconnectTime.getMax() / 1000000, reconnectTime.getPercentile(0.5) / 1000000,
+				reconnectTime.getPercentile(0.99) / 1000000, full, resumed, peak, BUCKET_MILLIS,
+				failedAttempts.get(), cpuMillis));
+		report.append(String.format("%10s %10s %10s %10s%n", "time", "attempts", "full", "resumed"));
+		report.append(timeline).append(System.lineSeparator());
+		return report.toString();
+	}
+
+}
@@ -0,0 +1,135 @@
+package de.mortensenit.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.mortensenit.controller.TLSController;
+
+/**
+ * TLS handshakes per second over loopback. Server and client sockets are both
+ * created with the TLSController factories from generated stores, the client
+ * validates the server certificate. Every handshake is followed by a single
+ * byte from the server, which also delivers the TLS 1.3 session ticket.<br />
+ * <br />
+ * With resume=false the session is invalidated after every connection, so each
+ * connection needs a full handshake.<br />
+ * <br />
+ * Usage: java -jar benchmark/target/benchmarks.jar TlsHandshakeBenchmark
+ *
+ * @author frederik.mortensen
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-benchmark.xml")
+public class TlsHandshakeBenchmark {
+
+	@Param({ "TLSv1.2", "TLSv1.3" })
+	public String protocol;
+
+	@Param({ "false", "true" })
+	public boolean resume;
+
+	private SSLServerSocket serverSocket;
+
+	private SSLSocketFactory socketFactory;
+
+	@Setup
+	public void setup() throws IOException {
+		BenchmarkKeyStores stores = BenchmarkKeyStores.generate();
+
+		serverSocket = (SSLServerSocket) TLSController
+				.getTlsServerSocketFactory(stores.getKeyStoreFile(), BenchmarkKeyStores.PASSWORD,
+						stores.getTrustStoreFile())
+				.createServerSocket(0);
+		serverSocket.setEnabledProtocols(new String[] { protocol });
+
+		socketFactory = (SSLSocketFactory) TLSController.getTlsSocketFactory(null, null, stores.getTrustStoreFile());
+
+		Thread acceptor = new Thread(this::accept, "benchmark-acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		serverSocket.close();
+	}
+
+	@Benchmark
+	public SSLSession handshake() throws IOException {
+		try (SSLSocket socket = (SSLSocket) socketFactory.createSocket("localhost", serverSocket.getLocalPort())) {
+			socket.setTcpNoDelay(true);
+			// avoid running out of ephemeral ports because of TIME_WAIT
+			socket.setSoLinger(true, 0);
+			socket.setEnabledProtocols(new String[] { protocol });
+			socket.startHandshake();
+
+			if (socket.getInputStream().read() < 0)
+				throw new IOException("Server closed the connection.");
+
+			SSLSession session = socket.getSession();
+			if (!resume)
+				session.invalidate();
+			return session;
+		}
+	}
+
+	/**
+	 * accept connections until the server socket is closed, each is served on a
+	 * virtual thread
+	 */
+	private void accept() {
+		while (!serverSocket.isClosed()) {
+			try {
+				Socket socket = serverSocket.accept();
+				Thread.ofVirtual().start(() -> serve((SSLSocket) socket));
+			} catch (IOException e) {
+				// server socket closed
+			}
+		}
+	}
+
+	/**
+	 * handshake, send one byte and wait for the client to close the connection
+	 */
+	private static void serve(SSLSocket socket) {
+		try (socket) {
+			socket.setTcpNoDelay(true);
+			socket.startHandshake();
+			socket.getOutputStream().write(1);
+			socket.getOutputStream().flush();
+
+			InputStream inputStream = socket.getInputStream();
+			while (inputStream.read() >= 0) {
+				// wait for close
+			}
+		} catch (IOException e) {
+			// client reset the connection
+		}
+	}
+
+}
@@ -0,0 +1,242 @@
+package de.mortensenit.client;
+
+import static de.mortensenit.client.ClientConfigKeys.CLIENT_SEND_BATCH_SIZE;
+import static de.mortensenit.client.ClientConfigKeys.CLIENT_SEND_LINGER;
+import static de.mortensenit.client.ClientConfigKeys.CLIENT_SEND_QUEUE_CAPACITY;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.mortensenit.model.util.ConfigurationContext;
+
+/**
+ * Asynchronous send path of a client connection. Encoded frames are queued and
+ * written by a single writer thread, which coalesces all frames waiting in the
+ * queue into one write of at most the batch size. A write of up to 16 KiB to a
+ * TLS socket becomes a single TLS record, so many small messages share one
+ * record and one TCP segment instead of paying for one each.<br />
+ * <br />
+ * With a linger time the writer waits up to this long for more frames before it
+ * writes a batch that is not full yet, trading latency for larger batches. The
+ * queue is bounded, senders block while it is full.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class BatchingWriter implements Closeable {
+
+	/**
+	 * the largest plaintext of a single TLS record
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 16384;
+
+	public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+	/**
+	 * queued by close to stop the writer after all frames before it were written
+	 */
+	private static final byte[] CLOSE = new byte[0];
+
+	private Logger logger = LogManager.getLogger();
+
+	private final OutputStream outputStream;
+
+	private final BlockingQueue<byte[]> queue;
+
+	private final byte[] batch;
+
+	private final long lingerNanos;
+
+	private final Thread writerThread;
+
+	private final LongAdder messages = new LongAdder();
+
+	private final LongAdder writes = new LongAdder();
+
+	private final LongAdder bytes = new LongAdder();
+
+	private volatile IOException failure;
+
+	private volatile boolean closed;
+
+	/**
+	 * a frame taken from the queue that did not fit into the previous batch
+	 */
+	private byte[] carry;
+
+	private int batchLength;
+
+	private int batchFrames;
+
+	/**
+	 *
+	 * @param outputStream  the stream of the connected socket
+	 * @param batchSize     the maximum size of a coalesced write in bytes, 0 to
+	 *                      write every frame on its own
+	 * @param lingerMicros  how long to wait for more frames before a batch that
+	 *                      is not full is written, 0 to write right away
+	 * @param queueCapacity the maximum number of queued frames
+	 */
+	public BatchingWriter(OutputStream outputStream, int batchSize, long lingerMicros, int queueCapacity) {
+		this.outputStream = outputStream;
+		this.batch = new byte[Math.max(0, batchSize)];
+		this.lingerNanos = TimeUnit.MICROSECONDS.toNanos(lingerMicros);
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.writerThread = Thread.ofVirtual().name("client-writer").start(this::writeLoop);
+	}
+
+	/**
+	 * create a writer with the configured batch size, linger time and queue
+	 * capacity
+	 *
+	 * @param outputStream the stream of the connected socket
+	 * @return the started writer
+	 */
+	public static BatchingWriter create(OutputStream outputStream) {
+		int batchSize = ConfigurationContext.getInt(CLIENT_SEND_BATCH_SIZE, DEFAULT_BATCH_SIZE);
+		long lingerMicros = ConfigurationContext.getLong(CLIENT_SEND_LINGER, 0);
+		int queueCapacity = ConfigurationContext.getInt(CLIENT_SEND_QUEUE_CAPACITY, DEFAULT_QUEUE_CAPACITY);
+		return new BatchingWriter(outputStream, batchSize, lingerMicros, queueCapacity);
+	}
+
+	/**
+	 * queue an encoded frame, blocking while the queue is full
+	 *
+	 * @param frame the complete frame, which must not be modified afterwards
+	 * @throws IOException          if the writer was closed or a write failed
+	 * @throws InterruptedException if interrupted while waiting for space
+	 */
+	public void send(byte[] frame) throws IOException, InterruptedException {
+		checkOpen();
+		queue.put(frame);
+		// the writer may have failed while this sender was waiting
+		checkOpen();
+	}
+
+	/**
+	 * write all queued frames and stop the writer. The stream is not closed.
+	 *
+	 * @throws IOException if a write failed
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		try {
+			if (failure == null)
+				queue.put(CLOSE);
+			writerThread.join();
+		} catch (InterruptedException e) {
+			writerThread.interrupt();
+			Thread.currentThread().interrupt();
+		}
+		closed = true;
+		if (failure != null)
+			throw new IOException(failure.getMessage(), failure);
+	}
+
+	/**
+	 *
+	 * @return the number of frames written
+	 */
+	public long getMessages() {
+		return messages.sum();
+	}
+
+	/**
+	 *
+	 * @return the number of writes to the stream, each one TLS record on TLS
+	 *         connections as long as it does not exceed 16 KiB
+	 */
+	public long getWrites() {
+		return writes.sum();
+	}
+
+	/**
+	 *
+	 * @return the number of bytes written
+	 */
+	public long getBytes() {
+		return bytes.sum();
+	}
+
+	private void checkOpen() throws IOException {
+		if (failure != null)
+			throw new IOException(failure.getMessage(), failure);
+		if (closed)
+			throw new IOException("Writer is closed.");
+	}
+
+	/**
+	 * take the next frame, add everything that fits and write the batch
+	 */
+	private void writeLoop() {
+		try {
+			while (true) {
+				byte[] frame = carry != null ? carry : queue.take();
+				carry = null;
+				if (frame == CLOSE)
+					return;
+
+				if (frame.length >= batch.length) {
+					write(frame, frame.length, 1);
+					continue;
+				}
+
+				System.arraycopy(frame, 0, batch, 0, frame.length);
+				batchLength = frame.length;
+				batchFrames = 1;
+				fill();
+				write(batch, batchLength, batchFrames);
+			}
+		} catch (IOException e) {
+			logger.error("Writing to the server failed: " + e.getMessage());
+			failure = e;
+			// release the senders waiting for space
+			queue.clear();
+		} catch (InterruptedException e) {
+			failure = new IOException("Writer was interrupted.", e);
+			queue.clear();
+		}
+	}
+
+	/**
+	 * append queued frames to the batch until it is full, the queue is empty and
+	 * the linger time is over or the next frame does not fit anymore
+	 *
+	 * @throws InterruptedException
+	 */
+	private void fill() throws InterruptedException {
+		long deadline = System.nanoTime() + lingerNanos;
+		while (batchLength < batch.length) {
+			long remaining = deadline - System.nanoTime();
+			byte[] next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+			if (next == null)
+				return;
+			if (next == CLOSE || batchLength + next.length > batch.length) {
+				carry = next;
+				return;
+			}
+			System.arraycopy(next, 0, batch, batchLength, next.length);
+			batchLength += next.length;
+			batchFrames++;
+		}
+	}
+
+	private void write(byte[] data, int length, int frames) throws IOException {
+		outputStream.write(data, 0, length);
+		outputStream.flush();
+		messages.add(frames);
+		writes.increment();
+		bytes.add(length);
+	}
+
+}
@@ -60,12 +60,148 @@ public final class ClientConfigKeys {
 	 * comma separated list of the enabled cipher suites for tls
 	 */
 	public static final String CLIENT_ENABLED_CIPHER_SUITES = "client.enabled.cipher.suites";
+
+	/**
+	 * comma separated list of the enabled tls protocols. This parameter is
+	 * optional and defaults to TLSv1.3 with TLSv1.2 as fallback.
+	 */
+	public static final String CLIENT_ENABLED_PROTOCOLS = "client.enabled.protocols";
 	
 	/**
 	 * enables javax.net.debug = all. This parameter is optional.
 	 */
 	public static final String CLIENT_EXTENDED_LOGGING = "client.extended.logging";
 
+	/**
+	 * how messages are delimited on the wire, LINE or EPP. Must match the framing
+	 * of the server. This parameter is optional and defaults to LINE.
+	 */
+	public static final String CLIENT_FRAMING = "client.framing";
+
+	/**
+	 * the maximum number of TLS sessions the client keeps for resumption. This
+	 * parameter is optional, 0 means unlimited. Defaults to the JDK default.
+	 */
+	public static final String CLIENT_TLS_SESSION_CACHE_SIZE = "client.tls.session.cache.size";
+
+	/**
+	 * the lifetime of a cached TLS session in seconds. This parameter is optional,
+	 * 0 means unlimited. Defaults to the JDK default.
+	 */
+	public static final String CLIENT_TLS_SESSION_TIMEOUT = "client.tls.session.timeout";
+
+	/**
+	 * enables resumption with stateless session tickets. This parameter is
+	 * optional and defaults to the JDK default.
+	 */
+	public static final String CLIENT_TLS_SESSION_TICKETS = "client.tls.session.tickets";
+
+	/**
+	 * the maximum size in bytes of a write coalescing several queued messages.
+	 * This parameter is optional, 0 writes every message on its own. Defaults to
+	 * 16384, the plaintext size of a single TLS record.
+	 */
+	public static final String CLIENT_SEND_BATCH_SIZE = "client.send.batch.size";
+
+	/**
+	 * how long in microseconds the writer waits for more messages before it
+	 * writes a batch that is not full. This parameter is optional and defaults to
+	 * 0.
+	 */
+	public static final String CLIENT_SEND_LINGER = "client.send.linger";
+
+	/**
+	 * the maximum number of messages waiting to be written, senders block while
+	 * the queue is full. This parameter is optional and defaults to 1024.
+	 */
+	public static final String CLIENT_SEND_QUEUE_CAPACITY = "client.send.queue.capacity";
+
+	/**
+	 * number of concurrent connections of the load generator. This parameter is
+	 * optional, a value above 0 starts the client in load mode.
+	 */
+	public static final String CLIENT_LOAD_CONNECTIONS = "client.load.connections";
+
+	/**
+	 * new connections per second in load mode. This parameter is optional, 0
+	 * connects all at once. Defaults to 0.
+	 */
+	public static final String CLIENT_LOAD_CONNECT_RATE = "client.load.connect.rate";
+
+	/**
+	 * messages per second and connection in load mode. This parameter is
+	 * optional, 0 sends as fast as possible. Defaults to 1.
+	 */
+	public static final String CLIENT_LOAD_MESSAGE_RATE = "client.load.message.rate";
+
+	/**
+	 * payload size of a message in bytes in load mode. This parameter is optional
+	 * and defaults to 1.
+	 */
+	public static final String CLIENT_LOAD_MESSAGE_SIZE = "client.load.message.size";
+
+	/**
+	 * duration of the load test in seconds. This parameter is optional and
+	 * defaults to 60.
+	 */
+	public static final String CLIENT_LOAD_DURATION = "client.load.duration";
+
+	/**
+	 * number of connections the connection pool keeps open, even if they are
+	 * idle. This parameter is optional and defaults to 1.
+	 */
+	public static final String CLIENT_POOL_MIN_SIZE = "client.pool.min.size";
+
+	/**
+	 * maximum number of connections of the connection pool. This parameter is
+	 * optional and defaults to 8.
+	 */
+	public static final String CLIENT_POOL_MAX_SIZE = "client.pool.max.size";
+
+	/**
+	 * seconds after which an idle pooled connection above the min size is
+	 * closed. This parameter is optional and defaults to 300.
+	 */
+	public static final String CLIENT_POOL_MAX_IDLE = "client.pool.max.idle";
+
+	/**
+	 * seconds after which an idle pooled connection is checked with a keep-alive
+	 * greeting. This parameter is optional and defaults to 30.
+	 */
+	public static final String CLIENT_POOL_KEEPALIVE_INTERVAL = "client.pool.keepalive.interval";
+
+	/**
+	 * milliseconds to wait for a pooled connection if all are borrowed. This
+	 * parameter is optional and defaults to 5000.
+	 */
+	public static final String CLIENT_POOL_BORROW_TIMEOUT = "client.pool.borrow.timeout";
+
+	/**
+	 * milliseconds to wait before reconnecting after the first failed attempt,
+	 * doubled with every further attempt. This parameter is optional and
+	 * defaults to 100.
+	 */
+	public static final String CLIENT_RECONNECT_DELAY = "client.reconnect.delay";
+
+	/**
+	 * maximum milliseconds to wait before reconnecting. This parameter is
+	 * optional and defaults to 30000.
+	 */
+	public static final String CLIENT_RECONNECT_MAX_DELAY = "client.reconnect.max.delay";
+
+	/**
+	 * random part of the reconnect delay between 0 and 1, so clients losing
+	 * their connection at the same time do not reconnect at the same time. This
+	 * parameter is optional and defaults to 1.0.
+	 */
+	public static final String CLIENT_RECONNECT_JITTER = "client.reconnect.jitter";
+
+	/**
+	 * number of connect attempts before the client stops. This parameter is
+	 * optional and defaults to 0, which retries forever.
+	 */
+	public static final String CLIENT_RECONNECT_ATTEMPTS = "client.reconnect.attempts";
+
 	/**
 	 * class should never be instantiated
 	 */
@@ -0,0 +1,122 @@
+package de.mortensenit.client;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.mortensenit.controller.TLSController;
+
+/**
+ * Opens plain or tls connections to the server. All tls connections are
+ * created by the same context, so they share its session cache and reconnects
+ * resume the session of an earlier connection.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class ClientConnectionFactory implements ConnectionPool.ConnectionFactory {
+
+	private static final long GREETING_TIMEOUT_SECONDS = 10;
+
+	private Logger logger = LogManager.getLogger();
+
+	private final String host;
+
+	private final int port;
+
+	private final SSLContext sslContext;
+
+	private final String[] protocols;
+
+	private final String[] cipherSuites;
+
+	private final String framing;
+
+	/**
+	 *
+	 * @param host         the server host
+	 * @param port         the server port
+	 * @param sslContext   the client context, null for plain connections
+	 * @param protocols    the enabled tls protocols
+	 * @param cipherSuites the enabled cipher suites, null for the defaults
+	 * @param framing      LINE or EPP, must match the framing of the server
+	 */
+	public ClientConnectionFactory(String host, int port, SSLContext sslContext, String[] protocols,
+			String[] cipherSuites, String framing) {
+		this.host = host;
+		this.port = port;
+		this.sslContext = sslContext;
+		this.protocols = protocols;
+		this.cipherSuites = cipherSuites;
+		this.framing = framing;
+	}
+
+	/**
+	 * connect to the server. A tls socket has finished its handshake.
+	 *
+	 * @return the connected socket
+	 * @throws IOException
+	 */
+	public Socket createSocket() throws IOException {
+		if (sslContext == null)
+			return new Socket(host, port);
+
+		// the client caches sessions by host and port, so the socket must be created
+		// with both to be able to resume a session on the next connect
+		SSLSocket socket = (SSLSocket) sslContext.getSocketFactory().createSocket(host, port);
+		try {
+			socket.setEnabledProtocols(protocols);
+			if (cipherSuites != null)
+				socket.setEnabledCipherSuites(cipherSuites);
+
+			// the handshake flights must not wait for delayed acks of the server
+			socket.setTcpNoDelay(true);
+
+			long handshakeStart = System.currentTimeMillis();
+			long startNanos = System.nanoTime();
+			socket.startHandshake();
+
+			SSLSession session = socket.getSession();
+			boolean resumed = TLSController.getHandshakeStatistics().record(session, handshakeStart,
+					System.nanoTime() - startNanos);
+			logger.info("Handshake finished using " + session.getProtocol() + " and " + session.getCipherSuite()
+					+ (resumed ? ", session resumed" : ""));
+			return socket;
+		} catch (IOException e) {
+			socket.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * connect to the server and wait for its greeting
+	 *
+	 * @return a connection ready to send requests
+	 * @throws IOException if connecting failed or the server did not greet in time
+	 */
+	@Override
+	public MultiplexedConnection connect() throws IOException {
+		MultiplexedConnection connection = new MultiplexedConnection(createSocket(), framing);
+		try {
+			connection.getServerGreeting().get(GREETING_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			return connection;
+		} catch (ExecutionException | TimeoutException e) {
+			connection.close();
+			throw new IOException("Server did not send its greeting.", e);
+		} catch (InterruptedException e) {
+			connection.close();
+			Thread.currentThread().interrupt();
+			throw new IOException("Waiting for the server greeting was interrupted.", e);
+		}
+	}
+
+}
@@ -1,25 +1,30 @@
 package de.mortensenit.client;
 
 import static de.mortensenit.client.ClientConfigKeys.CLIENT_ENABLED_CIPHER_SUITES;
+import static de.mortensenit.client.ClientConfigKeys.CLIENT_ENABLED_PROTOCOLS;
 import static de.mortensenit.client.ClientConfigKeys.CLIENT_EXTENDED_LOGGING;
+import static de.mortensenit.client.ClientConfigKeys.CLIENT_FRAMING;
+import static de.mortensenit.client.ClientConfigKeys.CLIENT_LOAD_CONNECTIONS;
 import static de.mortensenit.client.ClientConfigKeys.CLIENT_MODE;
+import static de.mortensenit.client.ClientConfigKeys.CLIENT_TLS_SESSION_CACHE_SIZE;
+import static de.mortensenit.client.ClientConfigKeys.CLIENT_TLS_SESSION_TICKETS;
+import static de.mortensenit.client.ClientConfigKeys.CLIENT_TLS_SESSION_TIMEOUT;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.net.Socket;
 import java.net.SocketException;
-import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
 
-import javax.net.SocketFactory;
-import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLContext;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import de.mortensenit.controller.TLSController;
 import de.mortensenit.model.Constants;
+import de.mortensenit.model.codec.FrameCodec;
 import de.mortensenit.model.util.ConfigurationContext;
 
 /**
@@ -43,6 +48,10 @@ public class ClientStarter {
 		if (ConfigurationContext.getBoolean(CLIENT_EXTENDED_LOGGING, false))
 			System.setProperty("javax.net.debug", "all");
 
+		String sessionTickets = ConfigurationContext.get(CLIENT_TLS_SESSION_TICKETS, false);
+		if (sessionTickets != null)
+			TLSController.setSessionTicketsEnabled(false, Boolean.valueOf(sessionTickets));
+
 		// just get out of static
 		new ClientStarter().start();
 	}
@@ -56,18 +65,36 @@ public class ClientStarter {
 		logger.info("Starting up...");
 
 		try {
-			if (ConfigurationContext.get(CLIENT_MODE).equalsIgnoreCase(Constants.ENCRYPTION_MODE_TLS)) {
+			if (ConfigurationContext.getInt(CLIENT_LOAD_CONNECTIONS, 0) > 0) {
+				startLoadGenerator();
+			} else if (ConfigurationContext.get(CLIENT_MODE).equalsIgnoreCase(Constants.ENCRYPTION_MODE_TLS)) {
 				startTLSClient();
 			} else {
 				startPlainClient();
 			}
 		} catch (SocketException e) {
-			logger.error("Connection to server lost! Stopping client.", e);
+			logger.error("Server not reachable! Stopping client.", e);
 		} catch (Exception e2) {
 			logger.error("A client exception occured!", e2);
 		}
 	}
 
+	/**
+	 * run a load test against the server instead of the single connection
+	 * 
+	 * @throws Exception
+	 */
+	private void startLoadGenerator() throws Exception {
+		SSLContext sslContext = null;
+		if (ConfigurationContext.get(CLIENT_MODE).equalsIgnoreCase(Constants.ENCRYPTION_MODE_TLS))
+			sslContext = createClientContext();
+
+		new LoadGenerator(ConfigurationContext.get(ClientConfigKeys.SERVER_HOST),
+				ConfigurationContext.getInt(ClientConfigKeys.SERVER_PORT), sslContext,
+				ConfigurationContext.getValues(CLIENT_ENABLED_PROTOCOLS, Constants.DEFAULT_ENABLED_PROTOCOLS.split(",")),
+				ConfigurationContext.getValues(CLIENT_ENABLED_CIPHER_SUITES, null)).run();
+	}
+
 	/**
 	 * 
 	 * @throws SocketException
@@ -76,34 +103,81 @@ public class ClientStarter {
 	private void startTLSClient() throws SocketException, Exception {
 		logger.info("Trying to connect to the server via TLS...");
 
-		SSLSocket clientSocket = createClientSocket();
-
-		clientSocket.setEnabledProtocols(new String[] { Constants.PROTOCOL_TLS_1_2 });
-
 		String[] cipherSuites = ConfigurationContext.getValues(CLIENT_ENABLED_CIPHER_SUITES, null);
 		if (cipherSuites != null) {
 			logger.info("Setting enabled cipher suites: ");
 			for (String cipherSuite : cipherSuites) {
 				logger.info(cipherSuite);
 			}
-			clientSocket.setEnabledCipherSuites(cipherSuites);
 		}
 
-		clientSocket.startHandshake();
+		runConnection(createConnectionFactory(createClientContext()));
+	}
 
-		OutputStream os = clientSocket.getOutputStream();
-		BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(os));
+	/**
+	 * connect and send messages until the connection is lost, then reconnect with
+	 * the configured {@link ReconnectPolicy}. A tls connection shares the session
+	 * cache of the lost one and resumes its session, if the server still knows
+	 * it.
+	 * 
+	 * @param connectionFactory opens the connections
+	 * @throws IOException          if no connect attempt succeeded
+	 * @throws InterruptedException
+	 */
+	private void runConnection(ClientConnectionFactory connectionFactory) throws IOException, InterruptedException {
+		ReconnectPolicy reconnectPolicy = ReconnectPolicy.create();
+		while (true) {
+			Socket socket = reconnectPolicy.connect(connectionFactory::createSocket);
+			logger.info("Connected.");
+
+			try (socket) {
+				Thread.ofVirtual().name("client-reader").start(() -> readUntilClosed(socket));
+				sendMessages(socket.getOutputStream());
+			} catch (IOException e) {
+				logger.error("Connection to server lost: " + e.getMessage());
+			}
 
-		logger.info("Connected.");
+			// all clients of a restarted server lose their connection at once, so
+			// already the first reconnect is delayed
+			long delay = reconnectPolicy.getDelayMillis(0);
+			logger.info("Reconnecting in " + delay + " ms...");
+			Thread.sleep(delay);
+		}
+	}
 
-		while (true) {
-			writer.append(".");
-			writer.newLine();
-			writer.flush();
-			Thread.sleep(1000);
+	/**
+	 * read everything the server sends, which also processes the tls session
+	 * tickets needed for resumption. The socket is closed as soon as the server
+	 * closed the connection, so the next message fails.
+	 * 
+	 * @param socket the connected socket
+	 */
+	private void readUntilClosed(Socket socket) {
+		byte[] buffer = new byte[8192];
+		try {
+			InputStream is = socket.getInputStream();
+			while (is.read(buffer) >= 0) {
+				// the greeting and answers of the server are not evaluated
+			}
+			socket.close();
+		} catch (IOException e) {
+			// closed by the sending side
 		}
 	}
 
+	/**
+	 * 
+	 * @param sslContext the client context, null for plain connections
+	 * @return a factory for connections to the configured server
+	 */
+	private ClientConnectionFactory createConnectionFactory(SSLContext sslContext) {
+		return new ClientConnectionFactory(ConfigurationContext.get(ClientConfigKeys.SERVER_HOST),
+				ConfigurationContext.getInt(ClientConfigKeys.SERVER_PORT), sslContext,
+				ConfigurationContext.getValues(CLIENT_ENABLED_PROTOCOLS, Constants.DEFAULT_ENABLED_PROTOCOLS.split(",")),
+				ConfigurationContext.getValues(CLIENT_ENABLED_CIPHER_SUITES, null),
+				ConfigurationContext.get(CLIENT_FRAMING, Constants.FRAMING_LINE));
+	}
+
 	/**
 	 * .<br />
 	 * This method replaces the system parameters for<br />
@@ -112,16 +186,14 @@ public class ClientStarter {
 	 * -Djavax.net.ssl.trustStore=...<br />
 	 * with runtime configuration and an application config.
 	 * 
-	 * @return
-	 * @throws UnknownHostException
+	 * @return the client context with the configured session cache
 	 * @throws IOException
 	 */
-	private SSLSocket createClientSocket() throws UnknownHostException, IOException {
+	private SSLContext createClientContext() throws IOException {
 
 		String keyStoreFileName = null;
 		String keyStorePassword = null;
 		String trustStoreFileName = null;
-		SSLSocket clientSocket = null;
 
 		if (ConfigurationContext.getBoolean(ClientConfigKeys.CLIENT_AUTHENTICATION_NEEDED)) {
 			keyStoreFileName = ConfigurationContext.get(ClientConfigKeys.CLIENT_KEYSTORE_FILE);
@@ -130,25 +202,18 @@ public class ClientStarter {
 
 		if (ConfigurationContext.getBoolean(ClientConfigKeys.SERVER_VALIDATION_NEEDED)) {
 			trustStoreFileName = ConfigurationContext.get(ClientConfigKeys.CLIENT_TRUSTSTORE_FILE);
+		}
 
-			SocketFactory socketFactory = TLSController.getTlsSocketFactory(keyStoreFileName, keyStorePassword,
-					trustStoreFileName);
-			clientSocket = (SSLSocket) socketFactory.createSocket(
-					ConfigurationContext.get(ClientConfigKeys.SERVER_HOST),
-					Integer.valueOf(ConfigurationContext.get(ClientConfigKeys.SERVER_PORT)));
-		} else {
-//			clientSocket = (SSLSocket) SSLSocketFactory.getDefault().createSocket(
-//					ConfigurationContext.get(ClientConfigKeys.SERVER_HOST),
-//					Integer.valueOf(ConfigurationContext.get(ClientConfigKeys.SERVER_PORT)));
-
-			SocketFactory socketFactory = TLSController.getTlsSocketFactory(keyStoreFileName, keyStorePassword,
-					trustStoreFileName);
-			clientSocket = (SSLSocket) socketFactory.createSocket(
-					ConfigurationContext.get(ClientConfigKeys.SERVER_HOST),
-					Integer.valueOf(ConfigurationContext.get(ClientConfigKeys.SERVER_PORT)));
+		SSLContext sslContext = TLSController.getTlsClientContext(keyStoreFileName, keyStorePassword,
+				trustStoreFileName);
+		if (sslContext == null)
+			throw new IOException("TLS context could not be initialized.");
 
-		}
-		return clientSocket;
+		int sessionCacheSize = ConfigurationContext.getInt(CLIENT_TLS_SESSION_CACHE_SIZE, -1);
+		int sessionTimeout = ConfigurationContext.getInt(CLIENT_TLS_SESSION_TIMEOUT, -1);
+		TLSController.configureSessionContext(sslContext.getClientSessionContext(), sessionCacheSize,
+				sessionTimeout);
+		return sslContext;
 	}
 
 	/**
@@ -158,17 +223,27 @@ public class ClientStarter {
 	 */
 	private void startPlainClient() throws SocketException, Exception {
 		logger.info("Trying to connect to the server via PLAIN connection...");
-		Socket socket = new Socket(ConfigurationContext.get(ClientConfigKeys.SERVER_HOST),
-				Integer.valueOf(ConfigurationContext.get(ClientConfigKeys.SERVER_PORT)));
-		OutputStream os = socket.getOutputStream();
-		BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(os));
+		runConnection(createConnectionFactory(null));
+	}
 
-		logger.info("Connected.");
-		while (true) {
-			writer.append(".");
-			writer.newLine();
-			writer.flush();
-			Thread.sleep(1000);
+	/**
+	 * send a message every second, framed as configured. The messages are written
+	 * by a {@link BatchingWriter}.
+	 * 
+	 * @param os the output stream of the connected socket
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private void sendMessages(OutputStream os) throws IOException, InterruptedException {
+		String framing = ConfigurationContext.get(CLIENT_FRAMING, Constants.FRAMING_LINE);
+		FrameCodec frameCodec = FrameCodec.create(framing, FrameCodec.DEFAULT_MAX_FRAME_SIZE);
+		byte[] message = frameCodec.encode(".".getBytes(StandardCharsets.UTF_8));
+
+		try (BatchingWriter writer = BatchingWriter.create(os)) {
+			while (true) {
+				writer.send(message);
+				Thread.sleep(1000);
+			}
 		}
 	}
 
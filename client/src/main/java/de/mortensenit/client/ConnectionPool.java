@@ -0,0 +1,386 @@
+package de.mortensenit.client;
+
+import static de.mortensenit.client.ClientConfigKeys.CLIENT_POOL_BORROW_TIMEOUT;
+import static de.mortensenit.client.ClientConfigKeys.CLIENT_POOL_KEEPALIVE_INTERVAL;
+import static de.mortensenit.client.ClientConfigKeys.CLIENT_POOL_MAX_IDLE;
+import static de.mortensenit.client.ClientConfigKeys.CLIENT_POOL_MAX_SIZE;
+import static de.mortensenit.client.ClientConfigKeys.CLIENT_POOL_MIN_SIZE;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.mortensenit.model.server.Greeting;
+import de.mortensenit.model.util.ConfigurationContext;
+import de.mortensenit.model.util.LatencyHistogram;
+
+/**
+ * A pool of established connections to the server, shared by the threads of an
+ * application. A borrowed connection is used exclusively until it is returned,
+ * so its tls session is reused without another handshake.<br />
+ * <br />
+ * At most max size connections exist at a time, borrowers wait up to the
+ * borrow timeout for a returned one. A maintenance thread closes connections
+ * that were idle for longer than the max idle time down to the min size, sends
+ * a keep-alive greeting on connections idle for longer than the keep-alive
+ * interval and opens new connections up to the min size.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class ConnectionPool implements Closeable {
+
+	/**
+	 * opens a new connection, which is ready to be used
+	 */
+	@FunctionalInterface
+	public interface ConnectionFactory {
+		MultiplexedConnection connect() throws IOException;
+	}
+
+	/**
+	 * an idle connection, when it was returned and when it was known to work the
+	 * last time
+	 */
+	private static final class IdleConnection {
+		final MultiplexedConnection connection;
+		final long idleSince;
+		final long checkedAt;
+
+		IdleConnection(MultiplexedConnection connection, long idleSince, long checkedAt) {
+			this.connection = connection;
+			this.idleSince = idleSince;
+			this.checkedAt = checkedAt;
+		}
+	}
+
+	private Logger logger = LogManager.getLogger();
+
+	private final ConnectionFactory connectionFactory;
+
+	private final int minSize;
+
+	private final long maxIdleNanos;
+
+	private final long keepAliveNanos;
+
+	private final long borrowTimeoutNanos;
+
+	/**
+	 * one permit per connection that may be borrowed
+	 */
+	private final Semaphore permits;
+
+	/**
+	 * the most recently returned connection first, so the others can time out
+	 */
+	private final Deque<IdleConnection> idleConnections = new ConcurrentLinkedDeque<>();
+
+	private final ScheduledExecutorService maintenance;
+
+	private final AtomicInteger openConnections = new AtomicInteger();
+
+	/**
+	 * idle connections taken out by the maintenance to be checked
+	 */
+	private final AtomicInteger checkedConnections = new AtomicInteger();
+
+	private final LongAdder borrowed = new LongAdder();
+
+	private final LongAdder created = new LongAdder();
+
+	private final LongAdder evicted = new LongAdder();
+
+	private final LatencyHistogram waitTime = new LatencyHistogram();
+
+	private volatile boolean closed;
+
+	/**
+	 *
+	 * @param connectionFactory      opens the connections
+	 * @param minSize                the number of connections kept open even if
+	 *                               idle
+	 * @param maxSize                the maximum number of open connections
+	 * @param maxIdleMillis          idle time after which a connection above the
+	 *                               min size is closed
+	 * @param keepAliveIntervalMillis idle time after which a connection is checked
+	 *                               with a keep-alive greeting, also the interval
+	 *                               of the maintenance
+	 * @param borrowTimeoutMillis    the maximum time to wait for a connection
+	 */
+	public ConnectionPool(ConnectionFactory connectionFactory, int minSize, int maxSize, long maxIdleMillis,
+			long keepAliveIntervalMillis, long borrowTimeoutMillis) {
+		this.connectionFactory = connectionFactory;
+		this.minSize = Math.min(minSize, maxSize);
+		this.maxIdleNanos = TimeUnit.MILLISECONDS.toNanos(maxIdleMillis);
+		this.keepAliveNanos = TimeUnit.MILLISECONDS.toNanos(keepAliveIntervalMillis);
+		this.borrowTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+		this.permits = new Semaphore(maxSize, true);
+
+		this.maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "connection-pool-maintenance");
+			thread.setDaemon(true);
+			return thread;
+		});
+		maintenance.scheduleWithFixedDelay(this::maintain, 0, keepAliveIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * create a pool with the configured sizes and times
+	 *
+	 * @param connectionFactory opens the connections
+	 * @return the new pool
+	 */
+	public static ConnectionPool create(ConnectionFactory connectionFactory) {
+		int minSize = ConfigurationContext.getInt(CLIENT_POOL_MIN_SIZE, 1);
+		int maxSize = ConfigurationContext.getInt(CLIENT_POOL_MAX_SIZE, 8);
+		long maxIdle = TimeUnit.SECONDS.toMillis(ConfigurationContext.getLong(CLIENT_POOL_MAX_IDLE, 300));
+		long keepAlive = TimeUnit.SECONDS
+				.toMillis(ConfigurationContext.getLong(CLIENT_POOL_KEEPALIVE_INTERVAL, 30));
+		long borrowTimeout = ConfigurationContext.getLong(CLIENT_POOL_BORROW_TIMEOUT, 5000);
+		return new ConnectionPool(connectionFactory, minSize, maxSize, maxIdle, keepAlive, borrowTimeout);
+	}
+
+	/**
+	 * get an idle connection or open a new one, waiting while all connections are
+	 * borrowed
+	 *
+	 * @return a connection that must be returned with
+	 *         {@link #release(MultiplexedConnection)}
+	 * @throws IOException          if no connection became available in time or
+	 *                              a new one could not be opened
+	 * @throws InterruptedException
+	 */
+	public MultiplexedConnection borrow() throws IOException, InterruptedException {
+		if (closed)
+			throw new IOException("Connection pool is closed.");
+
+		long waitStart = System.nanoTime();
+		if (!permits.tryAcquire(borrowTimeoutNanos, TimeUnit.NANOSECONDS))
+			throw new IOException("No connection available after "
+					+ TimeUnit.NANOSECONDS.toMillis(borrowTimeoutNanos) + " ms.");
+		waitTime.record(System.nanoTime() - waitStart);
+
+		try {
+			IdleConnection idle;
+			while ((idle = idleConnections.pollFirst()) != null) {
+				if (idle.connection.isOpen()) {
+					borrowed.increment();
+					return idle.connection;
+				}
+				discard(idle.connection);
+			}
+
+			MultiplexedConnection connection = open();
+			borrowed.increment();
+			return connection;
+		} catch (IOException | RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * return a borrowed connection. A connection that failed meanwhile is closed
+	 * instead of being pooled.
+	 *
+	 * @param connection a connection borrowed from this pool
+	 */
+	public void release(MultiplexedConnection connection) {
+		if (closed || !connection.isOpen()) {
+			discard(connection);
+		} else {
+			long now = System.nanoTime();
+			idleConnections.offerFirst(new IdleConnection(connection, now, now));
+		}
+		permits.release();
+	}
+
+	/**
+	 * close the idle connections and stop the maintenance. Borrowed connections
+	 * are closed when they are returned.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		maintenance.shutdownNow();
+		discardIdle();
+	}
+
+	/**
+	 *
+	 * @return the number of borrowed connections
+	 */
+	public int getBorrowedConnections() {
+		return openConnections.get() - getIdleConnections();
+	}
+
+	/**
+	 *
+	 * @return the number of idle connections
+	 */
+	public int getIdleConnections() {
+		return idleConnections.size() + checkedConnections.get();
+	}
+
+	/**
+	 *
+	 * @return how often a connection was borrowed
+	 */
+	public long getBorrowCount() {
+		return borrowed.sum();
+	}
+
+	/**
+	 *
+	 * @return the number of connections opened by this pool
+	 */
+	public long getCreatedConnections() {
+		return created.sum();
+	}
+
+	/**
+	 *
+	 * @return the number of connections closed because they were idle too long or
+	 *         failed
+	 */
+	public long getEvictedConnections() {
+		return evicted.sum();
+	}
+
+	/**
+	 *
+	 * @return the time borrowers waited for a connection in nanoseconds
+	 */
+	public LatencyHistogram getWaitTime() {
+		return waitTime;
+	}
+
+	@Override
+	public String toString() {
+		return "ConnectionPool [borrowed=" + getBorrowedConnections() + ", idle=" + getIdleConnections()
+				+ ", borrows=" + getBorrowCount() + ", created=" + getCreatedConnections() + ", evicted="
+				+ getEvictedConnections() + ", wait p99=" + waitTime.getPercentile(0.99) / 1000 + " us]";
+	}
+
+	private MultiplexedConnection open() throws IOException {
+		MultiplexedConnection connection = connectionFactory.connect();
+		openConnections.incrementAndGet();
+		created.increment();
+		return connection;
+	}
+
+	private void discard(MultiplexedConnection connection) {
+		connection.close();
+		openConnections.decrementAndGet();
+		evicted.increment();
+	}
+
+	private void discardIdle() {
+		IdleConnection idle;
+		while ((idle = idleConnections.pollFirst()) != null) {
+			discard(idle.connection);
+		}
+	}
+
+	/**
+	 * Evict, check and top up the idle connections, the longest idle first. A
+	 * connection is only taken out of the pool together with a permit, which is
+	 * kept until the connection is back in the pool, so the pool never opens
+	 * more than max size connections meanwhile. Once the pool is closed, no
+	 * connection is put back.
+	 */
+	private void maintain() {
+		try {
+			checkIdle();
+
+			while (!closed && openConnections.get() < minSize && permits.tryAcquire()) {
+				try {
+					MultiplexedConnection connection = open();
+					long opened = System.nanoTime();
+					idleConnections.offerLast(new IdleConnection(connection, opened, opened));
+				} finally {
+					permits.release();
+				}
+			}
+			if (closed)
+				discardIdle();
+		} catch (IOException e) {
+			logger.error("Opening a pooled connection failed: " + e.getMessage());
+		} catch (RuntimeException e) {
+			logger.error("Connection pool maintenance failed!", e);
+		}
+	}
+
+	/**
+	 * take the idle connections out of the pool one permit each, evict or check
+	 * them and put the remaining ones back in their order before the permits are
+	 * released
+	 */
+	private void checkIdle() {
+		long now = System.nanoTime();
+		List<IdleConnection> checked = new ArrayList<>();
+		int candidates = idleConnections.size();
+		int heldPermits = 0;
+		try {
+			for (int i = 0; i < candidates && permits.tryAcquire(); i++) {
+				heldPermits++;
+				IdleConnection idle = idleConnections.pollLast();
+				if (idle == null)
+					break;
+				checkedConnections.incrementAndGet();
+
+				long idleTime = now - idle.idleSince;
+				if (!idle.connection.isOpen() || (idleTime > maxIdleNanos && openConnections.get() > minSize)) {
+					discard(idle.connection);
+					checkedConnections.decrementAndGet();
+				} else if (now - idle.checkedAt <= keepAliveNanos) {
+					checked.add(idle);
+				} else if (keepAlive(idle.connection)) {
+					checked.add(new IdleConnection(idle.connection, idle.idleSince, System.nanoTime()));
+				} else {
+					discard(idle.connection);
+					checkedConnections.decrementAndGet();
+				}
+			}
+		} finally {
+			for (IdleConnection idle : checked.reversed()) {
+				if (closed)
+					discard(idle.connection);
+				else
+					idleConnections.offerLast(idle);
+				checkedConnections.decrementAndGet();
+			}
+			permits.release(heldPermits);
+		}
+	}
+
+	/**
+	 * send a greeting and wait for the answer
+	 *
+	 * @param connection an idle connection
+	 * @return true if the server answered in time
+	 */
+	private boolean keepAlive(MultiplexedConnection connection) {
+		try {
+			connection.send(new Greeting()).get(borrowTimeoutNanos, TimeUnit.NANOSECONDS);
+			return true;
+		} catch (Exception e) {
+			logger.info("Pooled connection failed the keep-alive: " + e.getMessage());
+			return false;
+		}
+	}
+
+}
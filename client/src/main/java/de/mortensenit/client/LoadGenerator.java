@@ -0,0 +1,323 @@
+package de.mortensenit.client;
+
+import static de.mortensenit.client.ClientConfigKeys.CLIENT_FRAMING;
+import static de.mortensenit.client.ClientConfigKeys.CLIENT_LOAD_CONNECTIONS;
+import static de.mortensenit.client.ClientConfigKeys.CLIENT_LOAD_CONNECT_RATE;
+import static de.mortensenit.client.ClientConfigKeys.CLIENT_LOAD_DURATION;
+import static de.mortensenit.client.ClientConfigKeys.CLIENT_LOAD_MESSAGE_RATE;
+import static de.mortensenit.client.ClientConfigKeys.CLIENT_LOAD_MESSAGE_SIZE;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+
+import com.sun.management.OperatingSystemMXBean;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.mortensenit.controller.TLSController;
+import de.mortensenit.model.Constants;
+import de.mortensenit.model.codec.FrameCodec;
+import de.mortensenit.model.util.ConfigurationContext;
+import de.mortensenit.model.util.LatencyHistogram;
+
+/**
+ * Opens many connections to the server at a configurable rate and sends
+ * messages of a configurable size and rate on each of them for the duration of
+ * the test. Every connection runs on its own virtual thread.<br />
+ * <br />
+ * For each connection the TCP connect, the TLS handshake and the time from
+ * starting the connect until the complete greeting was received are recorded.
+ * The latter includes the connect and the handshake. The messages sent
+ * afterwards are not answered, so no per message round trip is measured. A
+ * report with the percentiles, the throughput and the errors is logged at the
+ * end.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class LoadGenerator {
+
+	/**
+	 * how long a connection waits for the greeting of the server
+	 */
+	private static final int GREETING_TIMEOUT_MILLIS = 10000;
+
+	private Logger logger = LogManager.getLogger();
+
+	private final String host;
+
+	private final int port;
+
+	private final SSLContext sslContext;
+
+	private final String[] enabledProtocols;
+
+	private final String[] enabledCipherSuites;
+
+	private final int connections;
+
+	private final int connectRate;
+
+	private final int messageRate;
+
+	private final byte[] message;
+
+	private final long durationNanos;
+
+	private final String framing;
+
+	private final LatencyHistogram connectLatency = new LatencyHistogram();
+
+	private final LatencyHistogram handshakeLatency = new LatencyHistogram();
+
+	private final LatencyHistogram connectToGreetingLatency = new LatencyHistogram();
+
+	private final LongAdder established = new LongAdder();
+
+	private final LongAdder resumed = new LongAdder();
+
+	private final LongAdder messagesSent = new LongAdder();
+
+	private final LongAdder bytesSent = new LongAdder();
+
+	private final LongAdder writes = new LongAdder();
+
+	private final LongAdder connectErrors = new LongAdder();
+
+	private final LongAdder handshakeErrors = new LongAdder();
+
+	private final LongAdder greetingErrors = new LongAdder();
+
+	private final LongAdder writeErrors = new LongAdder();
+
+	private long deadline;
+
+	/**
+	 * read the load settings from the client configuration
+	 *
+	 * @param host                the server host
+	 * @param port                the server port
+	 * @param sslContext          the context for TLS connections or null for
+	 *                            plain connections
+	 * @param enabledProtocols    the protocols enabled on TLS connections
+	 * @param enabledCipherSuites the cipher suites enabled on TLS connections or
+	 *                            null for the defaults
+	 */
+	public LoadGenerator(String host, int port, SSLContext sslContext, String[] enabledProtocols,
+			String[] enabledCipherSuites) {
+		this.host = host;
+		this.port = port;
+		this.sslContext = sslContext;
+		this.enabledProtocols = enabledProtocols;
+		this.enabledCipherSuites = enabledCipherSuites;
+
+		this.connections = ConfigurationContext.getInt(CLIENT_LOAD_CONNECTIONS, 0);
+		this.connectRate = ConfigurationContext.getInt(CLIENT_LOAD_CONNECT_RATE, 0);
+		this.messageRate = ConfigurationContext.getInt(CLIENT_LOAD_MESSAGE_RATE, 1);
+		this.durationNanos = TimeUnit.SECONDS
+				.toNanos(ConfigurationContext.getLong(CLIENT_LOAD_DURATION, 60));
+		this.framing = ConfigurationContext.get(CLIENT_FRAMING, Constants.FRAMING_LINE);
+
+		// dots are valid payload for both framings
+		byte[] payload = new byte[ConfigurationContext.getInt(CLIENT_LOAD_MESSAGE_SIZE, 1)];
+		Arrays.fill(payload, (byte) '.');
+		this.message = FrameCodec.create(framing, FrameCodec.DEFAULT_MAX_FRAME_SIZE).encode(payload);
+	}
+
+	/**
+	 * open the connections at the configured rate, keep them busy until the end
+	 * of the test and log the report
+	 *
+	 * @throws InterruptedException
+	 */
+	public void run() throws InterruptedException {
+		logger.info("Starting load test with " + connections + " " + (sslContext != null ? "TLS" : "PLAIN")
+				+ " connections for " + TimeUnit.NANOSECONDS.toSeconds(durationNanos) + " seconds...");
+
+		long start = System.nanoTime();
+		long cpuStart = processCpuNanos();
+		deadline = start + durationNanos;
+
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int i = 0; i < connections; i++) {
+				if (connectRate > 0) {
+					long delay = start + i * TimeUnit.SECONDS.toNanos(1) / connectRate - System.nanoTime();
+					if (delay > 0)
+						TimeUnit.NANOSECONDS.sleep(delay);
+				}
+				if (System.nanoTime() >= deadline)
+					break;
+				executor.execute(this::runConnection);
+			}
+		}
+
+		report(System.nanoTime() - start, processCpuNanos() - cpuStart);
+	}
+
+	/**
+	 * connect, handshake, wait for the greeting and send messages until the end of
+	 * the test. Failures are counted by the phase they happened in.
+	 */
+	private void runConnection() {
+		long connectStart = System.nanoTime();
+		try (Socket socket = sslContext != null ? sslContext.getSocketFactory().createSocket() : new Socket()) {
+			socket.setTcpNoDelay(true);
+			try {
+				socket.connect(new InetSocketAddress(host, port));
+			} catch (IOException e) {
+				connectErrors.increment();
+				return;
+			}
+			connectLatency.record(System.nanoTime() - connectStart);
+
+			if (socket instanceof SSLSocket sslSocket) {
+				sslSocket.setEnabledProtocols(enabledProtocols);
+				if (enabledCipherSuites != null)
+					sslSocket.setEnabledCipherSuites(enabledCipherSuites);
+				long handshakeStart = System.currentTimeMillis();
+				long handshakeStartNanos = System.nanoTime();
+				try {
+					sslSocket.startHandshake();
+				} catch (IOException e) {
+					handshakeErrors.increment();
+					return;
+				}
+				long handshakeNanos = System.nanoTime() - handshakeStartNanos;
+				handshakeLatency.record(handshakeNanos);
+				if (TLSController.getHandshakeStatistics().record(sslSocket.getSession(), handshakeStart,
+						handshakeNanos))
+					resumed.increment();
+			}
+
+			try {
+				socket.setSoTimeout(GREETING_TIMEOUT_MILLIS);
+				readGreeting(socket.getInputStream());
+			} catch (IOException e) {
+				greetingErrors.increment();
+				return;
+			}
+			connectToGreetingLatency.record(System.nanoTime() - connectStart);
+			established.increment();
+
+			sendMessages(socket.getOutputStream());
+		} catch (IOException e) {
+			writeErrors.increment();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * read until the first complete frame, which is the greeting
+	 *
+	 * @param inputStream the stream of the connected socket
+	 * @throws IOException if the server closed the connection before
+	 */
+	private void readGreeting(InputStream inputStream) throws IOException {
+		FrameCodec frameCodec = FrameCodec.create(framing, FrameCodec.DEFAULT_MAX_FRAME_SIZE);
+		boolean[] received = new boolean[1];
+		try {
+			while (!received[0]) {
+				if (frameCodec.read(inputStream) < 0)
+					throw new EOFException("Server closed the connection before the greeting.");
+				frameCodec.decode(frame -> received[0] = true);
+			}
+		} finally {
+			frameCodec.release();
+		}
+	}
+
+	/**
+	 * queue the message at the configured rate until the end of the test. The
+	 * writer coalesces the queued messages as configured.
+	 *
+	 * @param os the output stream of the connected socket
+	 * @throws IOException          if a write failed
+	 * @throws InterruptedException
+	 */
+	private void sendMessages(OutputStream os) throws IOException, InterruptedException {
+		long interval = messageRate > 0 ? TimeUnit.SECONDS.toNanos(1) / messageRate : 0;
+		long next = System.nanoTime();
+
+		BatchingWriter writer = BatchingWriter.create(os);
+		try {
+			while (true) {
+				long delay = next - System.nanoTime();
+				if (delay > 0)
+					TimeUnit.NANOSECONDS.sleep(Math.min(delay, deadline - System.nanoTime()));
+				if (System.nanoTime() >= deadline)
+					break;
+
+				writer.send(message);
+				next += interval;
+			}
+		} finally {
+			try {
+				writer.close();
+			} finally {
+				messagesSent.add(writer.getMessages());
+				bytesSent.add(writer.getBytes());
+				writes.add(writer.getWrites());
+			}
+		}
+	}
+
+	/**
+	 * log percentiles, throughput and errors
+	 *
+	 * @param elapsedNanos the duration of the test
+	 * @param cpuNanos     the cpu time of the client process during the test
+	 */
+	private void report(long elapsedNanos, long cpuNanos) {
+		double seconds = elapsedNanos / 1e9;
+		logger.info(String.format("Load test finished after %.1f s: %d of %d connections established", seconds,
+				established.sum(), connections));
+		logger.info(String.format("%-19s %10s %12s %12s %12s %12s", "latency", "count", "p50 [us]", "p99 [us]",
+				"p99.9 [us]", "max [us]"));
+		logLatency("connect", connectLatency);
+		if (sslContext != null) {
+			logLatency("handshake", handshakeLatency);
+			logger.info(String.format("handshakes: %d full, %d resumed", handshakeLatency.getCount() - resumed.sum(),
+					resumed.sum()));
+		}
+		logLatency("connect to greeting", connectToGreetingLatency);
+		logger.info(String.format("throughput: %d messages, %.1f messages/s, %.1f KiB/s", messagesSent.sum(),
+				messagesSent.sum() / seconds, bytesSent.sum() / 1024.0 / seconds));
+		long messages = Math.max(1, messagesSent.sum());
+		logger.info(String.format("send path: %.1f messages per write, %.2f us client cpu per message",
+				(double) messagesSent.sum() / Math.max(1, writes.sum()), cpuNanos / 1000.0 / messages));
+		logger.info(String.format("errors: connect %d, handshake %d, greeting %d, write %d", connectErrors.sum(),
+				handshakeErrors.sum(), greetingErrors.sum(), writeErrors.sum()));
+	}
+
+	/**
+	 *
+	 * @return the cpu time used by this process so far, or 0 if unknown
+	 */
+	private static long processCpuNanos() {
+		if (ManagementFactory.getOperatingSystemMXBean() instanceof OperatingSystemMXBean operatingSystem)
+			return operatingSystem.getProcessCpuTime();
+		return 0;
+	}
+
+	private void logLatency(String name, LatencyHistogram histogram) {
+		logger.info(String.format("%-19s %10d %12d %12d %12d %12d", name, histogram.getCount(),
+				histogram.getPercentile(0.5) / 1000, histogram.getPercentile(0.99) / 1000,
+				histogram.getPercentile(0.999) / 1000, histogram.getMax() / 1000));
+	}
+
+}
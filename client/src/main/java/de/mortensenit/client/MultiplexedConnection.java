@@ -0,0 +1,237 @@
+package de.mortensenit.client;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.mortensenit.model.codec.FrameCodec;
+import de.mortensenit.model.server.Greeting;
+import de.mortensenit.model.server.GreetingMarshaller;
+
+/**
+ * Sends many requests over one connection without waiting for the responses.
+ * Every request is tagged with an id unique for this connection, the server
+ * answers with the same id. A single reader thread completes the future of the
+ * request the response belongs to, so the responses may arrive in any order.
+ * The requests are written by a {@link BatchingWriter}, which coalesces
+ * concurrent requests into shared writes.<br />
+ * <br />
+ * The first message of the server is its greeting, it is available through
+ * {@link #getServerGreeting()}. If the connection fails, all outstanding
+ * requests are completed exceptionally and {@link #getCloseFuture()} is
+ * completed.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class MultiplexedConnection implements Closeable {
+
+	private Logger logger = LogManager.getLogger();
+
+	private final Socket socket;
+
+	private final FrameCodec encoder;
+
+	private final FrameCodec decoder;
+
+	private final BatchingWriter writer;
+
+	private final Map<Integer, CompletableFuture<Greeting>> pendingRequests = new ConcurrentHashMap<>();
+
+	private final CompletableFuture<Greeting> serverGreeting = new CompletableFuture<>();
+
+	private final CompletableFuture<Void> closeFuture = new CompletableFuture<>();
+
+	private final AtomicInteger nextRequestId = new AtomicInteger(1);
+
+	private volatile boolean closed;
+
+	/**
+	 * start reading from the connected socket
+	 *
+	 * @param socket  the connected plain or tls socket
+	 * @param framing LINE or EPP, must match the framing of the server
+	 * @throws IOException if the streams of the socket could not be opened
+	 */
+	public MultiplexedConnection(Socket socket, String framing) throws IOException {
+		this.socket = socket;
+		this.encoder = FrameCodec.create(framing, FrameCodec.DEFAULT_MAX_FRAME_SIZE);
+		this.decoder = FrameCodec.create(framing, FrameCodec.DEFAULT_MAX_FRAME_SIZE);
+		this.writer = BatchingWriter.create(socket.getOutputStream());
+
+		InputStream inputStream = socket.getInputStream();
+		Thread.ofVirtual().name("client-reader").start(() -> readLoop(inputStream));
+	}
+
+	/**
+	 * send a request without waiting for the response. The id of the request is
+	 * replaced by the next id of this connection.
+	 *
+	 * @param request the greeting to be sent
+	 * @return the future of the response with the same id
+	 */
+	public CompletableFuture<Greeting> send(Greeting request) {
+		CompletableFuture<Greeting> response = new CompletableFuture<>();
+		int requestId = nextRequestId.getAndIncrement();
+		request.setId(requestId);
+
+		byte[] payload = GreetingMarshaller.marshallToBytes(request);
+		if (payload == null) {
+			response.completeExceptionally(new IOException("Request could not be marshalled."));
+			return response;
+		}
+
+		pendingRequests.put(requestId, response);
+		try {
+			if (closed)
+				throw new IOException("Connection is closed.");
+			writer.send(encoder.encode(payload));
+		} catch (IOException e) {
+			fail(requestId, e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			fail(requestId, new IOException("Sending was interrupted.", e));
+		}
+		return response;
+	}
+
+	/**
+	 *
+	 * @return the future of the greeting the server sends after connecting
+	 */
+	public CompletableFuture<Greeting> getServerGreeting() {
+		return serverGreeting;
+	}
+
+	/**
+	 *
+	 * @return the future completed when the connection failed or was closed
+	 */
+	public CompletableFuture<Void> getCloseFuture() {
+		return closeFuture;
+	}
+
+	/**
+	 *
+	 * @return the number of requests waiting for their response
+	 */
+	public int getPendingRequests() {
+		return pendingRequests.size();
+	}
+
+	/**
+	 *
+	 * @return false as soon as the connection failed or was closed
+	 */
+	public boolean isOpen() {
+		return !closed;
+	}
+
+	/**
+	 *
+	 * @return the socket this connection uses
+	 */
+	public Socket getSocket() {
+		return socket;
+	}
+
+	/**
+	 * close the connection, outstanding requests are completed exceptionally
+	 */
+	@Override
+	public void close() {
+		if (closed)
+			return;
+		closed = true;
+		try {
+			writer.close();
+		} catch (IOException e) {
+			logger.debug("Queued requests could not be written: " + e.getMessage());
+		}
+		try {
+			socket.close();
+		} catch (IOException e) {
+			logger.error("Closing the client socket failed!", e);
+		}
+		failAll(new IOException("Connection is closed."));
+	}
+
+	/**
+	 * complete the requests with the responses until the connection is closed
+	 */
+	private void readLoop(InputStream inputStream) {
+		try {
+			while (true) {
+				if (decoder.read(inputStream) < 0)
+					throw new EOFException("Server closed the connection.");
+				decoder.decode(this::onResponse);
+			}
+		} catch (IOException e) {
+			if (closed)
+				logger.debug("Connection closed: " + e.getMessage());
+			else if (e instanceof EOFException)
+				logger.info(e.getMessage());
+			else
+				logger.error("Connection to server lost: " + e.getMessage());
+			closed = true;
+			try {
+				socket.close();
+			} catch (IOException e2) {
+				// already broken
+			}
+			failAll(e);
+		} finally {
+			decoder.release();
+		}
+	}
+
+	/**
+	 *
+	 * @param frame a complete response of the server
+	 * @throws IOException if the response is invalid
+	 */
+	private void onResponse(ByteBuffer frame) throws IOException {
+		Greeting response = GreetingMarshaller.unmarshall(frame);
+		if (response == null)
+			throw new IOException("Server sent an invalid response.");
+
+		if (!serverGreeting.isDone()) {
+			serverGreeting.complete(response);
+			return;
+		}
+
+		CompletableFuture<Greeting> request = pendingRequests.remove(response.getId());
+		if (request != null)
+			request.complete(response);
+		else
+			logger.warn("Received a response for the unknown request " + response.getId());
+	}
+
+	private void fail(int requestId, IOException cause) {
+		CompletableFuture<Greeting> request = pendingRequests.remove(requestId);
+		if (request != null)
+			request.completeExceptionally(cause);
+	}
+
+	/**
+	 * complete all outstanding requests exceptionally
+	 */
+	private void failAll(IOException cause) {
+		closeFuture.complete(null);
+		serverGreeting.completeExceptionally(cause);
+		for (Integer requestId : pendingRequests.keySet()) {
+			fail(requestId, cause);
+		}
+	}
+
+}
@@ -0,0 +1,129 @@
+package de.mortensenit.client;
+
+import static de.mortensenit.client.ClientConfigKeys.CLIENT_RECONNECT_ATTEMPTS;
+import static de.mortensenit.client.ClientConfigKeys.CLIENT_RECONNECT_DELAY;
+import static de.mortensenit.client.ClientConfigKeys.CLIENT_RECONNECT_JITTER;
+import static de.mortensenit.client.ClientConfigKeys.CLIENT_RECONNECT_MAX_DELAY;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.mortensenit.model.util.ConfigurationContext;
+
+/**
+ * Retries a failed connect with an exponentially growing delay. The delay
+ * starts at the initial delay, doubles with every failed attempt and is capped
+ * at the max delay.<br />
+ * <br />
+ * If a server restarts, all its clients lose their connection at the same
+ * moment. Without jitter they would also retry at the same moments and the
+ * server would have to do all full handshakes at once. The jitter draws the
+ * delay at random from the upper part of the range, 1.0 spreads it over the
+ * whole range from 0 to the capped delay, 0 disables the jitter.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class ReconnectPolicy {
+
+	/**
+	 * opens a connection
+	 *
+	 * @param <T> the type of the connection
+	 */
+	@FunctionalInterface
+	public interface Connector<T> {
+		T connect() throws IOException;
+	}
+
+	private Logger logger = LogManager.getLogger();
+
+	private final long initialDelayMillis;
+
+	private final long maxDelayMillis;
+
+	private final double jitter;
+
+	private final int maxAttempts;
+
+	/**
+	 *
+	 * @param initialDelayMillis the delay after the first failed attempt
+	 * @param maxDelayMillis     the maximum delay
+	 * @param jitter             the random part of the delay, between 0 and 1
+	 * @param maxAttempts        the number of attempts before giving up, 0 to
+	 *                           retry forever
+	 */
+	public ReconnectPolicy(long initialDelayMillis, long maxDelayMillis, double jitter, int maxAttempts) {
+		if (jitter < 0 || jitter > 1)
+			throw new IllegalArgumentException("The jitter must be between 0 and 1.");
+		this.initialDelayMillis = initialDelayMillis;
+		this.maxDelayMillis = Math.max(initialDelayMillis, maxDelayMillis);
+		this.jitter = jitter;
+		this.maxAttempts = maxAttempts;
+	}
+
+	/**
+	 * create a policy with the configured delays
+	 *
+	 * @return the new policy
+	 */
+	public static ReconnectPolicy create() {
+		long initialDelay = ConfigurationContext.getLong(CLIENT_RECONNECT_DELAY, 100);
+		long maxDelay = ConfigurationContext.getLong(CLIENT_RECONNECT_MAX_DELAY, 30000);
+		double jitter = Double.valueOf(ConfigurationContext.get(CLIENT_RECONNECT_JITTER, "1.0"));
+		int maxAttempts = ConfigurationContext.getInt(CLIENT_RECONNECT_ATTEMPTS, 0);
+		return new ReconnectPolicy(initialDelay, maxDelay, jitter, maxAttempts);
+	}
+
+	/**
+	 * connect, waiting before each retry
+	 *
+	 * @param <T>       the type of the connection
+	 * @param connector opens the connection
+	 * @return the connection of the first successful attempt
+	 * @throws IOException          the failure of the last attempt, if all
+	 *                              attempts failed
+	 * @throws InterruptedException
+	 */
+	public <T> T connect(Connector<T> connector) throws IOException, InterruptedException {
+		for (int attempt = 0;; attempt++) {
+			try {
+				return connector.connect();
+			} catch (IOException e) {
+				if (maxAttempts > 0 && attempt + 1 >= maxAttempts)
+					throw e;
+
+				long delay = getDelayMillis(attempt);
+				logger.info("Connecting failed: " + e.getMessage() + ", retrying in " + delay + " ms...");
+				Thread.sleep(delay);
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return the random part of the delay, between 0 and 1
+	 */
+	public double getJitter() {
+		return jitter;
+	}
+
+	/**
+	 *
+	 * @param attempt the number of the failed attempt, starting at 0
+	 * @return the time to wait before the next attempt
+	 */
+	public long getDelayMillis(int attempt) {
+		// the shift is limited, so the delay cannot overflow
+		long delay = Math.min(maxDelayMillis, initialDelayMillis << Math.min(attempt, 30));
+		long randomPart = (long) (delay * jitter);
+		if (randomPart == 0)
+			return delay;
+		return delay - randomPart + ThreadLocalRandom.current().nextLong(randomPart + 1);
+	}
+
+}
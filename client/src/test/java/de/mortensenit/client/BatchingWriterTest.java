@@ -0,0 +1,116 @@
+package de.mortensenit.client;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class BatchingWriterTest {
+
+	@Test
+	public void testCoalescesQueuedFrames() throws Exception {
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+		// a long linger time makes sure the frames are written in full batches
+		BatchingWriter writer = new BatchingWriter(written, 100, 1000000, 1000);
+		for (int i = 0; i < 1000; i++) {
+			byte[] frame = (i + "\n").getBytes(StandardCharsets.UTF_8);
+			expected.write(frame);
+			writer.send(frame);
+		}
+		writer.close();
+
+		assertArrayEquals(expected.toByteArray(), written.toByteArray());
+		assertEquals(1000, writer.getMessages());
+		assertEquals(expected.size(), writer.getBytes());
+		// no batch exceeds the batch size and only the last one is not filled up
+		assertTrue(writer.getWrites() <= expected.size() / 96 + 1, "writes: " + writer.getWrites());
+	}
+
+	@Test
+	public void testWithoutBatching() throws Exception {
+		ByteArrayOutputStream written = new ByteArrayOutputStream();
+		BatchingWriter writer = new BatchingWriter(written, 0, 0, 16);
+		for (int i = 0; i < 100; i++) {
+			writer.send(new byte[] { '.', '\n' });
+		}
+		writer.close();
+
+		assertEquals(100, writer.getMessages());
+		assertEquals(100, writer.getWrites());
+		assertEquals(200, written.size());
+	}
+
+	@Test
+	public void testSendBlocksWhileQueueIsFull() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		OutputStream blocked = new ByteArrayOutputStream() {
+			@Override
+			public synchronized void write(byte[] b, int off, int len) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				super.write(b, off, len);
+			}
+		};
+
+		BatchingWriter writer = new BatchingWriter(blocked, 0, 0, 2);
+		Thread sender = Thread.ofVirtual().start(() -> {
+			try {
+				// one frame is taken by the writer, two are queued, the fourth waits
+				for (int i = 0; i < 4; i++) {
+					writer.send(new byte[] { '.' });
+				}
+			} catch (IOException | InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+
+		assertFalse(sender.join(Duration.ofMillis(200)));
+		release.countDown();
+		assertTrue(sender.join(Duration.ofSeconds(5)));
+		writer.close();
+		assertEquals(4, writer.getMessages());
+	}
+
+	@Test
+	public void testWriteFailureIsReported() throws Exception {
+		OutputStream broken = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("Broken pipe");
+			}
+		};
+
+		BatchingWriter writer = new BatchingWriter(broken, 100, 0, 16);
+		// the failure is reported by the first send after the writer failed
+		assertThrows(IOException.class, () -> {
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (System.nanoTime() < deadline) {
+				writer.send(new byte[] { '.' });
+				Thread.sleep(10);
+			}
+		});
+		assertThrows(IOException.class, writer::close);
+	}
+
+}
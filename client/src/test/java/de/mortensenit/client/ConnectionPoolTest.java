@@ -0,0 +1,248 @@
+package de.mortensenit.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.mortensenit.model.Constants;
+import de.mortensenit.model.codec.FrameCodec;
+import de.mortensenit.model.server.Greeting;
+import de.mortensenit.model.server.GreetingMarshaller;
+
+/**
+ * Runs against a minimal server, that answers every request with its id.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class ConnectionPoolTest {
+
+	private ServerSocket serverSocket;
+
+	private final AtomicInteger accepted = new AtomicInteger();
+
+	private final AtomicInteger requests = new AtomicInteger();
+
+	private volatile boolean answering = true;
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		Thread.ofVirtual().start(this::serve);
+	}
+
+	@AfterEach
+	public void tearDown() throws IOException {
+		serverSocket.close();
+	}
+
+	@Test
+	public void testReturnedConnectionIsReused() throws Exception {
+		try (ConnectionPool pool = createPool(0, 4, 60000, 60000, 1000)) {
+			MultiplexedConnection first = pool.borrow();
+			for (int i = 0; i < 100; i++) {
+				MultiplexedConnection connection = pool.borrow();
+				assertEquals(2, pool.getBorrowedConnections());
+				assertTrue(connection.send(new Greeting()).get(5, TimeUnit.SECONDS).getId() > 0);
+				pool.release(connection);
+			}
+			pool.release(first);
+
+			assertEquals(2, pool.getCreatedConnections());
+			assertEquals(2, accepted.get());
+			assertEquals(101, pool.getBorrowCount());
+			assertEquals(0, pool.getBorrowedConnections());
+			assertEquals(2, pool.getIdleConnections());
+			assertEquals(101, pool.getWaitTime().getCount());
+		}
+	}
+
+	@Test
+	public void testBorrowWaitsWhileAllConnectionsAreBorrowed() throws Exception {
+		try (ConnectionPool pool = createPool(0, 2, 60000, 60000, 200)) {
+			MultiplexedConnection first = pool.borrow();
+			MultiplexedConnection second = pool.borrow();
+			assertNotSame(first, second);
+			assertThrows(IOException.class, pool::borrow);
+
+			Thread.ofVirtual().start(() -> {
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				pool.release(second);
+			});
+			assertSame(second, pool.borrow());
+			assertTrue(pool.getWaitTime().getMax() >= TimeUnit.MILLISECONDS.toNanos(20));
+			assertEquals(2, pool.getCreatedConnections());
+		}
+	}
+
+	@Test
+	public void testFailedConnectionIsNotPooled() throws Exception {
+		try (ConnectionPool pool = createPool(0, 2, 60000, 60000, 1000)) {
+			MultiplexedConnection connection = pool.borrow();
+			connection.close();
+			pool.release(connection);
+
+			assertEquals(0, pool.getIdleConnections());
+			assertEquals(1, pool.getEvictedConnections());
+			assertNotSame(connection, pool.borrow());
+		}
+	}
+
+	@Test
+	public void testMinSizeIsKeptOpen() throws Exception {
+		try (ConnectionPool pool = createPool(2, 4, 60000, 50, 1000)) {
+			waitFor(() -> pool.getIdleConnections() == 2);
+			assertEquals(2, pool.getCreatedConnections());
+		}
+	}
+
+	@Test
+	public void testIdleConnectionsAreEvictedDownToMinSize() throws Exception {
+		try (ConnectionPool pool = createPool(1, 4, 100, 50, 1000)) {
+			MultiplexedConnection[] connections = new MultiplexedConnection[3];
+			for (int i = 0; i < connections.length; i++) {
+				connections[i] = pool.borrow();
+			}
+			for (MultiplexedConnection connection : connections) {
+				pool.release(connection);
+			}
+
+			// the first maintenance may have opened another connection meanwhile
+			waitFor(() -> pool.getEvictedConnections() == pool.getCreatedConnections() - 1);
+			assertTrue(pool.getCreatedConnections() >= 3);
+			assertEquals(1, pool.getIdleConnections());
+			assertEquals(0, pool.getBorrowedConnections());
+		}
+	}
+
+	@Test
+	public void testKeepAliveDiscardsUnresponsiveConnection() throws Exception {
+		try (ConnectionPool pool = createPool(0, 2, 60000, 50, 200)) {
+			MultiplexedConnection connection = pool.borrow();
+			pool.release(connection);
+
+			// answered keep-alives keep the connection in the pool
+			waitFor(() -> requests.get() >= 2);
+			assertEquals(1, pool.getIdleConnections());
+			assertEquals(0, pool.getEvictedConnections());
+
+			answering = false;
+			waitFor(() -> pool.getEvictedConnections() == 1);
+			assertEquals(0, pool.getIdleConnections());
+			assertFalse(connection.isOpen());
+		}
+	}
+
+	@Test
+	public void testMaintenanceDoesNotExceedMaxSize() throws Exception {
+		// the maintenance checks the only connection every few milliseconds, while
+		// borrowers are always waiting for it
+		try (ConnectionPool pool = createPool(1, 1, 60000, 2, 1000)) {
+			waitFor(() -> pool.getIdleConnections() == 1);
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500);
+			List<Thread> borrowers = new ArrayList<>();
+			AtomicInteger failures = new AtomicInteger();
+			for (int i = 0; i < 4; i++) {
+				borrowers.add(Thread.ofVirtual().start(() -> {
+					try {
+						while (System.nanoTime() < deadline) {
+							MultiplexedConnection connection = pool.borrow();
+							if (pool.getBorrowedConnections() != 1)
+								failures.incrementAndGet();
+							pool.release(connection);
+						}
+					} catch (IOException | InterruptedException e) {
+						failures.incrementAndGet();
+					}
+				}));
+			}
+			for (Thread borrower : borrowers) {
+				borrower.join();
+			}
+
+			assertEquals(0, failures.get());
+			assertEquals(1, pool.getCreatedConnections());
+			assertEquals(1, accepted.get());
+			assertTrue(requests.get() > 0);
+		}
+	}
+
+	private ConnectionPool createPool(int minSize, int maxSize, long maxIdleMillis, long keepAliveMillis,
+			long borrowTimeoutMillis) {
+		ClientConnectionFactory factory = new ClientConnectionFactory(
+				serverSocket.getInetAddress().getHostAddress(), serverSocket.getLocalPort(), null, null, null,
+				Constants.FRAMING_EPP);
+		return new ConnectionPool(factory, minSize, maxSize, maxIdleMillis, keepAliveMillis, borrowTimeoutMillis);
+	}
+
+	private void waitFor(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.nanoTime() < deadline, "condition not met in time");
+			Thread.sleep(10);
+		}
+	}
+
+	/**
+	 * accept connections until the server socket is closed
+	 */
+	private void serve() {
+		try {
+			while (true) {
+				Socket socket = serverSocket.accept();
+				accepted.incrementAndGet();
+				Thread.ofVirtual().start(() -> answer(socket));
+			}
+		} catch (IOException e) {
+			// server socket closed
+		}
+	}
+
+	/**
+	 * send the greeting, then answer each request with its id while answering
+	 */
+	private void answer(Socket socket) {
+		FrameCodec codec = FrameCodec.create(Constants.FRAMING_EPP, FrameCodec.DEFAULT_MAX_FRAME_SIZE);
+		try (socket) {
+			OutputStream os = socket.getOutputStream();
+			os.write(codec.encode(GreetingMarshaller.marshallToBytes(new Greeting())));
+
+			while (codec.read(socket.getInputStream()) >= 0) {
+				codec.decode(frame -> {
+					Greeting request = GreetingMarshaller.unmarshall(frame);
+					requests.incrementAndGet();
+					if (answering) {
+						Greeting response = new Greeting();
+						response.setId(request.getId());
+						os.write(codec.encode(GreetingMarshaller.marshallToBytes(response)));
+					}
+				});
+			}
+		} catch (IOException e) {
+			// client closed the connection
+		}
+	}
+
+}
@@ -0,0 +1,147 @@
+package de.mortensenit.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.mortensenit.model.Constants;
+import de.mortensenit.model.buffer.ByteBufferPool;
+import de.mortensenit.model.codec.FrameCodec;
+import de.mortensenit.model.server.Greeting;
+import de.mortensenit.model.server.GreetingMarshaller;
+
+/**
+ * Runs against a minimal server, that answers a number of requests at once in
+ * reverse order.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class MultiplexedConnectionTest {
+
+	private ServerSocket serverSocket;
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+	}
+
+	@AfterEach
+	public void tearDown() throws IOException, InterruptedException {
+		serverSocket.close();
+		assertNoLeaks();
+	}
+
+	@Test
+	public void testResponsesInAnyOrderCompleteTheirRequests() throws Exception {
+		int requests = 100;
+		serve(requests);
+
+		try (MultiplexedConnection connection = connect()) {
+			assertEquals(0, connection.getServerGreeting().get(5, TimeUnit.SECONDS).getId());
+
+			List<CompletableFuture<Greeting>> responses = new ArrayList<>();
+			List<Greeting> sent = new ArrayList<>();
+			for (int i = 0; i < requests; i++) {
+				Greeting request = new Greeting();
+				request.setName("request " + i);
+				responses.add(connection.send(request));
+				sent.add(request);
+			}
+
+			for (int i = 0; i < requests; i++) {
+				Greeting response = responses.get(i).get(5, TimeUnit.SECONDS);
+				assertEquals(sent.get(i).getId(), response.getId());
+				assertEquals("response " + sent.get(i).getId(), response.getName());
+			}
+			assertEquals(0, connection.getPendingRequests());
+		}
+	}
+
+	@Test
+	public void testOutstandingRequestsFailWhenTheServerCloses() throws Exception {
+		// the server closes the connection after the greeting and one request
+		serve(0);
+
+		try (MultiplexedConnection connection = connect()) {
+			connection.getServerGreeting().get(5, TimeUnit.SECONDS);
+			CompletableFuture<Greeting> response = connection.send(new Greeting());
+
+			ExecutionException e = assertThrows(ExecutionException.class, () -> response.get(5, TimeUnit.SECONDS));
+			assertTrue(e.getCause() instanceof IOException);
+			assertFalse(connection.isOpen());
+			assertTrue(connection.getCloseFuture().isDone());
+			assertTrue(connection.send(new Greeting()).isCompletedExceptionally());
+		}
+	}
+
+	private MultiplexedConnection connect() throws IOException {
+		Socket socket = new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort());
+		return new MultiplexedConnection(socket, Constants.FRAMING_EPP);
+	}
+
+	/**
+	 * accept one connection, send the greeting, collect the given number of
+	 * requests and answer them in reverse order
+	 */
+	private void serve(int requests) {
+		Thread.ofVirtual().start(() -> {
+			FrameCodec codec = FrameCodec.create(Constants.FRAMING_EPP, FrameCodec.DEFAULT_MAX_FRAME_SIZE);
+			try (Socket socket = serverSocket.accept()) {
+				OutputStream os = socket.getOutputStream();
+				os.write(codec.encode(GreetingMarshaller.marshallToBytes(new Greeting())));
+
+				List<Greeting> received = new ArrayList<>();
+				while (received.size() < Math.max(1, requests)) {
+					if (codec.read(socket.getInputStream()) < 0)
+						return;
+					codec.decode(frame -> received.add(GreetingMarshaller.unmarshall(frame)));
+				}
+				if (requests == 0)
+					return;
+
+				Collections.reverse(received);
+				for (Greeting request : received) {
+					Greeting response = new Greeting();
+					response.setId(request.getId());
+					response.setName("response " + request.getId());
+					os.write(codec.encode(GreetingMarshaller.marshallToBytes(response)));
+				}
+				os.flush();
+				socket.getInputStream().read();
+			} catch (IOException e) {
+				// client closed the connection
+			} finally {
+				codec.release();
+			}
+		});
+	}
+
+	/**
+	 * wait until both sides released the buffers of their connection
+	 */
+	private static void assertNoLeaks() throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!ByteBufferPool.getDefault().getLeaks().isEmpty() && System.currentTimeMillis() < deadline)
+			Thread.sleep(10);
+		assertEquals(Collections.emptyList(), ByteBufferPool.getDefault().getLeaks());
+	}
+
+}
@@ -0,0 +1,80 @@
+package de.mortensenit.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class ReconnectPolicyTest {
+
+	@Test
+	public void testDelayDoublesUpToTheMaximum() {
+		ReconnectPolicy policy = new ReconnectPolicy(100, 1000, 0, 0);
+		assertEquals(100, policy.getDelayMillis(0));
+		assertEquals(200, policy.getDelayMillis(1));
+		assertEquals(400, policy.getDelayMillis(2));
+		assertEquals(800, policy.getDelayMillis(3));
+		assertEquals(1000, policy.getDelayMillis(4));
+		assertEquals(1000, policy.getDelayMillis(100));
+	}
+
+	@Test
+	public void testJitterSpreadsTheDelay() {
+		ReconnectPolicy policy = new ReconnectPolicy(100, 1000, 1.0, 0);
+		Set<Long> delays = new HashSet<>();
+		for (int i = 0; i < 1000; i++) {
+			long delay = policy.getDelayMillis(3);
+			assertTrue(delay >= 0 && delay <= 800, "delay: " + delay);
+			delays.add(delay);
+		}
+		assertTrue(delays.size() > 100, "distinct delays: " + delays.size());
+
+		ReconnectPolicy halfJitter = new ReconnectPolicy(100, 1000, 0.5, 0);
+		for (int i = 0; i < 1000; i++) {
+			long delay = halfJitter.getDelayMillis(3);
+			assertTrue(delay >= 400 && delay <= 800, "delay: " + delay);
+		}
+	}
+
+	@Test
+	public void testRetriesUntilConnected() throws Exception {
+		AtomicInteger attempts = new AtomicInteger();
+		String connection = new ReconnectPolicy(1, 10, 1.0, 0).connect(() -> {
+			if (attempts.incrementAndGet() < 4)
+				throw new IOException("Connection refused");
+			return "connected";
+		});
+		assertEquals("connected", connection);
+		assertEquals(4, attempts.get());
+	}
+
+	@Test
+	public void testGivesUpAfterMaxAttempts() {
+		AtomicInteger attempts = new AtomicInteger();
+		IOException refused = new IOException("Connection refused");
+		IOException e = assertThrows(IOException.class, () -> new ReconnectPolicy(1, 10, 0, 3).connect(() -> {
+			attempts.incrementAndGet();
+			throw refused;
+		}));
+		assertSame(refused, e);
+		assertEquals(3, attempts.get());
+	}
+
+	@Test
+	public void testJitterOutOfRange() {
+		assertThrows(IllegalArgumentException.class, () -> new ReconnectPolicy(100, 1000, 1.5, 0));
+	}
+
+}
@@ -0,0 +1,100 @@
+package de.mortensenit.controller;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.net.ssl.SSLSession;
+
+/**
+ * Counts full and abbreviated TLS handshakes. An abbreviated handshake resumes
+ * a cached session or session ticket and skips the expensive key exchange and
+ * certificate validation.<br />
+ * <br />
+ * JSSE does not tell whether a session was resumed. A resumed session keeps the
+ * creation time of the original session, so it was created before the
+ * handshake started, while a full handshake creates a new session.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class HandshakeStatistics {
+
+	private final LongAdder fullHandshakes = new LongAdder();
+
+	private final LongAdder abbreviatedHandshakes = new LongAdder();
+
+	private final LongAdder fullHandshakeNanos = new LongAdder();
+
+	private final LongAdder abbreviatedHandshakeNanos = new LongAdder();
+
+	/**
+	 * count a finished handshake
+	 *
+	 * @param session        the session negotiated by the handshake
+	 * @param handshakeStart the time the handshake was started, in milliseconds
+	 *                       since the epoch
+	 * @param handshakeNanos the duration of the handshake
+	 * @return true if the session was resumed
+	 */
+	public boolean record(SSLSession session, long handshakeStart, long handshakeNanos) {
+		boolean resumed = isResumed(session, handshakeStart);
+		if (resumed) {
+			abbreviatedHandshakes.increment();
+			abbreviatedHandshakeNanos.add(handshakeNanos);
+		} else {
+			fullHandshakes.increment();
+			fullHandshakeNanos.add(handshakeNanos);
+		}
+		return resumed;
+	}
+
+	/**
+	 *
+	 * @param session        the session negotiated by the handshake
+	 * @param handshakeStart the time the handshake was started, in milliseconds
+	 *                       since the epoch
+	 * @return true if the session existed before the handshake started
+	 */
+	public static boolean isResumed(SSLSession session, long handshakeStart) {
+		return session.getCreationTime() < handshakeStart;
+	}
+
+	public long getFullHandshakes() {
+		return fullHandshakes.sum();
+	}
+
+	public long getAbbreviatedHandshakes() {
+		return abbreviatedHandshakes.sum();
+	}
+
+	/**
+	 *
+	 * @return the summed up duration of all full handshakes
+	 */
+	public long getFullHandshakeNanos() {
+		return fullHandshakeNanos.sum();
+	}
+
+	/**
+	 *
+	 * @return the summed up duration of all abbreviated handshakes
+	 */
+	public long getAbbreviatedHandshakeNanos() {
+		return abbreviatedHandshakeNanos.sum();
+	}
+
+	/**
+	 * set all counters to zero
+	 */
+	public void reset() {
+		fullHandshakes.reset();
+		abbreviatedHandshakes.reset();
+		fullHandshakeNanos.reset();
+		abbreviatedHandshakeNanos.reset();
+	}
+
+	@Override
+	public String toString() {
+		return "full handshakes: " + getFullHandshakes() + ", abbreviated handshakes: " + getAbbreviatedHandshakes();
+	}
+
+}
@@ -0,0 +1,229 @@
+package de.mortensenit.controller;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Keeps initialized SSLContexts, so the keystore and truststore are read and
+ * parsed only once. Reusing the same context also keeps its session cache, so
+ * clients and servers are able to resume sessions.<br />
+ * <br />
+ * Contexts are keyed by their role, the store paths and a fingerprint of the
+ * keystore password. The modification times of the store files are checked on
+ * every lookup, so a replaced keystore is loaded again.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class SSLContextCache {
+
+	private Logger logger = LogManager.getLogger();
+
+	/**
+	 * creates a new context on a cache miss
+	 */
+	@FunctionalInterface
+	public interface ContextLoader {
+		SSLContext load() throws Exception;
+	}
+
+	/**
+	 * identifies the stores a context was created from
+	 */
+	private static final class ContextKey {
+		final String role;
+		final String keyStorePath;
+		final String trustStorePath;
+		final String passwordFingerprint;
+
+		ContextKey(String role, String keyStorePath, String trustStorePath, String passwordFingerprint) {
+			this.role = role;
+			this.keyStorePath = keyStorePath;
+			this.trustStorePath = trustStorePath;
+			this.passwordFingerprint = passwordFingerprint;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof ContextKey))
+				return false;
+			ContextKey other = (ContextKey) obj;
+			return role.equals(other.role) && Objects.equals(keyStorePath, other.keyStorePath)
+					&& Objects.equals(trustStorePath, other.trustStorePath)
+					&& Objects.equals(passwordFingerprint, other.passwordFingerprint);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(role, keyStorePath, trustStorePath, passwordFingerprint);
+		}
+	}
+
+	/**
+	 * a context together with the modification times of its store files
+	 */
+	private static final class CachedContext {
+		final SSLContext sslContext;
+		final long keyStoreModified;
+		final long trustStoreModified;
+
+		CachedContext(SSLContext sslContext, long keyStoreModified, long trustStoreModified) {
+			this.sslContext = sslContext;
+			this.keyStoreModified = keyStoreModified;
+			this.trustStoreModified = trustStoreModified;
+		}
+	}
+
+	private final Map<ContextKey, CachedContext> contexts = new ConcurrentHashMap<>();
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Get the cached context for the given stores or create a new one. Concurrent
+	 * lookups of the same stores create the context only once.
+	 *
+	 * @param role               client or server, contexts of different roles are
+	 *                           never shared
+	 * @param keyStoreFileName   the keystore or null
+	 * @param keyStorePassword   the password of the keystore or null
+	 * @param trustStoreFileName the truststore or null
+	 * @param loader             creates the context on a miss
+	 * @return the context or null if it could not be created
+	 */
+	public SSLContext get(String role, String keyStoreFileName, String keyStorePassword, String trustStoreFileName,
+			ContextLoader loader) {
+
+		ContextKey key = new ContextKey(role, normalize(keyStoreFileName), normalize(trustStoreFileName),
+				fingerprint(keyStorePassword));
+		long keyStoreModified = lastModified(key.keyStorePath);
+		long trustStoreModified = lastModified(key.trustStorePath);
+
+		CachedContext cached = contexts.get(key);
+		if (isCurrent(cached, keyStoreModified, trustStoreModified)) {
+			hits.increment();
+			return cached.sslContext;
+		}
+
+		try {
+			cached = contexts.compute(key, (k, current) -> {
+				if (isCurrent(current, keyStoreModified, trustStoreModified)) {
+					hits.increment();
+					return current;
+				}
+				misses.increment();
+				try {
+					logger.info("Loading " + role + " TLS context from keystore " + k.keyStorePath
+							+ " and truststore " + k.trustStorePath);
+					return new CachedContext(loader.load(), keyStoreModified, trustStoreModified);
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+			});
+			return cached.sslContext;
+		} catch (IllegalStateException e) {
+			logger.error("Could not initialize the TLS context!", e.getCause());
+			return null;
+		}
+	}
+
+	/**
+	 * drop all cached contexts, they are created again on the next lookup
+	 */
+	public void invalidate() {
+		contexts.clear();
+	}
+
+	/**
+	 *
+	 * @return the number of cached contexts
+	 */
+	public int size() {
+		return contexts.size();
+	}
+
+	/**
+	 *
+	 * @return the number of lookups served from the cache
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 *
+	 * @return the number of lookups that created a new context
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	private static boolean isCurrent(CachedContext cached, long keyStoreModified, long trustStoreModified) {
+		return cached != null && cached.keyStoreModified == keyStoreModified
+				&& cached.trustStoreModified == trustStoreModified;
+	}
+
+	/**
+	 *
+	 * @param fileName a relative or absolute file name or null
+	 * @return the absolute path or null
+	 */
+	private static String normalize(String fileName) {
+		if (fileName == null)
+			return null;
+		return Paths.get(fileName).toAbsolutePath().normalize().toString();
+	}
+
+	/**
+	 *
+	 * @param path an absolute path or null
+	 * @return the modification time in milliseconds or -1 if there is no such file
+	 */
+	private static long lastModified(String path) {
+		if (path == null)
+			return -1;
+		try {
+			Path file = Paths.get(path);
+			return Files.getLastModifiedTime(file).toMillis();
+		} catch (IOException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * The password itself is not kept in the cache, only its hash.
+	 *
+	 * @param password the keystore password or null
+	 * @return the base64 encoded SHA-256 hash of the password or null
+	 */
+	private static String fingerprint(String password) {
+		if (password == null)
+			return null;
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return Base64.getEncoder().encodeToString(digest.digest(password.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			// every java platform supports SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -9,13 +9,12 @@ import javax.net.SocketFactory;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLServerSocketFactory;
+import javax.net.ssl.SSLSessionContext;
 import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.TrustManagerFactory;
 import javax.net.ssl.X509TrustManager;
 
-import org.apache.logging.log4j.LogManager;
-
 import de.mortensenit.model.Constants;
 
 /**
@@ -34,6 +33,24 @@ import de.mortensenit.model.Constants;
 // TODO: PKCS12 konfigurierbar?
 public abstract class TLSController {
 
+	private static final String ROLE_CLIENT = "client";
+
+	private static final String ROLE_SERVER = "server";
+
+	/**
+	 * system property of the JDK enabling stateless session tickets on the server
+	 */
+	private static final String SERVER_SESSION_TICKETS_PROPERTY = "jdk.tls.server.enableSessionTicketExtension";
+
+	/**
+	 * system property of the JDK enabling stateless session tickets on the client
+	 */
+	private static final String CLIENT_SESSION_TICKETS_PROPERTY = "jdk.tls.client.enableSessionTicketExtension";
+
+	private static final SSLContextCache contextCache = new SSLContextCache();
+
+	private static final HandshakeStatistics handshakeStatistics = new HandshakeStatistics();
+
 	/**
 	 * Generate a TLS socket factory using the configured keystore and truststore.
 	 * This is used by clients.
@@ -48,53 +65,29 @@ public abstract class TLSController {
 	public static SocketFactory getTlsSocketFactory(String keyStoreFileName, String keyStorePassword,
 			String trustStoreFileName) {
 
-		SSLSocketFactory socketFactory = null;
-		SSLContext sslContext = null;
-
-		try {
-
-			sslContext = SSLContext.getInstance(Constants.ENCRYPTION_MODE_TLS);
-
-			// set up key manager to authenticate against the server
-			char[] keyStorePassphrase = keyStorePassword != null ? keyStorePassword.toCharArray() : null;
-
-			KeyManagerFactory keyManagerFactory = KeyManagerFactory
-					.getInstance(Constants.KEY_MANAGER_ALGORITHM_SUNX509);
-			KeyStore keyStore = KeyStore.getInstance(Constants.JAVA_KEYSTORE);
-
-			FileInputStream fis = null;
-			if (keyStoreFileName != null) {
-				fis = new FileInputStream(keyStoreFileName);
-			}
-
-			keyStore.load(fis, keyStorePassphrase);
-			keyManagerFactory.init(keyStore, keyStorePassphrase);
-
-			fis = null;
-			if (trustStoreFileName != null) {
-				// set up trust manager to do server validation
-				TrustManagerFactory trustManagerFactory = TrustManagerFactory
-						.getInstance(Constants.KEY_MANAGER_ALGORITHM_SUNX509);
-				KeyStore trustStore = KeyStore.getInstance(Constants.JAVA_KEYSTORE);
-
-				fis = new FileInputStream(trustStoreFileName);
-
-				// trust stores should not have passwords
-				trustStore.load(fis, null);
-				trustManagerFactory.init(trustStore);
-
-				sslContext.init(keyManagerFactory.getKeyManagers(), trustManagerFactory.getTrustManagers(), null);
-			} else {
-				sslContext.init(keyManagerFactory.getKeyManagers(), getNoopTrustManager(), null);
-			}
+		SSLContext sslContext = getTlsClientContext(keyStoreFileName, keyStorePassword, trustStoreFileName);
+		if (sslContext == null)
+			return null;
 
-			socketFactory = sslContext.getSocketFactory();
-			return socketFactory;
+		SSLSocketFactory socketFactory = sslContext.getSocketFactory();
+		return socketFactory;
+	}
 
-		} catch (Exception e) {
-			LogManager.getLogger().error(e);
-			return null;
-		}
+	/**
+	 * Get the initialized client side TLS context for the given stores. The
+	 * context is created once and then taken from the {@link SSLContextCache}.
+	 * 
+	 * @param keyStoreFileName   the clientside keystore with the public and private
+	 *                           keys
+	 * @param keyStorePassword   the password for accessing the keystore
+	 * @param trustStoreFileName the name of the trustStore to use for server
+	 *                           validation or null to trust any server
+	 * @return the ssl context or null if it failed to initialize
+	 */
+	public static SSLContext getTlsClientContext(String keyStoreFileName, String keyStorePassword,
+			String trustStoreFileName) {
+		return contextCache.get(ROLE_CLIENT, keyStoreFileName, keyStorePassword, trustStoreFileName,
+				() -> createTlsClientContext(keyStoreFileName, keyStorePassword, trustStoreFileName));
 	}
 
 	/**
@@ -111,49 +104,170 @@ public abstract class TLSController {
 	public static ServerSocketFactory getTlsServerSocketFactory(String keyStoreFileName, String keyStorePassword,
 			String trustStoreFileName) {
 
-		SSLServerSocketFactory serverSocketFactory = null;
-		SSLContext sslContext = null;
+		SSLContext sslContext = getTlsServerContext(keyStoreFileName, keyStorePassword, trustStoreFileName);
+		if (sslContext == null)
+			return null;
+
+		SSLServerSocketFactory serverSocketFactory = sslContext.getServerSocketFactory();
+		return serverSocketFactory;
+	}
+
+	/**
+	 * Get the initialized server side TLS context for the given stores. This is
+	 * used by servers that do not work with server sockets, but create their own
+	 * SSLEngine instances for non-blocking channels. The context is created once
+	 * and then taken from the {@link SSLContextCache}.
+	 * 
+	 * @param keyStoreFileName   the serverside keystore with the public and private
+	 *                           keys
+	 * @param keyStorePassword   the password for accessing the keystore
+	 * @param trustStoreFileName the serverside truststore for the public keys of
+	 *                           the clients to trust
+	 * @return the ssl context or null if it failed to initialize
+	 */
+	public static SSLContext getTlsServerContext(String keyStoreFileName, String keyStorePassword,
+			String trustStoreFileName) {
+		return contextCache.get(ROLE_SERVER, keyStoreFileName, keyStorePassword, trustStoreFileName,
+				() -> createTlsServerContext(keyStoreFileName, keyStorePassword, trustStoreFileName));
+	}
+
+	/**
+	 * 
+	 * @return the cache of all client and server contexts, containing the hit and
+	 *         miss counts
+	 */
+	public static SSLContextCache getContextCache() {
+		return contextCache;
+	}
 
-		try {
+	/**
+	 * 
+	 * @return the counts of full and abbreviated handshakes of this JVM
+	 */
+	public static HandshakeStatistics getHandshakeStatistics() {
+		return handshakeStatistics;
+	}
 
-			sslContext = SSLContext.getInstance(Constants.ENCRYPTION_MODE_TLS);
+	/**
+	 * Tune the session cache of a client or server context. Resumed sessions skip
+	 * the key exchange and certificate validation of a full handshake.
+	 * 
+	 * @param sessionContext the client or server session context
+	 * @param cacheSize      the maximum number of cached sessions, 0 for
+	 *                       unlimited or a negative value to keep the JDK default
+	 * @param timeout        the session lifetime in seconds, 0 for unlimited or a
+	 *                       negative value to keep the JDK default
+	 */
+	public static void configureSessionContext(SSLSessionContext sessionContext, int cacheSize, int timeout) {
+		if (cacheSize >= 0)
+			sessionContext.setSessionCacheSize(cacheSize);
+		if (timeout >= 0)
+			sessionContext.setSessionTimeout(timeout);
+	}
 
-			// set up key manager to do server authentication against the client
-			char[] passphrase = keyStorePassword != null ? keyStorePassword.toCharArray() : null;
+	/**
+	 * Enable or disable stateless session tickets (RFC 5077, RFC 8446). With
+	 * tickets the server does not need to keep the session state. The JDK reads
+	 * these settings once, so this must be called before the first TLS context
+	 * is created.
+	 * 
+	 * @param server  true for the server side, false for the client side
+	 * @param enabled true to enable session tickets
+	 */
+	public static void setSessionTicketsEnabled(boolean server, boolean enabled) {
+		System.setProperty(server ? SERVER_SESSION_TICKETS_PROPERTY : CLIENT_SESSION_TICKETS_PROPERTY,
+				String.valueOf(enabled));
+	}
 
-			KeyManagerFactory keyManagerFactory = KeyManagerFactory
-					.getInstance(Constants.KEY_MANAGER_ALGORITHM_SUNX509);
-			KeyStore keyStore = KeyStore.getInstance(Constants.JAVA_KEYSTORE);
+	/**
+	 * drop all cached contexts, e.g. after the stores were replaced in place
+	 */
+	public static void invalidateContexts() {
+		contextCache.invalidate();
+	}
 
-			FileInputStream fis = null;
-			if (keyStoreFileName != null) {
-				fis = new FileInputStream(keyStoreFileName);
-			}
+	/**
+	 * 
+	 * @return a new client side context
+	 * @throws Exception if a store could not be read or the context could not be
+	 *                   initialized
+	 */
+	private static SSLContext createTlsClientContext(String keyStoreFileName, String keyStorePassword,
+			String trustStoreFileName) throws Exception {
 
-			keyStore.load(fis, passphrase);
-			keyManagerFactory.init(keyStore, passphrase);
+		SSLContext sslContext = SSLContext.getInstance(Constants.ENCRYPTION_MODE_TLS);
 
-			// set up trust manager to do client validation
+		// set up key manager to authenticate against the server
+		char[] keyStorePassphrase = keyStorePassword != null ? keyStorePassword.toCharArray() : null;
+
+		KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(Constants.KEY_MANAGER_ALGORITHM_SUNX509);
+		KeyStore keyStore = loadKeyStore(keyStoreFileName, keyStorePassphrase);
+		keyManagerFactory.init(keyStore, keyStorePassphrase);
+
+		if (trustStoreFileName != null) {
+			// set up trust manager to do server validation
 			TrustManagerFactory trustManagerFactory = TrustManagerFactory
 					.getInstance(Constants.KEY_MANAGER_ALGORITHM_SUNX509);
-			KeyStore trustStore = KeyStore.getInstance(Constants.JAVA_KEYSTORE);
-
-			fis = null;
-			if (trustStoreFileName != null) {
-				fis = new FileInputStream(trustStoreFileName);
-			}
 
-			trustStore.load(fis, null);
+			// trust stores should not have passwords
+			KeyStore trustStore = loadKeyStore(trustStoreFileName, null);
 			trustManagerFactory.init(trustStore);
 
-			// initialize context and return socket factory
 			sslContext.init(keyManagerFactory.getKeyManagers(), trustManagerFactory.getTrustManagers(), null);
-			serverSocketFactory = sslContext.getServerSocketFactory();
-			return serverSocketFactory;
-		} catch (Exception e) {
-			LogManager.getLogger().error(e);
-			return null;
+		} else {
+			sslContext.init(keyManagerFactory.getKeyManagers(), getNoopTrustManager(), null);
+		}
+
+		return sslContext;
+	}
+
+	/**
+	 * 
+	 * @return a new server side context
+	 * @throws Exception if a store could not be read or the context could not be
+	 *                   initialized
+	 */
+	private static SSLContext createTlsServerContext(String keyStoreFileName, String keyStorePassword,
+			String trustStoreFileName) throws Exception {
+
+		SSLContext sslContext = SSLContext.getInstance(Constants.ENCRYPTION_MODE_TLS);
+
+		// set up key manager to do server authentication against the client
+		char[] passphrase = keyStorePassword != null ? keyStorePassword.toCharArray() : null;
+
+		KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(Constants.KEY_MANAGER_ALGORITHM_SUNX509);
+		KeyStore keyStore = loadKeyStore(keyStoreFileName, passphrase);
+		keyManagerFactory.init(keyStore, passphrase);
+
+		// set up trust manager to do client validation
+		TrustManagerFactory trustManagerFactory = TrustManagerFactory
+				.getInstance(Constants.KEY_MANAGER_ALGORITHM_SUNX509);
+		KeyStore trustStore = loadKeyStore(trustStoreFileName, null);
+		trustManagerFactory.init(trustStore);
+
+		// initialize context
+		sslContext.init(keyManagerFactory.getKeyManagers(), trustManagerFactory.getTrustManagers(), null);
+		return sslContext;
+	}
+
+	/**
+	 * 
+	 * @param fileName   the store file or null for an empty store
+	 * @param passphrase the store password or null
+	 * @return the loaded store, the file is closed again
+	 * @throws Exception
+	 */
+	private static KeyStore loadKeyStore(String fileName, char[] passphrase) throws Exception {
+		KeyStore keyStore = KeyStore.getInstance(Constants.JAVA_KEYSTORE);
+		if (fileName == null) {
+			keyStore.load(null, passphrase);
+			return keyStore;
+		}
+
+		try (FileInputStream fis = new FileInputStream(fileName)) {
+			keyStore.load(fis, passphrase);
 		}
+		return keyStore;
 	}
 
 	/**
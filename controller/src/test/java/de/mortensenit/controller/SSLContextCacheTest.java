@@ -0,0 +1,92 @@
+package de.mortensenit.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class SSLContextCacheTest {
+
+	@TempDir
+	File tempDir;
+
+	private final AtomicInteger loads = new AtomicInteger();
+
+	private SSLContext load() throws Exception {
+		loads.incrementAndGet();
+		SSLContext sslContext = SSLContext.getInstance("TLS");
+		sslContext.init(null, null, null);
+		return sslContext;
+	}
+
+	@Test
+	public void testHitAndMiss() throws Exception {
+		SSLContextCache cache = new SSLContextCache();
+		String keyStore = Files.createFile(tempDir.toPath().resolve("keystore.jks")).toString();
+
+		SSLContext first = cache.get("server", keyStore, "secret", null, this::load);
+		SSLContext second = cache.get("server", keyStore, "secret", null, this::load);
+		assertSame(first, second);
+		assertEquals(1, loads.get());
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getHits());
+
+		// different role and different password do not share the context
+		assertNotSame(first, cache.get("client", keyStore, "secret", null, this::load));
+		assertNotSame(first, cache.get("server", keyStore, "other", null, this::load));
+		assertEquals(3, loads.get());
+		assertEquals(3, cache.size());
+	}
+
+	@Test
+	public void testModifiedStoreIsReloaded() throws Exception {
+		SSLContextCache cache = new SSLContextCache();
+		Path keyStore = Files.createFile(tempDir.toPath().resolve("keystore.jks"));
+
+		SSLContext first = cache.get("server", keyStore.toString(), "secret", null, this::load);
+		Files.setLastModifiedTime(keyStore, FileTime.fromMillis(Files.getLastModifiedTime(keyStore).toMillis() + 5000));
+		SSLContext second = cache.get("server", keyStore.toString(), "secret", null, this::load);
+
+		assertNotSame(first, second);
+		assertEquals(2, cache.getMisses());
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testInvalidate() {
+		SSLContextCache cache = new SSLContextCache();
+		SSLContext first = cache.get("client", null, null, null, this::load);
+		cache.invalidate();
+		assertEquals(0, cache.size());
+		assertNotSame(first, cache.get("client", null, null, null, this::load));
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	public void testFailureIsNotCached() {
+		SSLContextCache cache = new SSLContextCache();
+		assertNull(cache.get("client", null, null, null, () -> {
+			throw new IllegalArgumentException("broken store");
+		}));
+		assertEquals(0, cache.size());
+		cache.get("client", null, null, null, this::load);
+		assertEquals(1, loads.get());
+	}
+
+}
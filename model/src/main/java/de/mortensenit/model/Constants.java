@@ -24,6 +24,56 @@ public final class Constants {
 	 */
 	public static final String ENCRYPTION_MODE_TLS = "TLS";
 
+	/**
+	 * start the server unencrypted in plaintext mode, using non-blocking channels
+	 * served by a small number of selector event loops
+	 */
+	public static final String ENCRYPTION_MODE_PLAIN_NIO = "PLAIN_NIO";
+
+	/**
+	 * start the server encrypted with TLS, using non-blocking channels and an
+	 * SSLEngine per connection served by a small number of selector event loops
+	 */
+	public static final String ENCRYPTION_MODE_TLS_NIO = "TLS_NIO";
+
+	/**
+	 * run every client connection on a new platform thread
+	 */
+	public static final String EXECUTOR_PLATFORM = "PLATFORM";
+
+	/**
+	 * run the client connections on a bounded pool of platform threads. Further
+	 * connections wait until a thread becomes available.
+	 */
+	public static final String EXECUTOR_POOL = "POOL";
+
+	/**
+	 * run every client connection on a new virtual thread
+	 */
+	public static final String EXECUTOR_VIRTUAL = "VIRTUAL";
+
+	/**
+	 * connections above the configured maximum are closed right after the accept
+	 */
+	public static final String ADMISSION_POLICY_REJECT = "REJECT";
+
+	/**
+	 * connections above the configured maximum wait until another connection is
+	 * closed
+	 */
+	public static final String ADMISSION_POLICY_QUEUE = "QUEUE";
+
+	/**
+	 * messages are terminated by a line feed
+	 */
+	public static final String FRAMING_LINE = "LINE";
+
+	/**
+	 * messages are preceded by a 4 byte length header as defined for EPP over TCP
+	 * (https://tools.ietf.org/html/rfc5734)
+	 */
+	public static final String FRAMING_EPP = "EPP";
+
 	public static final String JAVA_KEYSTORE = "JKS";
 
 	/**
@@ -37,6 +87,12 @@ public final class Constants {
 	 */
 	public static final String PROTOCOL_TLS_1_2 = "TLSv1.2";
 
+	/**
+	 * The enabled protocols if none were configured: TLS 1.3 saves a round trip on
+	 * every full handshake, TLS 1.2 stays enabled as fallback for older peers.
+	 */
+	public static final String DEFAULT_ENABLED_PROTOCOLS = PROTOCOL_TLS_1_3 + "," + PROTOCOL_TLS_1_2;
+
 	/**
 	 * Advanced Encryption Standard with 128 bit key in Galois/Counter mode (AES 128
 	 * GCM). A TLS-compliant application MUST implement the TLS_AES_128_GCM_SHA256
@@ -0,0 +1,422 @@
+package de.mortensenit.model.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A pool of heap or direct byte buffers in power of two size classes. Buffers
+ * are returned to the pool when a connection does not need them anymore and
+ * are reused by the next connection, so a high connection rate does not keep
+ * the garbage collector busy.<br />
+ * <br />
+ * Long living platform threads like the selector loops can keep a few buffers
+ * of the smaller size classes for themselves, so they mostly reuse their own
+ * buffers without touching the shared queues. A thread has to enable its cache
+ * with {@link #enableThreadCache()} and return the cached buffers with
+ * {@link #releaseThreadCache()} before it ends. All other threads, like the
+ * short living threads of the blocking connections and all virtual threads,
+ * use the shared queues, since the buffers in their caches would be lost with
+ * them. Requests above the largest size class are allocated unpooled.<br />
+ * <br />
+ * If the system property {@value #LEAK_DETECTION_PROPERTY} is true, which is
+ * the case in the tests, the pool remembers where every buffer was acquired
+ * until it is released. Buffers that are never released show up in
+ * {@link #getLeaks()}, releasing a buffer twice fails at once.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class ByteBufferPool {
+
+	/**
+	 * smallest size class, 1 KiB
+	 */
+	public static final int MIN_BUFFER_SIZE = 1 << 10;
+
+	/**
+	 * largest size class, 1 MiB
+	 */
+	public static final int MAX_BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * largest size class kept in the caches of the threads, 64 KiB
+	 */
+	public static final int MAX_THREAD_CACHED_SIZE = 1 << 16;
+
+	/**
+	 * the number of buffers per size class kept by each thread with an enabled
+	 * cache
+	 */
+	public static final int DEFAULT_THREAD_CACHE_SIZE = 8;
+
+	/**
+	 * enables the leak detection of all pools created afterwards
+	 */
+	public static final String LEAK_DETECTION_PROPERTY = "bufferpool.leak.detection";
+
+	private static final ByteBufferPool defaultPool = new ByteBufferPool(1024);
+
+	private static final ByteBufferPool directPool = new ByteBufferPool(1024, true, DEFAULT_THREAD_CACHE_SIZE);
+
+	/**
+	 * the idle buffers of one thread, only used by that thread
+	 */
+	private static final class ThreadCache {
+		final ByteBuffer[][] buffers;
+		final int[] counts;
+
+		ThreadCache(int sizeClasses, int size) {
+			buffers = new ByteBuffer[sizeClasses][size];
+			counts = new int[sizeClasses];
+		}
+
+		ByteBuffer poll(int sizeClass) {
+			int count = counts[sizeClass];
+			if (count == 0)
+				return null;
+			counts[sizeClass] = --count;
+			ByteBuffer buffer = buffers[sizeClass][count];
+			buffers[sizeClass][count] = null;
+			return buffer;
+		}
+
+		boolean offer(int sizeClass, ByteBuffer buffer) {
+			int count = counts[sizeClass];
+			if (count == buffers[sizeClass].length)
+				return false;
+			buffers[sizeClass][count] = buffer;
+			counts[sizeClass] = count + 1;
+			return true;
+		}
+	}
+
+	private final boolean direct;
+
+	private final int maxPooledPerClass;
+
+	private final int threadCacheSize;
+
+	private final Queue<ByteBuffer>[] pooledBuffers;
+
+	private final AtomicInteger[] pooledCounts;
+
+	/**
+	 * null for the threads which did not enable their cache
+	 */
+	private final ThreadLocal<ThreadCache> threadCaches = new ThreadLocal<>();
+
+	/**
+	 * the number of buffers in all thread caches
+	 */
+	private final AtomicInteger cachedCount = new AtomicInteger();
+
+	private final LongAdder acquiredBuffers = new LongAdder();
+
+	private final LongAdder allocatedBuffers = new LongAdder();
+
+	private final LongAdder allocatedBytes = new LongAdder();
+
+	/**
+	 * where the buffers in use were acquired, null without leak detection
+	 */
+	private final Map<ByteBuffer, Throwable> acquisitions;
+
+	/**
+	 * a pool of heap buffers
+	 *
+	 * @param maxPooledPerClass the maximum number of idle buffers kept per size
+	 *                          class
+	 */
+	public ByteBufferPool(int maxPooledPerClass) {
+		this(maxPooledPerClass, false, DEFAULT_THREAD_CACHE_SIZE);
+	}
+
+	/**
+	 *
+	 * @param maxPooledPerClass the maximum number of idle buffers kept per size
+	 *                          class in the shared queues
+	 * @param direct            true for direct buffers, false for heap buffers
+	 * @param threadCacheSize   the number of buffers per size class kept by each
+	 *                          thread with an enabled cache, 0 to disable the
+	 *                          thread caches
+	 */
+	@SuppressWarnings("unchecked")
+	public ByteBufferPool(int maxPooledPerClass, boolean direct, int threadCacheSize) {
+		this.maxPooledPerClass = maxPooledPerClass;
+		this.direct = direct;
+		this.threadCacheSize = threadCacheSize;
+
+		int classes = sizeClass(MAX_BUFFER_SIZE) + 1;
+		this.pooledBuffers = new Queue[classes];
+		this.pooledCounts = new AtomicInteger[classes];
+		for (int i = 0; i < classes; i++) {
+			pooledBuffers[i] = new ConcurrentLinkedQueue<>();
+			pooledCounts[i] = new AtomicInteger();
+		}
+
+		this.acquisitions = Boolean.getBoolean(LEAK_DETECTION_PROPERTY)
+				? Collections.synchronizedMap(new IdentityHashMap<>())
+				: null;
+	}
+
+	/**
+	 *
+	 * @return the pool of heap buffers shared by all codecs and connections of
+	 *         this JVM
+	 */
+	public static ByteBufferPool getDefault() {
+		return defaultPool;
+	}
+
+	/**
+	 * Direct buffers are read from and written to channels without copying them
+	 * into a temporary direct buffer first. They are expensive to allocate, so
+	 * they are only worth it if they are pooled.
+	 *
+	 * @return the pool of direct buffers shared by all network buffers of this
+	 *         JVM
+	 */
+	public static ByteBufferPool getDirect() {
+		return directPool;
+	}
+
+	/**
+	 * Get a cleared buffer with at least the requested capacity. The capacity is
+	 * rounded up to the next size class.
+	 *
+	 * @param capacity the minimum capacity
+	 * @return a pooled or new buffer
+	 */
+	public ByteBuffer acquire(int capacity) {
+		acquiredBuffers.increment();
+		if (capacity > MAX_BUFFER_SIZE)
+			return track(allocate(capacity));
+
+		int sizeClass = sizeClass(capacity);
+		ByteBuffer buffer = null;
+
+		ThreadCache threadCache = threadCache(sizeClass);
+		if (threadCache != null) {
+			buffer = threadCache.poll(sizeClass);
+			if (buffer != null)
+				cachedCount.decrementAndGet();
+		}
+
+		if (buffer == null) {
+			buffer = pooledBuffers[sizeClass].poll();
+			if (buffer != null)
+				pooledCounts[sizeClass].decrementAndGet();
+		}
+
+		if (buffer == null)
+			return track(allocate(MIN_BUFFER_SIZE << sizeClass));
+
+		buffer.clear();
+		return track(buffer);
+	}
+
+	/**
+	 * Return a buffer to the pool. The buffer must not be used afterwards.
+	 * Buffers that do not match a size class or exceed the pool limit are left to
+	 * the garbage collector.
+	 *
+	 * @param buffer a buffer acquired from this pool
+	 * @throws IllegalStateException if leak detection is enabled and the buffer
+	 *                               is not in use, because it was already released
+	 *                               or not acquired from this pool
+	 */
+	public void release(ByteBuffer buffer) throws IllegalStateException {
+		if (acquisitions != null && acquisitions.remove(buffer) == null)
+			throw new IllegalStateException("The buffer was released twice or not acquired from this pool.");
+
+		int capacity = buffer.capacity();
+		if (buffer.isDirect() != direct || buffer.isReadOnly() || capacity < MIN_BUFFER_SIZE
+				|| capacity > MAX_BUFFER_SIZE || Integer.bitCount(capacity) != 1)
+			return;
+
+		int sizeClass = sizeClass(capacity);
+		ThreadCache threadCache = threadCache(sizeClass);
+		if (threadCache != null && threadCache.offer(sizeClass, buffer)) {
+			cachedCount.incrementAndGet();
+			return;
+		}
+
+		offerShared(sizeClass, buffer);
+	}
+
+	/**
+	 * Let the current thread keep idle buffers for itself. Only threads living as
+	 * long as the pool is used should do this, and they have to call
+	 * {@link #releaseThreadCache()} before they end. Virtual threads always use
+	 * the shared queues.
+	 */
+	public void enableThreadCache() {
+		if (threadCacheSize == 0 || Thread.currentThread().isVirtual() || threadCaches.get() != null)
+			return;
+		threadCaches.set(new ThreadCache(sizeClass(MAX_THREAD_CACHED_SIZE) + 1, threadCacheSize));
+	}
+
+	/**
+	 * move the buffers cached by the current thread to the shared queues and
+	 * disable its cache, called before the thread ends
+	 */
+	public void releaseThreadCache() {
+		ThreadCache threadCache = threadCaches.get();
+		if (threadCache == null)
+			return;
+		threadCaches.remove();
+		for (int sizeClass = 0; sizeClass < threadCache.counts.length; sizeClass++) {
+			ByteBuffer buffer;
+			while ((buffer = threadCache.poll(sizeClass)) != null) {
+				cachedCount.decrementAndGet();
+				offerShared(sizeClass, buffer);
+			}
+		}
+	}
+
+	/**
+	 * put a buffer into the shared queue of its size class, unless the queue is
+	 * full
+	 *
+	 * @param sizeClass the size class of the buffer
+	 * @param buffer    the idle buffer
+	 */
+	private void offerShared(int sizeClass, ByteBuffer buffer) {
+		if (pooledCounts[sizeClass].incrementAndGet() > maxPooledPerClass) {
+			pooledCounts[sizeClass].decrementAndGet();
+			return;
+		}
+		pooledBuffers[sizeClass].offer(buffer);
+	}
+
+	/**
+	 *
+	 * @return the number of idle buffers in all size classes, including the
+	 *         caches of the threads
+	 */
+	public int getPooledBuffers() {
+		int pooled = cachedCount.get();
+		for (AtomicInteger pooledCount : pooledCounts) {
+			pooled += pooledCount.get();
+		}
+		return pooled;
+	}
+
+	/**
+	 *
+	 * @return the number of buffers handed out
+	 */
+	public long getAcquiredBuffers() {
+		return acquiredBuffers.sum();
+	}
+
+	/**
+	 *
+	 * @return the number of buffers handed out which had to be allocated, because
+	 *         no idle buffer was available
+	 */
+	public long getAllocatedBuffers() {
+		return allocatedBuffers.sum();
+	}
+
+	/**
+	 *
+	 * @return the summed up capacity of all allocated buffers
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes.sum();
+	}
+
+	public boolean isDirect() {
+		return direct;
+	}
+
+	/**
+	 *
+	 * @return true if the pool remembers where the buffers in use were acquired
+	 */
+	public boolean isLeakDetection() {
+		return acquisitions != null;
+	}
+
+	/**
+	 * Without leak detection the list is always empty.
+	 *
+	 * @return where the buffers, which were acquired but not released yet, were
+	 *         acquired
+	 */
+	public List<Throwable> getLeaks() {
+		if (acquisitions == null)
+			return Collections.emptyList();
+		synchronized (acquisitions) {
+			return new ArrayList<>(acquisitions.values());
+		}
+	}
+
+	/**
+	 *
+	 * @param sizeClass the size class of the buffer
+	 * @return the cache of the current thread, or null if the size class is not
+	 *         cached or the thread did not enable its cache
+	 */
+	private ThreadCache threadCache(int sizeClass) {
+		if (threadCacheSize == 0 || (MIN_BUFFER_SIZE << sizeClass) > MAX_THREAD_CACHED_SIZE)
+			return null;
+		return threadCaches.get();
+	}
+
+	/**
+	 *
+	 * @param capacity the exact capacity
+	 * @return a new heap or direct buffer
+	 */
+	private ByteBuffer allocate(int capacity) {
+		allocatedBuffers.increment();
+		allocatedBytes.add(capacity);
+		return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+	}
+
+	/**
+	 *
+	 * @param buffer the buffer handed out
+	 * @return the buffer
+	 */
+	private ByteBuffer track(ByteBuffer buffer) {
+		if (acquisitions != null)
+			acquisitions.put(buffer,
+					new Throwable("Buffer of " + buffer.capacity() + " bytes acquired by " + Thread.currentThread()));
+		return buffer;
+	}
+
+	/**
+	 *
+	 * @param capacity the minimum capacity
+	 * @return the capacity of the buffers {@link #acquire(int)} returns for the
+	 *         requested capacity
+	 */
+	public static int capacityOf(int capacity) {
+		if (capacity > MAX_BUFFER_SIZE)
+			return capacity;
+		return MIN_BUFFER_SIZE << sizeClass(capacity);
+	}
+
+	/**
+	 *
+	 * @param capacity a capacity up to {@link #MAX_BUFFER_SIZE}
+	 * @return the index of the smallest size class that fits the capacity
+	 */
+	private static int sizeClass(int capacity) {
+		if (capacity <= MIN_BUFFER_SIZE)
+			return 0;
+		return 32 - Integer.numberOfLeadingZeros(capacity - 1) - Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+	}
+
+}
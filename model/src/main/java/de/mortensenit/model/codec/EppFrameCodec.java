@@ -0,0 +1,72 @@
+package de.mortensenit.model.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import de.mortensenit.model.buffer.ByteBufferPool;
+import de.mortensenit.model.exceptions.FrameTooLargeException;
+
+/**
+ * EPP data units as defined in RFC 5734, section 4
+ * (https://tools.ietf.org/html/rfc5734#section-4). Every frame starts with a 4
+ * byte big-endian header containing the total length of the frame including the
+ * header itself, followed by the XML instance.<br />
+ * <br />
+ * As soon as the header was received, the receive buffer is sized for the
+ * whole frame, so the rest of it is read with bulk reads.
+ * 
+ * @author frederik.mortensen
+ *
+ */
+public class EppFrameCodec extends FrameCodec {
+
+	/**
+	 * size of the length header
+	 */
+	public static final int HEADER_SIZE = 4;
+
+	/**
+	 * 
+	 * @param maxFrameSize the maximum size of a received XML instance
+	 * @param bufferPool   the pool the receive buffers are taken from
+	 */
+	public EppFrameCodec(int maxFrameSize, ByteBufferPool bufferPool) {
+		super(maxFrameSize, bufferPool);
+	}
+
+	@Override
+	protected boolean decodeFrame(ByteBuffer in, FrameHandler handler) throws IOException {
+		if (in.remaining() < HEADER_SIZE)
+			return false;
+
+		int start = in.position();
+		long totalLength = in.getInt(start) & 0xFFFFFFFFL;
+		if (totalLength < HEADER_SIZE)
+			throw new IOException("Invalid EPP frame length " + totalLength + ".");
+		if (totalLength - HEADER_SIZE > maxFrameSize)
+			throw new FrameTooLargeException(totalLength - HEADER_SIZE, maxFrameSize);
+
+		int frameLength = (int) totalLength;
+		if (in.remaining() < frameLength) {
+			requireCapacity(frameLength);
+			return false;
+		}
+
+		in.position(start + frameLength);
+		handler.onFrame(frame(start + HEADER_SIZE, start + frameLength));
+		return true;
+	}
+
+	@Override
+	public byte[] encode(byte[] payload) {
+		int totalLength = payload.length + HEADER_SIZE;
+		byte[] frame = new byte[totalLength];
+		frame[0] = (byte) (totalLength >>> 24);
+		frame[1] = (byte) (totalLength >>> 16);
+		frame[2] = (byte) (totalLength >>> 8);
+		frame[3] = (byte) totalLength;
+		System.arraycopy(payload, 0, frame, HEADER_SIZE, payload.length);
+		return frame;
+	}
+
+}
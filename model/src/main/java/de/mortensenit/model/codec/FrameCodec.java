@@ -0,0 +1,259 @@
+package de.mortensenit.model.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import de.mortensenit.model.Constants;
+import de.mortensenit.model.buffer.ByteBufferPool;
+
+/**
+ * Splits a stream of bytes into frames and frames outgoing messages. A codec
+ * instance holds the receive buffer of one connection and must not be shared
+ * between connections.<br />
+ * <br />
+ * Received bytes are written into {@link #readBuffer(int)}, either by a channel
+ * or by {@link #read(InputStream)}, then {@link #decode(FrameHandler)} hands
+ * every complete frame to the handler. Partial frames stay in the buffer until
+ * the rest was received. The buffer is taken from the pool with the first
+ * received bytes, so codecs only used to {@link #encode(byte[])} never hold
+ * one. It grows for large frames up to the maximum frame size and shrinks back
+ * once it is empty, but never below the free space the last reader asked for,
+ * so a reader needing a full TLS record does not resize it on every read.<br />
+ * <br />
+ * Decoding does not allocate: the frames are handed to the handler as one
+ * reused view on the receive buffer, positioned on the payload of the current
+ * frame. Handlers that need the text of a frame decode it with
+ * {@link #decodeUtf8(ByteBuffer)}, all others work on the bytes.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public abstract class FrameCodec {
+
+	/**
+	 * capacity of the receive buffer as long as no large frames are received
+	 */
+	public static final int INITIAL_BUFFER_SIZE = 4096;
+
+	/**
+	 * the default maximum payload size of a frame, 64 KiB
+	 */
+	public static final int DEFAULT_MAX_FRAME_SIZE = 65536;
+
+	protected final int maxFrameSize;
+
+	private final ByteBufferPool bufferPool;
+
+	/**
+	 * the receive buffer, always kept in write mode, null until the first bytes
+	 * are received
+	 */
+	private ByteBuffer buffer;
+
+	/**
+	 * the view on the receive buffer handed to the frame handler, created once
+	 * per receive buffer
+	 */
+	private ByteBuffer frameView;
+
+	/**
+	 * capacity the buffer needs to hold the next incomplete frame
+	 */
+	private int requiredCapacity = 0;
+
+	/**
+	 * the capacity the buffer shrinks back to, at least the free space the last
+	 * reader asked for
+	 */
+	private int readCapacity = INITIAL_BUFFER_SIZE;
+
+	/**
+	 *
+	 * @param maxFrameSize the maximum payload size of a received frame
+	 * @param bufferPool   the pool the receive buffers are taken from
+	 */
+	protected FrameCodec(int maxFrameSize, ByteBufferPool bufferPool) {
+		this.maxFrameSize = maxFrameSize;
+		this.bufferPool = bufferPool;
+	}
+
+	/**
+	 * create the codec for the configured framing
+	 *
+	 * @param framing      LINE or EPP, see {@link Constants}
+	 * @param maxFrameSize the maximum payload size of a received frame
+	 * @return a new codec using the shared buffer pool
+	 * @throws IllegalArgumentException if the framing is unknown
+	 */
+	public static FrameCodec create(String framing, int maxFrameSize) throws IllegalArgumentException {
+		if (framing.equalsIgnoreCase(Constants.FRAMING_EPP))
+			return new EppFrameCodec(maxFrameSize, ByteBufferPool.getDefault());
+		if (framing.equalsIgnoreCase(Constants.FRAMING_LINE))
+			return new LineFrameCodec(maxFrameSize, ByteBufferPool.getDefault());
+		throw new IllegalArgumentException(framing);
+	}
+
+	/**
+	 * Get the receive buffer to write received bytes into. The buffer is in write
+	 * mode and may be replaced by a larger one, so it must not be kept.
+	 *
+	 * @param minRemaining the minimum free space needed
+	 * @return the receive buffer
+	 */
+	public ByteBuffer readBuffer(int minRemaining) {
+		readCapacity = Math.max(INITIAL_BUFFER_SIZE, minRemaining);
+		if (buffer == null)
+			buffer = bufferPool.acquire(readCapacity);
+		else if (buffer.remaining() < minRemaining)
+			resize(buffer.position() + minRemaining);
+		return buffer;
+	}
+
+	/**
+	 * read as many bytes as available with a single bulk read into the receive
+	 * buffer
+	 *
+	 * @param inputStream the stream to read from
+	 * @return the number of bytes read or -1 at the end of the stream
+	 * @throws IOException
+	 */
+	public int read(InputStream inputStream) throws IOException {
+		ByteBuffer target = readBuffer(1);
+		int read = inputStream.read(target.array(), target.arrayOffset() + target.position(), target.remaining());
+		if (read > 0)
+			target.position(target.position() + read);
+		return read;
+	}
+
+	/**
+	 * hand all complete frames in the receive buffer to the handler
+	 *
+	 * @param handler the frame handler
+	 * @throws IOException if the handler failed or a frame is invalid or too
+	 *                     large
+	 */
+	public void decode(FrameHandler handler) throws IOException {
+		if (buffer == null)
+			return;
+		buffer.flip();
+		try {
+			requiredCapacity = 0;
+			while (buffer.hasRemaining() && decodeFrame(buffer, handler)) {
+				// next frame
+			}
+		} finally {
+			buffer.compact();
+		}
+
+		if (requiredCapacity > buffer.capacity())
+			resize(requiredCapacity);
+		else if (buffer.position() == 0 && buffer.capacity() > ByteBufferPool.capacityOf(readCapacity))
+			resize(readCapacity);
+	}
+
+	/**
+	 *
+	 * @return true if the receive buffer holds the beginning of a frame, which is
+	 *         still incomplete after the last {@link #decode(FrameHandler)}
+	 */
+	public boolean isFramePending() {
+		return buffer != null && buffer.position() > 0;
+	}
+
+	/**
+	 * Decode the frame starting at the position of the buffer. If the frame is
+	 * complete, it is handed to the handler and the position is moved behind it.
+	 *
+	 * @param in      the received bytes in read mode
+	 * @param handler the frame handler
+	 * @return true if a frame was decoded, false if it is incomplete
+	 * @throws IOException if the handler failed or the frame is invalid or too
+	 *                     large
+	 */
+	protected abstract boolean decodeFrame(ByteBuffer in, FrameHandler handler) throws IOException;
+
+	/**
+	 * Frame a message. The result can be written to a socket or channel in one
+	 * piece.
+	 *
+	 * @param payload the encoded message
+	 * @return the framed message
+	 */
+	public abstract byte[] encode(byte[] payload);
+
+	/**
+	 * Get the view handed to the frame handler for a frame of the receive
+	 * buffer. The view shares the content of the receive buffer and is reused
+	 * for every frame, only its position and limit are moved.
+	 *
+	 * @param start the index of the first payload byte in the receive buffer
+	 * @param end   the index behind the last payload byte
+	 * @return the view with the payload between position and limit
+	 */
+	protected ByteBuffer frame(int start, int end) {
+		if (frameView == null)
+			frameView = buffer.duplicate();
+		frameView.limit(end).position(start);
+		return frameView;
+	}
+
+	/**
+	 * Decode the payload of a frame as UTF-8 text. Neither the position nor the
+	 * limit of the frame are changed.
+	 *
+	 * @param frame a frame handed to a {@link FrameHandler}
+	 * @return the text of the frame
+	 */
+	public static String decodeUtf8(ByteBuffer frame) {
+		if (frame.hasArray())
+			return new String(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining(),
+					StandardCharsets.UTF_8);
+		return StandardCharsets.UTF_8.decode(frame.duplicate()).toString();
+	}
+
+	/**
+	 * tell the codec how large the buffer has to be for the incomplete frame
+	 *
+	 * @param capacity the buffer capacity needed
+	 */
+	protected void requireCapacity(int capacity) {
+		requiredCapacity = capacity;
+	}
+
+	/**
+	 * return the receive buffer to the pool, the codec must not be used
+	 * afterwards
+	 */
+	public void release() {
+		if (buffer != null) {
+			bufferPool.release(buffer);
+			buffer = null;
+			frameView = null;
+		}
+	}
+
+	/**
+	 * move the content of the receive buffer into a buffer of another size class
+	 *
+	 * @param capacity the new minimum capacity
+	 */
+	private void resize(int capacity) {
+		ByteBuffer resized = bufferPool.acquire(capacity);
+		buffer.flip();
+		resized.put(buffer);
+		bufferPool.release(buffer);
+		buffer = resized;
+		frameView = null;
+	}
+
+	/**
+	 *
+	 * @return the maximum payload size of a received frame
+	 */
+	public int getMaxFrameSize() {
+		return maxFrameSize;
+	}
+
+}
@@ -0,0 +1,28 @@
+package de.mortensenit.model.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Receives the frames decoded by a {@link FrameCodec}.
+ * 
+ * @author frederik.mortensen
+ *
+ */
+@FunctionalInterface
+public interface FrameHandler {
+
+	/**
+	 * handle a single decoded frame
+	 * 
+	 * @param frame the payload of the frame without header or delimiter,
+	 *              between the position and the limit of the buffer. The buffer
+	 *              is a view on the receive buffer of the codec, reused for the
+	 *              next frame and only valid during this call. The payload does
+	 *              not start at index 0, use relative or position based
+	 *              access.
+	 * @throws IOException
+	 */
+	void onFrame(ByteBuffer frame) throws IOException;
+
+}
@@ -0,0 +1,66 @@
+package de.mortensenit.model.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import de.mortensenit.model.buffer.ByteBufferPool;
+import de.mortensenit.model.exceptions.FrameTooLargeException;
+
+/**
+ * Frames are terminated by a line feed, an optional carriage return before it
+ * is removed as well.
+ * 
+ * @author frederik.mortensen
+ *
+ */
+public class LineFrameCodec extends FrameCodec {
+
+	/**
+	 * number of bytes of the incomplete frame already searched for the line feed
+	 */
+	private int scanned = 0;
+
+	/**
+	 * 
+	 * @param maxFrameSize the maximum length of a received line
+	 * @param bufferPool   the pool the receive buffers are taken from
+	 */
+	public LineFrameCodec(int maxFrameSize, ByteBufferPool bufferPool) {
+		super(maxFrameSize, bufferPool);
+	}
+
+	@Override
+	protected boolean decodeFrame(ByteBuffer in, FrameHandler handler) throws IOException {
+		int start = in.position();
+		for (int i = start + scanned; i < in.limit(); i++) {
+			if (in.get(i) == '\n') {
+				int end = i > start && in.get(i - 1) == '\r' ? i - 1 : i;
+				if (end - start > maxFrameSize)
+					throw new FrameTooLargeException(end - start, maxFrameSize);
+
+				scanned = 0;
+				in.position(i + 1);
+				handler.onFrame(frame(start, end));
+				return true;
+			}
+		}
+
+		scanned = in.limit() - start;
+
+		// line feed and carriage return are not part of the frame
+		if (scanned > maxFrameSize + 1)
+			throw new FrameTooLargeException(scanned, maxFrameSize);
+		if (scanned == in.capacity())
+			requireCapacity(Math.min(in.capacity() * 2, maxFrameSize + 2));
+		return false;
+	}
+
+	@Override
+	public byte[] encode(byte[] payload) {
+		byte[] frame = new byte[payload.length + 1];
+		System.arraycopy(payload, 0, frame, 0, payload.length);
+		frame[payload.length] = '\n';
+		return frame;
+	}
+
+}
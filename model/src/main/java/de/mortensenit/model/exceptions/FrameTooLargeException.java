@@ -0,0 +1,25 @@
+package de.mortensenit.model.exceptions;
+
+import java.io.IOException;
+
+/**
+ * A received frame exceeds the configured maximum frame size. The connection
+ * cannot be used anymore and has to be closed.
+ * 
+ * @author frederik.mortensen
+ *
+ */
+public class FrameTooLargeException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * 
+	 * @param frameSize    the size of the received frame, as far as it is known
+	 * @param maxFrameSize the configured maximum
+	 */
+	public FrameTooLargeException(long frameSize, int maxFrameSize) {
+		super("Frame of " + frameSize + " bytes exceeds the maximum of " + maxFrameSize + " bytes.");
+	}
+
+}
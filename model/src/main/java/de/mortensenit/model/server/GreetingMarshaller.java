@@ -1,7 +1,14 @@
 package de.mortensenit.model.server;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -12,7 +19,13 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 /**
- * 
+ * Converts greetings from and to XML.<br />
+ * <br />
+ * The JAXBContext is expensive to create and thread-safe, so it is created only
+ * once. Marshallers and unmarshallers are cheap, but not thread-safe. They are
+ * kept in small pools and reused, which also works for a large number of
+ * virtual threads, other than thread locals.
+ *
  * @author frederik.mortensen
  *
  */
@@ -21,9 +34,20 @@ public class GreetingMarshaller {
 	private static Logger logger = LogManager.getLogger();
 
 	/**
-	 * 
+	 * maximum number of idle marshallers and unmarshallers kept for reuse
+	 */
+	private static final int POOL_SIZE = 32;
+
+	private static final JAXBContext jaxbContext = createJaxbContext();
+
+	private static final BlockingQueue<Marshaller> marshallers = new ArrayBlockingQueue<>(POOL_SIZE);
+
+	private static final BlockingQueue<Unmarshaller> unmarshallers = new ArrayBlockingQueue<>(POOL_SIZE);
+
+	/**
+	 *
 	 * @param greeting
-	 * @return
+	 * @return the greeting as xml string or null if it could not be marshalled
 	 */
 	public static String marshall(Greeting greeting) {
 
@@ -31,13 +55,12 @@ public class GreetingMarshaller {
 
 		try {
 
-			JAXBContext jaxbContext = JAXBContext.newInstance(Greeting.class);
-			Marshaller jaxbMarshaller = jaxbContext.createMarshaller();
-
-			// output pretty printed
-			jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, false);
-
-			jaxbMarshaller.marshal(greeting, resultWriter);
+			Marshaller jaxbMarshaller = borrowMarshaller();
+			try {
+				jaxbMarshaller.marshal(greeting, resultWriter);
+			} finally {
+				marshallers.offer(jaxbMarshaller);
+			}
 
 			return resultWriter.toString();
 
@@ -49,9 +72,73 @@ public class GreetingMarshaller {
 	}
 
 	/**
-	 * 
+	 * Marshall the greeting as UTF-8 encoded xml directly into the given stream,
+	 * without building a string first.
+	 *
+	 * @param greeting
+	 * @param outputStream the stream the xml is written to, it is not closed
+	 * @return true if the greeting was marshalled, false if it failed
+	 */
+	public static boolean marshall(Greeting greeting, OutputStream outputStream) {
+
+		try {
+
+			Marshaller jaxbMarshaller = borrowMarshaller();
+			try {
+				jaxbMarshaller.marshal(greeting, outputStream);
+			} finally {
+				marshallers.offer(jaxbMarshaller);
+			}
+
+			return true;
+
+		} catch (JAXBException e) {
+			logger.error("Could not marshall object!", e);
+			return false;
+		}
+	}
+
+	/**
+	 * Marshall the greeting as UTF-8 encoded xml into the given buffer, starting at
+	 * its current position.
+	 *
+	 * @param greeting
+	 * @param buffer   the buffer the xml is written to
+	 * @return true if the greeting was marshalled, false if it failed
+	 * @throws java.nio.BufferOverflowException if the buffer is too small
+	 */
+	public static boolean marshall(Greeting greeting, ByteBuffer buffer) {
+		return marshall(greeting, new OutputStream() {
+
+			@Override
+			public void write(int b) {
+				buffer.put((byte) b);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+				buffer.put(b, off, len);
+			}
+		});
+	}
+
+	/**
+	 *
+	 * @param greeting
+	 * @return the greeting as UTF-8 encoded xml or null if it could not be
+	 *         marshalled
+	 */
+	public static byte[] marshallToBytes(Greeting greeting) {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream(256);
+		if (!marshall(greeting, outputStream))
+			return null;
+		return outputStream.toByteArray();
+	}
+
+	/**
+	 *
 	 * @param greetingMessage
-	 * @return
+	 * @return the greeting or null if it could not be unmarshalled
 	 */
 	public static Greeting unmarshall(String greetingMessage) {
 
@@ -59,17 +146,117 @@ public class GreetingMarshaller {
 
 		try {
 
-			JAXBContext jaxbContext = JAXBContext.newInstance(Greeting.class);
-			Unmarshaller jaxbUnmarshaller = jaxbContext.createUnmarshaller();
+			Unmarshaller jaxbUnmarshaller = borrowUnmarshaller();
+			try {
+				Greeting greeting = (Greeting) jaxbUnmarshaller.unmarshal(stringReader);
+				return greeting;
+			} finally {
+				unmarshallers.offer(jaxbUnmarshaller);
+			}
+
+		} catch (JAXBException e) {
+			logger.error("Could not unmarshall string!", e);
+			return null;
+		}
+	}
+
+	/**
+	 *
+	 * @param inputStream the encoded xml, it is not closed
+	 * @return the greeting or null if it could not be unmarshalled
+	 */
+	public static Greeting unmarshall(InputStream inputStream) {
+
+		try {
+
+			Unmarshaller jaxbUnmarshaller = borrowUnmarshaller();
+			try {
+				Greeting greeting = (Greeting) jaxbUnmarshaller.unmarshal(inputStream);
+				return greeting;
+			} finally {
+				unmarshallers.offer(jaxbUnmarshaller);
+			}
+
+		} catch (JAXBException e) {
+			logger.error("Could not unmarshall stream!", e);
+			return null;
+		}
+	}
+
+	/**
+	 *
+	 * @param buffer the encoded xml between position and limit. The position is
+	 *               moved to the limit.
+	 * @return the greeting or null if it could not be unmarshalled
+	 */
+	public static Greeting unmarshall(ByteBuffer buffer) {
+		if (buffer.hasArray()) {
+			int offset = buffer.arrayOffset() + buffer.position();
+			int length = buffer.remaining();
+			buffer.position(buffer.limit());
+			return unmarshall(new ByteArrayInputStream(buffer.array(), offset, length));
+		}
+
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.get(bytes);
+		return unmarshall(new ByteArrayInputStream(bytes));
+	}
+
+	/**
+	 *
+	 * @return a pooled or new marshaller, must be offered back to the pool after
+	 *         use
+	 * @throws JAXBException
+	 */
+	private static Marshaller borrowMarshaller() throws JAXBException {
+		Marshaller jaxbMarshaller = marshallers.poll();
+		if (jaxbMarshaller != null)
+			return jaxbMarshaller;
+
+		jaxbMarshaller = getJaxbContext().createMarshaller();
 
-			Greeting greeting = (Greeting) jaxbUnmarshaller.unmarshal(stringReader);
+		// output pretty printed
+		jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, false);
 
-			return greeting;
+		return jaxbMarshaller;
+	}
 
+	/**
+	 *
+	 * @return a pooled or new unmarshaller, must be offered back to the pool after
+	 *         use
+	 * @throws JAXBException
+	 */
+	private static Unmarshaller borrowUnmarshaller() throws JAXBException {
+		Unmarshaller jaxbUnmarshaller = unmarshallers.poll();
+		if (jaxbUnmarshaller != null)
+			return jaxbUnmarshaller;
+
+		return getJaxbContext().createUnmarshaller();
+	}
+
+	/**
+	 *
+	 * @return the shared context
+	 * @throws JAXBException if the context could not be created at class loading
+	 */
+	private static JAXBContext getJaxbContext() throws JAXBException {
+		if (jaxbContext == null)
+			throw new JAXBException("JAXB context for " + Greeting.class.getName() + " is not available.");
+		return jaxbContext;
+	}
+
+	/**
+	 *
+	 * @return the context or null if it could not be created
+	 */
+	private static JAXBContext createJaxbContext() {
+		try {
+			return JAXBContext.newInstance(Greeting.class);
 		} catch (JAXBException e) {
-			logger.error("Could not unmarshall string!", e);
+			logger.error("Could not create JAXB context!", e);
 			return null;
 		}
 	}
 
-}
\ No newline at end of file
+}
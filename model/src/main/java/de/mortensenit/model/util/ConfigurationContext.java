@@ -1,9 +1,12 @@
 package de.mortensenit.model.util;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -12,7 +15,11 @@ import org.apache.logging.log4j.Logger;
  * A class that manages application configuration via file system or other
  * resources. The current service uses app.properties to setup runtime behavior.
  * The configuration will be loaded as soon as the application uses the context
- * the first time.
+ * the first time.<br />
+ * <br />
+ * The values are held in an immutable {@link ConfigurationSnapshot}. Loading,
+ * reloading and overriding a value build a new snapshot and publish it at once,
+ * so readers never lock and never see a partly loaded configuration.
  * 
  * @author frederik.mortensen
  *
@@ -24,14 +31,18 @@ public class ConfigurationContext {
 	 * defined as constants in ServerConfigurationProperties or
 	 * ClientConfigurationProperties class
 	 */
-	private static ResourceBundle applicationProperties;
+	private static final String APPLICATION_PROPERTIES = "app";
 
 	/**
-	 * the loaded content of the resource bundle
+	 * the loaded content of the resource bundle, null until it is loaded
 	 */
-	private static Map<String, String> internalContext = null;
+	private static final AtomicReference<ConfigurationSnapshot> snapshot = new AtomicReference<>();
 
-	private static boolean initialized = false;
+	/**
+	 * notified every time the configuration was (re)loaded, e.g. to drop caches
+	 * that were built from configuration values
+	 */
+	private static final List<Runnable> reloadListeners = new CopyOnWriteArrayList<>();
 
 	private static Logger logger = LogManager.getLogger();
 
@@ -47,28 +58,109 @@ public class ConfigurationContext {
 	 * @return
 	 */
 	public static final void loadOrRefreshContext() throws MissingResourceException {
-		logger.info("Loading application properties.");
-		reset();
+		synchronized (snapshot) {
+			load();
+		}
 
-		applicationProperties = ResourceBundle.getBundle("app");
+		notifyReloadListeners();
+	}
 
+	/**
+	 * read the app.properties configuration file into a new snapshot, the caller
+	 * holds the lock on the snapshot and notifies the listeners after releasing it
+	 */
+	private static void load() throws MissingResourceException {
+		logger.info("Loading application properties.");
+		ResourceBundle applicationProperties = ResourceBundle.getBundle(APPLICATION_PROPERTIES);
+
+		Map<String, String> properties = new HashMap<>();
 		logger.info("Server configuration loaded:");
 		for (String key : applicationProperties.keySet()) {
 			String value = applicationProperties.getString(key);
-			internalContext.put(key, value);
+			properties.put(key, value);
 			logger.info(key + ": " + value);
 		}
 
-		initialized = true;
+		snapshot.set(ConfigurationSnapshot.parse(properties));
+	}
+
+	/**
+	 * get the current configuration, it is loaded if needed. All values of one
+	 * snapshot are consistent, even if the configuration is reloaded meanwhile.
+	 * 
+	 * @return the current snapshot
+	 * @throws MissingResourceException if no application properties configuration
+	 *                                  file was found
+	 */
+	public static ConfigurationSnapshot getSnapshot() throws MissingResourceException {
+		ConfigurationSnapshot current = snapshot.get();
+		if (current != null)
+			return current;
+
+		boolean loaded = false;
+		synchronized (snapshot) {
+			current = snapshot.get();
+			if (current == null) {
+				load();
+				current = snapshot.get();
+				loaded = true;
+			}
+		}
+
+		// listeners may read the configuration or take their own locks
+		if (loaded)
+			notifyReloadListeners();
+		return current;
+	}
+
+	/**
+	 * register a listener which is called every time the configuration was
+	 * loaded, refreshed or a value was overridden
+	 * 
+	 * @param reloadListener the listener
+	 */
+	public static void addReloadListener(Runnable reloadListener) {
+		reloadListeners.add(reloadListener);
+	}
+
+	/**
+	 * 
+	 * @param reloadListener a listener registered before
+	 */
+	public static void removeReloadListener(Runnable reloadListener) {
+		reloadListeners.remove(reloadListener);
+	}
+
+	private static void notifyReloadListeners() {
+		for (Runnable reloadListener : reloadListeners) {
+			reloadListener.run();
+		}
 	}
 
 	/**
 	 * unload the current loaded configuration
 	 */
 	public static final void reset() {
-		internalContext = new HashMap<>();
-		applicationProperties = null;
-		initialized = false;
+		snapshot.set(null);
+	}
+
+	/**
+	 * Override a single value of the loaded configuration at runtime, e.g. to run
+	 * the same application with different settings in tests and benchmarks. The
+	 * override is lost as soon as the context is reset or reloaded.
+	 * 
+	 * @param key   the property to be overridden
+	 * @param value the new value, or null to remove the property
+	 * @throws MissingResourceException if no application properties configuration
+	 *                                  file was found
+	 */
+	public static void set(String key, String value) throws MissingResourceException {
+		ConfigurationSnapshot current;
+		do {
+			current = getSnapshot();
+		} while (!snapshot.compareAndSet(current, current.with(key, value)));
+
+		notifyReloadListeners();
 	}
 
 	/**
@@ -82,9 +174,6 @@ public class ConfigurationContext {
 	 *                                  file was found
 	 */
 	public static String get(String key) throws IllegalArgumentException, MissingResourceException {
-		if (!isInitialized())
-			loadOrRefreshContext();
-
 		return get(key, true);
 	}
 
@@ -101,19 +190,10 @@ public class ConfigurationContext {
 	 *                                  file was found
 	 */
 	public static String get(String key, boolean needed) throws IllegalArgumentException, MissingResourceException {
-		if (!isInitialized())
-			loadOrRefreshContext();
-
-		String value = internalContext.get(key);
-
-		if (StringUtils.isNullOrEmpty(value)) {
-			if (needed) {
-				throw new IllegalArgumentException(key);
-			} else
-				return null;
-		} else {
-			return value;
-		}
+		String value = getSnapshot().get(key);
+		if (value == null && needed)
+			throw new IllegalArgumentException(key);
+		return value;
 	}
 
 	/**
@@ -127,13 +207,62 @@ public class ConfigurationContext {
 	 *                                  file was found
 	 */
 	public static String get(String key, String defaultValue) throws MissingResourceException {
-		if (!isInitialized())
-			loadOrRefreshContext();
+		String value = getSnapshot().get(key);
+		return value == null ? defaultValue : value;
+	}
 
-		String value = get(key, false);
-		if (StringUtils.isNullOrEmpty(value))
-			return defaultValue;
-		return value;
+	/**
+	 * Load config value for a given key from the application configuration file
+	 * parsed to int.
+	 * 
+	 * @param key the property that needs to be configured
+	 * @return the value of the needed key from the loaded context
+	 * @throws IllegalArgumentException if the value for the given key was not set
+	 *                                  in the configuration
+	 * @throws NumberFormatException    if the value is not a number
+	 * @throws MissingResourceException if no application properties configuration
+	 *                                  file was found
+	 */
+	public static int getInt(String key)
+			throws IllegalArgumentException, NumberFormatException, MissingResourceException {
+		Long value = getSnapshot().getLong(key);
+		if (value == null)
+			throw new IllegalArgumentException(key);
+		return Math.toIntExact(value);
+	}
+
+	/**
+	 * Load config value for a given key from the application configuration file
+	 * parsed to int.
+	 * 
+	 * @param key          the property that needs to be configured
+	 * @param defaultValue returns this value if the given value was not configured
+	 * @return the value of the needed key from the loaded context or else the
+	 *         default value
+	 * @throws NumberFormatException    if the value is not a number
+	 * @throws MissingResourceException if no application properties configuration
+	 *                                  file was found
+	 */
+	public static int getInt(String key, int defaultValue) throws NumberFormatException, MissingResourceException {
+		Long value = getSnapshot().getLong(key);
+		return value == null ? defaultValue : Math.toIntExact(value);
+	}
+
+	/**
+	 * Load config value for a given key from the application configuration file
+	 * parsed to long.
+	 * 
+	 * @param key          the property that needs to be configured
+	 * @param defaultValue returns this value if the given value was not configured
+	 * @return the value of the needed key from the loaded context or else the
+	 *         default value
+	 * @throws NumberFormatException    if the value is not a number
+	 * @throws MissingResourceException if no application properties configuration
+	 *                                  file was found
+	 */
+	public static long getLong(String key, long defaultValue) throws NumberFormatException, MissingResourceException {
+		Long value = getSnapshot().getLong(key);
+		return value == null ? defaultValue : value;
 	}
 
 	/**
@@ -148,8 +277,10 @@ public class ConfigurationContext {
 	 *                                  file was found
 	 */
 	public static Boolean getBoolean(String key) throws IllegalArgumentException, MissingResourceException {
-		String value = get(key, true);
-		return Boolean.valueOf(value);
+		Boolean value = getSnapshot().getBoolean(key);
+		if (value == null)
+			throw new IllegalArgumentException(key);
+		return value;
 	}
 
 	/**
@@ -167,12 +298,8 @@ public class ConfigurationContext {
 	 */
 	public static Boolean getBoolean(String key, boolean defaultValue)
 			throws IllegalArgumentException, MissingResourceException {
-		String value = get(key, false);
-		if (StringUtils.isNotNullOrEmpty(value)) {
-			return Boolean.valueOf(value);
-		} else {
-			return defaultValue;
-		}
+		Boolean value = getSnapshot().getBoolean(key);
+		return value == null ? defaultValue : value;
 	}
 
 	/**
@@ -188,12 +315,10 @@ public class ConfigurationContext {
 	 *                                  file was found
 	 */
 	public static String[] getValues(String key) {
-		String value = get(key, true);
-		String[] values = value.split(",");
-		for (Integer i = 0; i < values.length; i++) {
-			values[i] = values[i].trim();
-		}
-		return values;
+		String[] values = getSnapshot().getValues(key);
+		if (values == null)
+			throw new IllegalArgumentException(key);
+		return values.clone();
 	}
 
 	/**
@@ -210,23 +335,15 @@ public class ConfigurationContext {
 	 *                                  file was found
 	 */
 	public static String[] getValues(String key, String[] defaultValues) {
-		String value = get(key, false);
-
-		if (value == null)
-			return defaultValues;
-
-		String[] values = value.split(",");
-		for (Integer i = 0; i < values.length; i++) {
-			values[i] = values[i].trim();
-		}
-		return values;
+		String[] values = getSnapshot().getValues(key);
+		return values == null ? defaultValues : values.clone();
 	}
 
 	/**
 	 * shows if the configuration context was already loaded
 	 */
 	public static boolean isInitialized() {
-		return initialized;
+		return snapshot.get() != null;
 	}
 
 }
@@ -0,0 +1,141 @@
+package de.mortensenit.model.util;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable state of the configuration. Every value is parsed once when the
+ * snapshot is created, so a lookup does not parse or split any string.<br />
+ * <br />
+ * A snapshot is never changed. Reloading or overriding a value creates a new
+ * snapshot, which {@link ConfigurationContext} publishes at once, so readers
+ * never wait and always see a consistent configuration.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public final class ConfigurationSnapshot {
+
+	/**
+	 * a configured value in all its parsed forms
+	 */
+	private static final class Value {
+		final String text;
+		final Boolean bool;
+		final Long number;
+		final String[] values;
+
+		Value(String text) {
+			this.text = text;
+			this.bool = Boolean.valueOf(text);
+			this.number = parseNumber(text);
+			this.values = text.split(",");
+			for (int i = 0; i < values.length; i++) {
+				values[i] = values[i].trim();
+			}
+		}
+
+		private static Long parseNumber(String text) {
+			try {
+				return Long.valueOf(text.trim());
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+	}
+
+	private final Map<String, Value> values;
+
+	private ConfigurationSnapshot(Map<String, Value> values) {
+		this.values = values;
+	}
+
+	/**
+	 *
+	 * @param properties the configured values, empty values are left out
+	 * @return the snapshot of the parsed values
+	 */
+	static ConfigurationSnapshot parse(Map<String, String> properties) {
+		Map<String, Value> parsed = new HashMap<>();
+		for (Map.Entry<String, String> property : properties.entrySet()) {
+			if (StringUtils.isNotNullOrEmpty(property.getValue()))
+				parsed.put(property.getKey(), new Value(property.getValue()));
+		}
+		return new ConfigurationSnapshot(parsed);
+	}
+
+	/**
+	 * create a copy of this snapshot with one value changed
+	 *
+	 * @param key   the property to be changed
+	 * @param value the new value, or null to remove the property
+	 * @return the new snapshot
+	 */
+	ConfigurationSnapshot with(String key, String value) {
+		Map<String, Value> changed = new HashMap<>(values);
+		if (StringUtils.isNullOrEmpty(value))
+			changed.remove(key);
+		else
+			changed.put(key, new Value(value));
+		return new ConfigurationSnapshot(changed);
+	}
+
+	/**
+	 *
+	 * @param key the property
+	 * @return the value or null if it was not configured
+	 */
+	public String get(String key) {
+		Value value = values.get(key);
+		return value == null ? null : value.text;
+	}
+
+	/**
+	 *
+	 * @param key the property
+	 * @return the value parsed to boolean or null if it was not configured
+	 */
+	public Boolean getBoolean(String key) {
+		Value value = values.get(key);
+		return value == null ? null : value.bool;
+	}
+
+	/**
+	 *
+	 * @param key the property
+	 * @return the value parsed to long or null if it was not configured
+	 * @throws NumberFormatException if the value is not a number
+	 */
+	public Long getLong(String key) throws NumberFormatException {
+		Value value = values.get(key);
+		if (value == null)
+			return null;
+		if (value.number == null)
+			throw new NumberFormatException(key + " is not a number: " + value.text);
+		return value.number;
+	}
+
+	/**
+	 * The array is shared by all readers of this snapshot and must not be
+	 * changed.
+	 *
+	 * @param key the property
+	 * @return the comma separated and trimmed values or null if it was not
+	 *         configured
+	 */
+	public String[] getValues(String key) {
+		Value value = values.get(key);
+		return value == null ? null : value.values;
+	}
+
+	/**
+	 *
+	 * @return the configured properties
+	 */
+	public Set<String> keySet() {
+		return Collections.unmodifiableSet(values.keySet());
+	}
+
+}
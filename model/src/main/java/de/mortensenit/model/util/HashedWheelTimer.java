@@ -0,0 +1,344 @@
+package de.mortensenit.model.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A timer for a large number of timeouts, which are mostly cancelled or
+ * postponed before they expire, like the idle timeouts of connections. The
+ * timeouts are kept in a wheel of buckets, every bucket holding the timeouts
+ * that expire in one tick of the wheel. A single thread advances the wheel once
+ * per tick and runs the expired timeouts of the current bucket.<br />
+ * <br />
+ * Scheduling and cancelling a timeout costs O(1) regardless of the number of
+ * pending timeouts. Both only add the timeout to a queue, the timer thread moves
+ * it into or out of its bucket on the next tick. A timeout expires up to one
+ * tick late, never early.<br />
+ * <br />
+ * The tasks run on the timer thread, so they must be short and must not block.
+ * Blocking work like closing a socket has to be handed to another thread.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class HashedWheelTimer {
+
+	/**
+	 * the duration of a tick of the default timer, 100 ms
+	 */
+	public static final long DEFAULT_TICK_MILLIS = 100;
+
+	/**
+	 * the number of buckets of the default timer, one round takes 51.2 seconds
+	 */
+	public static final int DEFAULT_TICKS_PER_WHEEL = 512;
+
+	private static final HashedWheelTimer defaultTimer = new HashedWheelTimer(DEFAULT_TICK_MILLIS,
+			DEFAULT_TICKS_PER_WHEEL, "wheel-timer");
+
+	private static final int STATE_PENDING = 0;
+
+	private static final int STATE_CANCELLED = 1;
+
+	private static final int STATE_EXPIRED = 2;
+
+	/**
+	 * A scheduled task. The fields used to link it into its bucket are only
+	 * touched by the timer thread.
+	 */
+	public static final class Timeout {
+
+		private final HashedWheelTimer timer;
+
+		private final Runnable task;
+
+		/**
+		 * in nanoseconds since the start of the timer
+		 */
+		private final long deadline;
+
+		private final AtomicInteger state = new AtomicInteger(STATE_PENDING);
+
+		/**
+		 * the number of full rounds of the wheel left until the timeout expires
+		 */
+		private long remainingRounds;
+
+		private Bucket bucket;
+
+		private Timeout next;
+
+		private Timeout previous;
+
+		private Timeout(HashedWheelTimer timer, Runnable task, long deadline) {
+			this.timer = timer;
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * cancel the timeout, the task is not run anymore
+		 *
+		 * @return true if the timeout was cancelled, false if it already expired
+		 *         or was cancelled before
+		 */
+		public boolean cancel() {
+			if (!state.compareAndSet(STATE_PENDING, STATE_CANCELLED))
+				return false;
+			timer.cancelledTimeouts.add(this);
+			return true;
+		}
+
+		public boolean isCancelled() {
+			return state.get() == STATE_CANCELLED;
+		}
+
+		public boolean isExpired() {
+			return state.get() == STATE_EXPIRED;
+		}
+
+		private void expire() {
+			if (!state.compareAndSet(STATE_PENDING, STATE_EXPIRED))
+				return;
+			try {
+				task.run();
+			} catch (RuntimeException e) {
+				timer.logger.error("A timeout task failed!", e);
+			}
+		}
+
+		/**
+		 * unlink the timeout from its bucket
+		 */
+		private void remove() {
+			if (bucket != null)
+				bucket.remove(this);
+			timer.pendingTimeouts.decrementAndGet();
+		}
+	}
+
+	/**
+	 * the timeouts of one tick, a doubly linked list
+	 */
+	private static final class Bucket {
+		private Timeout head;
+
+		private Timeout tail;
+
+		void add(Timeout timeout) {
+			timeout.bucket = this;
+			if (head == null) {
+				head = tail = timeout;
+			} else {
+				tail.next = timeout;
+				timeout.previous = tail;
+				tail = timeout;
+			}
+		}
+
+		void remove(Timeout timeout) {
+			if (timeout.previous != null)
+				timeout.previous.next = timeout.next;
+			else
+				head = timeout.next;
+			if (timeout.next != null)
+				timeout.next.previous = timeout.previous;
+			else
+				tail = timeout.previous;
+			timeout.next = null;
+			timeout.previous = null;
+			timeout.bucket = null;
+		}
+	}
+
+	private Logger logger = LogManager.getLogger();
+
+	private final long tickNanos;
+
+	private final Bucket[] wheel;
+
+	private final int mask;
+
+	private final long startNanos;
+
+	/**
+	 * timeouts waiting to be moved into their bucket
+	 */
+	private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * timeouts waiting to be removed from their bucket
+	 */
+	private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+
+	private final AtomicLong pendingTimeouts = new AtomicLong();
+
+	private final Thread thread;
+
+	private volatile boolean running = true;
+
+	/**
+	 * the number of ticks passed, only used by the timer thread
+	 */
+	private long tick;
+
+	/**
+	 * create and start a timer
+	 *
+	 * @param tickMillis    the duration of a tick, the precision of the timer
+	 * @param ticksPerWheel the number of buckets, rounded up to the next power of
+	 *                      two
+	 * @param threadName    the name of the timer thread
+	 */
+	public HashedWheelTimer(long tickMillis, int ticksPerWheel, String threadName) {
+		if (tickMillis <= 0 || ticksPerWheel <= 0)
+			throw new IllegalArgumentException("The tick duration and the number of ticks must be positive.");
+
+		this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+		int buckets = Integer.highestOneBit(ticksPerWheel - 1) << 1;
+		this.wheel = new Bucket[Math.max(1, buckets)];
+		for (int i = 0; i < wheel.length; i++) {
+			wheel[i] = new Bucket();
+		}
+		this.mask = wheel.length - 1;
+		this.startNanos = System.nanoTime();
+		this.thread = Thread.ofPlatform().name(threadName).daemon().start(this::run);
+	}
+
+	/**
+	 *
+	 * @return the timer shared by all connections of this JVM, ticking every
+	 *         {@value #DEFAULT_TICK_MILLIS} ms
+	 */
+	public static HashedWheelTimer getDefault() {
+		return defaultTimer;
+	}
+
+	/**
+	 * run a task once the delay passed
+	 *
+	 * @param task  a short, non-blocking task run on the timer thread
+	 * @param delay the time until the task is run
+	 * @param unit  the unit of the delay
+	 * @return the timeout to cancel the task
+	 * @throws IllegalStateException if the timer was stopped
+	 */
+	public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) throws IllegalStateException {
+		if (!running)
+			throw new IllegalStateException("The timer was stopped.");
+
+		long deadline = System.nanoTime() + unit.toNanos(Math.max(0, delay)) - startNanos;
+		Timeout timeout = new Timeout(this, task, deadline);
+		pendingTimeouts.incrementAndGet();
+		newTimeouts.add(timeout);
+		return timeout;
+	}
+
+	/**
+	 * stop the timer thread, pending timeouts do not expire anymore
+	 */
+	public void stop() {
+		running = false;
+		thread.interrupt();
+	}
+
+	/**
+	 *
+	 * @return the number of timeouts neither expired nor removed after they were
+	 *         cancelled
+	 */
+	public long getPendingTimeouts() {
+		return pendingTimeouts.get();
+	}
+
+	/**
+	 * advance the wheel once per tick until the timer is stopped
+	 */
+	private void run() {
+		while (running) {
+			long tickDeadline = waitForNextTick();
+			if (tickDeadline < 0)
+				break;
+
+			removeCancelledTimeouts();
+			transferNewTimeouts();
+			expireTimeouts(wheel[(int) (tick & mask)], tickDeadline);
+			tick++;
+		}
+	}
+
+	/**
+	 *
+	 * @return the end of the current tick in nanoseconds since the start, or -1
+	 *         if the timer was stopped
+	 */
+	private long waitForNextTick() {
+		long tickDeadline = tickNanos * (tick + 1);
+		while (true) {
+			long sleepNanos = tickDeadline - (System.nanoTime() - startNanos);
+			if (sleepNanos <= 0)
+				return tickDeadline;
+			try {
+				TimeUnit.NANOSECONDS.sleep(sleepNanos);
+			} catch (InterruptedException e) {
+				if (!running)
+					return -1;
+			}
+		}
+	}
+
+	private void removeCancelledTimeouts() {
+		Timeout timeout;
+		while ((timeout = cancelledTimeouts.poll()) != null) {
+			// a timeout cancelled before it was transferred has no bucket yet
+			if (timeout.bucket != null)
+				timeout.remove();
+		}
+	}
+
+	/**
+	 * move the new timeouts into the bucket of the tick they expire in
+	 */
+	private void transferNewTimeouts() {
+		Timeout timeout;
+		while ((timeout = newTimeouts.poll()) != null) {
+			if (timeout.isCancelled()) {
+				pendingTimeouts.decrementAndGet();
+				continue;
+			}
+			long expiryTick = timeout.deadline / tickNanos;
+			timeout.remainingRounds = (expiryTick - tick) / wheel.length;
+			// timeouts already overdue expire in the current tick
+			wheel[(int) (Math.max(expiryTick, tick) & mask)].add(timeout);
+		}
+	}
+
+	/**
+	 * run the due timeouts of a bucket and count down the rounds of the others
+	 *
+	 * @param bucket       the bucket of the current tick
+	 * @param tickDeadline the end of the current tick
+	 */
+	private void expireTimeouts(Bucket bucket, long tickDeadline) {
+		Timeout timeout = bucket.head;
+		while (timeout != null) {
+			Timeout next = timeout.next;
+			if (timeout.remainingRounds <= 0 && timeout.deadline <= tickDeadline) {
+				timeout.remove();
+				timeout.expire();
+			} else if (timeout.isCancelled()) {
+				timeout.remove();
+			} else {
+				timeout.remainingRounds--;
+			}
+			timeout = next;
+		}
+	}
+
+}
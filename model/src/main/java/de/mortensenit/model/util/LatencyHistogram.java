@@ -0,0 +1,132 @@
+package de.mortensenit.model.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies with a fixed memory footprint, that can be recorded
+ * into by many threads at once. Values below 64 are counted exactly, larger
+ * values in log-linear buckets of 32 sub-buckets per power of two, so a
+ * reported percentile is at most about 3% above the recorded value. The unit of
+ * the values is up to the caller, usually nanoseconds.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	private static final int EXACT_VALUES = SUB_BUCKETS << 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(
+			EXACT_VALUES + (Long.SIZE - SUB_BUCKET_BITS - 2) * SUB_BUCKETS);
+
+	private final AtomicLong totalCount = new AtomicLong();
+
+	private final AtomicLong sum = new AtomicLong();
+
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * count a value, negative values are counted as 0
+	 *
+	 * @param value the latency
+	 */
+	public void record(long value) {
+		value = Math.max(0, value);
+		counts.incrementAndGet(bucket(value));
+		totalCount.incrementAndGet();
+		sum.addAndGet(value);
+		max.accumulateAndGet(value, Math::max);
+	}
+
+	/**
+	 *
+	 * @return the number of recorded values
+	 */
+	public long getCount() {
+		return totalCount.get();
+	}
+
+	/**
+	 *
+	 * @return the largest recorded value or 0 if nothing was recorded
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 *
+	 * @return the average of the recorded values or 0 if nothing was recorded
+	 */
+	public long getMean() {
+		long count = totalCount.get();
+		return count == 0 ? 0 : sum.get() / count;
+	}
+
+	/**
+	 * Get the value below or at which the given fraction of the recorded values
+	 * lies. The result is the upper bound of the matching bucket, but never more
+	 * than the largest recorded value.
+	 *
+	 * @param quantile a fraction between 0 and 1, e.g. 0.999 for p99.9
+	 * @return the percentile or 0 if nothing was recorded
+	 */
+	public long getPercentile(double quantile) {
+		long count = totalCount.get();
+		if (count == 0)
+			return 0;
+
+		long rank = Math.max(1, (long) Math.ceil(quantile * count));
+		long seen = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			seen += counts.get(i);
+			if (seen >= rank)
+				return Math.min(upperBound(i), max.get());
+		}
+		return max.get();
+	}
+
+	/**
+	 * forget all recorded values
+	 */
+	public void reset() {
+		for (int i = 0; i < counts.length(); i++) {
+			counts.set(i, 0);
+		}
+		totalCount.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+
+	/**
+	 *
+	 * @param value a value of at least 0
+	 * @return the index of the bucket counting the value
+	 */
+	static int bucket(long value) {
+		if (value < EXACT_VALUES)
+			return (int) value;
+		// shift the value so that its SUB_BUCKET_BITS + 1 highest bits remain
+		int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS - 1;
+		return EXACT_VALUES + (shift - 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+	}
+
+	/**
+	 *
+	 * @param bucket the index of a bucket
+	 * @return the largest value counted by the bucket
+	 */
+	static long upperBound(int bucket) {
+		if (bucket < EXACT_VALUES)
+			return bucket;
+		int shift = (bucket - EXACT_VALUES) / SUB_BUCKETS + 1;
+		long subBucket = (bucket - EXACT_VALUES) % SUB_BUCKETS + SUB_BUCKETS;
+		return ((subBucket + 1) << shift) - 1;
+	}
+
+}
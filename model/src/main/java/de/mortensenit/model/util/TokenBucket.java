@@ -0,0 +1,119 @@
+package de.mortensenit.model.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free token bucket. The bucket holds up to its capacity in tokens and
+ * is refilled at a constant rate, every permitted event takes a token.<br />
+ * <br />
+ * Instead of a token count and a refill time, the bucket only keeps the time at
+ * which it will be full again, so taking tokens is a single compare and set and
+ * needs no refill thread. A bucket whose full time lies in the past holds its
+ * whole capacity. Taking a token moves the full time one refill interval into
+ * the future, which is not allowed to lie more than the capacity times the
+ * interval ahead.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class TokenBucket {
+
+	/**
+	 * the time it takes to refill one token, in nanoseconds
+	 */
+	private final long intervalNanos;
+
+	/**
+	 * the time it takes to refill the whole bucket, in nanoseconds
+	 */
+	private final long capacityNanos;
+
+	/**
+	 * the time at which the bucket is full again, in nanoseconds of
+	 * {@link System#nanoTime()}
+	 */
+	private final AtomicLong fullAt;
+
+	/**
+	 * a full bucket
+	 *
+	 * @param tokensPerSecond the refill rate
+	 * @param capacity        the maximum number of tokens, the number of events
+	 *                        permitted at once after a pause
+	 * @throws IllegalArgumentException if the rate or the capacity is not
+	 *                                  positive
+	 */
+	public TokenBucket(double tokensPerSecond, int capacity) throws IllegalArgumentException {
+		if (tokensPerSecond <= 0 || capacity <= 0)
+			throw new IllegalArgumentException("The rate and the capacity of a token bucket must be positive.");
+		this.intervalNanos = Math.max(1, Math.round(TimeUnit.SECONDS.toNanos(1) / tokensPerSecond));
+		this.capacityNanos = intervalNanos * capacity;
+		this.fullAt = new AtomicLong(System.nanoTime());
+	}
+
+	/**
+	 * take a token if there is one
+	 *
+	 * @return true if a token was taken, false if the bucket is empty
+	 */
+	public boolean tryAcquire() {
+		return tryAcquire(System.nanoTime());
+	}
+
+	/**
+	 *
+	 * @param nowNanos the current time of {@link System#nanoTime()}
+	 * @return true if a token was taken, false if the bucket is empty
+	 */
+	public boolean tryAcquire(long nowNanos) {
+		while (true) {
+			long current = fullAt.get();
+			long next = Math.max(current, nowNanos) + intervalNanos;
+			if (next - nowNanos > capacityNanos)
+				return false;
+			if (fullAt.compareAndSet(current, next))
+				return true;
+		}
+	}
+
+	/**
+	 * Take tokens for events which already happened, even if the bucket does
+	 * not hold enough of them. The caller should wait for the returned time
+	 * before the next events, so the rate is kept on average.
+	 *
+	 * @param tokens the number of events
+	 * @return the time in nanoseconds until the missing tokens are refilled, 0 if
+	 *         there were enough tokens
+	 */
+	public long acquire(int tokens) {
+		return acquire(tokens, System.nanoTime());
+	}
+
+	/**
+	 *
+	 * @param tokens   the number of events
+	 * @param nowNanos the current time of {@link System#nanoTime()}
+	 * @return the time in nanoseconds until the missing tokens are refilled, 0 if
+	 *         there were enough tokens
+	 */
+	public long acquire(int tokens, long nowNanos) {
+		while (true) {
+			long current = fullAt.get();
+			long next = Math.max(current, nowNanos) + intervalNanos * tokens;
+			if (fullAt.compareAndSet(current, next))
+				return Math.max(0, next - nowNanos - capacityNanos);
+		}
+	}
+
+	/**
+	 *
+	 * @param nowNanos the current time of {@link System#nanoTime()}
+	 * @return true if no token is missing, an idle bucket can be dropped and
+	 *         created again later
+	 */
+	public boolean isFull(long nowNanos) {
+		return fullAt.get() - nowNanos <= 0;
+	}
+
+}
@@ -0,0 +1,145 @@
+package de.mortensenit.model.buffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class ByteBufferPoolTest {
+
+	@Test
+	public void testSizeClasses() {
+		ByteBufferPool pool = new ByteBufferPool(4);
+		assertEquals(1024, pool.acquire(1).capacity());
+		assertEquals(1024, pool.acquire(1024).capacity());
+		assertEquals(2048, pool.acquire(1025).capacity());
+		assertEquals(32768, pool.acquire(16709).capacity());
+		assertEquals(ByteBufferPool.MAX_BUFFER_SIZE + 1, pool.acquire(ByteBufferPool.MAX_BUFFER_SIZE + 1).capacity());
+	}
+
+	@Test
+	public void testCapacityOfMatchesAcquire() {
+		ByteBufferPool pool = new ByteBufferPool(4);
+		for (int capacity : new int[] { 1, 1024, 1025, 4096, 16709, ByteBufferPool.MAX_BUFFER_SIZE + 1 }) {
+			assertEquals(pool.acquire(capacity).capacity(), ByteBufferPool.capacityOf(capacity));
+		}
+	}
+
+	@Test
+	public void testDirectBuffersAreReused() {
+		ByteBufferPool pool = new ByteBufferPool(4, true, 0);
+		ByteBuffer buffer = pool.acquire(16709);
+		assertTrue(buffer.isDirect());
+		buffer.put((byte) 1);
+		pool.release(buffer);
+		assertEquals(1, pool.getPooledBuffers());
+
+		ByteBuffer reused = pool.acquire(20000);
+		assertSame(buffer, reused);
+		assertEquals(0, reused.position());
+		assertEquals(1, pool.getAllocatedBuffers());
+		assertEquals(2, pool.getAcquiredBuffers());
+		assertEquals(32768, pool.getAllocatedBytes());
+	}
+
+	@Test
+	public void testThreadCacheIsLimited() {
+		// no shared queue, only the cache of the thread with two buffers per class
+		ByteBufferPool pool = new ByteBufferPool(0, false, 2);
+		pool.enableThreadCache();
+		ByteBuffer first = pool.acquire(1024);
+		ByteBuffer second = pool.acquire(1024);
+		ByteBuffer third = pool.acquire(1024);
+		pool.release(first);
+		pool.release(second);
+		pool.release(third);
+		assertEquals(2, pool.getPooledBuffers());
+
+		assertSame(second, pool.acquire(1024));
+		assertSame(first, pool.acquire(1024));
+		assertNotSame(third, pool.acquire(1024));
+		assertEquals(4, pool.getAllocatedBuffers());
+		pool.releaseThreadCache();
+	}
+
+	@Test
+	public void testBuffersOfEndedThreadsAreNotLost() throws InterruptedException {
+		ByteBufferPool pool = new ByteBufferPool(4, false, 2);
+		AtomicReference<ByteBuffer> released = new AtomicReference<>();
+		// like the thread of a blocking connection, which ends after releasing
+		Thread.ofPlatform().start(() -> {
+			ByteBuffer buffer = pool.acquire(1024);
+			released.set(buffer);
+			pool.release(buffer);
+		}).join();
+
+		assertEquals(1, pool.getPooledBuffers());
+		assertSame(released.get(), pool.acquire(1024));
+		assertEquals(1, pool.getAllocatedBuffers());
+		assertEquals(0, pool.getPooledBuffers());
+	}
+
+	@Test
+	public void testReleasedThreadCacheIsShared() throws InterruptedException {
+		ByteBufferPool pool = new ByteBufferPool(4, false, 2);
+		AtomicReference<ByteBuffer> released = new AtomicReference<>();
+		// like a selector loop, which returns its cache before it ends
+		Thread.ofPlatform().start(() -> {
+			pool.enableThreadCache();
+			ByteBuffer buffer = pool.acquire(1024);
+			released.set(buffer);
+			pool.release(buffer);
+			pool.releaseThreadCache();
+		}).join();
+
+		assertEquals(1, pool.getPooledBuffers());
+		assertSame(released.get(), pool.acquire(1024));
+	}
+
+	@Test
+	public void testVirtualThreadsUseTheSharedQueue() throws InterruptedException {
+		ByteBufferPool pool = new ByteBufferPool(4, false, 2);
+		AtomicReference<ByteBuffer> released = new AtomicReference<>();
+		Thread.ofVirtual().start(() -> {
+			pool.enableThreadCache();
+			ByteBuffer buffer = pool.acquire(1024);
+			released.set(buffer);
+			pool.release(buffer);
+		}).join();
+
+		assertEquals(1, pool.getPooledBuffers());
+		assertSame(released.get(), pool.acquire(1024));
+	}
+
+	@Test
+	public void testLeakDetection() {
+		ByteBufferPool pool = new ByteBufferPool(4);
+		assumeTrue(pool.isLeakDetection());
+
+		ByteBuffer released = pool.acquire(1024);
+		pool.acquire(1024);
+		pool.release(released);
+		assertEquals(1, pool.getLeaks().size());
+		assertThrows(IllegalStateException.class, () -> pool.release(released));
+	}
+
+	@Test
+	public void testSharedPools() {
+		assertFalse(ByteBufferPool.getDefault().isDirect());
+		assertTrue(ByteBufferPool.getDirect().isDirect());
+	}
+
+}
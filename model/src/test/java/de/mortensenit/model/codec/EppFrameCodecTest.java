@@ -0,0 +1,141 @@
+package de.mortensenit.model.codec;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import de.mortensenit.model.buffer.ByteBufferPool;
+import de.mortensenit.model.exceptions.FrameTooLargeException;
+
+/**
+ * 
+ * @author frederik.mortensen
+ *
+ */
+public class EppFrameCodecTest {
+
+	@Test
+	public void testEncode() {
+		EppFrameCodec codec = new EppFrameCodec(1024, new ByteBufferPool(4));
+		byte[] frame = codec.encode("<epp/>".getBytes(StandardCharsets.UTF_8));
+		assertEquals(10, frame.length);
+		assertArrayEquals(new byte[] { 0, 0, 0, 10 }, Arrays.copyOf(frame, 4));
+		assertEquals("<epp/>", new String(frame, 4, 6, StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testDecodePartialReads() throws IOException {
+		EppFrameCodec codec = new EppFrameCodec(1024, new ByteBufferPool(4));
+		byte[] first = codec.encode("<epp>1</epp>".getBytes(StandardCharsets.UTF_8));
+		byte[] second = codec.encode("<epp>2</epp>".getBytes(StandardCharsets.UTF_8));
+		byte[] stream = new byte[first.length + second.length];
+		System.arraycopy(first, 0, stream, 0, first.length);
+		System.arraycopy(second, 0, stream, first.length, second.length);
+
+		List<String> frames = new ArrayList<>();
+		for (byte b : stream) {
+			codec.readBuffer(1).put(b);
+			codec.decode(frame -> frames.add(StandardCharsets.UTF_8.decode(frame).toString()));
+		}
+		assertEquals(Arrays.asList("<epp>1</epp>", "<epp>2</epp>"), frames);
+	}
+
+	@Test
+	public void testDecodeLargeFrameFromStream() throws IOException {
+		EppFrameCodec codec = new EppFrameCodec(65536, new ByteBufferPool(4));
+		byte[] payload = new byte[20000];
+		Arrays.fill(payload, (byte) 'x');
+		ByteArrayInputStream inputStream = new ByteArrayInputStream(codec.encode(payload));
+
+		List<byte[]> frames = new ArrayList<>();
+		while (codec.read(inputStream) > 0) {
+			codec.decode(frame -> {
+				byte[] bytes = new byte[frame.remaining()];
+				frame.get(bytes);
+				frames.add(bytes);
+			});
+		}
+		assertEquals(1, frames.size());
+		assertArrayEquals(payload, frames.get(0));
+		assertEquals(FrameCodec.INITIAL_BUFFER_SIZE, codec.readBuffer(0).capacity());
+	}
+
+	@Test
+	public void testMaxFrameSize() {
+		EppFrameCodec codec = new EppFrameCodec(16, new ByteBufferPool(4));
+		codec.readBuffer(4).putInt(4 + 17);
+		assertThrows(FrameTooLargeException.class, () -> codec.decode(frame -> {
+		}));
+	}
+
+	@Test
+	public void testInvalidLength() {
+		EppFrameCodec codec = new EppFrameCodec(16, new ByteBufferPool(4));
+		codec.readBuffer(4).putInt(3);
+		assertThrows(IOException.class, () -> codec.decode(frame -> {
+		}));
+	}
+
+	@Test
+	public void testCreate() {
+		assertEquals(EppFrameCodec.class, FrameCodec.create("epp", 1024).getClass());
+		assertEquals(LineFrameCodec.class, FrameCodec.create("LINE", 1024).getClass());
+		assertThrows(IllegalArgumentException.class, () -> FrameCodec.create("invalid", 1024));
+	}
+
+	@Test
+	public void testBufferOfTlsRecordReaderIsReused() throws IOException {
+		// a TLS connection asks for room for a whole record before every unwrap
+		int applicationBufferSize = 16709;
+		ByteBufferPool bufferPool = new ByteBufferPool(4);
+		EppFrameCodec codec = new EppFrameCodec(1024, bufferPool);
+		byte[] frame = codec.encode("<epp/>".getBytes(StandardCharsets.UTF_8));
+
+		ByteBuffer buffer = codec.readBuffer(applicationBufferSize);
+		List<String> frames = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			assertSame(buffer, codec.readBuffer(applicationBufferSize));
+			buffer.put(frame);
+			codec.decode(received -> frames.add(FrameCodec.decodeUtf8(received)));
+		}
+		assertEquals(100, frames.size());
+		assertEquals(1, bufferPool.getAcquiredBuffers());
+
+		codec.release();
+		assertTrue(bufferPool.getLeaks().isEmpty());
+	}
+
+	@Test
+	public void testReleaseReturnsBufferToPool() {
+		ByteBufferPool bufferPool = new ByteBufferPool(4);
+		EppFrameCodec codec = new EppFrameCodec(1024, bufferPool);
+		ByteBuffer buffer = codec.readBuffer(0);
+		codec.release();
+		assertEquals(1, bufferPool.getPooledBuffers());
+		assertTrue(bufferPool.getLeaks().isEmpty());
+		assertSame(buffer, bufferPool.acquire(FrameCodec.INITIAL_BUFFER_SIZE));
+	}
+
+	@Test
+	public void testEncodingAcquiresNoBuffer() {
+		// like the codecs of clients, which only frame outgoing messages
+		ByteBufferPool bufferPool = new ByteBufferPool(4);
+		EppFrameCodec codec = new EppFrameCodec(1024, bufferPool);
+		codec.encode("<epp/>".getBytes(StandardCharsets.UTF_8));
+		assertEquals(0, bufferPool.getAcquiredBuffers());
+		assertTrue(bufferPool.getLeaks().isEmpty());
+	}
+
+}
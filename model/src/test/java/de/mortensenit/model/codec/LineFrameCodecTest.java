@@ -0,0 +1,94 @@
+package de.mortensenit.model.codec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import de.mortensenit.model.buffer.ByteBufferPool;
+import de.mortensenit.model.exceptions.FrameTooLargeException;
+
+/**
+ * 
+ * @author frederik.mortensen
+ *
+ */
+public class LineFrameCodecTest {
+
+	@Test
+	public void testEncode() {
+		ByteBufferPool bufferPool = new ByteBufferPool(4);
+		LineFrameCodec codec = new LineFrameCodec(1024, bufferPool);
+		assertEquals(".\n", new String(codec.encode(".".getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8));
+		// codecs only used to encode never hold a buffer
+		assertEquals(0, bufferPool.getAcquiredBuffers());
+	}
+
+	@Test
+	public void testDecodePartialReads() throws IOException {
+		LineFrameCodec codec = new LineFrameCodec(1024, new ByteBufferPool(4));
+		List<String> frames = new ArrayList<>();
+		for (byte b : "first\r\nsecond\n\nthird".getBytes(StandardCharsets.UTF_8)) {
+			codec.readBuffer(1).put(b);
+			codec.decode(frame -> frames.add(StandardCharsets.UTF_8.decode(frame).toString()));
+		}
+		assertEquals(Arrays.asList("first", "second", ""), frames);
+	}
+
+	@Test
+	public void testDecodeLongLine() throws IOException {
+		ByteBufferPool bufferPool = new ByteBufferPool(4);
+		LineFrameCodec codec = new LineFrameCodec(65536, bufferPool);
+		char[] line = new char[10000];
+		Arrays.fill(line, 'x');
+		ByteArrayInputStream inputStream = new ByteArrayInputStream(
+				(new String(line) + "\n").getBytes(StandardCharsets.UTF_8));
+
+		List<String> frames = new ArrayList<>();
+		while (codec.read(inputStream) > 0) {
+			codec.decode(frame -> frames.add(StandardCharsets.UTF_8.decode(frame).toString()));
+		}
+		assertEquals(1, frames.size());
+		assertEquals(new String(line), frames.get(0));
+
+		codec.release();
+		assertTrue(bufferPool.getLeaks().isEmpty());
+	}
+
+	@Test
+	public void testFramesShareOneView() throws IOException {
+		LineFrameCodec codec = new LineFrameCodec(1024, new ByteBufferPool(4));
+		codec.readBuffer(20).put("first\nsecond\n".getBytes(StandardCharsets.UTF_8));
+
+		List<ByteBuffer> views = new ArrayList<>();
+		List<String> frames = new ArrayList<>();
+		codec.decode(frame -> {
+			views.add(frame);
+			frames.add(FrameCodec.decodeUtf8(frame));
+			// decoding leaves the frame untouched
+			frames.add(FrameCodec.decodeUtf8(frame));
+		});
+		assertEquals(Arrays.asList("first", "first", "second", "second"), frames);
+		assertSame(views.get(0), views.get(1));
+		assertEquals(6, views.get(1).position());
+	}
+
+	@Test
+	public void testMaxFrameSize() {
+		LineFrameCodec codec = new LineFrameCodec(8, new ByteBufferPool(4));
+		codec.readBuffer(20).put("0123456789".getBytes(StandardCharsets.UTF_8));
+		assertThrows(FrameTooLargeException.class, () -> codec.decode(frame -> {
+		}));
+	}
+
+}
@@ -1,6 +1,11 @@
 package de.mortensenit.model.server;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 import org.junit.jupiter.api.Test;
 
@@ -30,4 +35,41 @@ public class GreetingsMarshallerTest {
 
 	}
 
+	@Test
+	public void testMarshallToStream() {
+		Greeting greeting = new Greeting();
+		greeting.setId(1);
+		greeting.setName("test");
+		String greetingMessage = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?><greeting id=\"1\"><name>test</name></greeting>";
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		assertTrue(GreetingMarshaller.marshall(greeting, outputStream));
+		assertEquals(greetingMessage, new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+		assertEquals(greetingMessage, new String(GreetingMarshaller.marshallToBytes(greeting), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testMarshallToByteBuffer() {
+		Greeting greeting = new Greeting();
+		greeting.setId(2);
+		greeting.setName("t\u00e4st");
+		ByteBuffer buffer = ByteBuffer.allocate(256);
+		assertTrue(GreetingMarshaller.marshall(greeting, buffer));
+		buffer.flip();
+		Greeting result = GreetingMarshaller.unmarshall(buffer);
+		assertEquals(2, result.getId());
+		assertEquals("t\u00e4st", result.getName());
+		assertEquals(buffer.limit(), buffer.position());
+	}
+
+	@Test
+	public void testUnmarshallDirectByteBuffer() {
+		byte[] greetingMessage = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?><greeting id=\"3\"><name>test</name></greeting>"
+				.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(greetingMessage.length);
+		buffer.put(greetingMessage).flip();
+		Greeting result = GreetingMarshaller.unmarshall(buffer);
+		assertEquals(3, result.getId());
+		assertEquals("test", result.getName());
+	}
+
 }
@@ -6,6 +6,9 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.junit.jupiter.api.Test;
 
 /**
@@ -63,6 +66,64 @@ public class ConfigurationContextTest {
 		assertNull(ConfigurationContext.get("invalid", false));
 	}
 
+	@Test
+	public void testSet() {
+		ConfigurationContext.reset();
+		ConfigurationContext.set("junit.value1", "overridden");
+		ConfigurationContext.set("junit.added", "added");
+		assertEquals("overridden", ConfigurationContext.get("junit.value1"));
+		assertEquals("added", ConfigurationContext.get("junit.added"));
+
+		ConfigurationContext.set("junit.added", null);
+		assertNull(ConfigurationContext.get("junit.added", false));
+
+		ConfigurationContext.loadOrRefreshContext();
+		assertEquals("junit1", ConfigurationContext.get("junit.value1"));
+	}
+
+	@Test
+	public void testReloadListener() {
+		int[] reloads = new int[1];
+		Runnable reloadListener = () -> reloads[0]++;
+		ConfigurationContext.addReloadListener(reloadListener);
+		ConfigurationContext.loadOrRefreshContext();
+		ConfigurationContext.loadOrRefreshContext();
+		assertEquals(2, reloads[0]);
+
+		ConfigurationContext.removeReloadListener(reloadListener);
+		ConfigurationContext.loadOrRefreshContext();
+		assertEquals(2, reloads[0]);
+	}
+
+	@Test
+	public void testReloadListenerRunsWithoutLock() throws InterruptedException {
+		AtomicBoolean reloading = new AtomicBoolean();
+		AtomicBoolean reloaded = new AtomicBoolean();
+		// a listener waiting for another thread, which needs the configuration
+		Runnable reloadListener = () -> {
+			if (!reloading.compareAndSet(false, true))
+				return;
+			Thread thread = new Thread(() -> {
+				ConfigurationContext.loadOrRefreshContext();
+				reloaded.set(true);
+			});
+			thread.start();
+			try {
+				thread.join(5000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		};
+		ConfigurationContext.addReloadListener(reloadListener);
+		try {
+			ConfigurationContext.reset();
+			ConfigurationContext.getSnapshot();
+			assertTrue(reloaded.get());
+		} finally {
+			ConfigurationContext.removeReloadListener(reloadListener);
+		}
+	}
+
 	@Test
 	public void testGetBoolean() {
 		ConfigurationContext.reset();
@@ -102,4 +163,64 @@ public class ConfigurationContextTest {
 		assertEquals("def2", result[1]);
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void testGetIntAndLong() {
+		ConfigurationContext.reset();
+		ConfigurationContext.set("junit.number", " 42");
+		assertEquals(42, ConfigurationContext.getInt("junit.number", 0));
+		assertEquals(42L, ConfigurationContext.getLong("junit.number", 0));
+		assertEquals(7, ConfigurationContext.getInt("invalid", 7));
+		assertEquals(-1L, ConfigurationContext.getLong("invalid", -1));
+		assertThrows(NumberFormatException.class, () -> ConfigurationContext.getInt("junit.value1", 0));
+		assertEquals(42, ConfigurationContext.getInt("junit.number"));
+		assertThrows(IllegalArgumentException.class, () -> ConfigurationContext.getInt("invalid"));
+	}
+
+	@Test
+	public void testGetValuesReturnsCopies() {
+		ConfigurationContext.reset();
+		ConfigurationContext.getValues("junit.strings.commaSeparated")[0] = "changed";
+		assertEquals("val1", ConfigurationContext.getValues("junit.strings.commaSeparated")[0]);
+	}
+
+	@Test
+	public void testSnapshotIsNotChangedBySet() {
+		ConfigurationContext.reset();
+		ConfigurationSnapshot snapshot = ConfigurationContext.getSnapshot();
+		ConfigurationContext.set("junit.value1", "overridden");
+
+		assertEquals("junit1", snapshot.get("junit.value1"));
+		assertEquals("overridden", ConfigurationContext.getSnapshot().get("junit.value1"));
+		assertFalse(snapshot == ConfigurationContext.getSnapshot());
+	}
+
+	@Test
+	public void testReadersDuringReloads() throws InterruptedException {
+		ConfigurationContext.loadOrRefreshContext();
+		AtomicBoolean running = new AtomicBoolean(true);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		Thread reader = new Thread(() -> {
+			try {
+				while (running.get()) {
+					assertEquals("junit1", ConfigurationContext.get("junit.value1"));
+					assertTrue(ConfigurationContext.getBoolean("junit.booleanTrue"));
+					assertEquals(3, ConfigurationContext.getValues("junit.strings.commaSeparated").length);
+				}
+			} catch (Throwable e) {
+				failure.set(e);
+			}
+		});
+		reader.start();
+
+		for (int i = 0; i < 200; i++) {
+			ConfigurationContext.loadOrRefreshContext();
+			ConfigurationContext.set("junit.counter", String.valueOf(i));
+		}
+		running.set(false);
+		reader.join();
+
+		assertNull(failure.get());
+		assertEquals(199, ConfigurationContext.getInt("junit.counter", 0));
+	}
+
+}
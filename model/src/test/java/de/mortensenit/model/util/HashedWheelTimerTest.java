@@ -0,0 +1,99 @@
+package de.mortensenit.model.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import de.mortensenit.model.util.HashedWheelTimer.Timeout;
+
+/**
+ * 
+ * @author frederik.mortensen
+ *
+ */
+public class HashedWheelTimerTest {
+
+	@Test
+	public void testTimeoutsExpireInOrderAndNeverEarly() throws InterruptedException {
+		HashedWheelTimer timer = new HashedWheelTimer(10, 8, "test-timer");
+		try {
+			List<Integer> expired = Collections.synchronizedList(new ArrayList<>());
+			CountDownLatch done = new CountDownLatch(3);
+			AtomicLong lastExpiry = new AtomicLong();
+			long start = System.nanoTime();
+			// 250 ms is more than three rounds of the wheel
+			for (int delay : new int[] { 250, 30, 120 }) {
+				timer.newTimeout(() -> {
+					assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(delay));
+					lastExpiry.set(System.nanoTime());
+					expired.add(delay);
+					done.countDown();
+				}, delay, TimeUnit.MILLISECONDS);
+			}
+
+			assertTrue(done.await(5, TimeUnit.SECONDS));
+			assertEquals(List.of(30, 120, 250), expired);
+			assertTrue(lastExpiry.get() - start >= TimeUnit.MILLISECONDS.toNanos(250));
+			assertEquals(0, timer.getPendingTimeouts());
+		} finally {
+			timer.stop();
+		}
+	}
+
+	@Test
+	public void testCancelledTimeoutsAreRemoved() throws InterruptedException {
+		HashedWheelTimer timer = new HashedWheelTimer(10, 8, "test-timer");
+		try {
+			CountDownLatch expired = new CountDownLatch(1);
+			Timeout cancelled = timer.newTimeout(expired::countDown, 50, TimeUnit.MILLISECONDS);
+			Timeout kept = timer.newTimeout(() -> {
+			}, 1, TimeUnit.HOURS);
+			assertEquals(2, timer.getPendingTimeouts());
+
+			assertTrue(cancelled.cancel());
+			assertFalse(cancelled.cancel());
+			assertTrue(cancelled.isCancelled());
+			assertFalse(expired.await(200, TimeUnit.MILLISECONDS));
+			assertEquals(1, timer.getPendingTimeouts());
+
+			assertTrue(kept.cancel());
+			Thread.sleep(50);
+			assertEquals(0, timer.getPendingTimeouts());
+		} finally {
+			timer.stop();
+		}
+	}
+
+	@Test
+	public void testExpiredTimeoutCannotBeCancelled() throws InterruptedException {
+		HashedWheelTimer timer = new HashedWheelTimer(10, 8, "test-timer");
+		try {
+			CountDownLatch expired = new CountDownLatch(1);
+			Timeout timeout = timer.newTimeout(expired::countDown, 0, TimeUnit.MILLISECONDS);
+			assertTrue(expired.await(5, TimeUnit.SECONDS));
+			assertTrue(timeout.isExpired());
+			assertFalse(timeout.cancel());
+		} finally {
+			timer.stop();
+		}
+	}
+
+	@Test
+	public void testStoppedTimer() {
+		HashedWheelTimer timer = new HashedWheelTimer(10, 8, "test-timer");
+		timer.stop();
+		assertThrows(IllegalStateException.class, () -> timer.newTimeout(() -> {
+		}, 1, TimeUnit.SECONDS));
+	}
+
+}
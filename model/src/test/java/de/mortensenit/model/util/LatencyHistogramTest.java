@@ -0,0 +1,63 @@
+package de.mortensenit.model.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class LatencyHistogramTest {
+
+	@Test
+	public void testExactSmallValues() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 50; i++) {
+			histogram.record(i);
+		}
+		assertEquals(50, histogram.getCount());
+		assertEquals(25, histogram.getPercentile(0.5));
+		assertEquals(50, histogram.getPercentile(0.99));
+		assertEquals(50, histogram.getMax());
+		assertEquals(25, histogram.getMean());
+	}
+
+	@Test
+	public void testPercentilePrecision() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long i = 1; i <= 100000; i++) {
+			histogram.record(i * 1000);
+		}
+		assertWithinPrecision(50_000_000, histogram.getPercentile(0.5));
+		assertWithinPrecision(99_000_000, histogram.getPercentile(0.99));
+		assertWithinPrecision(99_900_000, histogram.getPercentile(0.999));
+		assertEquals(100_000_000, histogram.getPercentile(1.0));
+	}
+
+	@Test
+	public void testBucketBounds() {
+		for (long value : new long[] { 0, 63, 64, 65, 127, 128, 1000, 123456789, Long.MAX_VALUE }) {
+			int bucket = LatencyHistogram.bucket(value);
+			assertTrue(LatencyHistogram.upperBound(bucket) >= value);
+			assertTrue(bucket == 0 || LatencyHistogram.upperBound(bucket - 1) < value);
+		}
+	}
+
+	@Test
+	public void testEmptyAndReset() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getPercentile(0.99));
+		histogram.record(4711);
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+	}
+
+	private static void assertWithinPrecision(long expected, long actual) {
+		assertTrue(actual >= expected && actual <= expected + expected / 32, "expected ~" + expected + " but was " + actual);
+	}
+
+}
@@ -0,0 +1,63 @@
+package de.mortensenit.model.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class TokenBucketTest {
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	@Test
+	public void testBurstIsPermittedAtOnce() {
+		TokenBucket bucket = new TokenBucket(10, 5);
+		long now = System.nanoTime();
+		for (int i = 0; i < 5; i++) {
+			assertTrue(bucket.tryAcquire(now));
+		}
+		assertFalse(bucket.tryAcquire(now));
+	}
+
+	@Test
+	public void testBucketIsRefilled() {
+		TokenBucket bucket = new TokenBucket(10, 5);
+		long now = System.nanoTime();
+		for (int i = 0; i < 5; i++) {
+			bucket.tryAcquire(now);
+		}
+		assertFalse(bucket.isFull(now));
+
+		// one token every 100 ms
+		assertTrue(bucket.tryAcquire(now + SECOND / 10));
+		assertFalse(bucket.tryAcquire(now + SECOND / 10));
+		assertTrue(bucket.isFull(now + SECOND));
+	}
+
+	@Test
+	public void testDebtIsReturnedAsDelay() {
+		TokenBucket bucket = new TokenBucket(10, 5);
+		long now = System.nanoTime();
+		assertEquals(0, bucket.acquire(5, now));
+		// three tokens missing, refilled in 300 ms
+		assertEquals(3 * SECOND / 10, bucket.acquire(3, now));
+		assertFalse(bucket.tryAcquire(now + 3 * SECOND / 10));
+		assertTrue(bucket.tryAcquire(now + 4 * SECOND / 10));
+	}
+
+	@Test
+	public void testInvalidRate() {
+		assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 5));
+		assertThrows(IllegalArgumentException.class, () -> new TokenBucket(10, 0));
+	}
+
+}
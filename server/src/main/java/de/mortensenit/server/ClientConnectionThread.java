@@ -1,19 +1,30 @@
 package de.mortensenit.server;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import de.mortensenit.model.codec.FrameCodec;
+import de.mortensenit.model.exceptions.FrameTooLargeException;
+
 /**
+ * Serves an accepted client connection. A TLS connection first waits for the
+ * client hello and then for its handshake on the {@link HandshakeExecutor}. If
+ * {@link ConnectionTimeouts} are set, the socket is closed when the client
+ * stops talking, which ends the blocking read. If the client exceeds its
+ * message rate, the thread sleeps before it reads again.
  * 
  * @author frederik.mortensen
  *
@@ -22,7 +33,62 @@ public class ClientConnectionThread implements Runnable {
 
 	private Logger logger = LogManager.getLogger();
 
-	private Socket clientSocket = null;
+	private volatile Socket clientSocket = null;
+
+	private ConnectionRegistry connectionRegistry = null;
+
+	private long connectionId;
+
+	private FrameCodec frameCodec = null;
+
+	private MessageHandler messageHandler = new LoggingMessageHandler();
+
+	/**
+	 * null for no timeouts
+	 */
+	private ConnectionTimeouts connectionTimeouts = null;
+
+	private ConnectionTimeouts.Watchdog watchdog = null;
+
+	/**
+	 * runs the handshake of a tls connection
+	 */
+	private HandshakeExecutor handshakeExecutor = null;
+
+	/**
+	 * creates the tls socket over the accepted socket, null for plain connections
+	 */
+	private SSLSocketFactory sslSocketFactory = null;
+
+	/**
+	 * the protocols, cipher suites and client authentication of a tls connection
+	 */
+	private SSLParameters sslParameters = null;
+
+	/**
+	 * why the connection timed out, null as long as it did not
+	 */
+	private volatile String timeoutReason = null;
+
+	/**
+	 * null for no rate limits
+	 */
+	private ClientRateLimiter rateLimiter = null;
+
+	/**
+	 * the identity the messages are limited by, null if they are not limited
+	 */
+	private String clientIdentity = null;
+
+	/**
+	 * the number of messages received with the current read
+	 */
+	private int receivedMessages = 0;
+
+	/**
+	 * responses to the messages of the current read
+	 */
+	private final ByteArrayOutputStream responses = new ByteArrayOutputStream();
 	
 	/**
 	 * 
@@ -30,48 +96,166 @@ public class ClientConnectionThread implements Runnable {
 	@Override
 	public void run() {
 
-		try (OutputStream os = clientSocket.getOutputStream();
-				BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(os));
-				InputStream is = clientSocket.getInputStream();
-				BufferedReader reader = new BufferedReader(new InputStreamReader(is))) {
+		if (!handshake()) {
+			close();
+			return;
+		}
+
+		try (OutputStream os = clientSocket.getOutputStream(); InputStream is = clientSocket.getInputStream()) {
 
 			logger.info("Connection to client established.");
-			
+
+			if (connectionTimeouts != null)
+				watchdog = connectionTimeouts.watch(this::onTimeout);
+			if (rateLimiter != null && rateLimiter.isMessageRateLimited())
+				clientIdentity = ClientRateLimiter.identify(
+						clientSocket instanceof SSLSocket sslSocket ? sslSocket.getSession() : null,
+						clientSocket.getRemoteSocketAddress());
+
 			//first send greeting message
-			sendGreeting(writer);
+			sendGreeting(os);
 
+			// every read hands all complete messages to the handler right away, the
+			// responses to them are written together
 			while (true) {
-				try {
-					String line = reader.readLine();
-					if (line == null) {
-						logger.info("Connection to client was closed.");
-						break;
-					}
-					logger.info(this.toString() + " received: " + line);
-					Thread.sleep(1000);
-				} catch (InterruptedException e) {
-					logger.error("Sleep interrupted.", e);
+				int read = frameCodec.read(is);
+				if (read < 0) {
+					logger.info("Connection to client was closed.");
+					break;
 				}
+				frameCodec.decode(this::onFrame);
+				if (watchdog != null)
+					watchdog.onReceived(frameCodec.isFramePending());
+				writeResponses(os);
+				throttle();
 			}
 		} catch (SocketException e) {
-			logger.error("The client connection was lost!");
+			if (timeoutReason != null)
+				logger.info("Closed the client connection, " + timeoutReason + ".");
+			else
+				logger.error("The client connection was lost!");
+		} catch (FrameTooLargeException e) {
+			logger.error("Closing client connection: " + e.getMessage());
 		} catch (Exception e2) {
-			logger.error("A general server exception occured!", e2);
+			if (timeoutReason != null)
+				logger.info("Closed the client connection, " + timeoutReason + ".");
+			else
+				logger.error("A general server exception occured!", e2);
 		} finally {
+			close();
 			logger.info("Connection closed through client side on port.");
 		}
 
 	}
-	
+
+	/**
+	 * run the handshake of a tls connection before the first read, the accepted
+	 * socket is replaced by the tls socket
+	 * 
+	 * @return true if the connection is ready to use, false if the handshake
+	 *         failed
+	 */
+	private boolean handshake() {
+		if (sslSocketFactory == null)
+			return true;
+		try {
+			clientSocket = handshakeExecutor.handshake(clientSocket, sslSocketFactory, sslParameters);
+			return true;
+		} catch (IOException e) {
+			logger.error("TLS handshake failed: " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * close the socket, release the codec and unregister the connection. Also used
+	 * if the connection is never served, because its handshake failed.
+	 */
+	public void close() {
+		if (watchdog != null)
+			watchdog.stop();
+		closeClientSocket();
+		frameCodec.release();
+		if (connectionRegistry != null)
+			connectionRegistry.unregister(connectionId);
+	}
+
 	/**
+	 * Close the socket when a timeout passed, so the blocking read fails. Closing
+	 * a TLS socket may block while sending the alert, so it is not done on the
+	 * timer thread.
 	 * 
-	 * @param writer
+	 * @param reason the timeout that passed
+	 */
+	private void onTimeout(String reason) {
+		timeoutReason = reason;
+		Thread.ofVirtual().start(this::closeClientSocket);
+	}
+
+	/**
+	 * the encoded greeting is written in one piece, bypassing any char encoding
+	 * 
+	 * @param os
 	 * @throws IOException
 	 */
-	private void sendGreeting(BufferedWriter writer) throws IOException {
+	private void sendGreeting(OutputStream os) throws IOException {
 		GreetingController greetingController = new GreetingController();
-		String greetingMessage = greetingController.greetClient();
-		writer.write(greetingMessage);
+		// greeting ids wrap around after 2^31 connections
+		byte[] greetingMessage = greetingController.greetClientEncoded((int) connectionId);
+		os.write(frameCodec.encode(greetingMessage));
+		os.flush();
+	}
+
+	/**
+	 * 
+	 * @param frame a complete message received from the client
+	 * @throws IOException
+	 */
+	private void onFrame(ByteBuffer frame) throws IOException {
+		receivedMessages++;
+		byte[] response = messageHandler.onMessage(connectionId, frame);
+		if (response != null)
+			responses.write(frameCodec.encode(response));
+	}
+
+	/**
+	 * write the responses collected during the last read with a single write
+	 * 
+	 * @param os
+	 * @throws IOException
+	 */
+	private void writeResponses(OutputStream os) throws IOException {
+		if (responses.size() == 0)
+			return;
+		responses.writeTo(os);
+		os.flush();
+		responses.reset();
+	}
+
+	/**
+	 * count the messages of the last read and wait before the next read if the
+	 * client exceeded its message rate
+	 * 
+	 * @throws InterruptedException
+	 */
+	private void throttle() throws InterruptedException {
+		if (clientIdentity == null || receivedMessages == 0)
+			return;
+		long delayNanos = rateLimiter.onMessages(clientIdentity, receivedMessages);
+		receivedMessages = 0;
+		if (delayNanos > 0)
+			TimeUnit.NANOSECONDS.sleep(delayNanos);
+	}
+
+	/**
+	 * make sure the socket is closed even if the streams could not be opened
+	 */
+	private void closeClientSocket() {
+		try {
+			clientSocket.close();
+		} catch (IOException e) {
+			logger.error("Closing the client socket failed!", e);
+		}
 	}
 
 	public Socket getClientSocket() {
@@ -82,4 +266,76 @@ public class ClientConnectionThread implements Runnable {
 		this.clientSocket = clientSocket;
 	}
 
+	public FrameCodec getFrameCodec() {
+		return frameCodec;
+	}
+
+	public void setFrameCodec(FrameCodec frameCodec) {
+		this.frameCodec = frameCodec;
+	}
+
+	public MessageHandler getMessageHandler() {
+		return messageHandler;
+	}
+
+	public void setMessageHandler(MessageHandler messageHandler) {
+		this.messageHandler = messageHandler;
+	}
+
+	public ConnectionTimeouts getConnectionTimeouts() {
+		return connectionTimeouts;
+	}
+
+	public void setConnectionTimeouts(ConnectionTimeouts connectionTimeouts) {
+		this.connectionTimeouts = connectionTimeouts;
+	}
+
+	public HandshakeExecutor getHandshakeExecutor() {
+		return handshakeExecutor;
+	}
+
+	public void setHandshakeExecutor(HandshakeExecutor handshakeExecutor) {
+		this.handshakeExecutor = handshakeExecutor;
+	}
+
+	public SSLSocketFactory getSslSocketFactory() {
+		return sslSocketFactory;
+	}
+
+	public void setSslSocketFactory(SSLSocketFactory sslSocketFactory) {
+		this.sslSocketFactory = sslSocketFactory;
+	}
+
+	public SSLParameters getSslParameters() {
+		return sslParameters;
+	}
+
+	public void setSslParameters(SSLParameters sslParameters) {
+		this.sslParameters = sslParameters;
+	}
+
+	public ClientRateLimiter getRateLimiter() {
+		return rateLimiter;
+	}
+
+	public void setRateLimiter(ClientRateLimiter rateLimiter) {
+		this.rateLimiter = rateLimiter;
+	}
+
+	public ConnectionRegistry getConnectionRegistry() {
+		return connectionRegistry;
+	}
+
+	public void setConnectionRegistry(ConnectionRegistry connectionRegistry) {
+		this.connectionRegistry = connectionRegistry;
+	}
+
+	public long getConnectionId() {
+		return connectionId;
+	}
+
+	public void setConnectionId(long connectionId) {
+		this.connectionId = connectionId;
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,267 @@
+package de.mortensenit.server;
+
+import static de.mortensenit.server.ServerConfigKeys.SERVER_RATE_LIMIT_CONNECTIONS;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_RATE_LIMIT_CONNECTIONS_BURST;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_RATE_LIMIT_MESSAGES;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_RATE_LIMIT_MESSAGES_BURST;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSession;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.mortensenit.model.util.ConfigurationContext;
+import de.mortensenit.model.util.HashedWheelTimer;
+import de.mortensenit.model.util.TokenBucket;
+
+/**
+ * Limits the rate of new connections and of received messages per client with
+ * a {@link TokenBucket} for every client.<br />
+ * <br />
+ * New connections are limited per remote address and checked right after the
+ * accept, before the connection is admitted and before the TLS handshake
+ * spends any cpu on it. Connections above the rate are closed.<br />
+ * <br />
+ * Messages are limited per client identity, which is the subject of the client
+ * certificate if the client authenticated itself and the remote address
+ * otherwise, so all connections of a client share its rate. Messages above the
+ * rate are not dropped, the connection stops reading until the client is
+ * within its rate again.<br />
+ * <br />
+ * The buckets of clients which were idle long enough to have a full bucket are
+ * dropped regularly, so the number of buckets follows the number of active
+ * clients.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class ClientRateLimiter {
+
+	/**
+	 * how often the buckets of idle clients are dropped
+	 */
+	public static final long SWEEP_INTERVAL_MILLIS = 60000;
+
+	private Logger logger = LogManager.getLogger();
+
+	/**
+	 * 0 for no limit
+	 */
+	private final double connectionsPerSecond;
+
+	private final int connectionBurst;
+
+	/**
+	 * 0 for no limit
+	 */
+	private final double messagesPerSecond;
+
+	private final int messageBurst;
+
+	private final HashedWheelTimer timer;
+
+	private final Map<InetAddress, TokenBucket> connectionBuckets = new ConcurrentHashMap<>();
+
+	private final Map<String, TokenBucket> messageBuckets = new ConcurrentHashMap<>();
+
+	private final AtomicBoolean sweepScheduled = new AtomicBoolean();
+
+	private final LongAdder rejectedConnections = new LongAdder();
+
+	private final LongAdder throttledReads = new LongAdder();
+
+	/**
+	 *
+	 * @param connectionsPerSecond the new connections permitted per remote
+	 *                             address and second, 0 for no limit
+	 * @param connectionBurst      the new connections permitted at once
+	 * @param messagesPerSecond    the messages permitted per client and second, 0
+	 *                             for no limit
+	 * @param messageBurst         the messages permitted at once
+	 * @param timer                the timer dropping the idle buckets
+	 */
+	public ClientRateLimiter(double connectionsPerSecond, int connectionBurst, double messagesPerSecond,
+			int messageBurst, HashedWheelTimer timer) {
+		this.connectionsPerSecond = Math.max(0, connectionsPerSecond);
+		this.connectionBurst = Math.max(1, connectionBurst);
+		this.messagesPerSecond = Math.max(0, messagesPerSecond);
+		this.messageBurst = Math.max(1, messageBurst);
+		this.timer = timer;
+	}
+
+	/**
+	 * create a limiter with the configured rates on the shared timer
+	 *
+	 * @return the new limiter
+	 */
+	public static ClientRateLimiter create() {
+		double connectionsPerSecond = Double
+				.parseDouble(ConfigurationContext.get(SERVER_RATE_LIMIT_CONNECTIONS, "0"));
+		int connectionBurst = ConfigurationContext.getInt(SERVER_RATE_LIMIT_CONNECTIONS_BURST,
+				(int) Math.ceil(connectionsPerSecond));
+		double messagesPerSecond = Double.parseDouble(ConfigurationContext.get(SERVER_RATE_LIMIT_MESSAGES, "0"));
+		int messageBurst = ConfigurationContext.getInt(SERVER_RATE_LIMIT_MESSAGES_BURST,
+				(int) Math.ceil(messagesPerSecond));
+		return new ClientRateLimiter(connectionsPerSecond, connectionBurst, messagesPerSecond, messageBurst,
+				HashedWheelTimer.getDefault());
+	}
+
+	/**
+	 * check the connection rate of a client before its connection is admitted
+	 *
+	 * @param remoteAddress the remote address of the accepted connection
+	 * @return true if the connection may be served, false if it has to be closed
+	 */
+	public boolean tryConnect(SocketAddress remoteAddress) {
+		if (connectionsPerSecond == 0 || !(remoteAddress instanceof InetSocketAddress inetSocketAddress))
+			return true;
+
+		InetAddress address = inetSocketAddress.getAddress();
+		TokenBucket bucket = connectionBuckets.computeIfAbsent(address,
+				key -> new TokenBucket(connectionsPerSecond, connectionBurst));
+		scheduleSweep();
+		if (bucket.tryAcquire())
+			return true;
+
+		rejectedConnections.increment();
+		if (logger.isDebugEnabled())
+			logger.debug("Connection rate of " + address.getHostAddress() + " exceeded, rejecting client.");
+		return false;
+	}
+
+	/**
+	 * count the messages received from a client
+	 *
+	 * @param clientIdentity the identity of the client, see
+	 *                       {@link #identify(SSLSession, SocketAddress)}
+	 * @param messages       the number of messages received with the last read
+	 * @return the time in nanoseconds the connection has to wait before it reads
+	 *         again, 0 if the client is within its rate
+	 */
+	public long onMessages(String clientIdentity, int messages) {
+		if (messagesPerSecond == 0 || messages == 0)
+			return 0;
+
+		TokenBucket bucket = messageBuckets.computeIfAbsent(clientIdentity,
+				key -> new TokenBucket(messagesPerSecond, messageBurst));
+		scheduleSweep();
+		long delayNanos = bucket.acquire(messages);
+		if (delayNanos > 0)
+			throttledReads.increment();
+		return delayNanos;
+	}
+
+	/**
+	 * Get the identity a client is limited by. The certificate of the client is
+	 * only known after the handshake.
+	 *
+	 * @param session       the TLS session of the connection, or null for a plain
+	 *                      connection
+	 * @param remoteAddress the remote address of the connection
+	 * @return the subject of the client certificate, or the remote address if
+	 *         the client did not authenticate itself
+	 */
+	public static String identify(SSLSession session, SocketAddress remoteAddress) {
+		if (session != null) {
+			try {
+				return session.getPeerPrincipal().getName();
+			} catch (SSLPeerUnverifiedException e) {
+				// no client authentication
+			}
+		}
+		if (remoteAddress instanceof InetSocketAddress inetSocketAddress)
+			return inetSocketAddress.getAddress().getHostAddress();
+		return String.valueOf(remoteAddress);
+	}
+
+	/**
+	 * drop the buckets of idle clients in {@value #SWEEP_INTERVAL_MILLIS} ms, as
+	 * long as there are buckets
+	 */
+	private void scheduleSweep() {
+		if (sweepScheduled.get() || !sweepScheduled.compareAndSet(false, true))
+			return;
+		try {
+			timer.newTimeout(this::sweep, SWEEP_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+		} catch (IllegalStateException e) {
+			// stopped, the buckets are kept
+		}
+	}
+
+	/**
+	 * drop the buckets of the clients whose buckets are full
+	 */
+	void sweep() {
+		long now = System.nanoTime();
+		connectionBuckets.values().removeIf(bucket -> bucket.isFull(now));
+		messageBuckets.values().removeIf(bucket -> bucket.isFull(now));
+		sweepScheduled.set(false);
+		if (!connectionBuckets.isEmpty() || !messageBuckets.isEmpty())
+			scheduleSweep();
+	}
+
+	/**
+	 *
+	 * @return the timer the connections wait on while they are throttled
+	 */
+	public HashedWheelTimer getTimer() {
+		return timer;
+	}
+
+	/**
+	 *
+	 * @return true if messages are limited, so the connections have to count
+	 *         them
+	 */
+	public boolean isMessageRateLimited() {
+		return messagesPerSecond > 0;
+	}
+
+	/**
+	 *
+	 * @return the number of connections closed because their client exceeded
+	 *         the connection rate
+	 */
+	public long getRejectedConnections() {
+		return rejectedConnections.sum();
+	}
+
+	/**
+	 *
+	 * @return how often a connection had to pause reading because its client
+	 *         exceeded the message rate
+	 */
+	public long getThrottledReads() {
+		return throttledReads.sum();
+	}
+
+	/**
+	 *
+	 * @return the number of connection and message buckets, kept for the clients
+	 *         active within the last sweep interval
+	 */
+	public int getBuckets() {
+		return connectionBuckets.size() + messageBuckets.size();
+	}
+
+	@Override
+	public String toString() {
+		return "connection rate " + format(connectionsPerSecond, connectionBurst) + ", message rate "
+				+ format(messagesPerSecond, messageBurst);
+	}
+
+	private static String format(double perSecond, int burst) {
+		return perSecond > 0 ? perSecond + " per second with a burst of " + burst : "unlimited";
+	}
+
+}
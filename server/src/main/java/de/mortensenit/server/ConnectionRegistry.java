@@ -0,0 +1,177 @@
+package de.mortensenit.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Keeps track of all open client connections of the server. Connections are
+ * registered with a unique id when they are accepted and unregistered as soon
+ * as they are closed.<br />
+ * <br />
+ * If a maximum number of connections is configured, new connections have to be
+ * admitted first. This happens right after the accept and before the TLS
+ * handshake, so clients above the limit do not cost any handshake CPU. Depending
+ * on the policy they are either rejected or have to wait until another
+ * connection is closed.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class ConnectionRegistry {
+
+	private Logger logger = LogManager.getLogger();
+
+	private final Map<Long, Closeable> connections = new ConcurrentHashMap<>();
+
+	private final AtomicLong nextConnectionId = new AtomicLong();
+
+	/**
+	 * 0 means unlimited
+	 */
+	private final int maxConnections;
+
+	/**
+	 * true if connections above the limit wait, false if they are rejected
+	 */
+	private final boolean queueing;
+
+	/**
+	 * one permit per admitted connection, null if unlimited
+	 */
+	private final Semaphore permits;
+
+	private final LongAdder admittedConnections = new LongAdder();
+
+	private final LongAdder rejectedConnections = new LongAdder();
+
+	/**
+	 *
+	 * @param maxConnections the maximum number of open connections, 0 for
+	 *                       unlimited
+	 * @param queueing       true if connections above the limit should wait, false
+	 *                       if they should be rejected
+	 */
+	public ConnectionRegistry(int maxConnections, boolean queueing) {
+		this.maxConnections = Math.max(0, maxConnections);
+		this.queueing = queueing;
+		this.permits = this.maxConnections > 0 ? new Semaphore(this.maxConnections) : null;
+	}
+
+	/**
+	 * admit a new connection before it is used. Must be followed by
+	 * {@link #register(Closeable)} if successful.
+	 *
+	 * @return true if the connection may be registered, false if it was rejected
+	 *         and has to be closed
+	 * @throws InterruptedException if the thread was interrupted while waiting for
+	 *                              a free slot
+	 */
+	public boolean admit() throws InterruptedException {
+		if (permits != null) {
+			if (queueing) {
+				permits.acquire();
+			} else if (!permits.tryAcquire()) {
+				rejectedConnections.increment();
+				logger.warn("Maximum of " + maxConnections + " connections reached, rejecting client.");
+				return false;
+			}
+		}
+		admittedConnections.increment();
+		return true;
+	}
+
+	/**
+	 * register an admitted connection
+	 *
+	 * @param connection the connection, closed by {@link #closeAll()}
+	 * @return the id of the connection, needed to unregister it
+	 */
+	public long register(Closeable connection) {
+		long connectionId = nextConnectionId.incrementAndGet();
+		connections.put(connectionId, connection);
+		return connectionId;
+	}
+
+	/**
+	 * free the slot of an admitted connection, which failed before it was
+	 * registered
+	 */
+	public void release() {
+		if (permits != null)
+			permits.release();
+	}
+
+	/**
+	 * unregister a closed connection and free its slot. Unregistering a connection
+	 * more than once has no effect.
+	 *
+	 * @param connectionId the id returned by {@link #register(Closeable)}
+	 */
+	public void unregister(long connectionId) {
+		if (connections.remove(connectionId) != null && permits != null)
+			permits.release();
+	}
+
+	/**
+	 * close all registered connections, e.g. on shutdown
+	 */
+	public void closeAll() {
+		for (Map.Entry<Long, Closeable> entry : connections.entrySet()) {
+			try {
+				entry.getValue().close();
+			} catch (IOException e) {
+				logger.error("Closing connection " + entry.getKey() + " failed!", e);
+			}
+			unregister(entry.getKey());
+		}
+	}
+
+	/**
+	 *
+	 * @return the number of currently open connections
+	 */
+	public int getOpenConnections() {
+		return connections.size();
+	}
+
+	/**
+	 *
+	 * @return the number of connections waiting for a free slot
+	 */
+	public int getWaitingConnections() {
+		return permits != null ? permits.getQueueLength() : 0;
+	}
+
+	/**
+	 *
+	 * @return the number of connections admitted since the server started
+	 */
+	public long getAdmittedConnections() {
+		return admittedConnections.sum();
+	}
+
+	/**
+	 *
+	 * @return the number of connections rejected since the server started
+	 */
+	public long getRejectedConnections() {
+		return rejectedConnections.sum();
+	}
+
+	/**
+	 *
+	 * @return the maximum number of open connections, 0 if unlimited
+	 */
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
+}
@@ -0,0 +1,216 @@
+package de.mortensenit.server;
+
+import static de.mortensenit.server.ServerConfigKeys.SERVER_IDLE_TIMEOUT;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_READ_TIMEOUT;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import de.mortensenit.model.util.ConfigurationContext;
+import de.mortensenit.model.util.HashedWheelTimer;
+import de.mortensenit.model.util.HashedWheelTimer.Timeout;
+
+/**
+ * Closes connections that stopped talking. A connection is closed if nothing
+ * was received for the idle timeout, or if a message was started but not
+ * completed within the read timeout, which catches clients that went away in
+ * the middle of a message as well as clients that send very slowly.<br />
+ * <br />
+ * All connections share one {@link HashedWheelTimer}. A connection does not
+ * reschedule its timeout on every read, it only records the time of the read in
+ * its {@link Watchdog}. The timeout checks the recorded times when it expires
+ * and schedules itself again for the remaining time, so a busy connection costs
+ * one timer update per timeout period and a read costs a volatile write.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class ConnectionTimeouts {
+
+	private final HashedWheelTimer timer;
+
+	/**
+	 * 0 for no idle timeout
+	 */
+	private final long idleTimeoutNanos;
+
+	/**
+	 * 0 for no read timeout
+	 */
+	private final long readTimeoutNanos;
+
+	private final LongAdder idleTimeouts = new LongAdder();
+
+	private final LongAdder readTimeouts = new LongAdder();
+
+	/**
+	 * Watches a single connection. The times are written by the thread serving
+	 * the connection and read by the timer thread.
+	 */
+	public final class Watchdog {
+
+		private final Consumer<String> onTimeout;
+
+		private volatile long lastReceived;
+
+		private volatile long frameStarted;
+
+		private volatile boolean framePending;
+
+		private volatile Timeout timeout;
+
+		private volatile boolean stopped;
+
+		private Watchdog(Consumer<String> onTimeout) {
+			this.onTimeout = onTimeout;
+			this.lastReceived = System.nanoTime();
+		}
+
+		/**
+		 * record a read of the connection
+		 *
+		 * @param framePending true if the received bytes end with an incomplete
+		 *                     message
+		 */
+		public void onReceived(boolean framePending) {
+			long now = System.nanoTime();
+			lastReceived = now;
+			if (framePending) {
+				if (!this.framePending) {
+					// written before the flag, so the timer never sees an old start
+					frameStarted = now;
+					this.framePending = true;
+				}
+			} else if (this.framePending) {
+				this.framePending = false;
+			}
+		}
+
+		/**
+		 * stop watching the connection, called when it is closed
+		 */
+		public void stop() {
+			stopped = true;
+			Timeout current = timeout;
+			if (current != null)
+				current.cancel();
+		}
+
+		/**
+		 * close the connection if a timeout passed, otherwise check again when the
+		 * earliest one could pass
+		 */
+		private void check() {
+			if (stopped)
+				return;
+
+			long now = System.nanoTime();
+			long delay = Long.MAX_VALUE;
+
+			if (idleTimeoutNanos > 0) {
+				long idleRemaining = lastReceived + idleTimeoutNanos - now;
+				if (idleRemaining <= 0) {
+					idleTimeouts.increment();
+					stopped = true;
+					onTimeout.accept("nothing received for " + format(idleTimeoutNanos));
+					return;
+				}
+				delay = idleRemaining;
+			}
+
+			if (readTimeoutNanos > 0) {
+				// a message started after this check is caught one read timeout later
+				long readRemaining = readTimeoutNanos;
+				if (framePending) {
+					readRemaining = frameStarted + readTimeoutNanos - now;
+					if (readRemaining <= 0) {
+						readTimeouts.increment();
+						stopped = true;
+						onTimeout.accept("message not completed within " + format(readTimeoutNanos));
+						return;
+					}
+				}
+				delay = Math.min(delay, readRemaining);
+			}
+
+			schedule(delay);
+		}
+
+		private void schedule(long delayNanos) {
+			Timeout next = timer.newTimeout(this::check, delayNanos, TimeUnit.NANOSECONDS);
+			timeout = next;
+			// stopped while scheduling
+			if (stopped)
+				next.cancel();
+		}
+	}
+
+	/**
+	 *
+	 * @param timer             the timer shared by the watched connections
+	 * @param idleTimeoutMillis the time a connection may receive nothing, 0 for no
+	 *                          idle timeout
+	 * @param readTimeoutMillis the time a started message may take to be
+	 *                          received, 0 for no read timeout
+	 */
+	public ConnectionTimeouts(HashedWheelTimer timer, long idleTimeoutMillis, long readTimeoutMillis) {
+		this.timer = timer;
+		this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, idleTimeoutMillis));
+		this.readTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, readTimeoutMillis));
+	}
+
+	/**
+	 * create the timeouts with the configured durations on the shared timer
+	 *
+	 * @return the new timeouts
+	 */
+	public static ConnectionTimeouts create() {
+		long idleTimeoutMillis = ConfigurationContext.getLong(SERVER_IDLE_TIMEOUT, 300000);
+		long readTimeoutMillis = ConfigurationContext.getLong(SERVER_READ_TIMEOUT, 30000);
+		return new ConnectionTimeouts(HashedWheelTimer.getDefault(), idleTimeoutMillis, readTimeoutMillis);
+	}
+
+	/**
+	 * start watching a connection
+	 *
+	 * @param onTimeout closes the connection, called once on the timer thread with
+	 *                  the reason. It must not block.
+	 * @return the watchdog to record the reads and to stop watching when the
+	 *         connection is closed
+	 */
+	public Watchdog watch(Consumer<String> onTimeout) {
+		Watchdog watchdog = new Watchdog(onTimeout);
+		if (idleTimeoutNanos > 0 || readTimeoutNanos > 0)
+			watchdog.schedule(Math.min(idleTimeoutNanos > 0 ? idleTimeoutNanos : Long.MAX_VALUE,
+					readTimeoutNanos > 0 ? readTimeoutNanos : Long.MAX_VALUE));
+		return watchdog;
+	}
+
+	/**
+	 *
+	 * @return the number of connections closed because nothing was received
+	 */
+	public long getIdleTimeouts() {
+		return idleTimeouts.sum();
+	}
+
+	/**
+	 *
+	 * @return the number of connections closed because a message was not
+	 *         completed in time
+	 */
+	public long getReadTimeouts() {
+		return readTimeouts.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "idle timeout " + format(idleTimeoutNanos) + ", read timeout " + format(readTimeoutNanos);
+	}
+
+	private static String format(long timeoutNanos) {
+		return timeoutNanos > 0 ? TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms" : "unlimited";
+	}
+
+}
@@ -1,23 +1,167 @@
 package de.mortensenit.server;
 
+import static de.mortensenit.server.ServerConfigKeys.SERVER_GREETING;
+
+import java.nio.charset.StandardCharsets;
+
 import de.mortensenit.model.server.Greeting;
 import de.mortensenit.model.server.GreetingMarshaller;
+import de.mortensenit.model.util.ConfigurationContext;
+import de.mortensenit.model.util.ConfigurationSnapshot;
 
 /**
- * 
+ * Creates the greeting every client receives after the connection was
+ * established.<br />
+ * <br />
+ * The greeting only differs in its id, so it is marshalled once into a UTF-8
+ * encoded template. For every client the id is patched into a copy of the
+ * template. The template remembers the configuration snapshot it was built
+ * from and is rebuilt without any lock by the first greeting after a reload, a
+ * template built from an outdated configuration is replaced by the next
+ * greeting.
+ *
  * @author frederik.mortensen
  *
  */
 public class GreetingController {
 
 	/**
-	 * 
-	 * @return
+	 * the greeting name, if none was configured
+	 */
+	private static final String DEFAULT_GREETING = "Welcome to my EPP server!";
+
+	/**
+	 * marshalled in place of the id to find its position in the template
+	 */
+	private static final int PLACEHOLDER_ID = Integer.MIN_VALUE;
+
+	/**
+	 * the encoded greeting before and after the id
+	 */
+	private static final class GreetingTemplate {
+		final ConfigurationSnapshot configuration;
+		final byte[] prefix;
+		final byte[] suffix;
+
+		GreetingTemplate(ConfigurationSnapshot configuration, byte[] prefix, byte[] suffix) {
+			this.configuration = configuration;
+			this.prefix = prefix;
+			this.suffix = suffix;
+		}
+	}
+
+	private static volatile GreetingTemplate greetingTemplate = null;
+
+	/**
+	 *
+	 * @return the marshalled greeting
 	 */
 	public String greetClient() {
 		Greeting greeting = new Greeting();
-		greeting.setName("Welcome to my EPP server!");
+		greeting.setName(getGreetingName());
 		return GreetingMarshaller.marshall(greeting);
 	}
 
+	/**
+	 * Create the UTF-8 encoded greeting in a single array that can be written to
+	 * a socket or channel as it is. Nothing is marshalled or char encoded.
+	 *
+	 * @param greetingId the id of the greeting
+	 * @return the encoded greeting
+	 */
+	public byte[] greetClientEncoded(int greetingId) {
+		GreetingTemplate template = getGreetingTemplate();
+
+		int idLength = stringSize(greetingId);
+		byte[] greeting = new byte[template.prefix.length + idLength + template.suffix.length];
+		System.arraycopy(template.prefix, 0, greeting, 0, template.prefix.length);
+		writeDigits(greetingId, greeting, template.prefix.length + idLength);
+		System.arraycopy(template.suffix, 0, greeting, template.prefix.length + idLength, template.suffix.length);
+		return greeting;
+	}
+
+	/**
+	 * Get the template of the current configuration. Concurrent callers may both
+	 * build it, which is cheaper than serializing every first greeting after a
+	 * reload.
+	 *
+	 * @return the cached template, or a newly built one
+	 */
+	private static GreetingTemplate getGreetingTemplate() {
+		ConfigurationSnapshot configuration = ConfigurationContext.getSnapshot();
+		GreetingTemplate template = greetingTemplate;
+		if (template != null && template.configuration == configuration)
+			return template;
+
+		template = buildGreetingTemplate(configuration);
+		greetingTemplate = template;
+		return template;
+	}
+
+	/**
+	 * marshall a greeting with a placeholder id and split it at the placeholder
+	 *
+	 * @param configuration the configuration with the greeting name
+	 * @return the new template
+	 */
+	private static GreetingTemplate buildGreetingTemplate(ConfigurationSnapshot configuration) {
+		String greetingName = configuration.get(SERVER_GREETING);
+
+		Greeting greeting = new Greeting();
+		greeting.setId(PLACEHOLDER_ID);
+		greeting.setName(greetingName == null ? DEFAULT_GREETING : greetingName);
+
+		String greetingMessage = GreetingMarshaller.marshall(greeting);
+		if (greetingMessage == null)
+			throw new IllegalStateException("Greeting could not be marshalled.");
+
+		String placeholder = "\"" + PLACEHOLDER_ID + "\"";
+		int placeholderStart = greetingMessage.indexOf(placeholder);
+		if (placeholderStart < 0 || greetingMessage.indexOf(placeholder, placeholderStart + 1) >= 0)
+			throw new IllegalStateException("Greeting id could not be located in " + greetingMessage);
+
+		// keep the quotes in prefix and suffix
+		String prefix = greetingMessage.substring(0, placeholderStart + 1);
+		String suffix = greetingMessage.substring(placeholderStart + placeholder.length() - 1);
+		return new GreetingTemplate(configuration, prefix.getBytes(StandardCharsets.UTF_8),
+				suffix.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String getGreetingName() {
+		return ConfigurationContext.get(SERVER_GREETING, DEFAULT_GREETING);
+	}
+
+	/**
+	 *
+	 * @param value the id
+	 * @return the number of characters of the decimal value
+	 */
+	private static int stringSize(int value) {
+		long remaining = Math.abs((long) value);
+		int size = value < 0 ? 1 : 0;
+		do {
+			size++;
+			remaining /= 10;
+		} while (remaining > 0);
+		return size;
+	}
+
+	/**
+	 * write the ascii digits of the value backwards, ending before the given index
+	 *
+	 * @param value  the id
+	 * @param target the encoded greeting
+	 * @param end    the index after the last digit
+	 */
+	private static void writeDigits(int value, byte[] target, int end) {
+		long remaining = Math.abs((long) value);
+		int index = end;
+		do {
+			target[--index] = (byte) ('0' + remaining % 10);
+			remaining /= 10;
+		} while (remaining > 0);
+		if (value < 0)
+			target[--index] = '-';
+	}
+
 }
@@ -0,0 +1,36 @@
+package de.mortensenit.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import de.mortensenit.model.server.Greeting;
+import de.mortensenit.model.server.GreetingMarshaller;
+
+/**
+ * Answers every greeting a client sends with the greeting of the server. The
+ * answer carries the id of the request, so a client can send many requests over
+ * one connection without waiting and assign the answers to its requests.
+ * Messages that are no xml, like the keep-alive of the client, are only logged.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class GreetingMessageHandler implements MessageHandler {
+
+	private final GreetingController greetingController = new GreetingController();
+
+	private final MessageHandler fallback = new LoggingMessageHandler();
+
+	@Override
+	public byte[] onMessage(long connectionId, ByteBuffer message) throws IOException {
+		if (!message.hasRemaining() || message.get(message.position()) != '<')
+			return fallback.onMessage(connectionId, message);
+
+		Greeting request = GreetingMarshaller.unmarshall(message);
+		if (request == null)
+			throw new IOException("Connection " + connectionId + " sent an invalid greeting.");
+
+		return greetingController.greetClientEncoded(request.getId());
+	}
+
+}
@@ -0,0 +1,367 @@
+package de.mortensenit.server;
+
+import static de.mortensenit.server.ServerConfigKeys.SERVER_HANDSHAKE_QUEUE_SIZE;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_HANDSHAKE_THREADS;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_HANDSHAKE_TIMEOUT;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.mortensenit.controller.TLSController;
+import de.mortensenit.model.util.ConfigurationContext;
+import de.mortensenit.model.util.HashedWheelTimer;
+import de.mortensenit.model.util.HashedWheelTimer.Timeout;
+import de.mortensenit.model.util.LatencyHistogram;
+
+/**
+ * Runs the cpu intensive part of the TLS handshakes on threads of their own, so
+ * a burst of new connections does not stall the established ones. The
+ * non-blocking server runs the delegated tasks of the SSLEngine here instead of
+ * on the selector loop, the blocking server runs the whole handshake here. The
+ * queue is bounded. If it is full, the handshake is rejected and the connection
+ * is closed right away instead of waiting for a handshake that would likely
+ * time out anyway.<br />
+ * <br />
+ * A blocking connection waits for the first bytes of the client hello on its
+ * own thread before its handshake is queued, see
+ * {@link #handshake(Socket, SSLSocketFactory, SSLParameters)}. A client that
+ * never starts the handshake only holds its own thread, not a handshake thread
+ * every other new connection waits for.<br />
+ * <br />
+ * A handshake that is not finished within the timeout is aborted. The timeouts
+ * are kept in a {@link HashedWheelTimer}, which is shared with the other
+ * timeouts of the connections.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class HandshakeExecutor {
+
+	private Logger logger = LogManager.getLogger();
+
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * aborts the handshakes running too long
+	 */
+	private final HashedWheelTimer timer;
+
+	/**
+	 * 0 for no timeout
+	 */
+	private final long timeoutMillis;
+
+	private final LongAdder rejectedHandshakes = new LongAdder();
+
+	private final LongAdder timedOutHandshakes = new LongAdder();
+
+	/**
+	 * the time a task waited in the queue, in nanoseconds
+	 */
+	private final LatencyHistogram queueTime = new LatencyHistogram();
+
+	/**
+	 * the time from the start to the end of a successful handshake, in
+	 * nanoseconds
+	 */
+	private final LatencyHistogram handshakeTime = new LatencyHistogram();
+
+	/**
+	 * an executor using the shared timer for the timeouts
+	 *
+	 * @param threads       the number of threads running handshakes
+	 * @param queueSize     the maximum number of waiting handshake tasks
+	 * @param timeoutMillis the time a handshake may take, 0 for no timeout
+	 */
+	public HandshakeExecutor(int threads, int queueSize, long timeoutMillis) {
+		this(threads, queueSize, timeoutMillis, HashedWheelTimer.getDefault());
+	}
+
+	/**
+	 *
+	 * @param threads       the number of threads running handshakes
+	 * @param queueSize     the maximum number of waiting handshake tasks
+	 * @param timeoutMillis the time a handshake may take, 0 for no timeout
+	 * @param timer         the timer of the handshake timeouts
+	 */
+	public HandshakeExecutor(int threads, int queueSize, long timeoutMillis, HashedWheelTimer timer) {
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueSize), Thread.ofPlatform().name("tls-handshake-", 0).daemon().factory());
+		this.timer = timer;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * create an executor with the configured number of threads, queue size and
+	 * timeout
+	 *
+	 * @return the new executor
+	 */
+	public static HandshakeExecutor create() {
+		int threads = ConfigurationContext.getInt(SERVER_HANDSHAKE_THREADS, Runtime.getRuntime().availableProcessors());
+		int queueSize = ConfigurationContext.getInt(SERVER_HANDSHAKE_QUEUE_SIZE, 1000);
+		long timeoutMillis = ConfigurationContext.getLong(SERVER_HANDSHAKE_TIMEOUT, 10000);
+		return new HandshakeExecutor(threads, queueSize, timeoutMillis);
+	}
+
+	/**
+	 * Run the handshake of an accepted blocking socket. The calling thread, which
+	 * is the thread of the connection, waits for the client hello. Then the tls
+	 * socket is layered over the accepted socket and its handshake is queued. If
+	 * the handshake is not finished within the timeout, which includes the time
+	 * in the queue, the socket is closed, which aborts the blocking handshake.
+	 *
+	 * @param socket        the accepted plain socket
+	 * @param socketFactory creates the server side tls socket
+	 * @param sslParameters the protocols, cipher suites and client
+	 *                      authentication of the listener
+	 * @return the tls socket to be used instead of the accepted socket
+	 * @throws SocketTimeoutException if the handshake timed out, the socket is
+	 *                                closed
+	 * @throws IOException            if the handshake failed or was rejected
+	 *                                because the queue is full
+	 */
+	public SSLSocket handshake(Socket socket, SSLSocketFactory socketFactory, SSLParameters sslParameters)
+			throws SocketTimeoutException, IOException {
+		// set by whoever finishes first, the handshake or its timeout
+		AtomicBoolean finished = new AtomicBoolean();
+		CompletableFuture<SSLSession> result = new CompletableFuture<>();
+
+		Timeout timeout = scheduleTimeout(() -> {
+			// closing the socket aborts the handshake. It may block while sending the
+			// alert, so it is not done on the timer thread.
+			if (finished.compareAndSet(false, true)) {
+				timedOutHandshakes.increment();
+				result.completeExceptionally(new SocketTimeoutException("TLS handshake timed out"));
+				Thread.ofVirtual().start(() -> close(socket));
+			}
+		});
+
+		try {
+			// the first byte of the client hello, a silent client holds no handshake
+			// thread
+			int first = socket.getInputStream().read();
+			if (first < 0)
+				throw new EOFException("Connection closed before the TLS handshake.");
+			SSLSocket sslSocket = (SSLSocket) socketFactory.createSocket(socket,
+					new ByteArrayInputStream(new byte[] { (byte) first }), true);
+			sslSocket.setSSLParameters(sslParameters);
+
+			long handshakeStart = System.currentTimeMillis();
+			long startNanos = System.nanoTime();
+			SSLSession session = startHandshake(sslSocket, result);
+			long handshakeNanos = System.nanoTime() - startNanos;
+
+			if (!finished.compareAndSet(false, true))
+				throw timedOut(socket);
+
+			boolean resumed = TLSController.getHandshakeStatistics().record(session, handshakeStart,
+					handshakeNanos);
+			handshakeTime.record(handshakeNanos);
+			logger.info("Handshake finished using " + session.getProtocol() + " and " + session.getCipherSuite()
+					+ (resumed ? ", session resumed" : ""));
+			return sslSocket;
+		} catch (IOException e) {
+			if (!finished.compareAndSet(false, true))
+				throw timedOut(socket);
+			close(socket);
+			throw e;
+		} finally {
+			if (timeout != null)
+				timeout.cancel();
+		}
+	}
+
+	/**
+	 * queue the handshake of a tls socket and wait until it is finished
+	 *
+	 * @param sslSocket the layered tls socket
+	 * @param result    completed by the handshake, or by its timeout
+	 * @return the negotiated session
+	 * @throws IOException if the handshake failed, timed out or was rejected
+	 */
+	private SSLSession startHandshake(SSLSocket sslSocket, CompletableFuture<SSLSession> result)
+			throws IOException {
+		boolean queued = execute(() -> {
+			try {
+				sslSocket.startHandshake();
+				result.complete(sslSocket.getSession());
+			} catch (IOException | RuntimeException e) {
+				result.completeExceptionally(e);
+			}
+		});
+		if (!queued)
+			throw new IOException("Too many pending TLS handshakes, the handshake queue is full.");
+
+		try {
+			return result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the TLS handshake.");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException cause)
+				throw cause;
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * make sure the socket of a timed out handshake is closed before the timeout
+	 * is reported
+	 *
+	 * @param socket the socket closed by the timeout
+	 * @return the exception to be thrown
+	 */
+	private SocketTimeoutException timedOut(Socket socket) {
+		close(socket);
+		return new SocketTimeoutException("TLS handshake timed out");
+	}
+
+	/**
+	 * queue a handshake task, for example the delegated tasks of an SSLEngine
+	 *
+	 * @param task the cpu intensive part of a handshake
+	 * @return true if the task was queued, false if the queue is full
+	 */
+	public boolean execute(Runnable task) {
+		long queuedAt = System.nanoTime();
+		try {
+			executor.execute(() -> {
+				queueTime.record(System.nanoTime() - queuedAt);
+				task.run();
+			});
+			return true;
+		} catch (RejectedExecutionException e) {
+			rejectedHandshakes.increment();
+			return false;
+		}
+	}
+
+	/**
+	 * run an action if a handshake takes longer than the timeout
+	 *
+	 * @param onTimeout aborts the handshake, runs on the timer thread and must not
+	 *                  block
+	 * @return the timeout to be cancelled when the handshake is finished, or null
+	 *         if there is no timeout
+	 */
+	public Timeout scheduleTimeout(Runnable onTimeout) {
+		if (timeoutMillis <= 0)
+			return null;
+		try {
+			return timer.newTimeout(onTimeout, timeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (IllegalStateException e) {
+			// stopped
+			return null;
+		}
+	}
+
+	/**
+	 * count a handshake which was aborted by its timeout
+	 */
+	public void recordTimeout() {
+		timedOutHandshakes.increment();
+	}
+
+	/**
+	 * count a successful handshake which was driven outside of this executor
+	 *
+	 * @param handshakeNanos the time from the start to the end of the handshake
+	 */
+	public void recordHandshake(long handshakeNanos) {
+		handshakeTime.record(handshakeNanos);
+	}
+
+	/**
+	 * stop the threads, queued handshakes are not run any more. The timer may be
+	 * shared and keeps running.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 *
+	 * @return the number of handshake tasks waiting for a thread
+	 */
+	public int getQueuedHandshakes() {
+		return executor.getQueue().size();
+	}
+
+	/**
+	 *
+	 * @return the number of handshake tasks being run right now
+	 */
+	public int getActiveHandshakes() {
+		return executor.getActiveCount();
+	}
+
+	/**
+	 *
+	 * @return the number of handshakes rejected because the queue was full
+	 */
+	public long getRejectedHandshakes() {
+		return rejectedHandshakes.sum();
+	}
+
+	/**
+	 *
+	 * @return the number of handshakes aborted by the timeout
+	 */
+	public long getTimedOutHandshakes() {
+		return timedOutHandshakes.sum();
+	}
+
+	/**
+	 *
+	 * @return the time the handshake tasks waited in the queue, in nanoseconds
+	 */
+	public LatencyHistogram getQueueTime() {
+		return queueTime;
+	}
+
+	/**
+	 *
+	 * @return the duration of the successful handshakes, in nanoseconds
+	 */
+	public LatencyHistogram getHandshakeTime() {
+		return handshakeTime;
+	}
+
+	private void close(Socket socket) {
+		try {
+			socket.close();
+		} catch (IOException e) {
+			logger.debug("Closing the timed out socket failed.");
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "queued handshakes: " + getQueuedHandshakes() + ", active: " + getActiveHandshakes() + ", rejected: "
+				+ getRejectedHandshakes() + ", timed out: " + getTimedOutHandshakes() + ", p99 queue time: "
+				+ TimeUnit.NANOSECONDS.toMillis(queueTime.getPercentile(0.99)) + " ms, p99 handshake time: "
+				+ TimeUnit.NANOSECONDS.toMillis(handshakeTime.getPercentile(0.99)) + " ms";
+	}
+
+}
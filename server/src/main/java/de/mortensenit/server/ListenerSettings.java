@@ -0,0 +1,223 @@
+package de.mortensenit.server;
+
+import static de.mortensenit.server.ServerConfigKeys.SERVER_ACCEPTOR_THREADS;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_BACKLOG;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_BIND_ADDRESS;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_PORT;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_REUSE_PORT;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.net.ServerSocketFactory;
+
+/**
+ * Where and how the server listens for new connections. All settings are
+ * applied once when the listeners are opened, not on every accept.<br />
+ * <br />
+ * During a burst of new connections a single thread calling accept can become
+ * the bottleneck, so several acceptor threads can be started. By default they
+ * share one listener. With SO_REUSEPORT every acceptor thread gets a listener
+ * of its own on the same port and the kernel spreads the new connections over
+ * them, so the acceptors do not contend for the same accept queue.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class ListenerSettings {
+
+	/**
+	 * the backlog of the JDK if none is given
+	 */
+	public static final int DEFAULT_BACKLOG = 50;
+
+	/**
+	 * null for all local addresses
+	 */
+	private final InetAddress bindAddress;
+
+	private final int port;
+
+	private final int backlog;
+
+	private final int acceptorThreads;
+
+	private final boolean reusePort;
+
+	/**
+	 * listen on all local addresses with the default backlog and a single
+	 * acceptor thread
+	 *
+	 * @param port the port to listen on, 0 for any free port
+	 */
+	public ListenerSettings(int port) {
+		this(null, port, DEFAULT_BACKLOG, 1, false);
+	}
+
+	/**
+	 *
+	 * @param bindAddress     the local address to listen on, null for all local
+	 *                        addresses
+	 * @param port            the port to listen on, 0 for any free port
+	 * @param backlog         the maximum number of connections waiting to be
+	 *                        accepted
+	 * @param acceptorThreads the number of threads accepting connections
+	 * @param reusePort       true to open a listener per acceptor thread with
+	 *                        SO_REUSEPORT, false to share one listener
+	 */
+	public ListenerSettings(InetAddress bindAddress, int port, int backlog, int acceptorThreads,
+			boolean reusePort) {
+		if (acceptorThreads < 1)
+			throw new IllegalArgumentException("At least one acceptor thread is needed.");
+		this.bindAddress = bindAddress;
+		this.port = port;
+		this.backlog = backlog > 0 ? backlog : DEFAULT_BACKLOG;
+		this.acceptorThreads = acceptorThreads;
+		this.reusePort = reusePort;
+	}
+
+	/**
+	 * create the settings of the configured listener
+	 *
+	 * @return the new settings
+	 * @throws IOException if the bind address could not be resolved
+	 */
+	public static ListenerSettings create() throws IOException {
+		return create(ServerListener.DEFAULT_NAME);
+	}
+
+	/**
+	 * create the settings of a named listener, see {@link ServerListener}
+	 *
+	 * @param listener the name of the listener
+	 * @return the new settings, read from the keys of the listener and the server
+	 * @throws IOException if the bind address could not be resolved
+	 */
+	public static ListenerSettings create(String listener) throws IOException {
+		String bindAddress = ServerListener.get(listener, SERVER_BIND_ADDRESS, null);
+		return new ListenerSettings(bindAddress != null ? InetAddress.getByName(bindAddress) : null,
+				ServerListener.getInt(listener, SERVER_PORT, 7000),
+				ServerListener.getInt(listener, SERVER_BACKLOG, DEFAULT_BACKLOG),
+				ServerListener.getInt(listener, SERVER_ACCEPTOR_THREADS, 1),
+				ServerListener.getBoolean(listener, SERVER_REUSE_PORT, false));
+	}
+
+	/**
+	 * open and bind the listeners of the blocking server. If the port is 0, all
+	 * listeners are bound to the free port of the first one.
+	 *
+	 * @param serverSocketFactory creates plain or tls server sockets
+	 * @return one listener per acceptor thread with SO_REUSEPORT, else a single
+	 *         listener
+	 * @throws IOException if a listener could not be bound
+	 */
+	public List<ServerSocket> openServerSockets(ServerSocketFactory serverSocketFactory) throws IOException {
+		List<ServerSocket> serverSockets = new ArrayList<>();
+		try {
+			int boundPort = port;
+			for (int i = 0; i < getListenerCount(); i++) {
+				ServerSocket serverSocket = serverSocketFactory.createServerSocket();
+				serverSockets.add(serverSocket);
+				if (reusePort) {
+					if (!serverSocket.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT))
+						throw new IOException("SO_REUSEPORT is not supported on this platform.");
+					serverSocket.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+				}
+				serverSocket.bind(new InetSocketAddress(bindAddress, boundPort), backlog);
+				boundPort = serverSocket.getLocalPort();
+			}
+		} catch (IOException e) {
+			closeAll(serverSockets);
+			throw e;
+		}
+		return serverSockets;
+	}
+
+	/**
+	 * open and bind the listeners of the non-blocking server. If the port is 0,
+	 * all listeners are bound to the free port of the first one.
+	 *
+	 * @return one listener per acceptor thread with SO_REUSEPORT, else a single
+	 *         listener
+	 * @throws IOException if a listener could not be bound
+	 */
+	public List<ServerSocketChannel> openServerChannels() throws IOException {
+		List<ServerSocketChannel> serverChannels = new ArrayList<>();
+		try {
+			int boundPort = port;
+			for (int i = 0; i < getListenerCount(); i++) {
+				ServerSocketChannel serverChannel = ServerSocketChannel.open();
+				serverChannels.add(serverChannel);
+				if (reusePort) {
+					if (!serverChannel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT))
+						throw new IOException("SO_REUSEPORT is not supported on this platform.");
+					serverChannel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+				}
+				serverChannel.bind(new InetSocketAddress(bindAddress, boundPort), backlog);
+				boundPort = serverChannel.socket().getLocalPort();
+			}
+		} catch (IOException e) {
+			closeAll(serverChannels);
+			throw e;
+		}
+		return serverChannels;
+	}
+
+	/**
+	 * close all listeners, ignoring failures
+	 *
+	 * @param listeners the server sockets or channels
+	 */
+	public static void closeAll(List<? extends Closeable> listeners) {
+		for (Closeable listener : listeners) {
+			try {
+				listener.close();
+			} catch (IOException e) {
+				// already closing
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return the number of listeners to open
+	 */
+	public int getListenerCount() {
+		return reusePort ? acceptorThreads : 1;
+	}
+
+	public InetAddress getBindAddress() {
+		return bindAddress;
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	public int getBacklog() {
+		return backlog;
+	}
+
+	public int getAcceptorThreads() {
+		return acceptorThreads;
+	}
+
+	public boolean isReusePort() {
+		return reusePort;
+	}
+
+	@Override
+	public String toString() {
+		String address = bindAddress != null ? bindAddress.getHostAddress() + " " : "";
+		return address + "port " + port + " with a backlog of " + backlog + " and " + acceptorThreads
+				+ (reusePort ? " SO_REUSEPORT" : "") + " acceptor threads";
+	}
+
+}
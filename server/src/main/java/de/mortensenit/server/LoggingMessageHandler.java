@@ -0,0 +1,27 @@
+package de.mortensenit.server;
+
+import java.nio.ByteBuffer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.mortensenit.model.codec.FrameCodec;
+
+/**
+ * The default message handler, which logs every message and does not answer.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class LoggingMessageHandler implements MessageHandler {
+
+	private Logger logger = LogManager.getLogger();
+
+	@Override
+	public byte[] onMessage(long connectionId, ByteBuffer message) {
+		if (logger.isInfoEnabled())
+			logger.info("Connection " + connectionId + " received: " + FrameCodec.decodeUtf8(message));
+		return null;
+	}
+
+}
@@ -0,0 +1,34 @@
+package de.mortensenit.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Processes the messages received from the clients. Every decoded message is
+ * handed to the handler right away, so a client can send many messages without
+ * waiting for the previous ones. One handler is shared by all connections and
+ * is called by many threads at once, the messages of a single connection are
+ * handled one after another in the order they were received.
+ *
+ * @author frederik.mortensen
+ *
+ */
+@FunctionalInterface
+public interface MessageHandler {
+
+	/**
+	 * handle a single message
+	 *
+	 * @param connectionId the id of the connection in the
+	 *                     {@link ConnectionRegistry}
+	 * @param message      the payload of the message between the position and
+	 *                     the limit of the buffer. The buffer is a view on the
+	 *                     receive buffer of the connection, reused for the next
+	 *                     message and only valid during this call.
+	 * @return the payload of the response, which is framed and sent back to the
+	 *         client, or null if the message is not answered
+	 * @throws IOException to close the connection
+	 */
+	byte[] onMessage(long connectionId, ByteBuffer message) throws IOException;
+
+}
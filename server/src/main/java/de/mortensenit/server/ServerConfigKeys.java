@@ -9,10 +9,59 @@ package de.mortensenit.server;
 public final class ServerConfigKeys {
 
 	/**
-	 * available server modes are PLAIN and TLS
+	 * available server modes are PLAIN, TLS, PLAIN_NIO and TLS_NIO
 	 */
 	public static final String SERVER_MODE = "server.mode";
 
+	/**
+	 * the port the server listens on. This parameter is optional and defaults to
+	 * 7000.
+	 */
+	public static final String SERVER_PORT = "server.port";
+
+	/**
+	 * the local address the server listens on. This parameter is optional and
+	 * defaults to all local addresses.
+	 */
+	public static final String SERVER_BIND_ADDRESS = "server.bind.address";
+
+	/**
+	 * the maximum number of connections the kernel queues until they are
+	 * accepted, further connection attempts are refused or retried by the client.
+	 * This parameter is optional and defaults to 50.
+	 */
+	public static final String SERVER_BACKLOG = "server.backlog";
+
+	/**
+	 * the number of threads accepting new connections. This parameter is optional
+	 * and defaults to 1.
+	 */
+	public static final String SERVER_ACCEPTOR_THREADS = "server.acceptor.threads";
+
+	/**
+	 * opens a listener with SO_REUSEPORT per acceptor thread instead of sharing
+	 * one listener, the kernel spreads new connections over them. This parameter
+	 * is optional and defaults to false.
+	 */
+	public static final String SERVER_REUSE_PORT = "server.reuse.port";
+
+	/**
+	 * comma separated names of the listeners the server opens at once, e.g. a
+	 * PLAIN listener for internal and a TLS listener for external clients. This
+	 * parameter is optional and defaults to a single listener configured by the
+	 * server keys.
+	 */
+	public static final String SERVER_LISTENERS = "server.listeners";
+
+	/**
+	 * The keys of a single listener start with this prefix followed by the name
+	 * of the listener, e.g. server.listener.internal.port. A listener can
+	 * override mode, port, bind.address, backlog, acceptor.threads, reuse.port,
+	 * enabled.protocols, enabled.cipher.suites, framing and max.frame.size, all
+	 * other values are taken from the server keys.
+	 */
+	public static final String SERVER_LISTENER_PREFIX = "server.listener.";
+
 	/**
 	 * name of the server side ssl keystore file to be loaded
 	 */
@@ -39,12 +88,166 @@ public final class ServerConfigKeys {
 	 * comma separated list of the enabled cipher suites for tls
 	 */
 	public static final String SERVER_ENABLED_CIPHER_SUITES = "server.enabled.cipher.suites";
+
+	/**
+	 * comma separated list of the enabled tls protocols. This parameter is
+	 * optional and defaults to TLSv1.3 with TLSv1.2 as fallback.
+	 */
+	public static final String SERVER_ENABLED_PROTOCOLS = "server.enabled.protocols";
 	
 	/**
 	 * enables javax.net.debug = all. This parameter is optional.
 	 */
 	public static final String SERVER_EXTENDED_LOGGING = "server.extended.logging";
 
+	/**
+	 * number of selector event loops used in PLAIN_NIO and TLS_NIO mode. This
+	 * parameter is optional and defaults to the number of available processors.
+	 */
+	public static final String SERVER_NIO_EVENT_LOOPS = "server.nio.event.loops";
+
+	/**
+	 * the threads the blocking PLAIN and TLS connections are running on. Available
+	 * strategies are PLATFORM, POOL and VIRTUAL. This parameter is optional and
+	 * defaults to PLATFORM.
+	 */
+	public static final String SERVER_EXECUTOR = "server.executor";
+
+	/**
+	 * the number of threads of the connection pool if the POOL executor strategy
+	 * is used. This parameter is optional and defaults to 200.
+	 */
+	public static final String SERVER_EXECUTOR_POOL_SIZE = "server.executor.pool.size";
+
+	/**
+	 * the maximum number of open client connections. This parameter is optional
+	 * and defaults to 0, which means unlimited.
+	 */
+	public static final String SERVER_MAX_CONNECTIONS = "server.max.connections";
+
+	/**
+	 * what happens to new connections if the maximum number of connections is
+	 * reached: REJECT closes them right away, QUEUE lets them wait for a free slot.
+	 * Both happen before the TLS handshake. This parameter is optional and
+	 * defaults to REJECT.
+	 */
+	public static final String SERVER_MAX_CONNECTIONS_POLICY = "server.max.connections.policy";
+
+	/**
+	 * the name sent to every client in the greeting. This parameter is optional.
+	 */
+	public static final String SERVER_GREETING = "server.greeting";
+
+	/**
+	 * how messages are delimited on the wire: LINE for newline terminated
+	 * messages or EPP for the length prefixed frames of RFC 5734. This parameter
+	 * is optional and defaults to LINE.
+	 */
+	public static final String SERVER_FRAMING = "server.framing";
+
+	/**
+	 * the maximum size in bytes of a received frame, larger frames close the
+	 * connection. This parameter is optional and defaults to 65536.
+	 */
+	public static final String SERVER_MAX_FRAME_SIZE = "server.max.frame.size";
+
+	/**
+	 * the maximum number of TLS sessions the server keeps for resumption. This
+	 * parameter is optional, 0 means unlimited. Defaults to the JDK default.
+	 */
+	public static final String SERVER_TLS_SESSION_CACHE_SIZE = "server.tls.session.cache.size";
+
+	/**
+	 * the lifetime of a cached TLS session in seconds. This parameter is optional,
+	 * 0 means unlimited. Defaults to the JDK default.
+	 */
+	public static final String SERVER_TLS_SESSION_TIMEOUT = "server.tls.session.timeout";
+
+	/**
+	 * enables stateless session tickets, so the server does not need to keep the
+	 * session state for resumption. This parameter is optional and defaults to
+	 * the JDK default.
+	 */
+	public static final String SERVER_TLS_SESSION_TICKETS = "server.tls.session.tickets";
+
+	/**
+	 * the number of threads running the cpu intensive part of the TLS handshakes,
+	 * separate from the connection threads and the selector loops. A blocking TLS
+	 * connection waits for the client hello on its own thread before its
+	 * handshake is queued. This parameter is optional and defaults to the number
+	 * of available processors.
+	 */
+	public static final String SERVER_HANDSHAKE_THREADS = "server.handshake.threads";
+
+	/**
+	 * the maximum number of TLS handshakes waiting for a handshake thread,
+	 * further connections are closed. This parameter is optional and defaults to
+	 * 1000.
+	 */
+	public static final String SERVER_HANDSHAKE_QUEUE_SIZE = "server.handshake.queue.size";
+
+	/**
+	 * the time in milliseconds a TLS handshake may take including the time in the
+	 * queue and, for blocking listeners, the wait for the client hello. 0 means
+	 * unlimited. This parameter is optional and defaults to 10000.
+	 */
+	public static final String SERVER_HANDSHAKE_TIMEOUT = "server.handshake.timeout";
+
+	/**
+	 * the time in milliseconds a connection may receive nothing before it is
+	 * closed, 0 means unlimited. This parameter is optional and defaults to
+	 * 300000.
+	 */
+	public static final String SERVER_IDLE_TIMEOUT = "server.idle.timeout";
+
+	/**
+	 * the time in milliseconds a started message may take until it is received
+	 * completely, else the connection is closed. 0 means unlimited. This
+	 * parameter is optional and defaults to 30000.
+	 */
+	public static final String SERVER_READ_TIMEOUT = "server.read.timeout";
+
+	/**
+	 * the number of bytes waiting to be written to a client above which the
+	 * server stops reading from it, in PLAIN_NIO and TLS_NIO mode. This parameter
+	 * is optional and defaults to 65536.
+	 */
+	public static final String SERVER_OUTBOUND_HIGH_WATERMARK = "server.outbound.high.watermark";
+
+	/**
+	 * the number of bytes waiting to be written to a client at which the server
+	 * reads from it again, in PLAIN_NIO and TLS_NIO mode. This parameter is
+	 * optional and defaults to 32768.
+	 */
+	public static final String SERVER_OUTBOUND_LOW_WATERMARK = "server.outbound.low.watermark";
+
+	/**
+	 * the number of new connections per second permitted from a single remote
+	 * address, further connections are closed before the TLS handshake. This
+	 * parameter is optional and defaults to 0, which means unlimited.
+	 */
+	public static final String SERVER_RATE_LIMIT_CONNECTIONS = "server.rate.limit.connections";
+
+	/**
+	 * the number of new connections permitted at once from a single remote
+	 * address. This parameter is optional and defaults to the connection rate.
+	 */
+	public static final String SERVER_RATE_LIMIT_CONNECTIONS_BURST = "server.rate.limit.connections.burst";
+
+	/**
+	 * the number of messages per second permitted from a single client, which is
+	 * identified by its certificate subject or its remote address. Connections of
+	 * a client above the rate stop reading until it is within the rate again.
+	 * This parameter is optional and defaults to 0, which means unlimited.
+	 */
+	public static final String SERVER_RATE_LIMIT_MESSAGES = "server.rate.limit.messages";
+
+	/**
+	 * the number of messages permitted at once from a single client. This
+	 * parameter is optional and defaults to the message rate.
+	 */
+	public static final String SERVER_RATE_LIMIT_MESSAGES_BURST = "server.rate.limit.messages.burst";
+
 	/**
 	 * Class should never be instantiated
 	 */
@@ -0,0 +1,207 @@
+package de.mortensenit.server;
+
+import static de.mortensenit.server.ServerConfigKeys.SERVER_ENABLED_CIPHER_SUITES;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_ENABLED_PROTOCOLS;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_FRAMING;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_LISTENERS;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_LISTENER_PREFIX;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_MAX_FRAME_SIZE;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_MODE;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.mortensenit.model.Constants;
+import de.mortensenit.model.codec.FrameCodec;
+import de.mortensenit.model.util.ConfigurationContext;
+
+/**
+ * One port the server listens on, with its own mode, tls protocols, cipher
+ * suites and framing. A server can open several listeners at once, e.g. a
+ * PLAIN listener for internal and a TLS listener for external clients. All
+ * listeners share the connection registry, the executors, the selector loops
+ * and the limits of the server.<br />
+ * <br />
+ * Every value of a listener is read from its own keys, see
+ * {@link ServerConfigKeys#SERVER_LISTENER_PREFIX}, and falls back to the server
+ * keys if it is not set.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class ServerListener {
+
+	/**
+	 * the name of the only listener if no listeners are configured
+	 */
+	public static final String DEFAULT_NAME = "default";
+
+	private final String name;
+
+	/**
+	 * PLAIN, TLS, PLAIN_NIO or TLS_NIO, see {@link Constants}
+	 */
+	private final String mode;
+
+	private final ListenerSettings listenerSettings;
+
+	private final String[] enabledProtocols;
+
+	/**
+	 * null for the JDK defaults
+	 */
+	private final String[] enabledCipherSuites;
+
+	/**
+	 * LINE or EPP, see {@link Constants}
+	 */
+	private final String framing;
+
+	private final int maxFrameSize;
+
+	/**
+	 *
+	 * @param name                the name of the listener, used for logging
+	 * @param mode                PLAIN, TLS, PLAIN_NIO or TLS_NIO
+	 * @param listenerSettings    the address, backlog and acceptor threads to
+	 *                            listen with
+	 * @param enabledProtocols    the tls protocols
+	 * @param enabledCipherSuites the tls cipher suites, null for the JDK defaults
+	 * @param framing             LINE or EPP
+	 * @param maxFrameSize        the maximum payload size of a received frame
+	 */
+	public ServerListener(String name, String mode, ListenerSettings listenerSettings, String[] enabledProtocols,
+			String[] enabledCipherSuites, String framing, int maxFrameSize) {
+		this.name = name;
+		this.mode = mode;
+		this.listenerSettings = listenerSettings;
+		this.enabledProtocols = enabledProtocols;
+		this.enabledCipherSuites = enabledCipherSuites;
+		this.framing = framing;
+		this.maxFrameSize = maxFrameSize;
+	}
+
+	/**
+	 * create the configured listeners
+	 *
+	 * @return the listeners named by {@link ServerConfigKeys#SERVER_LISTENERS},
+	 *         or a single listener configured by the server keys
+	 * @throws IOException if a bind address could not be resolved
+	 */
+	public static List<ServerListener> createAll() throws IOException {
+		String[] names = ConfigurationContext.getValues(SERVER_LISTENERS, new String[] { DEFAULT_NAME });
+		List<ServerListener> listeners = new ArrayList<>();
+		for (String name : names) {
+			if (!name.isEmpty())
+				listeners.add(create(name));
+		}
+		if (listeners.isEmpty())
+			throw new IllegalArgumentException(SERVER_LISTENERS);
+		return listeners;
+	}
+
+	/**
+	 * create a single listener
+	 *
+	 * @param name the name of the listener
+	 * @return the listener configured by its own keys and the server keys
+	 * @throws IOException if the bind address could not be resolved
+	 */
+	public static ServerListener create(String name) throws IOException {
+		String mode = get(name, SERVER_MODE, null);
+		if (mode == null)
+			mode = ConfigurationContext.get(SERVER_MODE);
+		return new ServerListener(name, mode.toUpperCase(), ListenerSettings.create(name),
+				getValues(name, SERVER_ENABLED_PROTOCOLS, Constants.DEFAULT_ENABLED_PROTOCOLS.split(",")),
+				getValues(name, SERVER_ENABLED_CIPHER_SUITES, null),
+				get(name, SERVER_FRAMING, Constants.FRAMING_LINE),
+				getInt(name, SERVER_MAX_FRAME_SIZE, FrameCodec.DEFAULT_MAX_FRAME_SIZE));
+	}
+
+	/**
+	 *
+	 * @param name the name of the listener
+	 * @param key  a server key, e.g. server.port
+	 * @return the key of the listener, e.g. server.listener.internal.port
+	 */
+	static String getKey(String name, String key) {
+		return SERVER_LISTENER_PREFIX + name + key.substring(key.indexOf('.'));
+	}
+
+	/**
+	 *
+	 * @param name         the name of the listener
+	 * @param key          a server key
+	 * @param defaultValue the value if neither the listener nor the server key is
+	 *                     set
+	 * @return the value of the listener, else the value of the server
+	 */
+	static String get(String name, String key, String defaultValue) {
+		return ConfigurationContext.get(getKey(name, key), ConfigurationContext.get(key, defaultValue));
+	}
+
+	static int getInt(String name, String key, int defaultValue) {
+		return ConfigurationContext.getInt(getKey(name, key), ConfigurationContext.getInt(key, defaultValue));
+	}
+
+	static boolean getBoolean(String name, String key, boolean defaultValue) {
+		return ConfigurationContext.getBoolean(getKey(name, key), ConfigurationContext.getBoolean(key, defaultValue));
+	}
+
+	static String[] getValues(String name, String key, String[] defaultValues) {
+		return ConfigurationContext.getValues(getKey(name, key), ConfigurationContext.getValues(key, defaultValues));
+	}
+
+	/**
+	 *
+	 * @return true for the TLS and TLS_NIO modes
+	 */
+	public boolean isTls() {
+		return mode.equals(Constants.ENCRYPTION_MODE_TLS) || mode.equals(Constants.ENCRYPTION_MODE_TLS_NIO);
+	}
+
+	/**
+	 *
+	 * @return true for the PLAIN_NIO and TLS_NIO modes, served by the selector
+	 *         loops
+	 */
+	public boolean isNio() {
+		return mode.equals(Constants.ENCRYPTION_MODE_PLAIN_NIO) || mode.equals(Constants.ENCRYPTION_MODE_TLS_NIO);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getMode() {
+		return mode;
+	}
+
+	public ListenerSettings getListenerSettings() {
+		return listenerSettings;
+	}
+
+	public String[] getEnabledProtocols() {
+		return enabledProtocols;
+	}
+
+	public String[] getEnabledCipherSuites() {
+		return enabledCipherSuites;
+	}
+
+	public String getFraming() {
+		return framing;
+	}
+
+	public int getMaxFrameSize() {
+		return maxFrameSize;
+	}
+
+	@Override
+	public String toString() {
+		return name + " listener (" + mode + ", " + framing + " framing with a maximum frame size of " + maxFrameSize
+				+ " bytes)";
+	}
+
+}
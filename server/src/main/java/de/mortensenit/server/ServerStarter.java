@@ -1,34 +1,55 @@
 package de.mortensenit.server;
 
 import static de.mortensenit.server.ServerConfigKeys.CLIENT_AUTHENTICATION_NEEDED;
-import static de.mortensenit.server.ServerConfigKeys.SERVER_ENABLED_CIPHER_SUITES;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_EXECUTOR;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_EXECUTOR_POOL_SIZE;
 import static de.mortensenit.server.ServerConfigKeys.SERVER_EXTENDED_LOGGING;
 import static de.mortensenit.server.ServerConfigKeys.SERVER_KEYSTORE_FILE;
 import static de.mortensenit.server.ServerConfigKeys.SERVER_KEYSTORE_PASSWORD;
-import static de.mortensenit.server.ServerConfigKeys.SERVER_MODE;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_MAX_CONNECTIONS;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_MAX_CONNECTIONS_POLICY;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_NIO_EVENT_LOOPS;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_OUTBOUND_HIGH_WATERMARK;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_OUTBOUND_LOW_WATERMARK;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_TLS_SESSION_CACHE_SIZE;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_TLS_SESSION_TICKETS;
+import static de.mortensenit.server.ServerConfigKeys.SERVER_TLS_SESSION_TIMEOUT;
 import static de.mortensenit.server.ServerConfigKeys.SERVER_TRUSTSTORE_FILE;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import javax.net.ServerSocketFactory;
-import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import de.mortensenit.controller.TLSController;
 import de.mortensenit.model.Constants;
+import de.mortensenit.model.codec.FrameCodec;
 import de.mortensenit.model.exceptions.PortInUseException;
 import de.mortensenit.model.util.ConfigurationContext;
+import de.mortensenit.server.nio.EventLoopGroup;
+import de.mortensenit.server.nio.NioServer;
+import de.mortensenit.server.nio.OutboundQueue;
 
 /**
  * Server side server implementation of the EPP service. Opening the configured
- * port and waiting for incoming client socket connections via TCP. Clients need
- * to be authenticated via SSL/TLS certificate.
+ * ports and waiting for incoming client socket connections via TCP. Clients need
+ * to be authenticated via SSL/TLS certificate.<br />
+ * <br />
+ * Several {@link ServerListener}s, e.g. PLAIN for internal and TLS for external
+ * clients, can be opened at once. They share the connection registry, the
+ * executors, the selector loops and the limits of this server.
  * 
  * @author frederik.mortensen
  *
@@ -37,7 +58,43 @@ public class ServerStarter {
 
 	private Logger logger = LogManager.getLogger();
 
-	private List<Thread> openConnections = new ArrayList<>();
+	private ConnectionRegistry connectionRegistry;
+
+	/**
+	 * runs the blocking client connections, see {@link #createConnectionExecutor()}
+	 */
+	private ExecutorService connectionExecutor;
+
+	/**
+	 * runs the tls handshakes, separate from the connection executor
+	 */
+	private HandshakeExecutor handshakeExecutor;
+
+	/**
+	 * closes the connections of clients that stopped talking
+	 */
+	private ConnectionTimeouts connectionTimeouts;
+
+	/**
+	 * limits the connections and messages of every client
+	 */
+	private ClientRateLimiter rateLimiter;
+
+	/**
+	 * shared by all tls listeners, null as long as there is none
+	 */
+	private SSLContext sslContext;
+
+	/**
+	 * the selector loops shared by all non-blocking listeners, null as long as
+	 * there is none
+	 */
+	private EventLoopGroup eventLoops;
+
+	/**
+	 * processes the messages of all connections
+	 */
+	private MessageHandler messageHandler = new GreetingMessageHandler();
 
 	/**
 	 * Entry point for the server side service
@@ -49,106 +106,443 @@ public class ServerStarter {
 		if (ConfigurationContext.getBoolean(SERVER_EXTENDED_LOGGING, false))
 			System.setProperty("javax.net.debug", "all");
 
+		String sessionTickets = ConfigurationContext.get(SERVER_TLS_SESSION_TICKETS, false);
+		if (sessionTickets != null)
+			TLSController.setSessionTicketsEnabled(true, Boolean.valueOf(sessionTickets));
+
 		// just get out of static
 		new ServerStarter().start();
 	}
 
 	/**
-	 * load application configuration properties, then start the server socket
+	 * load application configuration properties, then open the configured
+	 * listeners and accept connections until all of them stopped
 	 * 
 	 * @throws Exception
 	 */
 	private void start() throws Exception {
 		logger.info("Starting up...");
 
-		// open server port
+		connectionRegistry = createConnectionRegistry();
+		connectionExecutor = createConnectionExecutor();
+		connectionTimeouts = ConnectionTimeouts.create();
+		logger.info("Using an " + connectionTimeouts + ".");
+		rateLimiter = ClientRateLimiter.create();
+		logger.info("Limiting every client to a " + rateLimiter + ".");
+
+		// open server ports, all of them before the first accept, so a port in use
+		// stops the whole server instead of leaving it half started
+		List<Closeable> opened = new ArrayList<>();
+		List<Thread> acceptors = new ArrayList<>();
 		try {
-			if (ConfigurationContext.get(SERVER_MODE).equalsIgnoreCase(Constants.ENCRYPTION_MODE_TLS)) {
-				startTLSServerSocket();
-			} else {
-				startPlainServerSocket();
+			for (ServerListener listener : ServerListener.createAll()) {
+				acceptors.add(openListener(listener, opened));
 			}
 		} catch (PortInUseException e) {
+			closeListeners(opened);
 			logger.error("Port seems in use!", e);
+			return;
 		} catch (IOException e) {
+			closeListeners(opened);
 			logger.error("Starting the server failed! Reason: ", e);
+			return;
 		}
+
+		for (Thread acceptor : acceptors) {
+			acceptor.start();
+		}
+		for (Thread acceptor : acceptors) {
+			acceptor.join();
+		}
+		if (eventLoops != null)
+			eventLoops.shutdown();
+		logger.info("Server stopped.");
 	}
 
 	/**
+	 * bind a listener and prepare the thread accepting its connections
 	 * 
+	 * @param listener the configured listener
+	 * @param opened   the listeners bound so far, closed if a later one fails
+	 * @return the unstarted thread accepting the connections of the listener
 	 * @throws PortInUseException
-	 * @throws IOException
+	 * @throws IOException        if the listener could not be bound
 	 */
-	private void startTLSServerSocket() throws PortInUseException, IOException {
+	private Thread openListener(ServerListener listener, List<Closeable> opened)
+			throws PortInUseException, IOException {
+		logger.info("Opening the " + listener + ".");
+		Runnable acceptor;
+
+		if (listener.isNio()) {
+			NioServer nioServer = createNioServer(listener);
+			opened.add(nioServer::stop);
+			nioServer.bind();
+			acceptor = () -> {
+				try {
+					nioServer.start();
+				} catch (IOException e) {
+					logger.error("The " + listener.getName() + " listener failed!", e);
+				}
+			};
+		} else {
+			// the tls socket is layered over the accepted socket by the connection
+			SSLParameters sslParameters = listener.isTls() ? getSslParameters(listener) : null;
+			List<ServerSocket> serverSockets = listener.getListenerSettings()
+					.openServerSockets(ServerSocketFactory.getDefault());
+			opened.addAll(serverSockets);
+			acceptor = () -> {
+				try {
+					acceptConnections(listener, sslParameters, serverSockets);
+				} catch (IOException e) {
+					logger.error("The " + listener.getName() + " listener failed!", e);
+				}
+			};
+		}
 
-		String keyStoreFile = ConfigurationContext.get(SERVER_KEYSTORE_FILE);
-		String keyStorePwd = ConfigurationContext.get(SERVER_KEYSTORE_PASSWORD);
-		String trustStoreFile = ConfigurationContext.get(SERVER_TRUSTSTORE_FILE);
-		boolean clientAuthNeeded = ConfigurationContext.getBoolean(CLIENT_AUTHENTICATION_NEEDED);
+		return Thread.ofPlatform().name("listener-" + listener.getName()).unstarted(acceptor);
+	}
 
-		ServerSocketFactory factory = TLSController.getTlsServerSocketFactory(keyStoreFile, keyStorePwd,
-				trustStoreFile);
+	/**
+	 * close the listeners bound so far and stop the selector loops
+	 * 
+	 * @param opened the bound listeners
+	 */
+	private void closeListeners(List<Closeable> opened) {
+		ListenerSettings.closeAll(opened);
+		if (eventLoops != null)
+			eventLoops.shutdown();
+	}
 
-		try (SSLServerSocket sslServerSocket = (SSLServerSocket) factory.createServerSocket(7000)) {
+	/**
+	 * the protocols, cipher suites and client authentication of the tls sockets of
+	 * a blocking tls listener, applied to every accepted connection
+	 * 
+	 * @param listener the configured tls listener
+	 * @return the parameters of the shared server context with the listener
+	 *         settings applied
+	 * @throws IOException if the context could not be initialized
+	 */
+	private SSLParameters getSslParameters(ServerListener listener) throws IOException {
+		SSLParameters sslParameters = getTlsServerContext().getDefaultSSLParameters();
+		sslParameters.setProtocols(listener.getEnabledProtocols());
+		String[] enabledCipherSuites = getEnabledCipherSuites(listener);
+		if (enabledCipherSuites != null)
+			sslParameters.setCipherSuites(enabledCipherSuites);
+
+		// Servers normally authenticate themselves, and clients are not required to do
+		sslParameters.setWantClientAuth(ConfigurationContext.getBoolean(CLIENT_AUTHENTICATION_NEEDED));
+		return sslParameters;
+	}
 
-			while (true) {
-				logger.info("Waiting for TLS connections on port 7000...");
+	/**
+	 * accept connections on the configured number of acceptor threads until a
+	 * listener fails. The calling thread is the first acceptor.
+	 * 
+	 * @param listener      the configured listener
+	 * @param sslParameters the tls settings of the listener, null for plain
+	 *                      connections
+	 * @param serverSockets the bound listeners, shared by the acceptor threads if
+	 *                      there are fewer
+	 * @throws IOException
+	 */
+	private void acceptConnections(ServerListener listener, SSLParameters sslParameters,
+			List<ServerSocket> serverSockets) throws IOException {
+		ListenerSettings listenerSettings = listener.getListenerSettings();
+		String mode = listener.getMode();
+		try {
+			logger.info("Waiting for " + mode + " connections of the " + listener.getName() + " listener on "
+					+ listenerSettings + "...");
+
+			for (int i = 1; i < listenerSettings.getAcceptorThreads(); i++) {
+				ServerSocket serverSocket = serverSockets.get(i % serverSockets.size());
+				Thread.ofPlatform().name("acceptor-" + listener.getName() + "-" + i).start(() -> {
+					try {
+						acceptConnections(listener, sslParameters, serverSocket);
+					} catch (IOException e) {
+						if (!serverSocket.isClosed())
+							logger.error("Accepting " + mode + " connections failed!", e);
+					}
+				});
+			}
 
-				sslServerSocket.setEnabledProtocols(new String[] { Constants.PROTOCOL_TLS_1_2 });
+			acceptConnections(listener, sslParameters, serverSockets.get(0));
 
-				String[] cipherSuites = ConfigurationContext.getValues(SERVER_ENABLED_CIPHER_SUITES, null);
-				if (cipherSuites != null) {
-					logger.info("Setting enabled cipher suites: ");
-					for (String cipherSuite : cipherSuites) {
-						logger.info(cipherSuite);
-					}
-					sslServerSocket.setEnabledCipherSuites(cipherSuites);
-				}
+		} finally {
+			ListenerSettings.closeAll(serverSockets);
+			logger.info("The " + listener.getName() + " listener stopped.");
+		}
+	}
 
-				// Servers normally authenticate themselves, and clients are not required to do
-				sslServerSocket.setWantClientAuth(clientAuthNeeded);
+	/**
+	 * 
+	 * @param listener      the configured listener
+	 * @param sslParameters the tls settings of the listener, null for plain
+	 *                      connections
+	 * @param serverSocket  the bound listener
+	 * @throws IOException if accepting failed
+	 */
+	private void acceptConnections(ServerListener listener, SSLParameters sslParameters, ServerSocket serverSocket)
+			throws IOException {
+		while (true) {
+			Socket clientSocket = serverSocket.accept();
+			handleClientSocket(listener, sslParameters, clientSocket);
+		}
+	}
 
-				Socket sslClientSocket = sslServerSocket.accept();
-				ClientConnectionThread clientConnectionThread = new ClientConnectionThread();
-				clientConnectionThread.setClientSocket(sslClientSocket);
+	/**
+	 * run the connection of an accepted client socket on the configured executor
+	 * 
+	 * @param listener      the listener the client connected to
+	 * @param sslParameters the tls settings of the listener, null for plain
+	 *                      connections
+	 * @param clientSocket  the accepted socket, a tls connection runs its
+	 *                      handshake on it first
+	 */
+	private void handleClientSocket(ServerListener listener, SSLParameters sslParameters, Socket clientSocket)
+			throws IOException {
+		// before the connection takes a slot or any handshake cpu
+		if (!rateLimiter.tryConnect(clientSocket.getRemoteSocketAddress())) {
+			clientSocket.close();
+			return;
+		}
 
-				Thread thread = new Thread(clientConnectionThread);
-				thread.start();
-				openConnections.add(thread);
+		try {
+			if (!connectionRegistry.admit()) {
+				clientSocket.close();
+				return;
 			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			clientSocket.close();
+			return;
+		}
 
-		} finally {
-			logger.info("Server stopped.");
+		// a failing connection must neither keep its slot nor stop the acceptor
+		long connectionId = -1;
+		try {
+			// handshake flights and greetings are small writes, which must not wait for
+			// delayed acks of the client
+			clientSocket.setTcpNoDelay(true);
+
+			ClientConnectionThread clientConnectionThread = new ClientConnectionThread();
+			clientConnectionThread.setClientSocket(clientSocket);
+			clientConnectionThread.setConnectionRegistry(connectionRegistry);
+			clientConnectionThread
+					.setFrameCodec(FrameCodec.create(listener.getFraming(), listener.getMaxFrameSize()));
+			clientConnectionThread.setMessageHandler(messageHandler);
+			clientConnectionThread.setConnectionTimeouts(connectionTimeouts);
+			clientConnectionThread.setRateLimiter(rateLimiter);
+			if (sslParameters != null) {
+				// a tls connection waits for the client hello on its own thread, the
+				// handshake runs on the handshake executor
+				clientConnectionThread.setHandshakeExecutor(handshakeExecutor);
+				clientConnectionThread.setSslSocketFactory(sslContext.getSocketFactory());
+				clientConnectionThread.setSslParameters(sslParameters);
+			}
+			connectionId = connectionRegistry.register(clientSocket);
+			clientConnectionThread.setConnectionId(connectionId);
+			connectionExecutor.submit(clientConnectionThread);
+		} catch (IOException | RuntimeException e) {
+			logger.error("Setting up the connection of " + clientSocket.getRemoteSocketAddress() + " failed!", e);
+			if (connectionId < 0)
+				connectionRegistry.release();
+			else
+				connectionRegistry.unregister(connectionId);
+			clientSocket.close();
 		}
+	}
 
+	/**
+	 * 
+	 * @return the registry for all connections, limited to the configured maximum
+	 */
+	private ConnectionRegistry createConnectionRegistry() {
+		int maxConnections = ConfigurationContext.getInt(SERVER_MAX_CONNECTIONS, 0);
+		String policy = ConfigurationContext.get(SERVER_MAX_CONNECTIONS_POLICY, Constants.ADMISSION_POLICY_REJECT);
+		boolean queueing = policy.equalsIgnoreCase(Constants.ADMISSION_POLICY_QUEUE);
+		return new ConnectionRegistry(maxConnections, queueing);
 	}
 
 	/**
 	 * 
-	 * @throws PortInUseException
+	 * @return the registry of all open connections, containing the live counts
+	 */
+	public ConnectionRegistry getConnectionRegistry() {
+		return connectionRegistry;
+	}
+
+	/**
+	 * 
+	 * @return the idle and read timeouts, containing the number of connections
+	 *         closed by them
+	 */
+	public ConnectionTimeouts getConnectionTimeouts() {
+		return connectionTimeouts;
+	}
+
+	/**
+	 * 
+	 * @return the rate limits of the clients, containing the number of throttled
+	 *         connections and reads
+	 */
+	public ClientRateLimiter getRateLimiter() {
+		return rateLimiter;
+	}
+
+	/**
+	 * 
+	 * @return the executor of the tls handshakes, containing the queue depth and
+	 *         handshake durations, or null in plain mode
+	 */
+	public HandshakeExecutor getHandshakeExecutor() {
+		return handshakeExecutor;
+	}
+
+	/**
+	 * create the executor for the blocking client connections. A platform thread
+	 * reserves about 1 MB of stack, so for a large number of mostly idle
+	 * connections either a bounded pool or virtual threads should be used.
+	 * 
+	 * @return the executor for the configured strategy
+	 */
+	private ExecutorService createConnectionExecutor() {
+		String strategy = ConfigurationContext.get(SERVER_EXECUTOR, Constants.EXECUTOR_PLATFORM);
+		logger.info("Using " + strategy + " executor for client connections.");
+
+		if (strategy.equalsIgnoreCase(Constants.EXECUTOR_VIRTUAL)) {
+			ThreadFactory threadFactory = Thread.ofVirtual().name("client-connection-", 0).factory();
+			return Executors.newThreadPerTaskExecutor(threadFactory);
+		} else if (strategy.equalsIgnoreCase(Constants.EXECUTOR_POOL)) {
+			int poolSize = ConfigurationContext.getInt(SERVER_EXECUTOR_POOL_SIZE, 200);
+			ThreadFactory threadFactory = Thread.ofPlatform().name("client-connection-", 0).factory();
+			return Executors.newFixedThreadPool(poolSize, threadFactory);
+		} else {
+			ThreadFactory threadFactory = Thread.ofPlatform().name("client-connection-", 0).factory();
+			return Executors.newThreadPerTaskExecutor(threadFactory);
+		}
+	}
+
+	/**
+	 * create a non-blocking server for a PLAIN_NIO or TLS_NIO listener. The
+	 * connections of all these listeners share the same selector loops instead of
+	 * using a thread each.
+	 * 
+	 * @param listener the configured listener
+	 * @return the server, not bound yet
 	 * @throws IOException
 	 */
-	private void startPlainServerSocket() throws PortInUseException, IOException {
+	private NioServer createNioServer(ServerListener listener) throws IOException {
+		SSLContext sslContext = listener.isTls() ? getTlsServerContext() : null;
+
+		NioServer nioServer = new NioServer(listener.getName(), listener.getListenerSettings(), getEventLoops(),
+				sslContext);
+		nioServer.setConnectionRegistry(connectionRegistry);
+		nioServer.setFraming(listener.getFraming(), listener.getMaxFrameSize());
+		nioServer.setMessageHandler(messageHandler);
+		nioServer.setConnectionTimeouts(connectionTimeouts);
+		nioServer.setRateLimiter(rateLimiter);
+		configureOutboundWatermarks(nioServer);
+
+		if (sslContext != null) {
+			nioServer.setEnabledProtocols(listener.getEnabledProtocols());
+			nioServer.setEnabledCipherSuites(getEnabledCipherSuites(listener));
+			nioServer.setHandshakeExecutor(handshakeExecutor);
+
+			// Servers normally authenticate themselves, and clients are not required to do
+			nioServer.setWantClientAuth(ConfigurationContext.getBoolean(CLIENT_AUTHENTICATION_NEEDED));
+		}
 
-		try (ServerSocket plainServerSocket = new ServerSocket(7000)) {
+		return nioServer;
+	}
 
-			while (true) {
-				logger.info("Waiting for PLAIN connections on port 7000...");
+	/**
+	 * the tls listeners share one server context and one handshake executor
+	 * 
+	 * @return the server context, created by the first tls listener
+	 * @throws IOException if the context could not be initialized
+	 */
+	private SSLContext getTlsServerContext() throws IOException {
+		if (sslContext == null) {
+			sslContext = createTlsServerContext();
+			handshakeExecutor = HandshakeExecutor.create();
+		}
+		return sslContext;
+	}
 
-				Socket plainClientSocket = plainServerSocket.accept();
-				ClientConnectionThread clientConnectionThread = new ClientConnectionThread();
-				clientConnectionThread.setClientSocket(plainClientSocket);
+	/**
+	 * 
+	 * @return the selector loops of all non-blocking listeners, started by the
+	 *         first one
+	 * @throws IOException if a selector could not be opened
+	 */
+	private EventLoopGroup getEventLoops() throws IOException {
+		if (eventLoops == null)
+			eventLoops = new EventLoopGroup(getEventLoopCount());
+		return eventLoops;
+	}
 
-				Thread thread = new Thread(clientConnectionThread);
-				thread.start();
-				openConnections.add(thread);
-			}
+	/**
+	 * get the server context for the configured stores and apply the session
+	 * cache settings
+	 * 
+	 * @return the initialized context
+	 * @throws IOException if the context could not be initialized
+	 */
+	private SSLContext createTlsServerContext() throws IOException {
+		String keyStoreFile = ConfigurationContext.get(SERVER_KEYSTORE_FILE);
+		String keyStorePwd = ConfigurationContext.get(SERVER_KEYSTORE_PASSWORD);
+		String trustStoreFile = ConfigurationContext.get(SERVER_TRUSTSTORE_FILE);
 
-		} finally {
-			logger.info("Server stopped.");
+		SSLContext sslContext = TLSController.getTlsServerContext(keyStoreFile, keyStorePwd, trustStoreFile);
+		if (sslContext == null)
+			throw new IOException("TLS context could not be initialized.");
+
+		int sessionCacheSize = ConfigurationContext.getInt(SERVER_TLS_SESSION_CACHE_SIZE, -1);
+		int sessionTimeout = ConfigurationContext.getInt(SERVER_TLS_SESSION_TIMEOUT, -1);
+		TLSController.configureSessionContext(sslContext.getServerSessionContext(), sessionCacheSize,
+				sessionTimeout);
+
+		return sslContext;
+	}
+
+	/**
+	 * 
+	 * @param listener the configured tls listener
+	 * @return the configured cipher suites or null for the JDK defaults
+	 */
+	private String[] getEnabledCipherSuites(ServerListener listener) {
+		String[] cipherSuites = listener.getEnabledCipherSuites();
+		if (cipherSuites != null) {
+			logger.info("Setting enabled cipher suites: ");
+			for (String cipherSuite : cipherSuites) {
+				logger.info(cipherSuite);
+			}
 		}
+		return cipherSuites;
+	}
 
+	/**
+	 * 
+	 * @param nioServer the server to apply the configured watermarks of the
+	 *                  outbound queues to
+	 */
+	private void configureOutboundWatermarks(NioServer nioServer) {
+		int highWatermark = ConfigurationContext.getInt(SERVER_OUTBOUND_HIGH_WATERMARK,
+				OutboundQueue.DEFAULT_HIGH_WATERMARK);
+		int lowWatermark = ConfigurationContext.getInt(SERVER_OUTBOUND_LOW_WATERMARK,
+				Math.min(OutboundQueue.DEFAULT_LOW_WATERMARK, highWatermark));
+		nioServer.setOutboundWatermarks(lowWatermark, highWatermark);
+		logger.info("Pausing clients with more than " + highWatermark + " bytes waiting to be written until "
+				+ lowWatermark + " bytes are left.");
+	}
+
+	/**
+	 * 
+	 * @return the configured number of selector loops, or the number of available
+	 *         processors
+	 */
+	private int getEventLoopCount() {
+		return ConfigurationContext.getInt(SERVER_NIO_EVENT_LOOPS, Runtime.getRuntime().availableProcessors());
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,68 @@
+package de.mortensenit.server.nio;
+
+import java.io.IOException;
+
+/**
+ * A fixed number of {@link SelectorLoop}s, each running on a thread of its own.
+ * Several {@link NioServer}s listening on different ports can share one group,
+ * so all their connections are served by the same few threads.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class EventLoopGroup {
+
+	private final SelectorLoop[] eventLoops;
+
+	/**
+	 * open the selectors and start the loops
+	 *
+	 * @param eventLoopCount the number of selector loops
+	 * @throws IOException if a selector could not be opened
+	 */
+	public EventLoopGroup(int eventLoopCount) throws IOException {
+		if (eventLoopCount < 1)
+			throw new IllegalArgumentException("At least one selector loop is needed.");
+		eventLoops = new SelectorLoop[eventLoopCount];
+		try {
+			for (int i = 0; i < eventLoopCount; i++) {
+				eventLoops[i] = new SelectorLoop();
+			}
+		} catch (IOException e) {
+			shutdown();
+			throw e;
+		}
+		for (int i = 0; i < eventLoopCount; i++) {
+			Thread thread = new Thread(eventLoops[i], "selector-loop-" + i);
+			thread.start();
+		}
+	}
+
+	/**
+	 *
+	 * @param index the index of the loop, wrapped around the number of loops
+	 * @return the loop at the index
+	 */
+	public SelectorLoop get(int index) {
+		return eventLoops[Math.floorMod(index, eventLoops.length)];
+	}
+
+	/**
+	 *
+	 * @return the number of selector loops
+	 */
+	public int size() {
+		return eventLoops.length;
+	}
+
+	/**
+	 * stop all loops, all their connections will be closed
+	 */
+	public void shutdown() {
+		for (SelectorLoop eventLoop : eventLoops) {
+			if (eventLoop != null)
+				eventLoop.shutdown();
+		}
+	}
+
+}
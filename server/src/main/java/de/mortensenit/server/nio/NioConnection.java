@@ -0,0 +1,431 @@
+package de.mortensenit.server.nio;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLSession;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.mortensenit.model.codec.FrameCodec;
+import de.mortensenit.server.ClientRateLimiter;
+import de.mortensenit.server.ConnectionRegistry;
+import de.mortensenit.server.ConnectionTimeouts;
+import de.mortensenit.server.GreetingController;
+import de.mortensenit.server.LoggingMessageHandler;
+import de.mortensenit.server.MessageHandler;
+
+/**
+ * A single client connection served by a {@link SelectorLoop}. All methods are
+ * called from the thread of the owning selector loop only, so no
+ * synchronization is needed.<br />
+ * <br />
+ * This base class transfers plain bytes. {@link TlsNioConnection} adds
+ * encryption on top of it.<br />
+ * <br />
+ * If {@link ConnectionTimeouts} are set, every read is recorded in a watchdog.
+ * The timeout is handed to the selector loop, which closes the connection.<br />
+ * <br />
+ * The connection stops reading while its {@link OutboundQueue} is full, so a
+ * client that does not read its responses cannot make the server buffer more
+ * than the high watermark for it. It also stops reading for a while if its
+ * client exceeded the message rate of the {@link ClientRateLimiter}.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class NioConnection implements Closeable {
+
+	protected Logger logger = LogManager.getLogger();
+
+	protected final SocketChannel channel;
+
+	protected SelectionKey key;
+
+	/**
+	 * the loop serving this connection
+	 */
+	protected SelectorLoop loop;
+
+	/**
+	 * splits the received application data into frames and holds the partial ones
+	 */
+	protected final FrameCodec frameCodec;
+
+	/**
+	 * application data waiting to be written to the client
+	 */
+	protected OutboundQueue outbound = new OutboundQueue();
+
+	/**
+	 * responses to the messages of the current read
+	 */
+	private final ByteArrayOutputStream responses = new ByteArrayOutputStream();
+
+	private MessageHandler messageHandler = new LoggingMessageHandler();
+
+	private ConnectionRegistry connectionRegistry;
+
+	private long connectionId;
+
+	/**
+	 * null for no timeouts
+	 */
+	private ConnectionTimeouts connectionTimeouts;
+
+	private ConnectionTimeouts.Watchdog watchdog;
+
+	/**
+	 * null for no rate limits
+	 */
+	private ClientRateLimiter rateLimiter;
+
+	/**
+	 * the identity the messages are limited by, null if they are not limited
+	 */
+	private String clientIdentity;
+
+	/**
+	 * the number of messages received with the current read
+	 */
+	private int receivedMessages;
+
+	/**
+	 * true while reading is paused because the client exceeded its message rate
+	 */
+	private boolean throttled;
+
+	/**
+	 *
+	 * @param channel    the accepted, non-blocking client channel
+	 * @param frameCodec the codec of the configured framing, used for this
+	 *                   connection only
+	 */
+	public NioConnection(SocketChannel channel, FrameCodec frameCodec) {
+		this.channel = channel;
+		this.frameCodec = frameCodec;
+	}
+
+	/**
+	 *
+	 * @param connectionRegistry the registry this connection was registered with
+	 * @param connectionId       the id of this connection in the registry
+	 */
+	void setConnectionRegistry(ConnectionRegistry connectionRegistry, long connectionId) {
+		this.connectionRegistry = connectionRegistry;
+		this.connectionId = connectionId;
+	}
+
+	/**
+	 *
+	 * @param messageHandler processes the messages received on this connection
+	 */
+	void setMessageHandler(MessageHandler messageHandler) {
+		this.messageHandler = messageHandler;
+	}
+
+	/**
+	 *
+	 * @param outbound the queue with the watermarks and metrics of the server,
+	 *                 replacing the default one before the connection is
+	 *                 registered
+	 */
+	void setOutboundQueue(OutboundQueue outbound) {
+		this.outbound = outbound;
+	}
+
+	/**
+	 *
+	 * @param connectionTimeouts closes the connection when the client stops
+	 *                           talking, null for no timeouts
+	 */
+	void setConnectionTimeouts(ConnectionTimeouts connectionTimeouts) {
+		this.connectionTimeouts = connectionTimeouts;
+	}
+
+	/**
+	 *
+	 * @param rateLimiter limits the messages of the client, null for no limits
+	 */
+	void setRateLimiter(ClientRateLimiter rateLimiter) {
+		this.rateLimiter = rateLimiter;
+	}
+
+	/**
+	 * called by the selector loop as soon as the channel was registered
+	 *
+	 * @param loop the loop serving this connection from now on
+	 * @param key  the selection key of this connection
+	 * @throws IOException
+	 */
+	void onRegistered(SelectorLoop loop, SelectionKey key) throws IOException {
+		this.loop = loop;
+		this.key = key;
+		logger.info("Connection to client established.");
+		if (connectionTimeouts != null)
+			watchdog = connectionTimeouts.watch(reason -> loop.execute(() -> onTimeout(reason)));
+		start();
+	}
+
+	/**
+	 * a plain connection is ready to use right away
+	 *
+	 * @throws IOException
+	 */
+	protected void start() throws IOException {
+		onSessionReady();
+	}
+
+	/**
+	 * first send greeting message. The encoded greeting is queued as a single
+	 * buffer, so it is written with one write or wrapped into one TLS record.
+	 *
+	 * @throws IOException
+	 */
+	protected void onSessionReady() throws IOException {
+		if (rateLimiter != null && rateLimiter.isMessageRateLimited())
+			clientIdentity = ClientRateLimiter.identify(getSession(), channel.getRemoteAddress());
+
+		GreetingController greetingController = new GreetingController();
+		// greeting ids wrap around after 2^31 connections
+		byte[] greetingMessage = greetingController.greetClientEncoded((int) connectionId);
+		send(ByteBuffer.wrap(frameCodec.encode(greetingMessage)));
+	}
+
+	/**
+	 *
+	 * @return the TLS session of the connection, null for a plain connection
+	 */
+	protected SSLSession getSession() {
+		return null;
+	}
+
+	/**
+	 * queue application data for the client and try to write it immediately
+	 *
+	 * @param data the data to be sent
+	 * @throws IOException
+	 */
+	public void send(ByteBuffer data) throws IOException {
+		outbound.add(data);
+		flush();
+	}
+
+	/**
+	 * the channel has data available
+	 *
+	 * @throws IOException
+	 */
+	void onReadable() throws IOException {
+		int read = channel.read(frameCodec.readBuffer(1));
+		if (read < 0) {
+			logger.info("Connection to client was closed.");
+			close();
+			return;
+		}
+		processInbound();
+		onReceived();
+	}
+
+	/**
+	 * record a read in the watchdog
+	 */
+	protected void onReceived() {
+		if (watchdog != null)
+			watchdog.onReceived(isReceivePending());
+	}
+
+	/**
+	 *
+	 * @return true if the received bytes end with an incomplete message
+	 */
+	protected boolean isReceivePending() {
+		return frameCodec.isFramePending();
+	}
+
+	/**
+	 * close the connection on the selector loop after a timeout passed
+	 *
+	 * @param reason the timeout that passed
+	 */
+	private void onTimeout(String reason) {
+		if (!channel.isOpen())
+			return;
+		logger.info("Closing the connection, " + reason + ".");
+		close();
+	}
+
+	/**
+	 * the channel is able to take more data
+	 *
+	 * @throws IOException
+	 */
+	void onWritable() throws IOException {
+		flush();
+	}
+
+	/**
+	 * write as much of the outbound queue as the channel takes with gathering
+	 * writes, register for write readiness if something is left and pause
+	 * reading while the queue is full
+	 *
+	 * @throws IOException
+	 */
+	protected void flush() throws IOException {
+		while (!outbound.isEmpty() && outbound.writeTo(channel)) {
+			// more than the gathered buffers were queued
+		}
+		setWriteInterest(!outbound.isEmpty());
+		updateReadInterest();
+	}
+
+	/**
+	 * hand every complete frame of the received application data to
+	 * {@link #onFrame(ByteBuffer)} and queue the responses as a single buffer, so
+	 * they are written with one write or wrapped into as few TLS records as
+	 * possible
+	 *
+	 * @throws IOException if a frame is invalid or too large
+	 */
+	protected void processInbound() throws IOException {
+		if (!channel.isOpen())
+			return;
+		frameCodec.decode(this::onFrame);
+		if (responses.size() > 0) {
+			ByteBuffer data = ByteBuffer.wrap(responses.toByteArray());
+			responses.reset();
+			send(data);
+		}
+		throttle();
+	}
+
+	/**
+	 * count the messages of the current read and pause reading if the client
+	 * exceeded its message rate. Reading is resumed by the timer of the rate
+	 * limiter on the selector loop.
+	 */
+	private void throttle() {
+		if (clientIdentity == null || receivedMessages == 0)
+			return;
+		long delayNanos = rateLimiter.onMessages(clientIdentity, receivedMessages);
+		receivedMessages = 0;
+		if (delayNanos <= 0 || throttled || !channel.isOpen())
+			return;
+
+		throttled = true;
+		updateReadInterest();
+		try {
+			rateLimiter.getTimer().newTimeout(() -> loop.execute(this::onThrottleEnd), delayNanos,
+					TimeUnit.NANOSECONDS);
+		} catch (IllegalStateException e) {
+			// the timer was stopped, keep reading
+			onThrottleEnd();
+		}
+	}
+
+	/**
+	 * the client is within its message rate again
+	 */
+	private void onThrottleEnd() {
+		throttled = false;
+		if (channel.isOpen())
+			updateReadInterest();
+	}
+
+	/**
+	 * collect the response of the message handler, if any
+	 *
+	 * @param frame a complete message received from the client
+	 * @throws IOException
+	 */
+	protected void onFrame(ByteBuffer frame) throws IOException {
+		receivedMessages++;
+		byte[] response = messageHandler.onMessage(connectionId, frame);
+		if (response != null)
+			responses.write(frameCodec.encode(response));
+	}
+
+	/**
+	 *
+	 * @param enabled true if the selector loop should report write readiness
+	 */
+	protected void setWriteInterest(boolean enabled) {
+		setInterest(SelectionKey.OP_WRITE, enabled);
+	}
+
+	/**
+	 *
+	 * @param enabled true if the selector loop should report read readiness
+	 */
+	protected void setReadInterest(boolean enabled) {
+		setInterest(SelectionKey.OP_READ, enabled);
+	}
+
+	/**
+	 * read as long as reading is not suspended
+	 */
+	protected void updateReadInterest() {
+		setReadInterest(!isReadSuspended());
+	}
+
+	/**
+	 *
+	 * @return true while the outbound queue is full or the client exceeded its
+	 *         message rate
+	 */
+	protected boolean isReadSuspended() {
+		return outbound.isFull() || throttled;
+	}
+
+	/**
+	 *
+	 * @param op      the operation of the selection key
+	 * @param enabled true if the selector loop should report its readiness
+	 */
+	private void setInterest(int op, boolean enabled) {
+		if (key == null || !key.isValid())
+			return;
+		int ops = key.interestOps();
+		int newOps = enabled ? ops | op : ops & ~op;
+		if (newOps != ops)
+			key.interestOps(newOps);
+	}
+
+	/**
+	 * close the channel, release the selection key and unregister the connection
+	 */
+	@Override
+	public void close() {
+		if (!channel.isOpen())
+			return;
+		if (watchdog != null)
+			watchdog.stop();
+		if (key != null)
+			key.cancel();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			logger.error("Closing the client channel failed!", e);
+		}
+		frameCodec.release();
+		outbound.clear();
+		if (connectionRegistry != null)
+			connectionRegistry.unregister(connectionId);
+		logger.info("Connection closed.");
+	}
+
+	/**
+	 *
+	 * @return true as long as the channel was not closed
+	 */
+	public boolean isOpen() {
+		return channel.isOpen();
+	}
+
+}
@@ -0,0 +1,413 @@
+package de.mortensenit.server.nio;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.mortensenit.model.Constants;
+import de.mortensenit.model.codec.FrameCodec;
+import de.mortensenit.server.ClientRateLimiter;
+import de.mortensenit.server.ConnectionRegistry;
+import de.mortensenit.server.ConnectionTimeouts;
+import de.mortensenit.server.HandshakeExecutor;
+import de.mortensenit.server.ListenerSettings;
+import de.mortensenit.server.LoggingMessageHandler;
+import de.mortensenit.server.MessageHandler;
+import de.mortensenit.server.ServerListener;
+
+/**
+ * Non-blocking server implementation. The acceptor threads hand the accepted
+ * channels round robin to a fixed number of {@link SelectorLoop}s, so a large
+ * number of mostly idle connections shares a small number of threads. How many
+ * acceptor threads and listeners are used is defined by the
+ * {@link ListenerSettings}.<br />
+ * <br />
+ * By default the server starts selector loops of its own. Servers listening on
+ * several ports can share one {@link EventLoopGroup} instead, which is not shut
+ * down when one of them stops.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class NioServer {
+
+	private Logger logger = LogManager.getLogger();
+
+	/**
+	 * the name of the listener, part of the acceptor thread names
+	 */
+	private final String name;
+
+	private final ListenerSettings listenerSettings;
+
+	private final int eventLoopCount;
+
+	/**
+	 * started by this server if it was not given one
+	 */
+	private EventLoopGroup eventLoops;
+
+	private final boolean sharedEventLoops;
+
+	/**
+	 * null if the server runs in plain mode
+	 */
+	private final SSLContext sslContext;
+
+	private String[] enabledProtocols;
+
+	private String[] enabledCipherSuites;
+
+	private boolean wantClientAuth;
+
+	/**
+	 * runs the delegated tasks of the handshakes, null to run them on the
+	 * selector loops
+	 */
+	private HandshakeExecutor handshakeExecutor;
+
+	private String framing = Constants.FRAMING_LINE;
+
+	private int maxFrameSize = FrameCodec.DEFAULT_MAX_FRAME_SIZE;
+
+	private ConnectionRegistry connectionRegistry = new ConnectionRegistry(0, false);
+
+	private MessageHandler messageHandler = new LoggingMessageHandler();
+
+	/**
+	 * null for no idle and read timeouts
+	 */
+	private ConnectionTimeouts connectionTimeouts;
+
+	/**
+	 * null for no rate limits
+	 */
+	private ClientRateLimiter rateLimiter;
+
+	private int outboundLowWatermark = OutboundQueue.DEFAULT_LOW_WATERMARK;
+
+	private int outboundHighWatermark = OutboundQueue.DEFAULT_HIGH_WATERMARK;
+
+	/**
+	 * the outbound queues of all connections
+	 */
+	private final OutboundMetrics outboundMetrics = new OutboundMetrics();
+
+	private volatile List<ServerSocketChannel> serverChannels;
+
+	private volatile boolean stopped;
+
+	/**
+	 *
+	 * @param port           the port to listen on
+	 * @param eventLoopCount the number of selector loops serving the connections
+	 * @param sslContext     the initialized server context or null for plain
+	 *                       connections
+	 */
+	public NioServer(int port, int eventLoopCount, SSLContext sslContext) {
+		this(new ListenerSettings(port), eventLoopCount, sslContext);
+	}
+
+	/**
+	 *
+	 * @param listenerSettings the address, backlog and acceptor threads to listen
+	 *                         with
+	 * @param eventLoopCount   the number of selector loops serving the
+	 *                         connections
+	 * @param sslContext       the initialized server context or null for plain
+	 *                         connections
+	 */
+	public NioServer(ListenerSettings listenerSettings, int eventLoopCount, SSLContext sslContext) {
+		this.name = ServerListener.DEFAULT_NAME;
+		this.listenerSettings = listenerSettings;
+		this.eventLoopCount = eventLoopCount;
+		this.sslContext = sslContext;
+		this.sharedEventLoops = false;
+	}
+
+	/**
+	 *
+	 * @param name             the name of the listener
+	 * @param listenerSettings the address, backlog and acceptor threads to listen
+	 *                         with
+	 * @param eventLoops       the running selector loops shared with other
+	 *                         servers
+	 * @param sslContext       the initialized server context or null for plain
+	 *                         connections
+	 */
+	public NioServer(String name, ListenerSettings listenerSettings, EventLoopGroup eventLoops,
+			SSLContext sslContext) {
+		this.name = name;
+		this.listenerSettings = listenerSettings;
+		this.eventLoopCount = eventLoops.size();
+		this.eventLoops = eventLoops;
+		this.sslContext = sslContext;
+		this.sharedEventLoops = true;
+	}
+
+	/**
+	 * open the listeners without accepting yet, so a port in use is reported
+	 * before any listener of the application accepts. Called by
+	 * {@link #start()} if it was not called before.
+	 *
+	 * @throws IOException if a listener could not be bound
+	 */
+	public void bind() throws IOException {
+		if (serverChannels == null)
+			serverChannels = listenerSettings.openServerChannels();
+	}
+
+	/**
+	 * open the listeners, start the selector loops and accept connections
+	 * until the server is stopped
+	 *
+	 * @throws IOException
+	 */
+	public void start() throws IOException {
+
+		bind();
+		List<ServerSocketChannel> serverChannels = this.serverChannels;
+
+		if (!sharedEventLoops) {
+			try {
+				eventLoops = new EventLoopGroup(eventLoopCount);
+			} catch (IOException e) {
+				ListenerSettings.closeAll(serverChannels);
+				throw e;
+			}
+		}
+
+		String mode = sslContext != null ? "TLS" : "PLAIN";
+
+		try {
+			if (stopped)
+				return;
+			logger.info("Waiting for " + mode + " connections of the " + name + " listener on " + listenerSettings
+					+ " using " + eventLoopCount + " selector loops...");
+
+			for (int i = 1; i < listenerSettings.getAcceptorThreads(); i++) {
+				ServerSocketChannel serverChannel = serverChannels.get(i % serverChannels.size());
+				int acceptor = i;
+				Thread.ofPlatform().name("acceptor-" + name + "-" + i).start(() -> {
+					try {
+						acceptConnections(serverChannel, acceptor);
+					} catch (IOException e) {
+						logger.error("Accepting " + mode + " connections failed!", e);
+					}
+				});
+			}
+
+			acceptConnections(serverChannels.get(0), 0);
+
+		} finally {
+			stopped = true;
+			ListenerSettings.closeAll(serverChannels);
+			if (!sharedEventLoops)
+				eventLoops.shutdown();
+			logger.info("Server stopped.");
+		}
+	}
+
+	/**
+	 * accept connections until the server is stopped
+	 *
+	 * @param serverChannel the bound listener
+	 * @param acceptor      the number of the acceptor thread, the first selector
+	 *                      loop it hands a connection to
+	 * @throws IOException if accepting failed before the server was stopped
+	 */
+	private void acceptConnections(ServerSocketChannel serverChannel, int acceptor) throws IOException {
+		// every acceptor counts on its own, starting at a different loop
+		int next = acceptor % eventLoopCount;
+		try {
+			while (true) {
+				SocketChannel clientChannel = serverChannel.accept();
+				if (!admit(clientChannel))
+					continue;
+
+				register(clientChannel, eventLoops.get(next));
+				next = (next + 1) % eventLoopCount;
+			}
+		} catch (ClosedChannelException e) {
+			if (!stopped)
+				throw e;
+		}
+	}
+
+	/**
+	 * Set up the connection of an admitted channel and hand it over to a loop. If
+	 * this fails, the channel is closed and its slot freed, so the acceptor goes
+	 * on with the next client.
+	 *
+	 * @param clientChannel the admitted channel
+	 * @param loop          the loop to serve the connection
+	 * @throws IOException if closing the failed channel failed
+	 */
+	private void register(SocketChannel clientChannel, SelectorLoop loop) throws IOException {
+		long connectionId = -1;
+		NioConnection connection = null;
+		try {
+			clientChannel.configureBlocking(false);
+			// handshake flights and greetings are small writes, which must not wait for
+			// delayed acks of the client
+			clientChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			connection = createConnection(clientChannel);
+			connection.setMessageHandler(messageHandler);
+			connection.setConnectionTimeouts(connectionTimeouts);
+			connection.setRateLimiter(rateLimiter);
+			connection.setOutboundQueue(
+					new OutboundQueue(outboundLowWatermark, outboundHighWatermark, outboundMetrics));
+			connectionId = connectionRegistry.register(connection);
+			connection.setConnectionRegistry(connectionRegistry, connectionId);
+			loop.register(connection);
+		} catch (IOException | RuntimeException e) {
+			logger.error("Setting up the connection of " + clientChannel.socket().getRemoteSocketAddress()
+					+ " failed!", e);
+			if (connectionId < 0)
+				connectionRegistry.release();
+			else
+				connectionRegistry.unregister(connectionId);
+			if (connection != null)
+				connection.close();
+			else
+				clientChannel.close();
+		}
+	}
+
+	/**
+	 * stop accepting and close all connections, {@link #start()} returns
+	 *
+	 * @throws IOException
+	 */
+	public void stop() throws IOException {
+		stopped = true;
+		List<ServerSocketChannel> channels = serverChannels;
+		if (channels != null)
+			ListenerSettings.closeAll(channels);
+	}
+
+	/**
+	 * check the connection rate of the client and admit the connection before the
+	 * handshake starts
+	 *
+	 * @param clientChannel the accepted channel
+	 * @return true if the connection may be served, else it was closed
+	 * @throws IOException
+	 */
+	private boolean admit(SocketChannel clientChannel) throws IOException {
+		if (rateLimiter != null && !rateLimiter.tryConnect(clientChannel.getRemoteAddress())) {
+			clientChannel.close();
+			return false;
+		}
+		try {
+			if (connectionRegistry.admit())
+				return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		clientChannel.close();
+		return false;
+	}
+
+	/**
+	 *
+	 * @param clientChannel the accepted channel
+	 * @return a plain or tls connection, depending on the server mode
+	 */
+	private NioConnection createConnection(SocketChannel clientChannel) {
+		FrameCodec frameCodec = FrameCodec.create(framing, maxFrameSize);
+		if (sslContext == null)
+			return new NioConnection(clientChannel, frameCodec);
+
+		SSLEngine engine = sslContext.createSSLEngine();
+		engine.setUseClientMode(false);
+		if (enabledProtocols != null)
+			engine.setEnabledProtocols(enabledProtocols);
+		if (enabledCipherSuites != null)
+			engine.setEnabledCipherSuites(enabledCipherSuites);
+
+		// Servers normally authenticate themselves, and clients are not required to do
+		engine.setWantClientAuth(wantClientAuth);
+
+		TlsNioConnection connection = new TlsNioConnection(clientChannel, frameCodec, engine);
+		connection.setHandshakeExecutor(handshakeExecutor);
+		return connection;
+	}
+
+	public void setConnectionRegistry(ConnectionRegistry connectionRegistry) {
+		this.connectionRegistry = connectionRegistry;
+	}
+
+	public void setMessageHandler(MessageHandler messageHandler) {
+		this.messageHandler = messageHandler;
+	}
+
+	public void setConnectionTimeouts(ConnectionTimeouts connectionTimeouts) {
+		this.connectionTimeouts = connectionTimeouts;
+	}
+
+	public void setRateLimiter(ClientRateLimiter rateLimiter) {
+		this.rateLimiter = rateLimiter;
+	}
+
+	/**
+	 * 
+	 * @param lowWatermark  the number of queued bytes at which a connection
+	 *                      resumes reading
+	 * @param highWatermark the number of queued bytes above which a connection
+	 *                      pauses reading
+	 * @throws IllegalArgumentException if the low watermark is above the high one
+	 */
+	public void setOutboundWatermarks(int lowWatermark, int highWatermark) throws IllegalArgumentException {
+		if (lowWatermark < 0 || lowWatermark > highWatermark)
+			throw new IllegalArgumentException(
+					"Invalid outbound watermarks, low: " + lowWatermark + ", high: " + highWatermark);
+		this.outboundLowWatermark = lowWatermark;
+		this.outboundHighWatermark = highWatermark;
+	}
+
+	/**
+	 * 
+	 * @return the bytes queued for all connections and how often reading was
+	 *         paused
+	 */
+	public OutboundMetrics getOutboundMetrics() {
+		return outboundMetrics;
+	}
+
+	public void setEnabledProtocols(String[] enabledProtocols) {
+		this.enabledProtocols = enabledProtocols;
+	}
+
+	public void setEnabledCipherSuites(String[] enabledCipherSuites) {
+		this.enabledCipherSuites = enabledCipherSuites;
+	}
+
+	public void setWantClientAuth(boolean wantClientAuth) {
+		this.wantClientAuth = wantClientAuth;
+	}
+
+	public void setHandshakeExecutor(HandshakeExecutor handshakeExecutor) {
+		this.handshakeExecutor = handshakeExecutor;
+	}
+
+	/**
+	 *
+	 * @param framing      LINE or EPP, see {@link Constants}
+	 * @param maxFrameSize the maximum payload size of a received frame
+	 */
+	public void setFraming(String framing, int maxFrameSize) {
+		this.framing = framing;
+		this.maxFrameSize = maxFrameSize;
+	}
+
+}
@@ -0,0 +1,96 @@
+package de.mortensenit.server.nio;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The outbound queues of all connections of a server, updated by all selector
+ * loops. Shows how much memory is held for clients that do not read fast
+ * enough and how often reading had to be paused for them.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class OutboundMetrics {
+
+	private final LongAdder queuedBytes = new LongAdder();
+
+	private final LongAdder fullQueues = new LongAdder();
+
+	private final LongAdder pauses = new LongAdder();
+
+	private final LongAdder gatheringWrites = new LongAdder();
+
+	private final LongAdder gatheredBuffers = new LongAdder();
+
+	void onQueued(long bytes) {
+		queuedBytes.add(bytes);
+	}
+
+	void onWritten(long bytes) {
+		queuedBytes.add(-bytes);
+	}
+
+	void onFull() {
+		fullQueues.increment();
+		pauses.increment();
+	}
+
+	void onDrained() {
+		fullQueues.decrement();
+	}
+
+	void onGatheringWrite(int buffers) {
+		gatheringWrites.increment();
+		gatheredBuffers.add(buffers);
+	}
+
+	/**
+	 *
+	 * @return the number of bytes waiting in all outbound queues
+	 */
+	public long getQueuedBytes() {
+		return queuedBytes.sum();
+	}
+
+	/**
+	 *
+	 * @return the number of connections which do not read right now, because
+	 *         their outbound queue is full
+	 */
+	public long getFullQueues() {
+		return fullQueues.sum();
+	}
+
+	/**
+	 *
+	 * @return how often the reading of a connection was paused
+	 */
+	public long getPauses() {
+		return pauses.sum();
+	}
+
+	/**
+	 *
+	 * @return the number of gathering writes of plain connections
+	 */
+	public long getGatheringWrites() {
+		return gatheringWrites.sum();
+	}
+
+	/**
+	 *
+	 * @return the average number of buffers written by a gathering write
+	 */
+	public double getBuffersPerWrite() {
+		long writes = gatheringWrites.sum();
+		return writes == 0 ? 0 : (double) gatheredBuffers.sum() / writes;
+	}
+
+	@Override
+	public String toString() {
+		return "queued bytes: " + getQueuedBytes() + ", full queues: " + getFullQueues() + ", pauses: " + getPauses()
+				+ ", gathering writes: " + getGatheringWrites() + ", buffers per write: "
+				+ String.format("%.2f", getBuffersPerWrite());
+	}
+
+}
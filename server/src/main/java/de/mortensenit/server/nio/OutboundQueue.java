@@ -0,0 +1,229 @@
+package de.mortensenit.server.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * The data of a connection waiting to be written to the client. The queued
+ * buffers are written with gathering writes, so a client that fell behind
+ * receives everything queued for it with a single write instead of one write
+ * per buffer.<br />
+ * <br />
+ * The queue counts the bytes waiting in it. If they exceed the high watermark,
+ * the queue is full and the connection stops reading until the client drained
+ * the queue below the low watermark. A client that sends requests without
+ * reading the responses is throttled by its own send buffer this way, instead
+ * of letting the server buffer an unbounded amount of responses.<br />
+ * <br />
+ * Like the connection, a queue is only used by the thread of its selector
+ * loop.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class OutboundQueue {
+
+	/**
+	 * the default number of queued bytes at which reading is paused, 64 KiB
+	 */
+	public static final int DEFAULT_HIGH_WATERMARK = 65536;
+
+	/**
+	 * the default number of queued bytes at which reading is resumed, 32 KiB
+	 */
+	public static final int DEFAULT_LOW_WATERMARK = 32768;
+
+	/**
+	 * the maximum number of buffers written with one gathering write
+	 */
+	public static final int MAX_GATHERED_BUFFERS = 64;
+
+	private final Deque<ByteBuffer> buffers = new ArrayDeque<>();
+
+	/**
+	 * the head of the queue, reused for every gathering write
+	 */
+	private final ByteBuffer[] gathered = new ByteBuffer[MAX_GATHERED_BUFFERS];
+
+	private final int lowWatermark;
+
+	private final int highWatermark;
+
+	/**
+	 * shared by all connections of a server, null for no metrics
+	 */
+	private final OutboundMetrics metrics;
+
+	private long queuedBytes;
+
+	/**
+	 * true from exceeding the high watermark until falling below the low one
+	 */
+	private boolean full;
+
+	/**
+	 * a queue with the default watermarks and no metrics
+	 */
+	public OutboundQueue() {
+		this(DEFAULT_LOW_WATERMARK, DEFAULT_HIGH_WATERMARK, null);
+	}
+
+	/**
+	 *
+	 * @param lowWatermark  the number of queued bytes at which the queue is not
+	 *                      full anymore
+	 * @param highWatermark the number of queued bytes above which the queue is
+	 *                      full
+	 * @param metrics       the metrics of all connections of the server, or null
+	 * @throws IllegalArgumentException if the low watermark is above the high one
+	 */
+	public OutboundQueue(int lowWatermark, int highWatermark, OutboundMetrics metrics)
+			throws IllegalArgumentException {
+		if (lowWatermark < 0 || lowWatermark > highWatermark)
+			throw new IllegalArgumentException(
+					"Invalid outbound watermarks, low: " + lowWatermark + ", high: " + highWatermark);
+		this.lowWatermark = lowWatermark;
+		this.highWatermark = highWatermark;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * queue data to be written after the data already queued
+	 *
+	 * @param data the data in read mode, must not be changed afterwards
+	 */
+	public void add(ByteBuffer data) {
+		int bytes = data.remaining();
+		if (bytes == 0)
+			return;
+		buffers.add(data);
+		queuedBytes += bytes;
+		if (metrics != null)
+			metrics.onQueued(bytes);
+
+		if (!full && queuedBytes > highWatermark) {
+			full = true;
+			if (metrics != null)
+				metrics.onFull();
+		}
+	}
+
+	/**
+	 * Collect the buffers at the head of the queue for a gathering write or
+	 * wrap. Once they were written, {@link #consumed(long)} has to be called.
+	 *
+	 * @return the number of buffers at the start of {@link #getGathered()}
+	 */
+	public int gather() {
+		int count = 0;
+		for (ByteBuffer buffer : buffers) {
+			if (count == gathered.length)
+				break;
+			gathered[count++] = buffer;
+		}
+		return count;
+	}
+
+	/**
+	 *
+	 * @return the buffers collected by the last {@link #gather()}
+	 */
+	public ByteBuffer[] getGathered() {
+		return gathered;
+	}
+
+	/**
+	 * remove the buffers written completely from the head of the queue
+	 *
+	 * @param bytes the number of bytes written from the gathered buffers
+	 */
+	public void consumed(long bytes) {
+		while (!buffers.isEmpty() && !buffers.peek().hasRemaining()) {
+			buffers.poll();
+		}
+		// the written buffers must not be kept reachable
+		for (int i = 0; i < gathered.length && gathered[i] != null; i++) {
+			gathered[i] = null;
+		}
+
+		queuedBytes -= bytes;
+		if (metrics != null)
+			metrics.onWritten(bytes);
+
+		if (full && queuedBytes <= lowWatermark) {
+			full = false;
+			if (metrics != null)
+				metrics.onDrained();
+		}
+	}
+
+	/**
+	 * write as much of the queue as the channel takes, up to
+	 * {@value #MAX_GATHERED_BUFFERS} buffers at once
+	 *
+	 * @param channel the channel of the connection
+	 * @return true if the channel took all gathered buffers, false if it is
+	 *         unable to take more right now
+	 * @throws IOException
+	 */
+	public boolean writeTo(GatheringByteChannel channel) throws IOException {
+		int count = gather();
+		long gatheredBytes = 0;
+		for (int i = 0; i < count; i++) {
+			gatheredBytes += gathered[i].remaining();
+		}
+
+		long written = channel.write(gathered, 0, count);
+		if (metrics != null)
+			metrics.onGatheringWrite(count);
+		consumed(written);
+		return written == gatheredBytes;
+	}
+
+	/**
+	 * drop all queued data, used when the connection is closed
+	 */
+	public void clear() {
+		buffers.clear();
+		if (metrics != null) {
+			metrics.onWritten(queuedBytes);
+			if (full)
+				metrics.onDrained();
+		}
+		queuedBytes = 0;
+		full = false;
+	}
+
+	public boolean isEmpty() {
+		return buffers.isEmpty();
+	}
+
+	/**
+	 *
+	 * @return true if the queued bytes exceeded the high watermark and did not
+	 *         fall below the low watermark yet
+	 */
+	public boolean isFull() {
+		return full;
+	}
+
+	/**
+	 *
+	 * @return the number of bytes waiting to be written
+	 */
+	public long getQueuedBytes() {
+		return queuedBytes;
+	}
+
+	/**
+	 *
+	 * @return the number of buffers waiting to be written
+	 */
+	public int size() {
+		return buffers.size();
+	}
+
+}
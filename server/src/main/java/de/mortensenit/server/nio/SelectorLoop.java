@@ -0,0 +1,181 @@
+package de.mortensenit.server.nio;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.mortensenit.model.buffer.ByteBufferPool;
+
+/**
+ * An event loop owning one selector. Connections are handed over from the
+ * accepting thread and are from then on served by this loop only.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class SelectorLoop implements Runnable {
+
+	private Logger logger = LogManager.getLogger();
+
+	private final Selector selector;
+
+	/**
+	 * accepted connections waiting to be registered with the selector
+	 */
+	private final Queue<NioConnection> pendingConnections = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * work handed back from other threads, run on this loop after the next select
+	 */
+	private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+
+	private volatile boolean running = true;
+
+	/**
+	 *
+	 * @throws IOException if the selector could not be opened
+	 */
+	public SelectorLoop() throws IOException {
+		this.selector = Selector.open();
+	}
+
+	/**
+	 * hand over a connection to this loop. May be called from any thread.
+	 *
+	 * @param connection the accepted connection
+	 */
+	public void register(NioConnection connection) {
+		pendingConnections.add(connection);
+		selector.wakeup();
+	}
+
+	/**
+	 * run a task on this loop, for example to continue a connection after work
+	 * done on another thread. May be called from any thread.
+	 *
+	 * @param task the task, it must not block
+	 */
+	public void execute(Runnable task) {
+		pendingTasks.add(task);
+		selector.wakeup();
+	}
+
+	/**
+	 *
+	 */
+	@Override
+	public void run() {
+		// the loop lives as long as the server, so it keeps buffers for itself
+		ByteBufferPool.getDefault().enableThreadCache();
+		ByteBufferPool.getDirect().enableThreadCache();
+		try {
+			while (running) {
+				selector.select();
+				registerPendingConnections();
+				runPendingTasks();
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					handle(key);
+				}
+			}
+		} catch (IOException | ClosedSelectorException e) {
+			logger.error("Selector loop stopped unexpectedly!", e);
+		} finally {
+			closeAll();
+			ByteBufferPool.getDefault().releaseThreadCache();
+			ByteBufferPool.getDirect().releaseThreadCache();
+		}
+	}
+
+	/**
+	 *
+	 * @param key the selected key
+	 */
+	private void handle(SelectionKey key) {
+		NioConnection connection = (NioConnection) key.attachment();
+		try {
+			if (key.isValid() && key.isReadable())
+				connection.onReadable();
+			if (key.isValid() && key.isWritable())
+				connection.onWritable();
+		} catch (IOException e) {
+			logger.error("The client connection was lost!");
+			connection.close();
+		} catch (Exception e) {
+			logger.error("A general server exception occured!", e);
+			connection.close();
+		}
+	}
+
+	/**
+	 * register all connections handed over since the last select
+	 */
+	private void registerPendingConnections() {
+		NioConnection connection;
+		while ((connection = pendingConnections.poll()) != null) {
+			try {
+				SelectionKey key = connection.channel.register(selector, SelectionKey.OP_READ, connection);
+				connection.onRegistered(this, key);
+			} catch (IOException e) {
+				logger.error("The client connection was lost!");
+				connection.close();
+			} catch (Exception e) {
+				logger.error("A general server exception occured!", e);
+				connection.close();
+			}
+		}
+	}
+
+	/**
+	 * run all tasks handed over since the last select
+	 */
+	private void runPendingTasks() {
+		Runnable task;
+		while ((task = pendingTasks.poll()) != null) {
+			try {
+				task.run();
+			} catch (Exception e) {
+				logger.error("A general server exception occured!", e);
+			}
+		}
+	}
+
+	/**
+	 * stop the loop, all connections will be closed
+	 */
+	public void shutdown() {
+		running = false;
+		selector.wakeup();
+	}
+
+	/**
+	 * close all connections served by this loop and the selector itself
+	 */
+	private void closeAll() {
+		try {
+			for (SelectionKey key : new ArrayList<>(selector.keys())) {
+				((NioConnection) key.attachment()).close();
+			}
+			selector.close();
+		} catch (IOException | ClosedSelectorException e) {
+			logger.error("Closing the selector failed!", e);
+		}
+		NioConnection connection;
+		while ((connection = pendingConnections.poll()) != null) {
+			connection.close();
+		}
+		pendingTasks.clear();
+	}
+
+}
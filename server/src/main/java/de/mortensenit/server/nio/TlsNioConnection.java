@@ -0,0 +1,470 @@
+package de.mortensenit.server.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSession;
+
+import de.mortensenit.controller.TLSController;
+import de.mortensenit.model.buffer.ByteBufferPool;
+import de.mortensenit.model.codec.FrameCodec;
+import de.mortensenit.model.util.HashedWheelTimer.Timeout;
+import de.mortensenit.server.HandshakeExecutor;
+
+/**
+ * A client connection encrypted with TLS. The handshake and all records are
+ * processed by an SSLEngine, the network buffers are sized from the
+ * {@link SSLSession} of the engine. They are direct buffers taken from
+ * {@link ByteBufferPool#getDirect()} on the selector loop once the connection
+ * is registered and returned when the connection is closed.<br />
+ * <br />
+ * If a {@link HandshakeExecutor} is set, the delegated tasks of the handshake
+ * run there and the connection pauses until they are done, so the selector
+ * loop keeps serving the established connections meanwhile.<br />
+ * <br />
+ * The queued application data is wrapped with gathering wraps, so the
+ * responses queued for a slow client are packed into as few records as
+ * possible.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class TlsNioConnection extends NioConnection {
+
+	private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+	private final ByteBufferPool bufferPool = ByteBufferPool.getDirect();
+
+	private final SSLEngine engine;
+
+	/**
+	 * encrypted data received from the client, always kept in write mode, null
+	 * until the connection is started
+	 */
+	private ByteBuffer netIn;
+
+	/**
+	 * encrypted data waiting to be written to the client, always kept in write
+	 * mode, null until the connection is started
+	 */
+	private ByteBuffer netOut;
+
+	private boolean handshakeDone = false;
+
+	/**
+	 * the time the handshake was started, in milliseconds since the epoch
+	 */
+	private long handshakeStart;
+
+	private long handshakeStartNanos;
+
+	/**
+	 * guards against reentrant calls while records are being processed
+	 */
+	private boolean processing = false;
+
+	/**
+	 * runs the delegated tasks, null to run them on the selector loop
+	 */
+	private HandshakeExecutor handshakeExecutor;
+
+	/**
+	 * true while the delegated tasks are run by the handshake executor, the
+	 * engine must not be used meanwhile
+	 */
+	private boolean delegatedTasksRunning = false;
+
+	/**
+	 * closes the connection if the handshake takes too long
+	 */
+	private Timeout handshakeTimeout;
+
+	/**
+	 *
+	 * @param channel    the accepted, non-blocking client channel
+	 * @param frameCodec the codec of the configured framing, used for this
+	 *                   connection only
+	 * @param engine     a server side engine created for this connection
+	 */
+	public TlsNioConnection(SocketChannel channel, FrameCodec frameCodec, SSLEngine engine) {
+		super(channel, frameCodec);
+		this.engine = engine;
+	}
+
+	/**
+	 * the network buffers are taken and the handshake is started right away, the
+	 * greeting is sent as soon as it is finished
+	 */
+	@Override
+	protected void start() throws IOException {
+		SSLSession session = engine.getSession();
+		netIn = bufferPool.acquire(session.getPacketBufferSize());
+		netOut = bufferPool.acquire(session.getPacketBufferSize());
+		handshakeStart = System.currentTimeMillis();
+		handshakeStartNanos = System.nanoTime();
+		if (handshakeExecutor != null)
+			handshakeTimeout = handshakeExecutor.scheduleTimeout(() -> loop.execute(this::onHandshakeTimeout));
+		engine.beginHandshake();
+		process();
+	}
+
+	@Override
+	void onReadable() throws IOException {
+		int read = channel.read(netIn);
+		if (read < 0) {
+			logger.info("Connection to client was closed.");
+			try {
+				engine.closeInbound();
+			} catch (SSLException e) {
+				logger.debug("Client closed the connection without close_notify.");
+			}
+			close();
+			return;
+		}
+		process();
+		onReceived();
+	}
+
+	/**
+	 * the engine must not be used while the delegated tasks are running
+	 */
+	@Override
+	protected SSLSession getSession() {
+		return engine.getSession();
+	}
+
+	@Override
+	protected boolean isReadSuspended() {
+		return super.isReadSuspended() || delegatedTasksRunning;
+	}
+
+	/**
+	 * a partial record counts as an incomplete message as well
+	 */
+	@Override
+	protected boolean isReceivePending() {
+		return super.isReceivePending() || (netIn != null && netIn.position() > 0);
+	}
+
+	@Override
+	void onWritable() throws IOException {
+		process();
+	}
+
+	@Override
+	protected void flush() throws IOException {
+		process();
+	}
+
+	/**
+	 * drive the engine until it can make no further progress with the data
+	 * currently available
+	 *
+	 * @throws IOException
+	 */
+	private void process() throws IOException {
+		if (processing || delegatedTasksRunning || netIn == null)
+			return;
+
+		processing = true;
+		try {
+			boolean progress;
+			do {
+				switch (engine.getHandshakeStatus()) {
+				case NEED_TASK:
+					progress = runDelegatedTasks();
+					break;
+				case NEED_WRAP:
+					progress = wrap(EMPTY);
+					break;
+				case NEED_UNWRAP:
+				case NEED_UNWRAP_AGAIN:
+					progress = unwrap();
+					break;
+				default:
+					progress = unwrap();
+					progress |= wrapOutbound();
+				}
+				progress |= flushNet();
+
+				// responses to the decrypted messages are wrapped in the next round
+				int queued = outbound.size();
+				processInbound();
+				progress |= outbound.size() > queued;
+			} while (progress && channel.isOpen());
+
+			if (channel.isOpen()) {
+				setWriteInterest(netOut.position() > 0);
+				updateReadInterest();
+			}
+		} finally {
+			processing = false;
+		}
+	}
+
+	/**
+	 * decrypt received records into the receive buffer of the frame codec
+	 *
+	 * @return true if the engine made progress
+	 * @throws IOException
+	 */
+	private boolean unwrap() throws IOException {
+		ByteBuffer applicationIn = frameCodec.readBuffer(engine.getSession().getApplicationBufferSize());
+		netIn.flip();
+		SSLEngineResult result;
+		try {
+			result = engine.unwrap(netIn, applicationIn);
+		} finally {
+			netIn.compact();
+		}
+
+		switch (result.getStatus()) {
+		case BUFFER_UNDERFLOW:
+			int packetBufferSize = engine.getSession().getPacketBufferSize();
+			if (netIn.capacity() < packetBufferSize)
+				netIn = enlarge(netIn, packetBufferSize);
+			return false;
+		case BUFFER_OVERFLOW:
+			// the session grew, the next unwrap requests a larger receive buffer
+			processInbound();
+			return true;
+		case CLOSED:
+			logger.info("Connection to client was closed.");
+			close();
+			return false;
+		default:
+			checkHandshakeFinished(result);
+			return result.bytesConsumed() > 0 || result.bytesProduced() > 0;
+		}
+	}
+
+	/**
+	 * encrypt queued application data once the handshake is finished, a record
+	 * may contain the data of several queued buffers
+	 *
+	 * @return true if any data was wrapped
+	 * @throws IOException
+	 */
+	private boolean wrapOutbound() throws IOException {
+		if (!handshakeDone || !channel.isOpen())
+			return false;
+
+		boolean progress = false;
+		while (!outbound.isEmpty()) {
+			int count = outbound.gather();
+			SSLEngineResult result = engine.wrap(outbound.getGathered(), 0, count, netOut);
+			outbound.consumed(result.bytesConsumed());
+			if (!onWrapped(result))
+				break;
+			progress = true;
+		}
+		return progress;
+	}
+
+	/**
+	 * produce handshake records or the close_notify alert
+	 *
+	 * @param source no application data
+	 * @return true if the engine made progress
+	 * @throws IOException
+	 */
+	private boolean wrap(ByteBuffer source) throws IOException {
+		return onWrapped(engine.wrap(source, netOut));
+	}
+
+	/**
+	 * make room in the network buffer if the record did not fit
+	 *
+	 * @param result the result of the last wrap
+	 * @return true if the engine made progress
+	 * @throws IOException
+	 */
+	private boolean onWrapped(SSLEngineResult result) throws IOException {
+		switch (result.getStatus()) {
+		case BUFFER_OVERFLOW:
+			if (netOut.position() == 0) {
+				netOut = enlarge(netOut, engine.getSession().getPacketBufferSize());
+				return true;
+			}
+			return flushNet();
+		case CLOSED:
+			return result.bytesProduced() > 0;
+		default:
+			checkHandshakeFinished(result);
+			return result.bytesConsumed() > 0 || result.bytesProduced() > 0;
+		}
+	}
+
+	/**
+	 * write the encrypted records to the channel
+	 *
+	 * @return true if any bytes were written
+	 * @throws IOException
+	 */
+	private boolean flushNet() throws IOException {
+		if (!channel.isOpen() || netOut.position() == 0)
+			return false;
+
+		netOut.flip();
+		int written;
+		try {
+			written = channel.write(netOut);
+		} finally {
+			netOut.compact();
+		}
+		return written > 0;
+	}
+
+	/**
+	 * the handshake tasks are cpu intensive. Without a handshake executor they
+	 * are run on the selector loop thread right away.
+	 *
+	 * @return true if the tasks were run, false if the connection has to wait for
+	 *         the handshake executor
+	 */
+	private boolean runDelegatedTasks() {
+		if (handshakeExecutor == null) {
+			Runnable task;
+			while ((task = engine.getDelegatedTask()) != null) {
+				task.run();
+			}
+			return true;
+		}
+
+		delegatedTasksRunning = true;
+		updateReadInterest();
+		boolean queued = handshakeExecutor.execute(() -> {
+			Runnable task;
+			while ((task = engine.getDelegatedTask()) != null) {
+				task.run();
+			}
+			loop.execute(this::onDelegatedTasksDone);
+		});
+		if (!queued) {
+			logger.error("TLS handshake queue is full, closing the connection.");
+			close();
+		}
+		return false;
+	}
+
+	/**
+	 * continue the handshake on the selector loop
+	 */
+	private void onDelegatedTasksDone() {
+		delegatedTasksRunning = false;
+		if (!channel.isOpen())
+			return;
+		updateReadInterest();
+		try {
+			process();
+		} catch (IOException e) {
+			logger.error("The client connection was lost!");
+			close();
+		} catch (RuntimeException e) {
+			logger.error("A general server exception occured!", e);
+			close();
+		}
+	}
+
+	/**
+	 * close the connection if the handshake is still not finished
+	 */
+	private void onHandshakeTimeout() {
+		if (handshakeDone || !channel.isOpen())
+			return;
+		handshakeExecutor.recordTimeout();
+		logger.error("TLS handshake timed out, closing the connection.");
+		close();
+	}
+
+	/**
+	 *
+	 * @param result the last engine result
+	 * @throws IOException
+	 */
+	private void checkHandshakeFinished(SSLEngineResult result) throws IOException {
+		if (!handshakeDone && result.getHandshakeStatus() == HandshakeStatus.FINISHED) {
+			handshakeDone = true;
+			SSLSession session = engine.getSession();
+			long handshakeNanos = System.nanoTime() - handshakeStartNanos;
+			boolean resumed = TLSController.getHandshakeStatistics().record(session, handshakeStart,
+					handshakeNanos);
+			if (handshakeExecutor != null) {
+				handshakeExecutor.recordHandshake(handshakeNanos);
+				cancelHandshakeTimeout();
+			}
+			logger.info("Handshake finished using " + session.getProtocol() + " and " + session.getCipherSuite()
+					+ (resumed ? ", session resumed" : ""));
+			onSessionReady();
+		}
+	}
+
+	/**
+	 * send close_notify if possible, then close the channel
+	 */
+	@Override
+	public void close() {
+		cancelHandshakeTimeout();
+		if (channel.isOpen() && netOut != null && !engine.isOutboundDone()) {
+			engine.closeOutbound();
+			try {
+				wrap(EMPTY);
+				flushNet();
+			} catch (IOException e) {
+				logger.debug("Could not send close_notify to client.");
+			}
+		}
+		super.close();
+		releaseBuffers();
+	}
+
+	/**
+	 * return the network buffers to the pool once the channel is closed
+	 */
+	private void releaseBuffers() {
+		if (netIn != null) {
+			bufferPool.release(netIn);
+			netIn = null;
+		}
+		if (netOut != null) {
+			bufferPool.release(netOut);
+			netOut = null;
+		}
+	}
+
+	private void cancelHandshakeTimeout() {
+		if (handshakeTimeout != null) {
+			handshakeTimeout.cancel();
+			handshakeTimeout = null;
+		}
+	}
+
+	/**
+	 *
+	 * @param handshakeExecutor runs the delegated tasks, null to run them on the
+	 *                          selector loop
+	 */
+	void setHandshakeExecutor(HandshakeExecutor handshakeExecutor) {
+		this.handshakeExecutor = handshakeExecutor;
+	}
+
+	/**
+	 *
+	 * @param buffer   a pooled buffer in write mode, returned to the pool
+	 * @param capacity the new capacity
+	 * @return a new buffer in write mode with the content of the given one
+	 */
+	private ByteBuffer enlarge(ByteBuffer buffer, int capacity) {
+		ByteBuffer larger = bufferPool.acquire(capacity);
+		buffer.flip();
+		larger.put(buffer);
+		bufferPool.release(buffer);
+		return larger;
+	}
+
+}
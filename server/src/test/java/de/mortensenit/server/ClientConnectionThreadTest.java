@@ -0,0 +1,179 @@
+package de.mortensenit.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import de.mortensenit.model.Constants;
+import de.mortensenit.model.buffer.ByteBufferPool;
+import de.mortensenit.model.codec.FrameCodec;
+import de.mortensenit.model.util.HashedWheelTimer;
+
+/**
+ * Serves a single loopback connection with a handler that echoes every
+ * message.
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class ClientConnectionThreadTest {
+
+	private static final MessageHandler ECHO = (connectionId, message) -> {
+		byte[] payload = new byte[message.remaining()];
+		message.get(payload);
+		return payload;
+	};
+
+	@AfterEach
+	public void tearDown() throws InterruptedException {
+		assertNoLeaks();
+	}
+
+	@Test
+	public void testRequestResponseIsNotThrottled() throws Exception {
+		// the read loop used to sleep a second after every read
+		assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+			FrameCodec codec = FrameCodec.create(Constants.FRAMING_LINE, FrameCodec.DEFAULT_MAX_FRAME_SIZE);
+			try (Socket socket = connect(Constants.FRAMING_LINE, ECHO)) {
+				OutputStream os = socket.getOutputStream();
+				readFrames(socket.getInputStream(), codec, 1);
+
+				for (int i = 0; i < 1000; i++) {
+					os.write(codec.encode(String.valueOf(i).getBytes(StandardCharsets.UTF_8)));
+					os.flush();
+					assertEquals(String.valueOf(i), readFrames(socket.getInputStream(), codec, 1).poll());
+				}
+			} finally {
+				codec.release();
+			}
+		});
+	}
+
+	@Test
+	public void testPipelinedMessagesAreAnsweredInOrder() throws Exception {
+		assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+			FrameCodec codec = FrameCodec.create(Constants.FRAMING_EPP, FrameCodec.DEFAULT_MAX_FRAME_SIZE);
+			try (Socket socket = connect(Constants.FRAMING_EPP, ECHO)) {
+				readFrames(socket.getInputStream(), codec, 1);
+
+				int messages = 10000;
+				Thread writer = Thread.ofVirtual().start(() -> {
+					try {
+						OutputStream os = socket.getOutputStream();
+						for (int i = 0; i < messages; i++) {
+							os.write(codec.encode(String.valueOf(i).getBytes(StandardCharsets.UTF_8)));
+						}
+						os.flush();
+					} catch (IOException e) {
+						throw new IllegalStateException(e);
+					}
+				});
+
+				Deque<String> responses = readFrames(socket.getInputStream(), codec, messages);
+				writer.join();
+				for (int i = 0; i < messages; i++) {
+					assertEquals(String.valueOf(i), responses.poll());
+				}
+				assertTrue(responses.isEmpty());
+			} finally {
+				codec.release();
+			}
+		});
+	}
+
+	@Test
+	public void testIdleConnectionIsClosed() throws Exception {
+		ConnectionTimeouts connectionTimeouts = new ConnectionTimeouts(HashedWheelTimer.getDefault(), 300, 0);
+		assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+			FrameCodec codec = FrameCodec.create(Constants.FRAMING_LINE, FrameCodec.DEFAULT_MAX_FRAME_SIZE);
+			try (Socket socket = connect(Constants.FRAMING_LINE, ECHO, connectionTimeouts)) {
+				readFrames(socket.getInputStream(), codec, 1);
+
+				// the blocking read of the server ends when the socket is closed
+				assertEquals(-1, socket.getInputStream().read());
+				assertEquals(1, connectionTimeouts.getIdleTimeouts());
+			} finally {
+				codec.release();
+			}
+		});
+	}
+
+	/**
+	 * serve a new loopback connection on a virtual thread
+	 *
+	 * @param framing        the framing of the server side
+	 * @param messageHandler the handler of the server side
+	 * @return the client side of the connection
+	 * @throws IOException
+	 */
+	private static Socket connect(String framing, MessageHandler messageHandler) throws IOException {
+		return connect(framing, messageHandler, null);
+	}
+
+	/**
+	 * serve a new loopback connection on a virtual thread
+	 *
+	 * @param framing            the framing of the server side
+	 * @param messageHandler     the handler of the server side
+	 * @param connectionTimeouts the timeouts of the server side, or null
+	 * @return the client side of the connection
+	 * @throws IOException
+	 */
+	private static Socket connect(String framing, MessageHandler messageHandler,
+			ConnectionTimeouts connectionTimeouts) throws IOException {
+		try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			Socket socket = new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort());
+			socket.setTcpNoDelay(true);
+
+			Socket accepted = serverSocket.accept();
+			accepted.setTcpNoDelay(true);
+
+			ClientConnectionThread clientConnectionThread = new ClientConnectionThread();
+			clientConnectionThread.setClientSocket(accepted);
+			clientConnectionThread.setMessageHandler(messageHandler);
+			clientConnectionThread.setFrameCodec(FrameCodec.create(framing, FrameCodec.DEFAULT_MAX_FRAME_SIZE));
+			clientConnectionThread.setConnectionTimeouts(connectionTimeouts);
+			Thread.ofVirtual().start(clientConnectionThread);
+			return socket;
+		}
+	}
+
+	/**
+	 * wait until the server side released the buffers of its connection
+	 */
+	private static void assertNoLeaks() throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!ByteBufferPool.getDefault().getLeaks().isEmpty() && System.currentTimeMillis() < deadline)
+			Thread.sleep(10);
+		assertEquals(Collections.emptyList(), ByteBufferPool.getDefault().getLeaks());
+	}
+
+	/**
+	 * read until the given number of frames was received
+	 */
+	private static Deque<String> readFrames(InputStream inputStream, FrameCodec codec, int count) throws IOException {
+		Deque<String> frames = new ArrayDeque<>();
+		while (frames.size() < count) {
+			if (codec.read(inputStream) < 0)
+				throw new IOException("Connection closed after " + frames.size() + " frames.");
+			codec.decode(frame -> frames.add(StandardCharsets.UTF_8.decode(frame).toString()));
+		}
+		return frames;
+	}
+
+}
@@ -0,0 +1,88 @@
+package de.mortensenit.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetSocketAddress;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.mortensenit.model.util.HashedWheelTimer;
+
+/**
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class ClientRateLimiterTest {
+
+	private static final InetSocketAddress CLIENT = new InetSocketAddress("127.0.0.1", 40000);
+
+	private static final InetSocketAddress OTHER_CLIENT = new InetSocketAddress("127.0.0.2", 40000);
+
+	private HashedWheelTimer timer;
+
+	@BeforeEach
+	public void startTimer() {
+		timer = new HashedWheelTimer(10, 64, "test-timer");
+	}
+
+	@AfterEach
+	public void stopTimer() {
+		timer.stop();
+	}
+
+	@Test
+	public void testConnectionsAboveTheRateAreRejected() {
+		ClientRateLimiter rateLimiter = new ClientRateLimiter(1, 2, 0, 0, timer);
+		assertTrue(rateLimiter.tryConnect(CLIENT));
+		// another port of the same address shares the bucket
+		assertTrue(rateLimiter.tryConnect(new InetSocketAddress("127.0.0.1", 40001)));
+		assertFalse(rateLimiter.tryConnect(CLIENT));
+		assertTrue(rateLimiter.tryConnect(OTHER_CLIENT));
+		assertEquals(1, rateLimiter.getRejectedConnections());
+	}
+
+	@Test
+	public void testMessagesAboveTheRateAreDelayed() {
+		ClientRateLimiter rateLimiter = new ClientRateLimiter(0, 0, 10, 10, timer);
+		assertTrue(rateLimiter.isMessageRateLimited());
+		assertEquals(0, rateLimiter.onMessages("client", 10));
+		assertTrue(rateLimiter.onMessages("client", 5) > 0);
+		assertEquals(0, rateLimiter.onMessages("other client", 10));
+		assertEquals(1, rateLimiter.getThrottledReads());
+	}
+
+	@Test
+	public void testNoLimits() {
+		ClientRateLimiter rateLimiter = new ClientRateLimiter(0, 0, 0, 0, timer);
+		assertFalse(rateLimiter.isMessageRateLimited());
+		for (int i = 0; i < 100; i++) {
+			assertTrue(rateLimiter.tryConnect(CLIENT));
+			assertEquals(0, rateLimiter.onMessages("client", 100));
+		}
+		assertEquals(0, rateLimiter.getBuckets());
+	}
+
+	@Test
+	public void testIdleBucketsAreDropped() throws InterruptedException {
+		ClientRateLimiter rateLimiter = new ClientRateLimiter(100, 1, 100, 1, timer);
+		rateLimiter.tryConnect(CLIENT);
+		rateLimiter.onMessages("client", 1);
+		assertEquals(2, rateLimiter.getBuckets());
+
+		// both buckets are full again after 10 ms
+		Thread.sleep(50);
+		rateLimiter.sweep();
+		assertEquals(0, rateLimiter.getBuckets());
+	}
+
+	@Test
+	public void testIdentifyWithoutCertificate() {
+		assertEquals("127.0.0.1", ClientRateLimiter.identify(null, CLIENT));
+	}
+
+}
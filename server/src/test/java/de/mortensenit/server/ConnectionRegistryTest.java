@@ -0,0 +1,107 @@
+package de.mortensenit.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Closeable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 
+ * @author frederik.mortensen
+ *
+ */
+public class ConnectionRegistryTest {
+
+	@Test
+	public void testRegisterAndUnregister() throws InterruptedException {
+		ConnectionRegistry registry = new ConnectionRegistry(0, false);
+		assertTrue(registry.admit());
+		long first = registry.register(() -> {
+		});
+		assertTrue(registry.admit());
+		long second = registry.register(() -> {
+		});
+		assertNotEquals(first, second);
+		assertEquals(2, registry.getOpenConnections());
+
+		registry.unregister(first);
+		registry.unregister(first);
+		assertEquals(1, registry.getOpenConnections());
+		assertEquals(2, registry.getAdmittedConnections());
+	}
+
+	@Test
+	public void testRejectAboveMaximum() throws InterruptedException {
+		ConnectionRegistry registry = new ConnectionRegistry(1, false);
+		assertTrue(registry.admit());
+		long connectionId = registry.register(() -> {
+		});
+
+		assertFalse(registry.admit());
+		assertEquals(1, registry.getRejectedConnections());
+
+		registry.unregister(connectionId);
+		assertTrue(registry.admit());
+	}
+
+	@Test
+	public void testReleaseFreesSlotOfUnregisteredConnection() throws InterruptedException {
+		// the setup of an admitted connection failed before it was registered
+		ConnectionRegistry registry = new ConnectionRegistry(1, false);
+		assertTrue(registry.admit());
+		registry.release();
+
+		assertTrue(registry.admit());
+		assertEquals(0, registry.getOpenConnections());
+		assertEquals(0, registry.getRejectedConnections());
+	}
+
+	@Test
+	public void testQueueAboveMaximum() throws InterruptedException {
+		ConnectionRegistry registry = new ConnectionRegistry(1, true);
+		assertTrue(registry.admit());
+		long connectionId = registry.register(() -> {
+		});
+
+		CountDownLatch admitted = new CountDownLatch(1);
+		Thread waiting = new Thread(() -> {
+			try {
+				if (registry.admit())
+					admitted.countDown();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		waiting.start();
+
+		assertFalse(admitted.await(200, TimeUnit.MILLISECONDS));
+		assertEquals(1, registry.getWaitingConnections());
+
+		registry.unregister(connectionId);
+		assertTrue(admitted.await(5, TimeUnit.SECONDS));
+		assertEquals(0, registry.getRejectedConnections());
+	}
+
+	@Test
+	public void testCloseAll() throws InterruptedException {
+		ConnectionRegistry registry = new ConnectionRegistry(2, false);
+		AtomicBoolean closed = new AtomicBoolean();
+		Closeable connection = () -> closed.set(true);
+		registry.admit();
+		registry.register(connection);
+
+		registry.closeAll();
+		assertTrue(closed.get());
+		assertEquals(0, registry.getOpenConnections());
+		assertTrue(registry.admit());
+		assertTrue(registry.admit());
+	}
+
+}
@@ -0,0 +1,99 @@
+package de.mortensenit.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.mortensenit.model.util.HashedWheelTimer;
+
+/**
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class ConnectionTimeoutsTest {
+
+	private HashedWheelTimer timer;
+
+	private final BlockingQueue<String> timeouts = new ArrayBlockingQueue<>(10);
+
+	@BeforeEach
+	public void startTimer() {
+		timer = new HashedWheelTimer(10, 64, "test-timer");
+	}
+
+	@AfterEach
+	public void stopTimer() {
+		timer.stop();
+	}
+
+	@Test
+	public void testIdleConnectionIsClosed() throws InterruptedException {
+		ConnectionTimeouts connectionTimeouts = new ConnectionTimeouts(timer, 100, 0);
+		long start = System.nanoTime();
+		connectionTimeouts.watch(timeouts::add);
+
+		String reason = timeouts.poll(5, TimeUnit.SECONDS);
+		assertTrue(reason.startsWith("nothing received"));
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+		assertEquals(1, connectionTimeouts.getIdleTimeouts());
+		// the timeout is reported once
+		assertNull(timeouts.poll(200, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testReadsPostponeTheIdleTimeout() throws InterruptedException {
+		ConnectionTimeouts connectionTimeouts = new ConnectionTimeouts(timer, 200, 0);
+		ConnectionTimeouts.Watchdog watchdog = connectionTimeouts.watch(timeouts::add);
+		for (int i = 0; i < 10; i++) {
+			Thread.sleep(50);
+			watchdog.onReceived(false);
+		}
+		assertTrue(timeouts.isEmpty());
+
+		watchdog.stop();
+		assertNull(timeouts.poll(400, TimeUnit.MILLISECONDS));
+		assertEquals(0, timer.getPendingTimeouts());
+	}
+
+	@Test
+	public void testIncompleteMessageIsClosed() throws InterruptedException {
+		ConnectionTimeouts connectionTimeouts = new ConnectionTimeouts(timer, 0, 200);
+		ConnectionTimeouts.Watchdog watchdog = connectionTimeouts.watch(timeouts::add);
+
+		// a complete message does not start the read timeout
+		watchdog.onReceived(false);
+		Thread.sleep(300);
+		assertTrue(timeouts.isEmpty());
+
+		// a client sending a message byte by byte is not idle but slow
+		long start = System.nanoTime();
+		for (int i = 0; i < 5; i++) {
+			watchdog.onReceived(true);
+			Thread.sleep(20);
+		}
+		String reason = timeouts.poll(5, TimeUnit.SECONDS);
+		assertTrue(reason.startsWith("message not completed"));
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+		assertEquals(1, connectionTimeouts.getReadTimeouts());
+		assertEquals(0, connectionTimeouts.getIdleTimeouts());
+	}
+
+	@Test
+	public void testNoTimeouts() {
+		ConnectionTimeouts connectionTimeouts = new ConnectionTimeouts(timer, 0, 0);
+		connectionTimeouts.watch(timeouts::add).onReceived(true);
+		assertEquals(0, timer.getPendingTimeouts());
+		assertFalse(connectionTimeouts.toString().contains("ms"));
+	}
+
+}
@@ -0,0 +1,51 @@
+package de.mortensenit.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import de.mortensenit.model.server.Greeting;
+import de.mortensenit.model.server.GreetingMarshaller;
+import de.mortensenit.model.util.ConfigurationContext;
+
+/**
+ * 
+ * @author frederik.mortensen
+ *
+ */
+public class GreetingControllerTest {
+
+	@Test
+	public void testGreetClientEncoded() {
+		ConfigurationContext.loadOrRefreshContext();
+		GreetingController greetingController = new GreetingController();
+
+		for (int greetingId : new int[] { 0, 7, 42, 1000000, -1, Integer.MAX_VALUE, Integer.MIN_VALUE }) {
+			Greeting expected = new Greeting();
+			expected.setId(greetingId);
+			expected.setName("Welcome to my EPP server!");
+
+			byte[] greetingMessage = greetingController.greetClientEncoded(greetingId);
+			assertEquals(GreetingMarshaller.marshall(expected), new String(greetingMessage, StandardCharsets.UTF_8));
+		}
+	}
+
+	@Test
+	public void testInvalidateOnConfigurationChange() {
+		ConfigurationContext.loadOrRefreshContext();
+		GreetingController greetingController = new GreetingController();
+		greetingController.greetClientEncoded(1);
+
+		ConfigurationContext.set(ServerConfigKeys.SERVER_GREETING, "Hello");
+		Greeting greeting = GreetingMarshaller.unmarshall(new String(greetingController.greetClientEncoded(2), StandardCharsets.UTF_8));
+		assertEquals(2, greeting.getId());
+		assertEquals("Hello", greeting.getName());
+
+		ConfigurationContext.loadOrRefreshContext();
+		greeting = GreetingMarshaller.unmarshall(new String(greetingController.greetClientEncoded(3), StandardCharsets.UTF_8));
+		assertEquals("Welcome to my EPP server!", greeting.getName());
+	}
+
+}
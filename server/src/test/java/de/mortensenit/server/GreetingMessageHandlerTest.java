@@ -0,0 +1,50 @@
+package de.mortensenit.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import de.mortensenit.model.server.Greeting;
+import de.mortensenit.model.server.GreetingMarshaller;
+import de.mortensenit.model.util.ConfigurationContext;
+
+/**
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class GreetingMessageHandlerTest {
+
+	@Test
+	public void testAnswersWithTheRequestId() throws IOException {
+		ConfigurationContext.loadOrRefreshContext();
+		Greeting request = new Greeting();
+		request.setId(4711);
+		request.setName("hello");
+
+		byte[] response = new GreetingMessageHandler().onMessage(1,
+				ByteBuffer.wrap(GreetingMarshaller.marshallToBytes(request)));
+
+		Greeting greeting = GreetingMarshaller.unmarshall(new String(response, StandardCharsets.UTF_8));
+		assertEquals(4711, greeting.getId());
+		assertEquals("Welcome to my EPP server!", greeting.getName());
+	}
+
+	@Test
+	public void testKeepAliveIsNotAnswered() throws IOException {
+		assertNull(new GreetingMessageHandler().onMessage(1, ByteBuffer.wrap(".".getBytes(StandardCharsets.UTF_8))));
+	}
+
+	@Test
+	public void testInvalidGreetingClosesTheConnection() {
+		assertThrows(IOException.class, () -> new GreetingMessageHandler().onMessage(1,
+				ByteBuffer.wrap("<greeting".getBytes(StandardCharsets.UTF_8))));
+	}
+
+}
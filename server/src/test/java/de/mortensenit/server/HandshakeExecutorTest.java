@@ -0,0 +1,227 @@
+package de.mortensenit.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+import org.junit.jupiter.api.Test;
+
+import de.mortensenit.controller.TLSController;
+
+/**
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class HandshakeExecutorTest {
+
+	@Test
+	public void testQueueIsBounded() throws InterruptedException {
+		HandshakeExecutor executor = new HandshakeExecutor(1, 1, 0);
+		try {
+			CountDownLatch running = new CountDownLatch(1);
+			CountDownLatch release = new CountDownLatch(1);
+			CountDownLatch done = new CountDownLatch(2);
+			Runnable blocking = () -> {
+				running.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				done.countDown();
+			};
+
+			assertTrue(executor.execute(blocking));
+			assertTrue(running.await(5, TimeUnit.SECONDS));
+			assertTrue(executor.execute(done::countDown));
+			assertFalse(executor.execute(done::countDown));
+
+			assertEquals(1, executor.getActiveHandshakes());
+			assertEquals(1, executor.getQueuedHandshakes());
+			assertEquals(1, executor.getRejectedHandshakes());
+
+			release.countDown();
+			assertTrue(done.await(5, TimeUnit.SECONDS));
+			assertEquals(2, executor.getQueueTime().getCount());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testHandshakeTimeout() throws Exception {
+		HandshakeExecutor executor = new HandshakeExecutor(1, 10, 200);
+		SSLContext serverContext = serverContext();
+		InetAddress loopback = InetAddress.getLoopbackAddress();
+		// a client which never starts the handshake
+		try (ServerSocket listener = new ServerSocket(0, 50, loopback);
+				Socket silentClient = new Socket(loopback, listener.getLocalPort());
+				Socket accepted = listener.accept()) {
+
+			assertThrows(SocketTimeoutException.class, () -> executor.handshake(accepted,
+					serverContext.getSocketFactory(), serverContext.getDefaultSSLParameters()));
+			assertTrue(accepted.isClosed());
+			assertEquals(1, executor.getTimedOutHandshakes());
+			assertEquals(0, executor.getHandshakeTime().getCount());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testSilentClientsDoNotStallOtherHandshakes() throws Exception {
+		// fewer handshake threads and queue slots than silent clients
+		HandshakeExecutor executor = new HandshakeExecutor(1, 1, 10000);
+		SSLContext serverContext = serverContext();
+		InetAddress loopback = InetAddress.getLoopbackAddress();
+		List<Socket> silentClients = new ArrayList<>();
+
+		try (ServerSocket listener = new ServerSocket(0, 50, loopback)) {
+			int port = listener.getLocalPort();
+			for (int i = 0; i < 4; i++) {
+				silentClients.add(new Socket(loopback, port));
+				Socket accepted = listener.accept();
+				// like the server, every connection waits for the client hello on its own
+				// thread
+				Thread.ofVirtual().start(() -> {
+					try {
+						executor.handshake(accepted, serverContext.getSocketFactory(),
+								serverContext.getDefaultSSLParameters());
+					} catch (IOException e) {
+						// closed at the end of the test
+					}
+				});
+			}
+
+			try (SSLSocket client = (SSLSocket) trustAll().getSocketFactory().createSocket(loopback, port)) {
+				Socket accepted = listener.accept();
+				CompletableFuture<SSLSocket> handshake = CompletableFuture.supplyAsync(() -> {
+					try {
+						return executor.handshake(accepted, serverContext.getSocketFactory(),
+								serverContext.getDefaultSSLParameters());
+					} catch (IOException e) {
+						throw new CompletionException(e);
+					}
+				});
+				client.startHandshake();
+
+				// long before the silent clients time out
+				SSLSocket sslSocket = handshake.get(5, TimeUnit.SECONDS);
+				assertTrue(sslSocket.getSession().isValid());
+				assertEquals(0, executor.getTimedOutHandshakes());
+				assertEquals(0, executor.getRejectedHandshakes());
+				assertEquals(1, executor.getQueueTime().getCount());
+				sslSocket.close();
+			}
+		} finally {
+			ListenerSettings.closeAll(silentClients);
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testHandshakeIsRejectedWhenTheQueueIsFull() throws Exception {
+		HandshakeExecutor executor = new HandshakeExecutor(1, 1, 10000);
+		SSLContext serverContext = serverContext();
+		InetAddress loopback = InetAddress.getLoopbackAddress();
+		CountDownLatch release = new CountDownLatch(1);
+		Runnable blocking = () -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		};
+
+		try (ServerSocket listener = new ServerSocket(0, 50, loopback);
+				SSLSocket client = (SSLSocket) trustAll().getSocketFactory().createSocket(loopback,
+						listener.getLocalPort());
+				Socket accepted = listener.accept()) {
+			// the only handshake thread is busy and the queue is full
+			assertTrue(executor.execute(blocking));
+			assertTrue(executor.execute(blocking));
+			Thread.ofVirtual().start(() -> {
+				try {
+					client.startHandshake();
+				} catch (IOException e) {
+					// rejected by the server
+				}
+			});
+
+			assertThrows(IOException.class, () -> executor.handshake(accepted, serverContext.getSocketFactory(),
+					serverContext.getDefaultSSLParameters()));
+			assertTrue(accepted.isClosed());
+			assertEquals(1, executor.getRejectedHandshakes());
+			assertEquals(0, executor.getTimedOutHandshakes());
+		} finally {
+			release.countDown();
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 *
+	 * @return the server context with the test keystore
+	 * @throws Exception
+	 */
+	private static SSLContext serverContext() throws Exception {
+		return TLSController.getTlsServerContext("keystore.jks", "testtest", "truststore.jks");
+	}
+
+	/**
+	 *
+	 * @return a client context trusting the test certificate of the server
+	 * @throws Exception
+	 */
+	private static SSLContext trustAll() throws Exception {
+		SSLContext sslContext = SSLContext.getInstance("TLS");
+		sslContext.init(null, new TrustManager[] { new X509TrustManager() {
+			@Override
+			public void checkClientTrusted(X509Certificate[] chain, String authType) {
+			}
+
+			@Override
+			public void checkServerTrusted(X509Certificate[] chain, String authType) {
+			}
+
+			@Override
+			public X509Certificate[] getAcceptedIssuers() {
+				return new X509Certificate[0];
+			}
+		} }, null);
+		return sslContext;
+	}
+
+	@Test
+	public void testNoTimeout() {
+		HandshakeExecutor executor = new HandshakeExecutor(1, 1, 0);
+		try {
+			assertNull(executor.scheduleTimeout(() -> {
+			}));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,107 @@
+package de.mortensenit.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.util.List;
+
+import javax.net.ServerSocketFactory;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class ListenerSettingsTest {
+
+	@Test
+	public void testAcceptorThreadsShareOneListener() throws IOException {
+		InetAddress loopback = InetAddress.getLoopbackAddress();
+		ListenerSettings settings = new ListenerSettings(loopback, 0, 0, 4, false);
+		assertEquals(ListenerSettings.DEFAULT_BACKLOG, settings.getBacklog());
+		assertEquals(1, settings.getListenerCount());
+
+		List<ServerSocket> listeners = settings.openServerSockets(ServerSocketFactory.getDefault());
+		try {
+			assertEquals(1, listeners.size());
+			ServerSocket listener = listeners.get(0);
+			assertEquals(loopback, listener.getInetAddress());
+			assertNotEquals(0, listener.getLocalPort());
+		} finally {
+			ListenerSettings.closeAll(listeners);
+		}
+	}
+
+	@Test
+	public void testReusePortOpensAListenerPerAcceptor() throws IOException {
+		assumeTrue(reusePortSupported());
+
+		ListenerSettings settings = new ListenerSettings(InetAddress.getLoopbackAddress(), 0, 128, 3, true);
+		List<ServerSocket> listeners = settings.openServerSockets(ServerSocketFactory.getDefault());
+		try {
+			assertEquals(3, listeners.size());
+			int port = listeners.get(0).getLocalPort();
+			for (ServerSocket listener : listeners) {
+				assertEquals(port, listener.getLocalPort());
+				assertTrue(listener.getOption(StandardSocketOptions.SO_REUSEPORT));
+			}
+
+			// the kernel hands every connection to exactly one of the listeners
+			for (int i = 0; i < 10; i++) {
+				try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+					assertTrue(socket.isConnected());
+				}
+			}
+		} finally {
+			ListenerSettings.closeAll(listeners);
+		}
+	}
+
+	@Test
+	public void testReusePortOpensAChannelPerAcceptor() throws IOException {
+		assumeTrue(reusePortSupported());
+
+		ListenerSettings settings = new ListenerSettings(InetAddress.getLoopbackAddress(), 0, 128, 2, true);
+		List<ServerSocketChannel> listeners = settings.openServerChannels();
+		try {
+			assertEquals(2, listeners.size());
+			int port = ((InetSocketAddress) listeners.get(0).getLocalAddress()).getPort();
+			assertEquals(port, ((InetSocketAddress) listeners.get(1).getLocalAddress()).getPort());
+		} finally {
+			ListenerSettings.closeAll(listeners);
+		}
+	}
+
+	@Test
+	public void testPortInUse() throws IOException {
+		try (ServerSocket occupied = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+			ListenerSettings settings = new ListenerSettings(InetAddress.getLoopbackAddress(),
+					occupied.getLocalPort(), 50, 1, false);
+			assertThrows(IOException.class, () -> settings.openServerSockets(ServerSocketFactory.getDefault()));
+		}
+	}
+
+	@Test
+	public void testAtLeastOneAcceptor() {
+		assertThrows(IllegalArgumentException.class, () -> new ListenerSettings(null, 7000, 50, 0, false));
+	}
+
+	private static boolean reusePortSupported() throws IOException {
+		try (ServerSocket serverSocket = new ServerSocket()) {
+			return serverSocket.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+		}
+	}
+
+}
@@ -0,0 +1,86 @@
+package de.mortensenit.server;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import de.mortensenit.model.Constants;
+import de.mortensenit.model.util.ConfigurationContext;
+
+/**
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class ServerListenerTest {
+
+	@AfterEach
+	public void resetConfiguration() {
+		ConfigurationContext.reset();
+	}
+
+	@Test
+	public void testSingleListenerByDefault() throws IOException {
+		ConfigurationContext.set(ServerConfigKeys.SERVER_MODE, "tls_nio");
+		ConfigurationContext.set(ServerConfigKeys.SERVER_PORT, "7100");
+
+		List<ServerListener> listeners = ServerListener.createAll();
+		assertEquals(1, listeners.size());
+		ServerListener listener = listeners.get(0);
+		assertEquals(ServerListener.DEFAULT_NAME, listener.getName());
+		assertEquals(Constants.ENCRYPTION_MODE_TLS_NIO, listener.getMode());
+		assertTrue(listener.isTls());
+		assertTrue(listener.isNio());
+		assertEquals(7100, listener.getListenerSettings().getPort());
+	}
+
+	@Test
+	public void testListenersOverrideTheServerKeys() throws IOException {
+		ConfigurationContext.set(ServerConfigKeys.SERVER_MODE, Constants.ENCRYPTION_MODE_TLS);
+		ConfigurationContext.set(ServerConfigKeys.SERVER_BACKLOG, "256");
+		ConfigurationContext.set(ServerConfigKeys.SERVER_ENABLED_PROTOCOLS, "TLSv1.3,TLSv1.2");
+		ConfigurationContext.set(ServerConfigKeys.SERVER_LISTENERS, "internal, external");
+		ConfigurationContext.set("server.listener.internal.mode", Constants.ENCRYPTION_MODE_PLAIN_NIO);
+		ConfigurationContext.set("server.listener.internal.port", "7101");
+		ConfigurationContext.set("server.listener.internal.bind.address", "127.0.0.1");
+		ConfigurationContext.set("server.listener.internal.framing", Constants.FRAMING_EPP);
+		ConfigurationContext.set("server.listener.external.port", "7102");
+		ConfigurationContext.set("server.listener.external.enabled.protocols", "TLSv1.3");
+
+		List<ServerListener> listeners = ServerListener.createAll();
+		assertEquals(2, listeners.size());
+
+		ServerListener internal = listeners.get(0);
+		assertEquals("internal", internal.getName());
+		assertFalse(internal.isTls());
+		assertTrue(internal.isNio());
+		assertEquals(Constants.FRAMING_EPP, internal.getFraming());
+		assertEquals(7101, internal.getListenerSettings().getPort());
+		assertEquals(InetAddress.getByName("127.0.0.1"), internal.getListenerSettings().getBindAddress());
+		assertEquals(256, internal.getListenerSettings().getBacklog());
+
+		ServerListener external = listeners.get(1);
+		assertTrue(external.isTls());
+		assertFalse(external.isNio());
+		assertEquals(Constants.FRAMING_LINE, external.getFraming());
+		assertEquals(7102, external.getListenerSettings().getPort());
+		assertNull(external.getListenerSettings().getBindAddress());
+		assertArrayEquals(new String[] { "TLSv1.3" }, external.getEnabledProtocols());
+	}
+
+	@Test
+	public void testListenerKey() {
+		assertEquals("server.listener.internal.max.frame.size",
+				ServerListener.getKey("internal", ServerConfigKeys.SERVER_MAX_FRAME_SIZE));
+	}
+
+}
@@ -0,0 +1,119 @@
+package de.mortensenit.server.nio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author frederik.mortensen
+ *
+ */
+public class OutboundQueueTest {
+
+	@Test
+	public void testGatheringWrite() throws IOException {
+		OutboundMetrics metrics = new OutboundMetrics();
+		OutboundQueue queue = new OutboundQueue(OutboundQueue.DEFAULT_LOW_WATERMARK,
+				OutboundQueue.DEFAULT_HIGH_WATERMARK, metrics);
+		for (String data : new String[] { "first ", "second ", "third" }) {
+			queue.add(ByteBuffer.wrap(data.getBytes(StandardCharsets.UTF_8)));
+		}
+		assertEquals(18, metrics.getQueuedBytes());
+
+		Pipe pipe = Pipe.open();
+		try {
+			assertTrue(queue.writeTo(pipe.sink()));
+			assertTrue(queue.isEmpty());
+			assertEquals(0, queue.getQueuedBytes());
+			assertEquals(0, metrics.getQueuedBytes());
+			assertEquals(1, metrics.getGatheringWrites());
+			assertEquals(3.0, metrics.getBuffersPerWrite());
+
+			ByteBuffer received = ByteBuffer.allocate(64);
+			pipe.source().read(received);
+			received.flip();
+			assertEquals("first second third", StandardCharsets.UTF_8.decode(received).toString());
+		} finally {
+			pipe.sink().close();
+			pipe.source().close();
+		}
+	}
+
+	@Test
+	public void testPartialWriteKeepsTheRest() throws IOException {
+		OutboundQueue queue = new OutboundQueue();
+		queue.add(ByteBuffer.allocate(4 * 1024 * 1024));
+
+		Pipe pipe = Pipe.open();
+		try {
+			pipe.sink().configureBlocking(false);
+			// nobody reads the pipe
+			assertFalse(queue.writeTo(pipe.sink()));
+			assertEquals(1, queue.size());
+			assertTrue(queue.getQueuedBytes() > 0);
+			assertTrue(queue.getQueuedBytes() < 4 * 1024 * 1024);
+		} finally {
+			pipe.sink().close();
+			pipe.source().close();
+		}
+	}
+
+	@Test
+	public void testWatermarks() {
+		OutboundMetrics metrics = new OutboundMetrics();
+		OutboundQueue queue = new OutboundQueue(100, 200, metrics);
+		ByteBuffer first = ByteBuffer.allocate(100);
+		ByteBuffer second = ByteBuffer.allocate(100);
+		queue.add(first);
+		queue.add(second);
+		assertFalse(queue.isFull());
+
+		queue.add(ByteBuffer.allocate(100));
+		assertTrue(queue.isFull());
+		assertEquals(1, metrics.getFullQueues());
+
+		// reading stays paused until the low watermark is reached
+		assertEquals(3, queue.gather());
+		first.position(first.limit());
+		queue.consumed(100);
+		assertTrue(queue.isFull());
+		assertEquals(2, queue.size());
+
+		queue.gather();
+		second.position(second.limit());
+		queue.consumed(100);
+		assertFalse(queue.isFull());
+		assertEquals(1, queue.size());
+		assertEquals(0, metrics.getFullQueues());
+		assertEquals(1, metrics.getPauses());
+	}
+
+	@Test
+	public void testClear() {
+		OutboundMetrics metrics = new OutboundMetrics();
+		OutboundQueue queue = new OutboundQueue(10, 20, metrics);
+		queue.add(ByteBuffer.allocate(50));
+		assertTrue(queue.isFull());
+
+		queue.clear();
+		assertTrue(queue.isEmpty());
+		assertFalse(queue.isFull());
+		assertEquals(0, metrics.getQueuedBytes());
+		assertEquals(0, metrics.getFullQueues());
+	}
+
+	@Test
+	public void testInvalidWatermarks() {
+		assertThrows(IllegalArgumentException.class, () -> new OutboundQueue(200, 100, null));
+	}
+
+}